@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import hu.akarnokd.rxjava2.debug.RxJavaAssemblyTracking;
+import io.reactivex.Flowable;
+import io.reactivex.functions.*;
+
+/**
+ * Measures the cost of assembling a short Flowable chain with the
+ * assembly tracking off, eager, lazy (low-overhead) and lazy + sampled.
+ * Run from command line as
+ * <br>
+ * gradle jmh -Pjmh='AssemblyTrackingPerf'
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class AssemblyTrackingPerf {
+
+    @Param({"off", "eager", "lazy", "lazy16"})
+    public String mode;
+
+    static final Function<Integer, Integer> IDENTITY = new Function<Integer, Integer>() {
+        @Override
+        public Integer apply(Integer v) throws Exception {
+            return v;
+        }
+    };
+
+    @Setup
+    public void setup() {
+        if ("eager".equals(mode)) {
+            RxJavaAssemblyTracking.enable();
+        } else
+        if ("lazy".equals(mode)) {
+            RxJavaAssemblyTracking.enable(1, true);
+        } else
+        if ("lazy16".equals(mode)) {
+            RxJavaAssemblyTracking.enable(16, true);
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        RxJavaAssemblyTracking.disable();
+    }
+
+    @Benchmark
+    public Object assemble() {
+        return Flowable.range(1, 5).map(IDENTITY).filter(new Predicate<Integer>() {
+            @Override
+            public boolean test(Integer v) throws Exception {
+                return true;
+            }
+        });
+    }
+}
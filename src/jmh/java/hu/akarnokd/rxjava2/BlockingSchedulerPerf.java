@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import hu.akarnokd.rxjava2.schedulers.BlockingScheduler;
+
+/**
+ * Measures the cross-thread handoff into a BlockingScheduler: a batch of
+ * tasks submitted at once and a single task ping-pong that has to wake up
+ * the blocking thread every time.
+ * Run from command line as
+ * <br>
+ * gradle jmh -Pjmh='BlockingSchedulerPerf'
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class BlockingSchedulerPerf {
+
+    @Param({"0", "64", "1024"})
+    public int spinLimit;
+
+    @Param({"0", "16"})
+    public int yieldLimit;
+
+    @Param({"1000"})
+    public int batch;
+
+    BlockingScheduler scheduler;
+
+    Thread thread;
+
+    @Setup
+    public void setup() {
+        scheduler = new BlockingScheduler(spinLimit, yieldLimit);
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                scheduler.execute();
+            }
+        }, "BlockingSchedulerPerf");
+        thread.start();
+    }
+
+    @TearDown
+    public void teardown() throws InterruptedException {
+        scheduler.shutdown();
+        thread.join();
+    }
+
+    @Benchmark
+    public void batch() throws InterruptedException {
+        CountDownLatch cdl = new CountDownLatch(batch);
+        BlockingScheduler s = scheduler;
+        Task t = new Task(cdl);
+        for (int i = 0; i < batch; i++) {
+            s.scheduleDirect(t);
+        }
+        if (!cdl.await(30, TimeUnit.SECONDS)) {
+            throw new RuntimeException("Timed out!");
+        }
+    }
+
+    @Benchmark
+    public void pingPong() throws InterruptedException {
+        CountDownLatch cdl = new CountDownLatch(1);
+        scheduler.scheduleDirect(new Task(cdl));
+        if (!cdl.await(30, TimeUnit.SECONDS)) {
+            throw new RuntimeException("Timed out!");
+        }
+    }
+
+    static final class Task implements Runnable {
+        final CountDownLatch cdl;
+
+        Task(CountDownLatch cdl) {
+            this.cdl = cdl;
+        }
+
+        @Override
+        public void run() {
+            cdl.countDown();
+        }
+    }
+}
@@ -71,6 +71,25 @@ public class FlatMapExPerf {
 
     Flowable<Integer> asyncAsyncB;
 
+    Flowable<Integer> concatMapEagerSync;
+
+    Flowable<Integer> concatMapEagerAsync;
+
+    Flowable<Integer> syncSyncOrdered;
+
+    Flowable<Integer> syncAsyncOrdered;
+
+    /** Every 10th inner source has range items, the rest has one item, none of them fuseable. */
+    Flowable<Integer> mixedSync;
+
+    Flowable<Integer> mixedSyncAdaptive;
+
+    Flowable<Integer> mixedAsync;
+
+    Flowable<Integer> mixedAsyncAdaptive;
+
+    int mixedCount;
+
     @Setup
     public void setup() {
         Integer[] array = new Integer[count];
@@ -118,6 +137,46 @@ public class FlatMapExPerf {
         asyncSyncB = source.compose(FlowableTransformers.flatMapAsync(f1, Schedulers.single(), false));
 
         asyncAsyncB = source.compose(FlowableTransformers.flatMapAsync(f2, Schedulers.single(), false));
+
+        concatMapEagerSync = source.concatMapEager(f1, 32, Flowable.bufferSize());
+
+        concatMapEagerAsync = source.concatMapEager(f2, 32, Flowable.bufferSize());
+
+        syncSyncOrdered = source.compose(FlowableTransformers.flatMapSyncOrdered(f1));
+
+        syncAsyncOrdered = source.compose(FlowableTransformers.flatMapSyncOrdered(f2));
+
+        final Flowable<Integer> fsmall = Flowable.just(1).hide();
+        final Flowable<Integer> fbig = finner.hide();
+
+        Function<Integer, Publisher<Integer>> f3 = new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                return v % 10 == 0 ? fbig : fsmall;
+            }
+        };
+
+        Function<Integer, Publisher<Integer>> f4 = new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                return (v % 10 == 0 ? fbig : fsmall).observeOn(Schedulers.computation());
+            }
+        };
+
+        mixedCount = 0;
+        for (int i = 0; i < count; i++) {
+            mixedCount += i % 10 == 0 ? range : 1;
+        }
+
+        Flowable<Integer> indexes = Flowable.range(0, count);
+
+        mixedSync = indexes.compose(FlowableTransformers.flatMapSync(f3));
+
+        mixedSyncAdaptive = indexes.compose(FlowableTransformers.flatMapSync(f3, 32, 1, Flowable.bufferSize(), true));
+
+        mixedAsync = indexes.compose(FlowableTransformers.flatMapSync(f4));
+
+        mixedAsyncAdaptive = indexes.compose(FlowableTransformers.flatMapSync(f4, 32, 1, Flowable.bufferSize(), true));
 }
 
     @Benchmark
@@ -202,4 +261,55 @@ public class FlatMapExPerf {
         c.await(count * range);
     }
 
-}
\ No newline at end of file
+    @Benchmark
+    public void concatMapEagerSync(Blackhole bh) {
+        PerfConsumer c = new PerfConsumer(bh);
+        concatMapEagerSync.subscribe(c);
+    }
+
+    @Benchmark
+    public void concatMapEagerAsync(Blackhole bh) {
+        PerfAsyncConsumer c = new PerfAsyncConsumer(bh);
+        concatMapEagerAsync.subscribe(c);
+        c.await(count * range);
+    }
+
+    @Benchmark
+    public void syncSyncOrdered(Blackhole bh) {
+        PerfConsumer c = new PerfConsumer(bh);
+        syncSyncOrdered.subscribe(c);
+    }
+
+    @Benchmark
+    public void syncAsyncOrdered(Blackhole bh) {
+        PerfAsyncConsumer c = new PerfAsyncConsumer(bh);
+        syncAsyncOrdered.subscribe(c);
+        c.await(count * range);
+    }
+
+    @Benchmark
+    public void mixedSync(Blackhole bh) {
+        PerfConsumer c = new PerfConsumer(bh);
+        mixedSync.subscribe(c);
+    }
+
+    @Benchmark
+    public void mixedSyncAdaptive(Blackhole bh) {
+        PerfConsumer c = new PerfConsumer(bh);
+        mixedSyncAdaptive.subscribe(c);
+    }
+
+    @Benchmark
+    public void mixedAsync(Blackhole bh) {
+        PerfAsyncConsumer c = new PerfAsyncConsumer(bh);
+        mixedAsync.subscribe(c);
+        c.await(mixedCount);
+    }
+
+    @Benchmark
+    public void mixedAsyncAdaptive(Blackhole bh) {
+        PerfAsyncConsumer c = new PerfAsyncConsumer(bh);
+        mixedAsyncAdaptive.subscribe(c);
+        c.await(mixedCount);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import hu.akarnokd.rxjava2.io.FileFlowable;
+import io.reactivex.Flowable;
+import io.reactivex.functions.*;
+
+/**
+ * Compares reading a large temporary file via the memory-mapped FileFlowable
+ * with a plain BufferedInputStream loop; both checksum every byte.
+ * <p>
+ * The file is written once per trial and the OS page cache is likely warm,
+ * hence this measures the in-memory read path, not the disk.
+ * Run from command line as
+ * <br>
+ * gradle jmh -Pjmh='MappedFilePerf'
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1)
+@State(Scope.Benchmark)
+public class MappedFilePerf {
+
+    @Param({"2048"})
+    public int fileSizeMB;
+
+    @Param({"8192", "65536"})
+    public int chunkSize;
+
+    File file;
+
+    Flowable<Long> mapped;
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("MappedFilePerf", ".bin");
+        file.deleteOnExit();
+
+        byte[] block = new byte[1024 * 1024];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (byte)i;
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            for (int i = 0; i < fileSizeMB; i++) {
+                out.write(block);
+            }
+        } finally {
+            out.close();
+        }
+
+        mapped = FileFlowable.mapped(file, chunkSize)
+                .reduce(0L, new BiFunction<Long, ByteBuffer, Long>() {
+                    @Override
+                    public Long apply(Long a, ByteBuffer b) throws Exception {
+                        long sum = a;
+                        while (b.remaining() >= 8) {
+                            sum += b.getLong();
+                        }
+                        while (b.hasRemaining()) {
+                            sum += b.get();
+                        }
+                        return sum;
+                    }
+                })
+                .toFlowable();
+    }
+
+    @TearDown
+    public void teardown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long mapped() {
+        return mapped.blockingLast();
+    }
+
+    @Benchmark
+    public long bufferedInputStream() throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), chunkSize);
+        try {
+            byte[] buf = new byte[chunkSize];
+            long sum = 0L;
+            for (;;) {
+                int n = in.read(buf);
+                if (n < 0) {
+                    break;
+                }
+                ByteBuffer b = ByteBuffer.wrap(buf, 0, n);
+                while (b.remaining() >= 8) {
+                    sum += b.getLong();
+                }
+                while (b.hasRemaining()) {
+                    sum += b.get();
+                }
+            }
+            return sum;
+        } finally {
+            in.close();
+        }
+    }
+}
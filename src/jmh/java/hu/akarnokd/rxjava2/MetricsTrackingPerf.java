@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.akarnokd.rxjava2.debug.RxJavaMetricsTracking;
+import io.reactivex.*;
+import io.reactivex.functions.*;
+
+/**
+ * Measures the overhead of the per-operator metrics on running, already assembled
+ * Flowable and Observable chains, with the tracking enabled and disabled.
+ * Run from command line as
+ * <br>
+ * gradle jmh -Pjmh='MetricsTrackingPerf'
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class MetricsTrackingPerf {
+
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    @Param({"1", "1000", "1000000"})
+    public int count;
+
+    Flowable<Integer> flowable;
+
+    Flowable<Integer> flowableRebatched;
+
+    Observable<Integer> observable;
+
+    @Setup
+    public void setup() {
+        if (enabled) {
+            RxJavaMetricsTracking.enable();
+        }
+
+        Function<Integer, Integer> identity = new Function<Integer, Integer>() {
+            @Override
+            public Integer apply(Integer v) throws Exception {
+                return v;
+            }
+        };
+
+        Predicate<Integer> always = new Predicate<Integer>() {
+            @Override
+            public boolean test(Integer v) throws Exception {
+                return true;
+            }
+        };
+
+        flowable = Flowable.range(1, count).map(identity).filter(always);
+
+        flowableRebatched = Flowable.range(1, count).hide().rebatchRequests(16).map(identity);
+
+        observable = Observable.range(1, count).map(identity).filter(always);
+    }
+
+    @TearDown
+    public void teardown() {
+        RxJavaMetricsTracking.disable();
+    }
+
+    @Benchmark
+    public void flowable(Blackhole bh) {
+        flowable.subscribe(new PerfConsumer(bh));
+    }
+
+    @Benchmark
+    public void flowableRebatched(Blackhole bh) {
+        flowableRebatched.subscribe(new PerfConsumer(bh));
+    }
+
+    @Benchmark
+    public void observable(Blackhole bh) {
+        observable.subscribe(new PerfConsumer(bh));
+    }
+}
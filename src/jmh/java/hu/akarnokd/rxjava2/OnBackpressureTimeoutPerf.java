@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.akarnokd.rxjava2.operators.FlowableTransformers;
+import io.reactivex.Flowable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.internal.functions.Functions;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Benchmark onBackpressureTimeout with a hot producer and a slow consumer on
+ * different threads (most items evicted due to the size limit) and with a
+ * synchronous consumer. Run from command line as
+ * <br>
+ * gradle jmh -Pjmh='OnBackpressureTimeoutPerf'
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class OnBackpressureTimeoutPerf {
+
+    @Param({"16", "1024"})
+    public int maxSize;
+
+    @Param({"1000", "1000000"})
+    public int count;
+
+    /** The amount of CPU work the slow consumer does per item. */
+    @Param({"100"})
+    public int work;
+
+    Flowable<Integer> hotSlow;
+
+    Flowable<Integer> sync;
+
+    @Setup
+    public void setup() {
+        Consumer<Integer> slow = new Consumer<Integer>() {
+            @Override
+            public void accept(Integer v) throws Exception {
+                Blackhole.consumeCPU(work);
+            }
+        };
+
+        hotSlow = Flowable.range(1, count)
+                .subscribeOn(Schedulers.computation())
+                .compose(FlowableTransformers.<Integer>onBackpressureTimeout(maxSize, 1, TimeUnit.MINUTES,
+                        Schedulers.single(), Functions.emptyConsumer()))
+                .observeOn(Schedulers.io(), false, 16)
+                .doOnNext(slow);
+
+        sync = Flowable.range(1, count)
+                .compose(FlowableTransformers.<Integer>onBackpressureTimeout(maxSize, 1, TimeUnit.MINUTES,
+                        Schedulers.single(), Functions.emptyConsumer()));
+    }
+
+    @Benchmark
+    public void hotProducerSlowConsumer(Blackhole bh) {
+        PerfAsyncConsumer consumer = new PerfAsyncConsumer(bh);
+        hotSlow.subscribe(consumer);
+        consumer.await(count);
+    }
+
+    @Benchmark
+    public void sync(Blackhole bh) {
+        sync.subscribe(new PerfConsumer(bh));
+    }
+}
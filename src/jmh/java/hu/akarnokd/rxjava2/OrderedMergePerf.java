@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.akarnokd.rxjava2.operators.Flowables;
+import io.reactivex.Flowable;
+import io.reactivex.internal.functions.Functions;
+
+/**
+ * Benchmark the ordered merge of many pre-sorted sources. Run from command line as
+ * <br>
+ * gradle jmh -Pjmh='OrderedMergePerf'
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class OrderedMergePerf {
+
+    @Param({"2", "4", "8", "32", "128", "512", "2048"})
+    public int sources;
+
+    @Param({"1", "16", "128"})
+    public int prefetch;
+
+    /** The total number of items emitted by all sources. */
+    @Param({"100000"})
+    public int total;
+
+    Flowable<Integer> merged;
+
+    @Setup
+    public void setup() {
+        int n = sources;
+        int count = Math.max(1, total / n);
+        List<Flowable<Integer>> list = new ArrayList<Flowable<Integer>>();
+
+        for (int i = 0; i < n; i++) {
+            Integer[] array = new Integer[count];
+            for (int j = 0; j < count; j++) {
+                array[j] = j * n + i;
+            }
+            list.add(Flowable.fromArray(array));
+        }
+
+        merged = Flowables.orderedMerge(list, Functions.<Integer>naturalComparator(), false, prefetch);
+    }
+
+    @Benchmark
+    public void orderedMerge(Blackhole bh) {
+        merged.subscribe(new PerfConsumer(bh));
+    }
+}
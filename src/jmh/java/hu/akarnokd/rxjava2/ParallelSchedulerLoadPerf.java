@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Publisher;
+
+import hu.akarnokd.rxjava2.schedulers.ParallelScheduler;
+import io.reactivex.Flowable;
+import io.reactivex.functions.Function;
+import io.reactivex.internal.schedulers.RxThreadFactory;
+
+/**
+ * Compares the round-robin and the load-aware worker assignment of the ParallelScheduler
+ * with thousands of concurrently running subscribeOn chains of varying length.
+ * Run from command line as
+ * <br>
+ * gradle jmh -Pjmh='ParallelSchedulerLoadPerf'
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class ParallelSchedulerLoadPerf {
+
+    @Param({"false", "true"})
+    public boolean loadAware;
+
+    @Param({"1000", "5000"})
+    public int chains;
+
+    /** Every skew-th chain is long, the others emit a single item. */
+    @Param({"8"})
+    public int skew;
+
+    @Param({"1000"})
+    public int longLength;
+
+    ParallelScheduler scheduler;
+
+    Flowable<Integer> flowable;
+
+    @Setup
+    public void setup() {
+        scheduler = new ParallelScheduler(Math.max(2, Runtime.getRuntime().availableProcessors()),
+                new RxThreadFactory("RxParallelSchedulerLoadPerf"), false, loadAware);
+
+        final int s = skew;
+        final int len = longLength;
+
+        flowable = Flowable.range(0, chains)
+        .flatMap(new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                return Flowable.range(1, v % s == 0 ? len : 1)
+                        .subscribeOn(scheduler)
+                        .observeOn(scheduler);
+            }
+        }, chains);
+    }
+
+    @TearDown
+    public void teardown() {
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public void subscribeOnChains(Blackhole bh) {
+        PerfAsyncConsumer c = new PerfAsyncConsumer(bh);
+        flowable.subscribe(c);
+        c.await(chains);
+    }
+}
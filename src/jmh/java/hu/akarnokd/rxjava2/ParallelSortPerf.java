@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.akarnokd.rxjava2.parallel.ParallelFlowable;
+import hu.akarnokd.rxjava2.util.SelfComparator;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Measures the parallel sorted() and toSortedList() with various number of rails.
+ * Run from command line as
+ * <br>
+ * gradle jmh -Pjmh='ParallelSortPerf'
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+@SuppressWarnings("deprecation")
+public class ParallelSortPerf {
+
+    @Param({"1000000"})
+    public int count;
+
+    @Param({"1", "4", "16"})
+    public int rails;
+
+    Flowable<Integer> source;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(1);
+        List<Integer> list = new ArrayList<Integer>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(rnd.nextInt());
+        }
+        source = Flowable.fromIterable(list);
+    }
+
+    @Benchmark
+    public void sorted(Blackhole bh) throws InterruptedException {
+        PerfAsyncConsumer c = new PerfAsyncConsumer(bh);
+        ParallelFlowable.from(source, rails)
+        .runOn(Schedulers.computation())
+        .sorted(SelfComparator.<Integer>instance(), count)
+        .subscribe(c);
+        c.await();
+    }
+
+    @Benchmark
+    public Object toSortedList() {
+        return ParallelFlowable.from(source, rails)
+        .runOn(Schedulers.computation())
+        .toSortedList(SelfComparator.<Integer>instance(), count)
+        .blockingLast();
+    }
+}
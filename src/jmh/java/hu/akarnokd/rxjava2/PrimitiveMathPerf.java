@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.akarnokd.rxjava2.math.*;
+import io.reactivex.Flowable;
+
+/**
+ * Compares the boxed FlowableSumInt and FlowableAverageDouble with the
+ * unboxed IntFlowable and DoubleFlowable aggregates.
+ * Run from command line as
+ * <br>
+ * gradle jmh -Pjmh='PrimitiveMathPerf'
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class PrimitiveMathPerf {
+
+    @Param({"1", "1000", "1000000"})
+    public int count;
+
+    Flowable<Integer> boxedSumInt;
+
+    Flowable<Integer> primitiveSumInt;
+
+    Flowable<Double> boxedAverageDouble;
+
+    Flowable<Double> primitiveAverageDouble;
+
+    Flowable<SummaryStatistics> primitiveStatistics;
+
+    @Setup
+    public void setup() {
+        boxedSumInt = MathFlowable.sumInt(Flowable.range(1, count));
+
+        primitiveSumInt = MathFlowable.sumInt(IntFlowable.range(1, count));
+
+        Double[] boxed = new Double[count];
+        double[] doubles = new double[count];
+        for (int i = 0; i < count; i++) {
+            boxed[i] = i + 0.5d;
+            doubles[i] = i + 0.5d;
+        }
+
+        boxedAverageDouble = MathFlowable.averageDouble(Flowable.fromArray(boxed));
+
+        primitiveAverageDouble = MathFlowable.averageDouble(DoubleFlowable.fromDoubleArray(doubles));
+
+        primitiveStatistics = DoubleFlowable.fromDoubleArray(doubles).statistics();
+    }
+
+    @Benchmark
+    public void sumIntBoxed(Blackhole bh) {
+        boxedSumInt.subscribe(new PerfConsumer(bh));
+    }
+
+    @Benchmark
+    public void sumIntPrimitive(Blackhole bh) {
+        primitiveSumInt.subscribe(new PerfConsumer(bh));
+    }
+
+    @Benchmark
+    public void averageDoubleBoxed(Blackhole bh) {
+        boxedAverageDouble.subscribe(new PerfConsumer(bh));
+    }
+
+    @Benchmark
+    public void averageDoublePrimitive(Blackhole bh) {
+        primitiveAverageDouble.subscribe(new PerfConsumer(bh));
+    }
+
+    @Benchmark
+    public void statisticsPrimitive(Blackhole bh) {
+        primitiveStatistics.subscribe(new PerfConsumer(bh));
+    }
+}
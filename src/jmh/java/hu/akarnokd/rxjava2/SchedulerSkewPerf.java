@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.akarnokd.rxjava2.schedulers.*;
+import io.reactivex.Scheduler;
+
+/**
+ * Compares the round-robin ParallelScheduler with the WorkStealingScheduler
+ * on batches of direct tasks where every {@code skew}th task is much heavier.
+ * The SampleTime mode reports the p99 batch completion latency.
+ * Run from command line as
+ * <br>
+ * gradle jmh -Pjmh='SchedulerSkewPerf'
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class SchedulerSkewPerf {
+
+    @Param({"parallel", "workstealing"})
+    public String type;
+
+    @Param({"1000"})
+    public int tasks;
+
+    /** Every skew-th task is heavy; 1 means all tasks are heavy. */
+    @Param({"1", "4", "16"})
+    public int skew;
+
+    @Param({"100"})
+    public int lightTokens;
+
+    @Param({"100000"})
+    public int heavyTokens;
+
+    Scheduler scheduler;
+
+    @Setup
+    public void setup() {
+        int parallelism = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        if ("parallel".equals(type)) {
+            scheduler = new ParallelScheduler(parallelism, false);
+        } else {
+            scheduler = new WorkStealingScheduler(parallelism);
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public void skewed() throws InterruptedException {
+        final CountDownLatch cdl = new CountDownLatch(tasks);
+        Scheduler s = scheduler;
+        for (int i = 0; i < tasks; i++) {
+            s.scheduleDirect(new Task(cdl, i % skew == 0 ? heavyTokens : lightTokens));
+        }
+        if (!cdl.await(30, TimeUnit.SECONDS)) {
+            throw new RuntimeException("Timed out!");
+        }
+    }
+
+    static final class Task implements Runnable {
+        final CountDownLatch cdl;
+
+        final int tokens;
+
+        Task(CountDownLatch cdl, int tokens) {
+            this.cdl = cdl;
+            this.tokens = tokens;
+        }
+
+        @Override
+        public void run() {
+            Blackhole.consumeCPU(tokens);
+            cdl.countDown();
+        }
+    }
+}
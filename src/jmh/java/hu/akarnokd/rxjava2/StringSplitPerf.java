@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.akarnokd.rxjava2.string.StringFlowable;
+import io.reactivex.Flowable;
+
+/**
+ * Compares the String-based StringFlowable.split with the buffer-view based
+ * StringFlowable.splitSequence on chunked line-oriented input.
+ * Run from command line as
+ * <br>
+ * gradle jmh -Pjmh='StringSplitPerf'
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class StringSplitPerf {
+
+    @Param({"16", "1024", "8192"})
+    public int chunkSize;
+
+    @Param({"\n", "\r?\n"})
+    public String pattern;
+
+    Flowable<String> split;
+
+    Flowable<CharSequence> splitSequence;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(1);
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 1024 * 1024) {
+            int n = 20 + rnd.nextInt(100);
+            for (int i = 0; i < n; i++) {
+                sb.append((char)('a' + rnd.nextInt(26)));
+            }
+            sb.append('\n');
+        }
+
+        List<String> chunks = new ArrayList<String>();
+        for (int i = 0; i < sb.length(); i += chunkSize) {
+            chunks.add(sb.substring(i, Math.min(sb.length(), i + chunkSize)));
+        }
+
+        split = Flowable.fromIterable(chunks).compose(StringFlowable.split(pattern));
+
+        splitSequence = Flowable.<CharSequence>fromIterable(chunks).compose(StringFlowable.splitSequence(pattern));
+    }
+
+    @Benchmark
+    public void split(Blackhole bh) {
+        split.subscribe(new PerfConsumer(bh));
+    }
+
+    @Benchmark
+    public void splitSequence(Blackhole bh) {
+        splitSequence.subscribe(new PerfConsumer(bh));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package hu.akarnokd.rxjava2;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Publisher;
+
+import hu.akarnokd.rxjava2.operators.FlowableTransformers;
+import io.reactivex.Flowable;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Benchmark switchFlatMap with frequent switches, synchronously and with the
+ * inner sources emitting on another thread. Run from command line as
+ * <br>
+ * gradle jmh -Pjmh='SwitchFlatMapPerf'
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class SwitchFlatMapPerf {
+
+    @Param({"1", "8"})
+    public int maxActive;
+
+    @Param({"1000", "100000"})
+    public int count;
+
+    @Param({"1", "10"})
+    public int range;
+
+    Flowable<Integer> sync;
+
+    Flowable<Integer> async;
+
+    @Setup
+    public void setup() {
+        sync = Flowable.range(1, count)
+                .compose(FlowableTransformers.switchFlatMap(new Function<Integer, Publisher<Integer>>() {
+                    @Override
+                    public Publisher<Integer> apply(Integer v) throws Exception {
+                        return Flowable.range(v, range);
+                    }
+                }, maxActive));
+
+        async = Flowable.range(1, count)
+                .compose(FlowableTransformers.switchFlatMap(new Function<Integer, Publisher<Integer>>() {
+                    @Override
+                    public Publisher<Integer> apply(Integer v) throws Exception {
+                        return Flowable.range(v, range).subscribeOn(Schedulers.computation());
+                    }
+                }, maxActive));
+    }
+
+    @Benchmark
+    public void sync(Blackhole bh) {
+        sync.subscribe(new PerfConsumer(bh));
+    }
+
+    @Benchmark
+    public void async(Blackhole bh) {
+        PerfAsyncConsumer consumer = new PerfAsyncConsumer(bh);
+        async.subscribe(consumer);
+        consumer.await(count);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.akarnokd.rxjava2.schedulers.*;
+import io.reactivex.Scheduler;
+import io.reactivex.Scheduler.Worker;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.internal.functions.Functions;
+
+/**
+ * Measures the schedule-then-cancel cost of timeout-style delayed tasks
+ * on the ParallelScheduler and on the TimerWheelScheduler wrapping it.
+ * Run from command line as
+ * <br>
+ * gradle jmh -Pjmh='TimerWheelPerf'
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@State(Scope.Thread)
+public class TimerWheelPerf {
+
+    @Param({"parallel", "wheel"})
+    public String type;
+
+    @Param({"1000"})
+    public int count;
+
+    ParallelScheduler parallel;
+
+    Scheduler scheduler;
+
+    Worker worker;
+
+    Disposable[] tasks;
+
+    @Setup
+    public void setup() {
+        parallel = new ParallelScheduler(1);
+        if ("wheel".equals(type)) {
+            scheduler = new TimerWheelScheduler(parallel);
+        } else {
+            scheduler = parallel;
+        }
+        worker = scheduler.createWorker();
+        tasks = new Disposable[count];
+    }
+
+    @TearDown
+    public void teardown() {
+        worker.dispose();
+        scheduler.shutdown();
+        parallel.shutdown();
+    }
+
+    @Benchmark
+    public void scheduleCancel(Blackhole bh) {
+        Disposable[] ds = tasks;
+        Worker w = worker;
+        int c = ds.length;
+        for (int i = 0; i < c; i++) {
+            ds[i] = w.schedule(Functions.EMPTY_RUNNABLE, 30, TimeUnit.SECONDS);
+        }
+        for (int i = 0; i < c; i++) {
+            ds[i].dispose();
+        }
+        bh.consume(ds);
+    }
+}
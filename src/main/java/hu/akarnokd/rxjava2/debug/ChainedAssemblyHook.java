@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.debug;
+
+import io.reactivex.functions.Function;
+
+/**
+ * An assembly hook that first runs the hook that was installed before it, so that
+ * the debug utilities sharing the {@code RxJavaPlugins} assembly hooks can be
+ * enabled and disabled in any order.
+ * <p>
+ * A removed hook that is still referenced by a hook installed after it only delegates
+ * to the previous hook and is skipped once that later hook gets removed as well.
+ *
+ * @param <T> the reactive type
+ */
+abstract class ChainedAssemblyHook<T> implements Function<T, T> {
+
+    final Function<? super T, ? extends T> previous;
+
+    volatile boolean removed;
+
+    ChainedAssemblyHook(Function<? super T, ? extends T> previous) {
+        this.previous = previous;
+    }
+
+    @Override
+    public final T apply(T t) throws Exception {
+        Function<? super T, ? extends T> f = previous;
+        T u = f != null ? f.apply(t) : t;
+        if (removed) {
+            return u;
+        }
+        return wrap(t, u);
+    }
+
+    /**
+     * Wraps the result of the previous hook.
+     * @param original the assembled instance, to identify the operator
+     * @param current the instance returned by the previous hook
+     * @return the instance to return from the hook
+     */
+    abstract T wrap(T original, T current);
+
+    /**
+     * Marks this hook removed and returns the hook to be installed in its place if it
+     * is the current hook, skipping the previous hooks that were removed already.
+     * @return the hook to install instead of this
+     */
+    @SuppressWarnings("unchecked")
+    final Function<? super T, ? extends T> remove() {
+        removed = true;
+        Function<? super T, ? extends T> f = previous;
+        while (f instanceof ChainedAssemblyHook && ((ChainedAssemblyHook<T>)f).removed) {
+            f = ((ChainedAssemblyHook<T>)f).previous;
+        }
+        return f;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.debug;
+
+import org.reactivestreams.*;
+
+import io.reactivex.Flowable;
+import io.reactivex.internal.fuseable.*;
+import io.reactivex.internal.subscribers.*;
+
+/**
+ * Wraps a Publisher and counts the signals of its subscriptions.
+ *
+ * @param <T> the value type
+ */
+final class FlowableOnMetrics<T> extends Flowable<T> {
+
+    final Publisher<T> source;
+
+    final OperatorMetrics metrics;
+
+    FlowableOnMetrics(Publisher<T> source, OperatorMetrics metrics) {
+        this.source = source;
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super T> s) {
+        if (s instanceof ConditionalSubscriber) {
+            source.subscribe(new OnMetricsConditionalSubscriber<T>((ConditionalSubscriber<? super T>)s, metrics));
+        } else {
+            source.subscribe(new OnMetricsSubscriber<T>(s, metrics));
+        }
+    }
+
+    static final class OnMetricsSubscriber<T> extends BasicFuseableSubscriber<T, T> {
+
+        final OperatorMetrics metrics;
+
+        SubscriptionMetrics state;
+
+        OnMetricsSubscriber(Subscriber<? super T> actual, OperatorMetrics metrics) {
+            super(actual);
+            this.metrics = metrics;
+        }
+
+        @Override
+        protected boolean beforeDownstream() {
+            state = new SubscriptionMetrics(metrics, false);
+            return true;
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (sourceMode == NONE) {
+                state.item();
+            }
+            actual.onNext(t);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (!done) {
+                state.terminate(OperatorMetrics.ERRORS);
+            }
+            super.onError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            if (!done) {
+                state.terminate(OperatorMetrics.COMPLETIONS);
+            }
+            super.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            state.request(n);
+            super.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            state.terminate(OperatorMetrics.CANCELLATIONS);
+            super.cancel();
+        }
+
+        @Override
+        public int requestFusion(int mode) {
+            QueueSubscription<T> qs = this.qs;
+            if (qs != null) {
+                int m = qs.requestFusion(mode);
+                if (m == SYNC) {
+                    // items are pulled without requesting them
+                    state.unbounded();
+                }
+                sourceMode = m;
+                return m;
+            }
+            return NONE;
+        }
+
+        @Override
+        public T poll() throws Exception {
+            T v = qs.poll();
+            if (v != null) {
+                state.item();
+            } else
+            if (sourceMode == SYNC) {
+                state.terminate(OperatorMetrics.COMPLETIONS);
+            }
+            return v;
+        }
+    }
+
+    static final class OnMetricsConditionalSubscriber<T> extends BasicFuseableConditionalSubscriber<T, T> {
+
+        final OperatorMetrics metrics;
+
+        SubscriptionMetrics state;
+
+        OnMetricsConditionalSubscriber(ConditionalSubscriber<? super T> actual, OperatorMetrics metrics) {
+            super(actual);
+            this.metrics = metrics;
+        }
+
+        @Override
+        protected boolean beforeDownstream() {
+            state = new SubscriptionMetrics(metrics, false);
+            return true;
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (sourceMode == NONE) {
+                state.item();
+            }
+            actual.onNext(t);
+        }
+
+        @Override
+        public boolean tryOnNext(T t) {
+            boolean b = actual.tryOnNext(t);
+            if (b) {
+                state.item();
+            }
+            return b;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (!done) {
+                state.terminate(OperatorMetrics.ERRORS);
+            }
+            super.onError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            if (!done) {
+                state.terminate(OperatorMetrics.COMPLETIONS);
+            }
+            super.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            state.request(n);
+            super.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            state.terminate(OperatorMetrics.CANCELLATIONS);
+            super.cancel();
+        }
+
+        @Override
+        public int requestFusion(int mode) {
+            QueueSubscription<T> qs = this.qs;
+            if (qs != null) {
+                int m = qs.requestFusion(mode);
+                if (m == SYNC) {
+                    // items are pulled without requesting them
+                    state.unbounded();
+                }
+                sourceMode = m;
+                return m;
+            }
+            return NONE;
+        }
+
+        @Override
+        public T poll() throws Exception {
+            T v = qs.poll();
+            if (v != null) {
+                state.item();
+            } else
+            if (sourceMode == SYNC) {
+                state.terminate(OperatorMetrics.COMPLETIONS);
+            }
+            return v;
+        }
+    }
+}
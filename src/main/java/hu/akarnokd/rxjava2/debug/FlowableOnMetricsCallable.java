@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.debug;
+
+import java.util.concurrent.Callable;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.rxjava2.debug.FlowableOnMetrics.*;
+import io.reactivex.Flowable;
+import io.reactivex.internal.fuseable.ConditionalSubscriber;
+
+/**
+ * Wraps a Publisher, counts the signals of its subscriptions and
+ * keeps it a Callable.
+ *
+ * @param <T> the value type
+ */
+final class FlowableOnMetricsCallable<T> extends Flowable<T> implements Callable<T> {
+
+    final Publisher<T> source;
+
+    final OperatorMetrics metrics;
+
+    FlowableOnMetricsCallable(Publisher<T> source, OperatorMetrics metrics) {
+        this.source = source;
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super T> s) {
+        if (s instanceof ConditionalSubscriber) {
+            source.subscribe(new OnMetricsConditionalSubscriber<T>((ConditionalSubscriber<? super T>)s, metrics));
+        } else {
+            source.subscribe(new OnMetricsSubscriber<T>(s, metrics));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T call() throws Exception {
+        return ((Callable<T>)source).call();
+    }
+}
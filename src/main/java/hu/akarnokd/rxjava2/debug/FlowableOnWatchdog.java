@@ -0,0 +1,263 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.debug;
+
+import org.reactivestreams.*;
+
+import io.reactivex.Flowable;
+import io.reactivex.internal.fuseable.*;
+import io.reactivex.internal.subscribers.*;
+
+/**
+ * Wraps a Publisher and tracks the demand of its subscriptions for the stall watchdog.
+ *
+ * @param <T> the value type
+ */
+final class FlowableOnWatchdog<T> extends Flowable<T> {
+
+    final Publisher<T> source;
+
+    final StallWatchdog watchdog;
+
+    final String operator;
+
+    final RxJavaAssemblyException assembled;
+
+    FlowableOnWatchdog(Publisher<T> source, StallWatchdog watchdog) {
+        this.source = source;
+        this.watchdog = watchdog;
+        this.operator = source.getClass().getName();
+        this.assembled = new RxJavaAssemblyException(true);
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super T> s) {
+        subscribe(source, s, watchdog, operator, assembled);
+    }
+
+    static <T> void subscribe(Publisher<T> source, Subscriber<? super T> s, StallWatchdog watchdog,
+            String operator, RxJavaAssemblyException assembled) {
+        WatchdogEdge consumer = WatchdogEdge.CURRENT.get();
+        WatchdogEdge edge = new WatchdogEdge(watchdog, operator, assembled, consumer);
+        // the operator's own upstream subscriptions will feed this edge
+        WatchdogEdge.CURRENT.set(edge);
+        try {
+            if (s instanceof ConditionalSubscriber) {
+                source.subscribe(new OnWatchdogConditionalSubscriber<T>((ConditionalSubscriber<? super T>)s, edge));
+            } else {
+                source.subscribe(new OnWatchdogSubscriber<T>(s, edge));
+            }
+        } finally {
+            WatchdogEdge.CURRENT.set(consumer);
+        }
+    }
+
+    static final class OnWatchdogSubscriber<T> extends BasicFuseableSubscriber<T, T> {
+
+        final WatchdogEdge edge;
+
+        /** The current edge of the thread while the downstream is being subscribed. */
+        WatchdogEdge previous;
+
+        OnWatchdogSubscriber(Subscriber<? super T> actual, WatchdogEdge edge) {
+            super(actual);
+            this.edge = edge;
+        }
+
+        @Override
+        protected boolean beforeDownstream() {
+            edge.start();
+            previous = WatchdogEdge.CURRENT.get();
+            // items emitted meanwhile are received by the downstream operator
+            WatchdogEdge.CURRENT.set(edge.consumer);
+            return true;
+        }
+
+        @Override
+        protected void afterDownstream() {
+            WatchdogEdge.CURRENT.set(previous);
+            previous = null;
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (sourceMode == NONE) {
+                edge.item();
+            }
+            actual.onNext(t);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            edge.terminate();
+            super.onError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            edge.terminate();
+            super.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            WatchdogEdge e = edge;
+            e.request(n);
+            WatchdogEdge prev = WatchdogEdge.CURRENT.get();
+            WatchdogEdge.CURRENT.set(e.consumer);
+            try {
+                super.request(n);
+            } finally {
+                WatchdogEdge.CURRENT.set(prev);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            edge.terminate();
+            super.cancel();
+        }
+
+        @Override
+        public int requestFusion(int mode) {
+            QueueSubscription<T> qs = this.qs;
+            if (qs != null) {
+                int m = qs.requestFusion(mode);
+                if (m == SYNC) {
+                    edge.unbounded();
+                }
+                sourceMode = m;
+                return m;
+            }
+            return NONE;
+        }
+
+        @Override
+        public T poll() throws Exception {
+            T v = qs.poll();
+            if (v != null) {
+                edge.item();
+            } else
+            if (sourceMode == SYNC) {
+                edge.terminate();
+            }
+            return v;
+        }
+    }
+
+    static final class OnWatchdogConditionalSubscriber<T> extends BasicFuseableConditionalSubscriber<T, T> {
+
+        final WatchdogEdge edge;
+
+        /** The current edge of the thread while the downstream is being subscribed. */
+        WatchdogEdge previous;
+
+        OnWatchdogConditionalSubscriber(ConditionalSubscriber<? super T> actual, WatchdogEdge edge) {
+            super(actual);
+            this.edge = edge;
+        }
+
+        @Override
+        protected boolean beforeDownstream() {
+            edge.start();
+            previous = WatchdogEdge.CURRENT.get();
+            // items emitted meanwhile are received by the downstream operator
+            WatchdogEdge.CURRENT.set(edge.consumer);
+            return true;
+        }
+
+        @Override
+        protected void afterDownstream() {
+            WatchdogEdge.CURRENT.set(previous);
+            previous = null;
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (sourceMode == NONE) {
+                edge.item();
+            }
+            actual.onNext(t);
+        }
+
+        @Override
+        public boolean tryOnNext(T t) {
+            boolean b = actual.tryOnNext(t);
+            if (b) {
+                edge.item();
+            }
+            return b;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            edge.terminate();
+            super.onError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            edge.terminate();
+            super.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            WatchdogEdge e = edge;
+            e.request(n);
+            WatchdogEdge prev = WatchdogEdge.CURRENT.get();
+            WatchdogEdge.CURRENT.set(e.consumer);
+            try {
+                super.request(n);
+            } finally {
+                WatchdogEdge.CURRENT.set(prev);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            edge.terminate();
+            super.cancel();
+        }
+
+        @Override
+        public int requestFusion(int mode) {
+            QueueSubscription<T> qs = this.qs;
+            if (qs != null) {
+                int m = qs.requestFusion(mode);
+                if (m == SYNC) {
+                    edge.unbounded();
+                }
+                sourceMode = m;
+                return m;
+            }
+            return NONE;
+        }
+
+        @Override
+        public T poll() throws Exception {
+            T v = qs.poll();
+            if (v != null) {
+                edge.item();
+            } else
+            if (sourceMode == SYNC) {
+                edge.terminate();
+            }
+            return v;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.debug;
+
+import java.util.concurrent.Callable;
+
+import org.reactivestreams.*;
+
+import io.reactivex.Flowable;
+
+/**
+ * Wraps a Publisher, tracks the demand of its subscriptions for the stall watchdog
+ * and keeps it a Callable.
+ *
+ * @param <T> the value type
+ */
+final class FlowableOnWatchdogCallable<T> extends Flowable<T> implements Callable<T> {
+
+    final Publisher<T> source;
+
+    final StallWatchdog watchdog;
+
+    final String operator;
+
+    final RxJavaAssemblyException assembled;
+
+    FlowableOnWatchdogCallable(Publisher<T> source, StallWatchdog watchdog) {
+        this.source = source;
+        this.watchdog = watchdog;
+        this.operator = source.getClass().getName();
+        this.assembled = new RxJavaAssemblyException(true);
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super T> s) {
+        FlowableOnWatchdog.subscribe(source, s, watchdog, operator, assembled);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T call() throws Exception {
+        return ((Callable<T>)source).call();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.debug;
+
+import io.reactivex.*;
+import io.reactivex.internal.fuseable.QueueDisposable;
+import io.reactivex.internal.observers.BasicFuseableObserver;
+
+/**
+ * Wraps a ObservableSource and counts the signals of its subscriptions.
+ *
+ * @param <T> the value type
+ */
+final class ObservableOnMetrics<T> extends Observable<T> {
+
+    final ObservableSource<T> source;
+
+    final OperatorMetrics metrics;
+
+    ObservableOnMetrics(ObservableSource<T> source, OperatorMetrics metrics) {
+        this.source = source;
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void subscribeActual(Observer<? super T> s) {
+        source.subscribe(new OnMetricsObserver<T>(s, metrics));
+    }
+
+    static final class OnMetricsObserver<T> extends BasicFuseableObserver<T, T> {
+
+        final OperatorMetrics metrics;
+
+        SubscriptionMetrics state;
+
+        OnMetricsObserver(Observer<? super T> actual, OperatorMetrics metrics) {
+            super(actual);
+            this.metrics = metrics;
+        }
+
+        @Override
+        protected boolean beforeDownstream() {
+            // there is no backpressure, hence no demand to track
+            state = new SubscriptionMetrics(metrics, true);
+            return true;
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (sourceMode == NONE) {
+                state.item();
+            }
+            actual.onNext(t);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (!done) {
+                state.terminate(OperatorMetrics.ERRORS);
+            }
+            super.onError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            if (!done) {
+                state.terminate(OperatorMetrics.COMPLETIONS);
+            }
+            super.onComplete();
+        }
+
+        @Override
+        public void dispose() {
+            state.terminate(OperatorMetrics.CANCELLATIONS);
+            super.dispose();
+        }
+
+        @Override
+        public int requestFusion(int mode) {
+            QueueDisposable<T> qs = this.qs;
+            if (qs != null) {
+                int m = qs.requestFusion(mode);
+                sourceMode = m;
+                return m;
+            }
+            return NONE;
+        }
+
+        @Override
+        public T poll() throws Exception {
+            T v = qs.poll();
+            if (v != null) {
+                state.item();
+            } else
+            if (sourceMode == SYNC) {
+                state.terminate(OperatorMetrics.COMPLETIONS);
+            }
+            return v;
+        }
+    }
+}
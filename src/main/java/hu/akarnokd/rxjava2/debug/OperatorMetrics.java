@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.debug;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accumulates the runtime metrics of the sequences assembled at the same site.
+ * <p>
+ * The totals of the terminated subscriptions are kept in striped counters, the
+ * active subscriptions are summed up when a snapshot is taken.
+ */
+final class OperatorMetrics {
+
+    static final int SUBSCRIPTIONS = 0;
+    static final int CANCELLATIONS = 1;
+    static final int COMPLETIONS = 2;
+    static final int ERRORS = 3;
+    static final int ITEMS = 4;
+    static final int REQUESTED = 5;
+    static final int UNBOUNDED_REQUESTS = 6;
+    static final int FIRST_ITEMS = 7;
+    static final int FIRST_ITEM_NANOS = 8;
+    static final int LIFETIME_NANOS = 9;
+
+    static final int COUNTERS = 10;
+
+    final String site;
+
+    final long created;
+
+    final StripedCounters counters;
+
+    final Set<SubscriptionMetrics> active;
+
+    final AtomicLong maxFirstItemNanos;
+
+    final AtomicLong maxLifetimeNanos;
+
+    OperatorMetrics(String site) {
+        this.site = site;
+        this.created = System.nanoTime();
+        this.counters = new StripedCounters(COUNTERS);
+        this.active = Collections.newSetFromMap(new ConcurrentHashMap<SubscriptionMetrics, Boolean>());
+        this.maxFirstItemNanos = new AtomicLong();
+        this.maxLifetimeNanos = new AtomicLong();
+    }
+
+    void add(int counter, long n) {
+        counters.add(counter, n);
+    }
+
+    void subscribed(SubscriptionMetrics s) {
+        counters.add(SUBSCRIPTIONS, 1);
+        active.add(s);
+    }
+
+    void firstItem(long nanos) {
+        StripedCounters c = counters;
+        c.add(FIRST_ITEMS, 1);
+        c.add(FIRST_ITEM_NANOS, nanos);
+        max(maxFirstItemNanos, nanos);
+    }
+
+    void terminated(SubscriptionMetrics s, int kind, long lifetimeNanos) {
+        StripedCounters c = counters;
+        c.add(ITEMS, s.items);
+        c.add(REQUESTED, s.requested());
+        c.add(LIFETIME_NANOS, lifetimeNanos);
+        c.add(kind, 1);
+        active.remove(s);
+        max(maxLifetimeNanos, lifetimeNanos);
+    }
+
+    static void max(AtomicLong max, long v) {
+        for (;;) {
+            long m = max.get();
+            if (m >= v || max.compareAndSet(m, v)) {
+                return;
+            }
+        }
+    }
+
+    OperatorMetricsSnapshot snapshot() {
+        long items = 0L;
+        long requested = 0L;
+        long outstanding = 0L;
+        for (SubscriptionMetrics s : active) {
+            if (s.once == 0) {
+                items += s.items;
+                requested += s.requested();
+                outstanding += s.outstanding();
+            }
+        }
+        StripedCounters c = counters;
+        return new OperatorMetricsSnapshot(site, System.nanoTime() - created,
+                c.sum(SUBSCRIPTIONS), c.sum(CANCELLATIONS), c.sum(COMPLETIONS), c.sum(ERRORS),
+                c.sum(ITEMS) + items, c.sum(REQUESTED) + requested, c.sum(UNBOUNDED_REQUESTS), outstanding,
+                c.sum(FIRST_ITEMS), c.sum(FIRST_ITEM_NANOS), maxFirstItemNanos.get(),
+                c.sum(LIFETIME_NANOS), maxLifetimeNanos.get());
+    }
+}
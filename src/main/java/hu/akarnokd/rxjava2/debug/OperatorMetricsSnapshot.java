@@ -0,0 +1,233 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.debug;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the runtime metrics of the sequences assembled at the same site, as
+ * collected by {@link RxJavaMetricsTracking}.
+ * <p>
+ * The counters are read one after the other while the sequences may be running,
+ * therefore they are not necessarily consistent with each other.
+ *
+ * @since 0.17.0
+ */
+public final class OperatorMetricsSnapshot {
+
+    final String site;
+
+    final long elapsedNanos;
+
+    final long subscriptions;
+
+    final long cancellations;
+
+    final long completions;
+
+    final long errors;
+
+    final long items;
+
+    final long requested;
+
+    final long unboundedRequests;
+
+    final long outstandingDemand;
+
+    final long firstItems;
+
+    final long firstItemNanos;
+
+    final long maxFirstItemNanos;
+
+    final long lifetimeNanos;
+
+    final long maxLifetimeNanos;
+
+    OperatorMetricsSnapshot(String site, long elapsedNanos,
+            long subscriptions, long cancellations, long completions, long errors,
+            long items, long requested, long unboundedRequests, long outstandingDemand,
+            long firstItems, long firstItemNanos, long maxFirstItemNanos,
+            long lifetimeNanos, long maxLifetimeNanos) {
+        this.site = site;
+        this.elapsedNanos = elapsedNanos;
+        this.subscriptions = subscriptions;
+        this.cancellations = cancellations;
+        this.completions = completions;
+        this.errors = errors;
+        this.items = items;
+        this.requested = requested;
+        this.unboundedRequests = unboundedRequests;
+        this.outstandingDemand = outstandingDemand;
+        this.firstItems = firstItems;
+        this.firstItemNanos = firstItemNanos;
+        this.maxFirstItemNanos = maxFirstItemNanos;
+        this.lifetimeNanos = lifetimeNanos;
+        this.maxLifetimeNanos = maxLifetimeNanos;
+    }
+
+    /**
+     * Returns the assembly site: the operator's class name and the
+     * first stacktrace element outside of RxJava.
+     * @return the assembly site
+     */
+    public String site() {
+        return site;
+    }
+
+    /**
+     * Returns the time elapsed since the first assembly at this site.
+     * @param unit the time unit of the result
+     * @return the time elapsed
+     */
+    public long elapsed(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of subscriptions.
+     * @return the number of subscriptions
+     */
+    public long subscriptions() {
+        return subscriptions;
+    }
+
+    /**
+     * Returns the number of subscriptions that have not yet terminated.
+     * @return the number of active subscriptions
+     */
+    public long activeSubscriptions() {
+        return subscriptions - cancellations - completions - errors;
+    }
+
+    /**
+     * Returns the number of subscriptions cancelled (or disposed) by their consumer.
+     * @return the number of cancellations
+     */
+    public long cancellations() {
+        return cancellations;
+    }
+
+    /**
+     * Returns the number of subscriptions that completed normally.
+     * @return the number of completions
+     */
+    public long completions() {
+        return completions;
+    }
+
+    /**
+     * Returns the number of subscriptions that terminated with an error.
+     * @return the number of errors
+     */
+    public long errors() {
+        return errors;
+    }
+
+    /**
+     * Returns the number of items emitted.
+     * @return the number of items emitted
+     */
+    public long items() {
+        return items;
+    }
+
+    /**
+     * Returns the average number of items emitted per second since the first
+     * assembly at this site.
+     * @return the average number of items per second
+     */
+    public double itemsPerSecond() {
+        return elapsedNanos > 0L ? items * 1E9 / elapsedNanos : 0d;
+    }
+
+    /**
+     * Returns the sum of the finite amounts requested; requests making the demand
+     * unbounded are counted by {@link #unboundedRequests()} instead.
+     * @return the total amount requested
+     */
+    public long requested() {
+        return requested;
+    }
+
+    /**
+     * Returns the number of subscriptions whose demand became unbounded.
+     * @return the number of unbounded subscriptions
+     */
+    public long unboundedRequests() {
+        return unboundedRequests;
+    }
+
+    /**
+     * Returns the amount requested but not yet delivered over the active,
+     * bounded subscriptions.
+     * @return the outstanding demand
+     */
+    public long outstandingDemand() {
+        return outstandingDemand;
+    }
+
+    /**
+     * Returns the average time between the subscription and the first item,
+     * over the subscriptions that received at least one item.
+     * @param unit the time unit of the result
+     * @return the average time to the first item
+     */
+    public long averageTimeToFirstItem(TimeUnit unit) {
+        return unit.convert(firstItems != 0L ? firstItemNanos / firstItems : 0L, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the longest time between the subscription and the first item.
+     * @param unit the time unit of the result
+     * @return the longest time to the first item
+     */
+    public long maxTimeToFirstItem(TimeUnit unit) {
+        return unit.convert(maxFirstItemNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the average time between the subscription and its termination
+     * (completion, error or cancellation), over the terminated subscriptions.
+     * @param unit the time unit of the result
+     * @return the average lifetime
+     */
+    public long averageLifetime(TimeUnit unit) {
+        long n = cancellations + completions + errors;
+        return unit.convert(n != 0L ? lifetimeNanos / n : 0L, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the longest time between a subscription and its termination.
+     * @param unit the time unit of the result
+     * @return the longest lifetime
+     */
+    public long maxLifetime(TimeUnit unit) {
+        return unit.convert(maxLifetimeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "OperatorMetricsSnapshot[site=" + site + ", subscriptions=" + subscriptions
+                + ", cancellations=" + cancellations + ", completions=" + completions
+                + ", errors=" + errors + ", items=" + items + ", requested=" + requested
+                + ", unboundedRequests=" + unboundedRequests + ", outstandingDemand=" + outstandingDemand
+                + ", averageTimeToFirstItemNanos=" + averageTimeToFirstItem(TimeUnit.NANOSECONDS)
+                + ", averageLifetimeNanos=" + averageLifetime(TimeUnit.NANOSECONDS) + "]";
+    }
+}
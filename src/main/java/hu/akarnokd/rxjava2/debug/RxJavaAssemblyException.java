@@ -17,24 +17,50 @@
 package hu.akarnokd.rxjava2.debug;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Holds onto the assembly stacktrace.
+ * <p>
+ * In the low-overhead mode of {@link RxJavaAssemblyTracking}, only the JVM's internal
+ * backtrace is captured and the {@code stacktrace} field is filled in when
+ * {@link #stacktrace()} is first called.
  */
 public final class RxJavaAssemblyException extends RuntimeException {
 
     private static final long serialVersionUID = -6757520270386306081L;
 
-    final String stacktrace;
+    /** The maximum number of call sites whose filtered stacktrace is cached. */
+    static final int CACHE_LIMIT = 4096;
+
+    /** The filtered stacktraces, keyed by the assembly call site. */
+    static final ConcurrentHashMap<List<StackTraceElement>, String> CACHE =
+            new ConcurrentHashMap<List<StackTraceElement>, String>();
+
+    volatile String stacktrace;
+
+    /** The lazily captured stacktrace, null if captured eagerly. */
+    transient volatile Throwable capture;
 
     public RxJavaAssemblyException() {
-        this.stacktrace = buildStackTrace();
+        this(RxJavaAssemblyTracking.lowOverhead);
+    }
+
+    RxJavaAssemblyException(boolean lazy) {
+        if (lazy) {
+            // filling in the backtrace is cheap, materializing the StackTraceElements isn't
+            this.capture = new Throwable();
+        } else {
+            this.stacktrace = buildStackTrace();
+        }
     }
 
     public static String buildStackTrace() {
-        StringBuilder b = new StringBuilder();
+        return buildStackTrace(Thread.currentThread().getStackTrace());
+    }
 
-        StackTraceElement[] es = Thread.currentThread().getStackTrace();
+    static String buildStackTrace(StackTraceElement[] es) {
+        StringBuilder b = new StringBuilder();
 
         b.append("RxJavaAssemblyException: assembled\r\n");
 
@@ -47,6 +73,38 @@ public final class RxJavaAssemblyException extends RuntimeException {
         return b.toString();
     }
 
+    /**
+     * Builds the filtered stacktrace or returns the one already built for the
+     * same call site: the filtered elements down to the first one outside of
+     * RxJava and this library.
+     * @param es the stacktrace elements
+     * @return the filtered stacktrace
+     */
+    static String cachedStackTrace(StackTraceElement[] es) {
+        List<StackTraceElement> key = new ArrayList<StackTraceElement>();
+        for (StackTraceElement e : es) {
+            if (filter(e)) {
+                key.add(e);
+                String cn = e.getClassName();
+                if (!cn.startsWith("io.reactivex.") && !cn.startsWith("hu.akarnokd.rxjava2.")) {
+                    break;
+                }
+            }
+        }
+
+        String st = CACHE.get(key);
+        if (st == null) {
+            st = buildStackTrace(es);
+            if (CACHE.size() < CACHE_LIMIT) {
+                String old = CACHE.putIfAbsent(key, st);
+                if (old != null) {
+                    st = old;
+                }
+            }
+        }
+        return st;
+    }
+
     /**
      * Filters out irrelevant stacktrace entries.
      * @param e the stacktrace element
@@ -84,7 +142,11 @@ public final class RxJavaAssemblyException extends RuntimeException {
 
         // the shims injecting the error
         if (cn.contains("OnAssembly")
+                || cn.contains("OnWatchdog")
                 || cn.contains("RxJavaAssemblyTracking")
+                || cn.contains("RxJavaStallWatchdog")
+                || cn.contains("RxJavaMetricsTracking")
+                || cn.contains("ChainedAssemblyHook")
                 || cn.contains("RxJavaPlugins")) {
             return false;
         }
@@ -97,7 +159,18 @@ public final class RxJavaAssemblyException extends RuntimeException {
      * @return the captured and filtered stacktrace
      */
     public String stacktrace() {
-        return stacktrace;
+        String st = stacktrace;
+        if (st == null) {
+            Throwable c = capture;
+            if (c == null) {
+                // not lazy or another thread has just finished
+                return stacktrace;
+            }
+            st = cachedStackTrace(c.getStackTrace());
+            stacktrace = st;
+            capture = null;
+        }
+        return st;
     }
 
     @Override
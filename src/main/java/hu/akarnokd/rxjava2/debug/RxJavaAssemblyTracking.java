@@ -17,7 +17,7 @@
 package hu.akarnokd.rxjava2.debug;
 
 import java.util.concurrent.Callable;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.*;
 
 import io.reactivex.*;
 import io.reactivex.flowables.ConnectableFlowable;
@@ -32,12 +32,37 @@ import io.reactivex.plugins.RxJavaPlugins;
  * by capturing the current stacktrace (warning: very expensive!), have it in a debug-time accessible
  * field (when walking the references in a debugger) and append it to exceptions passing by the
  * regular {@code onError}.
+ * <p>
+ * To keep the tracking on under load, {@link #enable(int, boolean)} can track only every N-th
+ * assembly and capture the stacktraces lazily, see the method for details.
+ * <p>
+ * The Flowable and Observable assembly hooks are shared with {@link RxJavaMetricsTracking}
+ * and {@link RxJavaStallWatchdog}: the hooks installed before enabling are run first and
+ * are restored when disabling. The hooks of the other reactive types are overwritten
+ * and cleared.
  */
 public final class RxJavaAssemblyTracking {
 
     /** Simply lock out concurrent state changes. */
     static final AtomicBoolean lock = new AtomicBoolean();
 
+    /** Capture the stacktraces lazily and share them per call site. */
+    static volatile boolean lowOverhead;
+
+    /** Track every N-th assembly. */
+    static volatile int samplingPeriod = 1;
+
+    /** Counts the assemblies for sampling. */
+    static final AtomicLong assemblies = new AtomicLong();
+
+    /** The installed Flowable hook, null if disabled. */
+    @SuppressWarnings("rawtypes")
+    static ChainedAssemblyHook<Flowable> flowableHook;
+
+    /** The installed Observable hook, null if disabled. */
+    @SuppressWarnings("rawtypes")
+    static ChainedAssemblyHook<Observable> observableHook;
+
     /** Utility class. */
     private RxJavaAssemblyTracking() {
         throw new IllegalStateException("No instances!");
@@ -46,46 +71,91 @@ public final class RxJavaAssemblyTracking {
     /**
      * Enable the assembly tracking.
      */
-    @SuppressWarnings({ "unchecked", "rawtypes" })
     public static void enable() {
+        enable(1, false);
+    }
+
+    /**
+     * Enable the assembly tracking for every {@code samplingPeriod}-th assembled
+     * reactive type, optionally in low-overhead mode.
+     * <p>
+     * In low-overhead mode, only the JVM's internal backtrace is captured at assembly
+     * time; it is turned into a filtered stacktrace string when
+     * {@link RxJavaAssemblyException#stacktrace()} is first called. The filtered
+     * stacktraces are cached and shared per assembly call site (the stacktrace elements down
+     * to the first one outside of RxJava and this library); thus the stacktrace shows the
+     * outer call chain of the first assembly from that call site. Note also that the
+     * {@code stacktrace} field of the {@code RxJavaAssemblyException} remains null until then.
+     * @param samplingPeriod track every N-th assembly, 1 tracks all of them
+     * @param lowOverhead if true, the stacktraces are captured lazily and cached per call site
+     * @since 0.17.0
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static void enable(int samplingPeriod, boolean lowOverhead) {
+        if (samplingPeriod <= 0) {
+            throw new IllegalArgumentException("samplingPeriod > 0 required but it was " + samplingPeriod);
+        }
         if (lock.compareAndSet(false, true)) {
 
-            RxJavaPlugins.setOnFlowableAssembly(new Function<Flowable, Flowable>() {
-                @Override
-                public Flowable apply(Flowable f) throws Exception {
-                    if (f instanceof Callable) {
-                        if (f instanceof ScalarCallable) {
-                            return new FlowableOnAssemblyScalarCallable(f);
+            RxJavaAssemblyTracking.samplingPeriod = samplingPeriod;
+            RxJavaAssemblyTracking.lowOverhead = lowOverhead;
+
+            if (flowableHook == null) {
+                ChainedAssemblyHook<Flowable> fh = new ChainedAssemblyHook<Flowable>(RxJavaPlugins.getOnFlowableAssembly()) {
+                    @Override
+                    Flowable wrap(Flowable original, Flowable f) {
+                        if (!sample()) {
+                            return f;
+                        }
+                        if (f instanceof Callable) {
+                            if (f instanceof ScalarCallable) {
+                                return new FlowableOnAssemblyScalarCallable(f);
+                            }
+                            return new FlowableOnAssemblyCallable(f);
                         }
-                        return new FlowableOnAssemblyCallable(f);
+                        return new FlowableOnAssembly(f);
                     }
-                    return new FlowableOnAssembly(f);
-                }
-            });
+                };
+                RxJavaPlugins.setOnFlowableAssembly(fh);
+                flowableHook = fh;
+            }
 
             RxJavaPlugins.setOnConnectableFlowableAssembly(new Function<ConnectableFlowable, ConnectableFlowable>() {
                 @Override
                 public ConnectableFlowable apply(ConnectableFlowable f) throws Exception {
+                    if (!sample()) {
+                        return f;
+                    }
                     return new FlowableOnAssemblyConnectable(f);
                 }
             });
 
-            RxJavaPlugins.setOnObservableAssembly(new Function<Observable, Observable>() {
-                @Override
-                public Observable apply(Observable f) throws Exception {
-                    if (f instanceof Callable) {
-                        if (f instanceof ScalarCallable) {
-                            return new ObservableOnAssemblyScalarCallable(f);
+            if (observableHook == null) {
+                ChainedAssemblyHook<Observable> oh = new ChainedAssemblyHook<Observable>(RxJavaPlugins.getOnObservableAssembly()) {
+                    @Override
+                    Observable wrap(Observable original, Observable f) {
+                        if (!sample()) {
+                            return f;
                         }
-                        return new ObservableOnAssemblyCallable(f);
+                        if (f instanceof Callable) {
+                            if (f instanceof ScalarCallable) {
+                                return new ObservableOnAssemblyScalarCallable(f);
+                            }
+                            return new ObservableOnAssemblyCallable(f);
+                        }
+                        return new ObservableOnAssembly(f);
                     }
-                    return new ObservableOnAssembly(f);
-                }
-            });
+                };
+                RxJavaPlugins.setOnObservableAssembly(oh);
+                observableHook = oh;
+            }
 
             RxJavaPlugins.setOnConnectableObservableAssembly(new Function<ConnectableObservable, ConnectableObservable>() {
                 @Override
                 public ConnectableObservable apply(ConnectableObservable f) throws Exception {
+                    if (!sample()) {
+                        return f;
+                    }
                     return new ObservableOnAssemblyConnectable(f);
                 }
             });
@@ -93,6 +163,9 @@ public final class RxJavaAssemblyTracking {
             RxJavaPlugins.setOnSingleAssembly(new Function<Single, Single>() {
                 @Override
                 public Single apply(Single f) throws Exception {
+                    if (!sample()) {
+                        return f;
+                    }
                     if (f instanceof Callable) {
                         if (f instanceof ScalarCallable) {
                             return new SingleOnAssemblyScalarCallable(f);
@@ -106,6 +179,9 @@ public final class RxJavaAssemblyTracking {
             RxJavaPlugins.setOnCompletableAssembly(new Function<Completable, Completable>() {
                 @Override
                 public Completable apply(Completable f) throws Exception {
+                    if (!sample()) {
+                        return f;
+                    }
                     if (f instanceof Callable) {
                         if (f instanceof ScalarCallable) {
                             return new CompletableOnAssemblyScalarCallable(f);
@@ -119,6 +195,9 @@ public final class RxJavaAssemblyTracking {
             RxJavaPlugins.setOnMaybeAssembly(new Function<Maybe, Maybe>() {
                 @Override
                 public Maybe apply(Maybe f) throws Exception {
+                    if (!sample()) {
+                        return f;
+                    }
                     if (f instanceof Callable) {
                         if (f instanceof ScalarCallable) {
                             return new MaybeOnAssemblyScalarCallable(f);
@@ -132,6 +211,9 @@ public final class RxJavaAssemblyTracking {
             RxJavaPlugins.setOnParallelAssembly(new Function<ParallelFlowable, ParallelFlowable>() {
                 @Override
                 public ParallelFlowable apply(ParallelFlowable t) throws Exception {
+                    if (!sample()) {
+                        return t;
+                    }
                     return new ParallelFlowableOnAssembly(t);
                 }
             });
@@ -143,6 +225,7 @@ public final class RxJavaAssemblyTracking {
     /**
      * Disable the assembly tracking.
      */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
     public static void disable() {
         if (lock.compareAndSet(false, true)) {
 
@@ -150,14 +233,41 @@ public final class RxJavaAssemblyTracking {
             RxJavaPlugins.setOnSingleAssembly(null);
             RxJavaPlugins.setOnMaybeAssembly(null);
 
-            RxJavaPlugins.setOnObservableAssembly(null);
-            RxJavaPlugins.setOnFlowableAssembly(null);
+            ChainedAssemblyHook<Observable> oh = observableHook;
+            if (oh != null) {
+                observableHook = null;
+                Function<? super Observable, ? extends Observable> o = oh.remove();
+                if (RxJavaPlugins.getOnObservableAssembly() == oh) {
+                    RxJavaPlugins.setOnObservableAssembly(o);
+                }
+            }
+            ChainedAssemblyHook<Flowable> fh = flowableHook;
+            if (fh != null) {
+                flowableHook = null;
+                Function<? super Flowable, ? extends Flowable> f = fh.remove();
+                if (RxJavaPlugins.getOnFlowableAssembly() == fh) {
+                    RxJavaPlugins.setOnFlowableAssembly(f);
+                }
+            }
             RxJavaPlugins.setOnConnectableObservableAssembly(null);
             RxJavaPlugins.setOnConnectableFlowableAssembly(null);
 
             RxJavaPlugins.setOnParallelAssembly(null);
 
+            samplingPeriod = 1;
+            lowOverhead = false;
+            RxJavaAssemblyException.CACHE.clear();
+
             lock.set(false);
         }
     }
+
+    /**
+     * Returns true if the current assembly should be tracked.
+     * @return true if the current assembly should be tracked
+     */
+    static boolean sample() {
+        int p = samplingPeriod;
+        return p == 1 || assemblies.getAndIncrement() % p == 0;
+    }
 }
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.debug;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.*;
+import io.reactivex.functions.Function;
+import io.reactivex.internal.fuseable.ScalarCallable;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Utility class to enable and disable counting the signals of Flowable and Observable
+ * sequences, aggregated per operator class or, optionally, per assembly site (the
+ * operator's class name and the first stacktrace element outside of RxJava).
+ * <p>
+ * The counting itself uses striped counters and is relatively cheap, but finding
+ * out the assembly site requires capturing the stacktrace of every assembly,
+ * which is expensive and thus has to be requested via {@link #enable(boolean)}.
+ * Constant scalar sources ({@code just}, {@code empty}) are
+ * not instrumented as their wrapping would disable the optimizations that depend on them.
+ * <p>
+ * Note that this uses the same {@code RxJavaPlugins} assembly hooks as
+ * {@link RxJavaAssemblyTracking} and {@link RxJavaStallWatchdog}; the hooks installed
+ * before enabling are run first and are restored when disabling.
+ *
+ * @since 0.17.0
+ */
+public final class RxJavaMetricsTracking {
+
+    /** Simply lock out concurrent state changes. */
+    static final AtomicBoolean lock = new AtomicBoolean();
+
+    /** The metrics per operator class or assembly site. */
+    static final ConcurrentMap<String, OperatorMetrics> SITES = new ConcurrentHashMap<String, OperatorMetrics>();
+
+    static final String SELF = RxJavaMetricsTracking.class.getName();
+
+    /** The prefix of the hooks' anonymous classes. */
+    static final String SELF_INNER = SELF + "$";
+
+    static final String HOOK = ChainedAssemblyHook.class.getName();
+
+    /** The installed Flowable hook, null if disabled. */
+    @SuppressWarnings("rawtypes")
+    static ChainedAssemblyHook<Flowable> flowableHook;
+
+    /** The installed Observable hook, null if disabled. */
+    @SuppressWarnings("rawtypes")
+    static ChainedAssemblyHook<Observable> observableHook;
+
+    /** Utility class. */
+    private RxJavaMetricsTracking() {
+        throw new IllegalStateException("No instances!");
+    }
+
+    /**
+     * Enable the metrics tracking, aggregated per operator class.
+     */
+    public static void enable() {
+        enable(false);
+    }
+
+    /**
+     * Enable the metrics tracking.
+     * @param captureSites if true, the metrics are aggregated per assembly site,
+     * which requires capturing the stacktrace of every assembly; if false,
+     * the metrics are aggregated per operator class
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static void enable(final boolean captureSites) {
+        if (lock.compareAndSet(false, true)) {
+            if (flowableHook == null) {
+
+                ChainedAssemblyHook<Flowable> fh = new ChainedAssemblyHook<Flowable>(RxJavaPlugins.getOnFlowableAssembly()) {
+                    @Override
+                    Flowable wrap(Flowable original, Flowable f) {
+                        if (f instanceof ScalarCallable) {
+                            return f;
+                        }
+                        if (f instanceof Callable) {
+                            return new FlowableOnMetricsCallable(f, metricsFor(original, captureSites));
+                        }
+                        return new FlowableOnMetrics(f, metricsFor(original, captureSites));
+                    }
+                };
+
+                ChainedAssemblyHook<Observable> oh = new ChainedAssemblyHook<Observable>(RxJavaPlugins.getOnObservableAssembly()) {
+                    @Override
+                    Observable wrap(Observable original, Observable f) {
+                        if (f instanceof ScalarCallable) {
+                            return f;
+                        }
+                        if (f instanceof Callable) {
+                            return new ObservableOnMetricsCallable(f, metricsFor(original, captureSites));
+                        }
+                        return new ObservableOnMetrics(f, metricsFor(original, captureSites));
+                    }
+                };
+
+                RxJavaPlugins.setOnFlowableAssembly(fh);
+                RxJavaPlugins.setOnObservableAssembly(oh);
+
+                flowableHook = fh;
+                observableHook = oh;
+            }
+            lock.set(false);
+        }
+    }
+
+    /**
+     * Disable the metrics tracking and forget the metrics collected so far.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static void disable() {
+        if (lock.compareAndSet(false, true)) {
+            ChainedAssemblyHook<Flowable> fh = flowableHook;
+            if (fh != null) {
+                ChainedAssemblyHook<Observable> oh = observableHook;
+                flowableHook = null;
+                observableHook = null;
+
+                Function<? super Flowable, ? extends Flowable> f = fh.remove();
+                if (RxJavaPlugins.getOnFlowableAssembly() == fh) {
+                    RxJavaPlugins.setOnFlowableAssembly(f);
+                }
+                Function<? super Observable, ? extends Observable> o = oh.remove();
+                if (RxJavaPlugins.getOnObservableAssembly() == oh) {
+                    RxJavaPlugins.setOnObservableAssembly(o);
+                }
+            }
+
+            SITES.clear();
+
+            lock.set(false);
+        }
+    }
+
+    /**
+     * Returns the current metrics of each assembly site, ordered by site.
+     * @return the list of metrics
+     */
+    public static List<OperatorMetricsSnapshot> snapshot() {
+        List<OperatorMetricsSnapshot> list = new ArrayList<OperatorMetricsSnapshot>();
+        for (OperatorMetrics m : SITES.values()) {
+            list.add(m.snapshot());
+        }
+        Collections.sort(list, new Comparator<OperatorMetricsSnapshot>() {
+            @Override
+            public int compare(OperatorMetricsSnapshot o1, OperatorMetricsSnapshot o2) {
+                return o1.site().compareTo(o2.site());
+            }
+        });
+        return list;
+    }
+
+    /**
+     * Writes the current metrics of each assembly site as tab separated values,
+     * one line per site, preceded by a header line; durations are in nanoseconds.
+     * @param out the target to write to
+     * @throws IOException if the target throws
+     */
+    public static void export(Appendable out) throws IOException {
+        out.append("site\tsubscriptions\tactive\tcancellations\tcompletions\terrors"
+                + "\titems\titemsPerSecond\trequested\tunboundedRequests\toutstandingDemand"
+                + "\tavgTimeToFirstItem\tmaxTimeToFirstItem\tavgLifetime\tmaxLifetime\n");
+        TimeUnit ns = TimeUnit.NANOSECONDS;
+        for (OperatorMetricsSnapshot s : snapshot()) {
+            out.append(s.site()).append('\t')
+            .append(String.valueOf(s.subscriptions())).append('\t')
+            .append(String.valueOf(s.activeSubscriptions())).append('\t')
+            .append(String.valueOf(s.cancellations())).append('\t')
+            .append(String.valueOf(s.completions())).append('\t')
+            .append(String.valueOf(s.errors())).append('\t')
+            .append(String.valueOf(s.items())).append('\t')
+            .append(String.valueOf(s.itemsPerSecond())).append('\t')
+            .append(String.valueOf(s.requested())).append('\t')
+            .append(String.valueOf(s.unboundedRequests())).append('\t')
+            .append(String.valueOf(s.outstandingDemand())).append('\t')
+            .append(String.valueOf(s.averageTimeToFirstItem(ns))).append('\t')
+            .append(String.valueOf(s.maxTimeToFirstItem(ns))).append('\t')
+            .append(String.valueOf(s.averageLifetime(ns))).append('\t')
+            .append(String.valueOf(s.maxLifetime(ns))).append('\n');
+        }
+    }
+
+    /**
+     * Returns the metrics of the operator class or assembly site of the given source.
+     * @param source the source being assembled
+     * @param captureSite if true, the assembly site is part of the key
+     * @return the metrics
+     */
+    static OperatorMetrics metricsFor(Object source, boolean captureSite) {
+        Class<?> clazz = source.getClass();
+        String key = clazz.getSimpleName();
+        if (key.isEmpty()) {
+            key = clazz.getName();
+        }
+        if (captureSite) {
+            StackTraceElement site = null;
+            for (StackTraceElement e : new Throwable().getStackTrace()) {
+                String cn = e.getClassName();
+                if (!cn.startsWith("io.reactivex.") && !cn.equals(SELF) && !cn.startsWith(SELF_INNER) && !cn.equals(HOOK)) {
+                    site = e;
+                    break;
+                }
+            }
+            key = key + " @ " + site;
+        }
+
+        OperatorMetrics m = SITES.get(key);
+        if (m == null) {
+            m = new OperatorMetrics(key);
+            OperatorMetrics old = SITES.putIfAbsent(key, m);
+            if (old != null) {
+                m = old;
+            }
+        }
+        return m;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.debug;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.*;
+import io.reactivex.functions.*;
+import io.reactivex.internal.functions.ObjectHelper;
+import io.reactivex.internal.fuseable.ScalarCallable;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Utility class to enable and disable a watchdog that detects backpressure stalls
+ * in Flowable chains: operators holding items that their downstream hasn't
+ * requested for longer than a threshold.
+ * <p>
+ * Every assembled Flowable is wrapped and each subscription to it becomes a tracked
+ * edge between two operators. As both sides of an operator are wrapped, an item
+ * arriving at an operator while its outgoing edge has no demand is counted as buffered
+ * on that edge until it is delivered. The signals only update fields of the edges; a periodic
+ * task on the given scheduler scans the live edges every threshold amount of time,
+ * thus a stall is reported between one and two thresholds after it started,
+ * together with the assembly stacktrace of the upstream operator. Each stall is
+ * reported once. Idle consumers whose upstream has nothing to emit are not reported.
+ * <p>
+ * An incoming edge is linked to its operator only if it is subscribed on the thread that
+ * is subscribing to, requesting from or signalling the operator at the time; the
+ * items of unlinked edges, such as inner sources subscribed from an asynchronous emission,
+ * and the items generated by an operator itself (for example {@code range}) are not counted.
+ * For operators that don't emit exactly one item for each item received, the buffered
+ * amount is an estimate.
+ * <p>
+ * Note that this uses the same {@code RxJavaPlugins} assembly hook as
+ * {@link RxJavaAssemblyTracking} and {@link RxJavaMetricsTracking}; the hook installed
+ * before enabling is run first and is restored when disabling.
+ *
+ * @since 0.17.0
+ */
+public final class RxJavaStallWatchdog {
+
+    /** Simply lock out concurrent state changes. */
+    static final AtomicBoolean lock = new AtomicBoolean();
+
+    /** The current watchdog, null if disabled. */
+    static StallWatchdog current;
+
+    /** The installed Flowable hook, null if disabled. */
+    @SuppressWarnings("rawtypes")
+    static ChainedAssemblyHook<Flowable> hook;
+
+    /** Utility class. */
+    private RxJavaStallWatchdog() {
+        throw new IllegalStateException("No instances!");
+    }
+
+    /**
+     * Enable the stall watchdog, scanning on the computation scheduler.
+     * @param threshold the time the demand can stay used up before it is reported
+     * @param unit the time unit of the threshold
+     * @param onStall called with the report of each stall detected
+     */
+    public static void enable(long threshold, TimeUnit unit, Consumer<? super StallReport> onStall) {
+        enable(threshold, unit, Schedulers.computation(), onStall);
+    }
+
+    /**
+     * Enable the stall watchdog, scanning on the given scheduler, which also
+     * provides the time for the detection.
+     * @param threshold the time the demand can stay used up before it is reported
+     * @param unit the time unit of the threshold
+     * @param scheduler the scheduler to run the periodic scan on
+     * @param onStall called with the report of each stall detected, on the scheduler
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static void enable(long threshold, TimeUnit unit, Scheduler scheduler, Consumer<? super StallReport> onStall) {
+        ObjectHelper.verifyPositive(threshold, "threshold");
+        ObjectHelper.requireNonNull(unit, "unit is null");
+        ObjectHelper.requireNonNull(scheduler, "scheduler is null");
+        ObjectHelper.requireNonNull(onStall, "onStall is null");
+        if (lock.compareAndSet(false, true)) {
+            if (current == null) {
+                final StallWatchdog w = new StallWatchdog(unit.toNanos(threshold), scheduler, onStall);
+
+                ChainedAssemblyHook<Flowable> h = new ChainedAssemblyHook<Flowable>(RxJavaPlugins.getOnFlowableAssembly()) {
+                    @Override
+                    Flowable wrap(Flowable original, Flowable f) {
+                        if (f instanceof ScalarCallable) {
+                            return f;
+                        }
+                        if (f instanceof Callable) {
+                            return new FlowableOnWatchdogCallable(f, w);
+                        }
+                        return new FlowableOnWatchdog(f, w);
+                    }
+                };
+
+                RxJavaPlugins.setOnFlowableAssembly(h);
+                hook = h;
+
+                w.start();
+                current = w;
+            }
+            lock.set(false);
+        }
+    }
+
+    /**
+     * Disable the stall watchdog.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static void disable() {
+        if (lock.compareAndSet(false, true)) {
+            StallWatchdog w = current;
+            if (w != null) {
+                current = null;
+
+                ChainedAssemblyHook<Flowable> h = hook;
+                hook = null;
+                Function<? super Flowable, ? extends Flowable> f = h.remove();
+                if (RxJavaPlugins.getOnFlowableAssembly() == h) {
+                    RxJavaPlugins.setOnFlowableAssembly(f);
+                }
+
+                w.stop();
+            }
+            lock.set(false);
+        }
+    }
+}
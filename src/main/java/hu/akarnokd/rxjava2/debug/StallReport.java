@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.debug;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes a subscription between two operators whose upstream has been holding
+ * items for longer than the threshold of {@link RxJavaStallWatchdog} because the
+ * downstream has not requested more.
+ *
+ * @since 0.17.0
+ */
+public final class StallReport {
+
+    final String operator;
+
+    final RxJavaAssemblyException assembled;
+
+    final long requested;
+
+    final long buffered;
+
+    final long stalledNanos;
+
+    final long sinceLastRequestNanos;
+
+    StallReport(String operator, RxJavaAssemblyException assembled, long requested,
+            long buffered, long stalledNanos, long sinceLastRequestNanos) {
+        this.operator = operator;
+        this.assembled = assembled;
+        this.requested = requested;
+        this.buffered = buffered;
+        this.stalledNanos = stalledNanos;
+        this.sinceLastRequestNanos = sinceLastRequestNanos;
+    }
+
+    /**
+     * Returns the class name of the upstream operator.
+     * @return the class name of the upstream operator
+     */
+    public String operator() {
+        return operator;
+    }
+
+    /**
+     * Returns the holder of the assembly stacktrace of the upstream operator.
+     * @return the holder of the assembly stacktrace
+     */
+    public RxJavaAssemblyException assembled() {
+        return assembled;
+    }
+
+    /**
+     * Returns the total amount requested, which has all been delivered.
+     * @return the total amount requested
+     */
+    public long requested() {
+        return requested;
+    }
+
+    /**
+     * Returns the number of items the upstream operator received since the demand was
+     * used up and has not delivered yet; an estimate for operators that don't emit
+     * exactly one item for each item received.
+     * @return the number of items held by the upstream operator
+     */
+    public long buffered() {
+        return buffered;
+    }
+
+    /**
+     * Returns the time since the upstream operator has been holding items without demand.
+     * @param unit the time unit of the result
+     * @return the time since the upstream has been stalled
+     */
+    public long stalledFor(TimeUnit unit) {
+        return unit.convert(stalledNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the time since the last request from downstream.
+     * @param unit the time unit of the result
+     * @return the time since the last request
+     */
+    public long sinceLastRequest(TimeUnit unit) {
+        return unit.convert(sinceLastRequestNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "StallReport[operator=" + operator + ", requested=" + requested
+                + ", buffered=" + buffered
+                + ", stalledForMillis=" + stalledFor(TimeUnit.MILLISECONDS)
+                + ", sinceLastRequestMillis=" + sinceLastRequest(TimeUnit.MILLISECONDS) + "]\r\n"
+                + assembled.stacktrace();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.debug;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.functions.Consumer;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Holds the live edges of an enabled {@link RxJavaStallWatchdog} and
+ * periodically scans them for stalls.
+ */
+final class StallWatchdog implements Runnable {
+
+    final Scheduler scheduler;
+
+    final long thresholdNanos;
+
+    final Consumer<? super StallReport> onStall;
+
+    final Set<WatchdogEdge> edges;
+
+    Disposable task;
+
+    StallWatchdog(long thresholdNanos, Scheduler scheduler, Consumer<? super StallReport> onStall) {
+        this.thresholdNanos = thresholdNanos;
+        this.scheduler = scheduler;
+        this.onStall = onStall;
+        this.edges = Collections.newSetFromMap(new ConcurrentHashMap<WatchdogEdge, Boolean>());
+    }
+
+    void start() {
+        task = scheduler.schedulePeriodicallyDirect(this, thresholdNanos, thresholdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void stop() {
+        task.dispose();
+        edges.clear();
+    }
+
+    long now() {
+        return scheduler.now(TimeUnit.NANOSECONDS);
+    }
+
+    void add(WatchdogEdge edge) {
+        edges.add(edge);
+    }
+
+    void remove(WatchdogEdge edge) {
+        edges.remove(edge);
+    }
+
+    @Override
+    public void run() {
+        long now = now();
+        long threshold = thresholdNanos;
+        for (WatchdogEdge edge : edges) {
+            StallReport report = edge.check(now, threshold);
+            if (report != null) {
+                try {
+                    onStall.accept(report);
+                } catch (Throwable ex) {
+                    Exceptions.throwIfFatal(ex);
+                    RxJavaPlugins.onError(ex);
+                }
+            }
+        }
+    }
+}
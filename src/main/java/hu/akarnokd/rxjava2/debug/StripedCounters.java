@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.debug;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed set of long counters striped over multiple cache lines, so that
+ * threads updating them concurrently rarely contend on the same cell.
+ * <p>
+ * Each stripe holds all the counters in 128 bytes (two cache lines on most
+ * platforms), a thread picks its stripe based on its id.
+ */
+final class StripedCounters {
+
+    /** The number of longs per stripe, 128 bytes. */
+    static final int STRIDE = 16;
+
+    /** The number of stripes, a power of 2. */
+    static final int STRIPES;
+
+    static {
+        int n = Runtime.getRuntime().availableProcessors();
+        int s = 1;
+        while (s < n && s < 64) {
+            s <<= 1;
+        }
+        STRIPES = s;
+    }
+
+    final AtomicLongArray cells;
+
+    final int counters;
+
+    StripedCounters(int counters) {
+        if (counters > STRIDE) {
+            throw new IllegalArgumentException("counters <= " + STRIDE + " required but it was " + counters);
+        }
+        this.counters = counters;
+        // an extra stripe in front as padding from the array header
+        this.cells = new AtomicLongArray((STRIPES + 1) * STRIDE);
+    }
+
+    /**
+     * Adds the given value to a counter.
+     * @param counter the counter index
+     * @param n the value to add, can be negative
+     */
+    void add(int counter, long n) {
+        cells.getAndAdd(offset() + counter, n);
+    }
+
+    /**
+     * Returns the current sum of a counter, which is not an atomic
+     * snapshot if the counter is updated concurrently.
+     * @param counter the counter index
+     * @return the sum
+     */
+    long sum(int counter) {
+        AtomicLongArray a = cells;
+        long s = 0L;
+        for (int i = STRIDE + counter; i < a.length(); i += STRIDE) {
+            s += a.get(i);
+        }
+        return s;
+    }
+
+    static int offset() {
+        long id = Thread.currentThread().getId();
+        int h = (int)(id ^ (id >>> 32)) * 0x9E3779B9;
+        return (((h >>> 16) & (STRIPES - 1)) + 1) * STRIDE;
+    }
+}
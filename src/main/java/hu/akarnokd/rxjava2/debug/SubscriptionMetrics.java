@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.debug;
+
+import java.util.concurrent.atomic.*;
+
+import io.reactivex.internal.util.BackpressureHelper;
+
+/**
+ * Tracks the items, the demand, the time to the first item and the lifetime of
+ * a single subscription.
+ * <p>
+ * While the subscription is active, the site's {@link OperatorMetrics} reads the
+ * counters directly; upon termination, they are added to the site's totals.
+ * The item counter is only written by the onNext/poll side, which uses an ordered
+ * store instead of an atomic increment. The AtomicLong holds the sum of the finite
+ * requests.
+ */
+final class SubscriptionMetrics extends AtomicLong {
+
+    private static final long serialVersionUID = -2930466226566389224L;
+
+    static final AtomicLongFieldUpdater<SubscriptionMetrics> ITEMS =
+            AtomicLongFieldUpdater.newUpdater(SubscriptionMetrics.class, "items");
+
+    static final AtomicIntegerFieldUpdater<SubscriptionMetrics> ONCE =
+            AtomicIntegerFieldUpdater.newUpdater(SubscriptionMetrics.class, "once");
+
+    final OperatorMetrics metrics;
+
+    final long start;
+
+    volatile long items;
+
+    /** The demand is not tracked: unbounded, not backpressured or synchronously pulled. */
+    volatile boolean unbounded;
+
+    /** Accessed from the onNext/poll side only. */
+    boolean hasItem;
+
+    volatile int once;
+
+    SubscriptionMetrics(OperatorMetrics metrics, boolean unbounded) {
+        this.metrics = metrics;
+        this.start = System.nanoTime();
+        this.unbounded = unbounded;
+        metrics.subscribed(this);
+    }
+
+    void item() {
+        ITEMS.lazySet(this, items + 1);
+        if (!hasItem) {
+            hasItem = true;
+            metrics.firstItem(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Stops tracking the outstanding demand, for example, when the items are
+     * pulled synchronously.
+     */
+    void unbounded() {
+        unbounded = true;
+    }
+
+    void request(long n) {
+        if (n <= 0L || unbounded) {
+            return;
+        }
+        if (n == Long.MAX_VALUE || BackpressureHelper.add(this, n) == Long.MAX_VALUE) {
+            unbounded = true;
+            metrics.add(OperatorMetrics.UNBOUNDED_REQUESTS, 1);
+        }
+    }
+
+    /**
+     * Returns the sum of the finite requests.
+     * @return the sum of the finite requests
+     */
+    long requested() {
+        long r = get();
+        return r != Long.MAX_VALUE ? r : 0L;
+    }
+
+    /**
+     * Returns the amount requested but not yet delivered.
+     * @return the outstanding demand
+     */
+    long outstanding() {
+        if (unbounded || once != 0) {
+            return 0L;
+        }
+        return Math.max(0L, requested() - items);
+    }
+
+    /**
+     * Records the termination of the subscription once.
+     * @param kind the counter of the terminal event
+     */
+    void terminate(int kind) {
+        if (once == 0 && ONCE.compareAndSet(this, 0, 1)) {
+            metrics.terminated(this, kind, System.nanoTime() - start);
+        }
+    }
+}
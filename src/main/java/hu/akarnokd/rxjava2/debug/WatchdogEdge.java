@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.debug;
+
+import java.util.concurrent.atomic.*;
+
+import io.reactivex.internal.util.BackpressureHelper;
+
+/**
+ * Tracks the demand of a single subscription between two operators for
+ * {@link RxJavaStallWatchdog}.
+ * <p>
+ * The AtomicLong holds the total requested amount. The onNext/poll side only
+ * uses ordered stores and reads the time only when it uses up the demand.
+ * <p>
+ * Each edge knows the outgoing edge of the operator it feeds, if that operator
+ * was subscribed on the same thread: an item arriving while that outgoing edge
+ * has no demand is counted as buffered by the operator until it is delivered.
+ */
+final class WatchdogEdge extends AtomicLong {
+
+    private static final long serialVersionUID = 6101380562432298658L;
+
+    static final AtomicLongFieldUpdater<WatchdogEdge> DELIVERED =
+            AtomicLongFieldUpdater.newUpdater(WatchdogEdge.class, "delivered");
+
+    static final AtomicLongFieldUpdater<WatchdogEdge> EXHAUSTED_AT =
+            AtomicLongFieldUpdater.newUpdater(WatchdogEdge.class, "exhaustedAt");
+
+    static final AtomicLongFieldUpdater<WatchdogEdge> BUFFERED =
+            AtomicLongFieldUpdater.newUpdater(WatchdogEdge.class, "buffered");
+
+    static final AtomicLongFieldUpdater<WatchdogEdge> BUFFERED_AT =
+            AtomicLongFieldUpdater.newUpdater(WatchdogEdge.class, "bufferedAt");
+
+    static final AtomicIntegerFieldUpdater<WatchdogEdge> ONCE =
+            AtomicIntegerFieldUpdater.newUpdater(WatchdogEdge.class, "once");
+
+    /**
+     * The outgoing edge of the operator being subscribed to or signalled on the current
+     * thread, which becomes the consumer of the edges created meanwhile.
+     */
+    static final ThreadLocal<WatchdogEdge> CURRENT = new ThreadLocal<WatchdogEdge>();
+
+    final StallWatchdog watchdog;
+
+    final String operator;
+
+    final RxJavaAssemblyException assembled;
+
+    /** The outgoing edge of the operator receiving the items of this edge, null if unknown. */
+    final WatchdogEdge consumer;
+
+    /** The number of items delivered, written by the onNext/poll side. */
+    volatile long delivered;
+
+    /** The time the last item used up the demand. */
+    volatile long exhaustedAt;
+
+    /** The time of the last request. */
+    volatile long lastRequestAt;
+
+    /** The number of items the operator received without demand for them on this edge. */
+    volatile long buffered;
+
+    /** The time the operator started buffering items. */
+    volatile long bufferedAt;
+
+    volatile int once;
+
+    /** The delivered count when the current stall was reported, accessed by the scan only. */
+    long reported = -1L;
+
+    WatchdogEdge(StallWatchdog watchdog, String operator, RxJavaAssemblyException assembled, WatchdogEdge consumer) {
+        this.watchdog = watchdog;
+        this.operator = operator;
+        this.assembled = assembled;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Starts tracking this edge once the subscription is established.
+     */
+    void start() {
+        watchdog.add(this);
+    }
+
+    void item() {
+        long d = delivered + 1;
+        if (d == get()) {
+            // the scan reads delivered before exhaustedAt
+            EXHAUSTED_AT.lazySet(this, watchdog.now());
+        }
+        DELIVERED.lazySet(this, d);
+
+        if (buffered != 0L) {
+            unbuffer();
+        }
+        WatchdogEdge c = consumer;
+        if (c != null && c.delivered == c.get()) {
+            c.buffer();
+        }
+    }
+
+    /**
+     * Called by an incoming edge of the operator when an item arrives
+     * while this edge has no outstanding demand.
+     */
+    void buffer() {
+        if (BUFFERED.getAndIncrement(this) == 0L) {
+            BUFFERED_AT.lazySet(this, watchdog.now());
+        }
+    }
+
+    void unbuffer() {
+        for (;;) {
+            long b = buffered;
+            if (b == 0L || BUFFERED.compareAndSet(this, b, b - 1)) {
+                return;
+            }
+        }
+    }
+
+    void request(long n) {
+        if (n > 0L) {
+            lastRequestAt = watchdog.now();
+            BackpressureHelper.add(this, n);
+        }
+    }
+
+    /**
+     * Stops tracking the demand, for example, when the items are pulled synchronously.
+     */
+    void unbounded() {
+        lazySet(Long.MAX_VALUE);
+    }
+
+    void terminate() {
+        if (once == 0 && ONCE.compareAndSet(this, 0, 1)) {
+            watchdog.remove(this);
+        }
+    }
+
+    /**
+     * Checks if the operator has been holding items while the demand has been used up
+     * for at least the given threshold and creates a report if this stall has not been
+     * reported yet.
+     * @param now the current time in nanoseconds
+     * @param thresholdNanos the threshold in nanoseconds
+     * @return the report or null if there is nothing to report
+     */
+    StallReport check(long now, long thresholdNanos) {
+        if (once != 0) {
+            return null;
+        }
+        long d = delivered;
+        long t = exhaustedAt;
+        long r = get();
+        long b = buffered;
+        if (b == 0L || d != r || d == reported) {
+            return null;
+        }
+        long stalled = now - Math.max(t, bufferedAt);
+        if (stalled < thresholdNanos) {
+            return null;
+        }
+        reported = d;
+        return new StallReport(operator, assembled, r, b, stalled, now - lastRequestAt);
+    }
+}
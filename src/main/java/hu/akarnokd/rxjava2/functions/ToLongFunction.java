@@ -0,0 +1,35 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.functions;
+
+/**
+ * Functional interface for a function that maps a value into a primitive long
+ * and may throw a checked exception.
+ *
+ * @param <T> the input value type
+ * @since 0.17.0
+ */
+public interface ToLongFunction<T> {
+
+    /**
+     * Map the input value into a primitive long.
+     * @param t the input value
+     * @return the long value
+     * @throws Exception on error
+     */
+    long applyAsLong(T t) throws Exception;
+}
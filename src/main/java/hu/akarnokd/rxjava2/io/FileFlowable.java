@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.io;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import io.reactivex.Flowable;
+import io.reactivex.internal.functions.ObjectHelper;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Utility methods to read files as {@link Flowable}s.
+ *
+ * @since 0.17.0
+ */
+public final class FileFlowable {
+
+    /** The default number of bytes per emitted ByteBuffer. */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /** The default number of bytes mapped at once. */
+    public static final long DEFAULT_WINDOW_SIZE = 64L * 1024 * 1024;
+
+    /** Utility class. */
+    private FileFlowable() {
+        throw new IllegalStateException("No instances!");
+    }
+
+    /**
+     * Memory-maps the given file and emits its content as read-only ByteBuffers
+     * of 64 kB each (the last one can be shorter).
+     * @param file the file to read
+     * @return the new Flowable instance
+     * @see #mapped(File, int, long)
+     */
+    public static Flowable<ByteBuffer> mapped(File file) {
+        return mapped(file, DEFAULT_CHUNK_SIZE, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Memory-maps the given file and emits its content as read-only ByteBuffers
+     * of the given size (the last one can be shorter).
+     * @param file the file to read
+     * @param chunkSize the number of bytes per ByteBuffer
+     * @return the new Flowable instance
+     * @see #mapped(File, int, long)
+     */
+    public static Flowable<ByteBuffer> mapped(File file, int chunkSize) {
+        return mapped(file, chunkSize, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Memory-maps the given file window-by-window and emits its content as read-only
+     * ByteBuffers of the given size (the last one can be shorter).
+     * <p>
+     * The file is opened when a Subscriber subscribes and each window is mapped
+     * only when the downstream requests its first chunk, on the requesting thread.
+     * The ByteBuffers are views of the mapped memory (no copying happens) and stay
+     * valid after the file is closed. The source supports synchronous fusion so that
+     * fusing consumers pull the chunks directly.
+     * <p>
+     * Note that the file should not be truncated while it is being read and that
+     * accessing a mapped region of a truncated file may crash the JVM on some platforms.
+     * @param file the file to read
+     * @param chunkSize the number of bytes per ByteBuffer
+     * @param windowSize the number of bytes to map at once, rounded down to a multiple of
+     * the chunkSize (but at least one chunkSize)
+     * @return the new Flowable instance
+     */
+    public static Flowable<ByteBuffer> mapped(File file, int chunkSize, long windowSize) {
+        ObjectHelper.requireNonNull(file, "file is null");
+        ObjectHelper.verifyPositive(chunkSize, "chunkSize");
+        if (windowSize <= 0L || windowSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("windowSize in (0, Integer.MAX_VALUE] required but it was " + windowSize);
+        }
+        return RxJavaPlugins.onAssembly(new FlowableMappedFile(file, chunkSize, windowSize));
+    }
+}
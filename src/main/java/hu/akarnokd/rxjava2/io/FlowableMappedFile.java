@@ -0,0 +1,274 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.io;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+
+import org.reactivestreams.Subscriber;
+
+import io.reactivex.Flowable;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.internal.subscriptions.*;
+import io.reactivex.internal.util.BackpressureHelper;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Memory-maps a file window-by-window and emits read-only slices of the
+ * windows, mapping the next window only when the demand reaches it.
+ *
+ * @since 0.17.0
+ */
+final class FlowableMappedFile extends Flowable<ByteBuffer> {
+
+    final File file;
+
+    final int chunkSize;
+
+    final long windowSize;
+
+    FlowableMappedFile(File file, int chunkSize, long windowSize) {
+        this.file = file;
+        this.chunkSize = chunkSize;
+        this.windowSize = windowSize;
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super ByteBuffer> s) {
+        FileChannel channel;
+        long size;
+        try {
+            channel = new RandomAccessFile(file, "r").getChannel();
+        } catch (Throwable ex) {
+            Exceptions.throwIfFatal(ex);
+            EmptySubscription.error(ex, s);
+            return;
+        }
+        try {
+            size = channel.size();
+        } catch (Throwable ex) {
+            Exceptions.throwIfFatal(ex);
+            close(channel);
+            EmptySubscription.error(ex, s);
+            return;
+        }
+
+        s.onSubscribe(new MappedFileSubscription(s, channel, size, chunkSize, windowSize));
+    }
+
+    static void close(Closeable c) {
+        try {
+            c.close();
+        } catch (IOException ex) {
+            RxJavaPlugins.onError(ex);
+        }
+    }
+
+    static final class MappedFileSubscription extends BasicQueueSubscription<ByteBuffer> {
+
+        private static final long serialVersionUID = 2290931016651938455L;
+
+        final Subscriber<? super ByteBuffer> actual;
+
+        final FileChannel channel;
+
+        final long size;
+
+        final int chunkSize;
+
+        final long windowSize;
+
+        volatile boolean cancelled;
+
+        /** The file offset of the next chunk. */
+        long position;
+
+        ByteBuffer window;
+
+        /** The file offset of the current window. */
+        long windowStart;
+
+        boolean cleared;
+
+        MappedFileSubscription(Subscriber<? super ByteBuffer> actual, FileChannel channel, long size,
+                int chunkSize, long windowSize) {
+            this.actual = actual;
+            this.channel = channel;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            // windows hold whole chunks so only the very last chunk can be shorter
+            this.windowSize = Math.max(chunkSize, windowSize - windowSize % chunkSize);
+        }
+
+        @Override
+        public void request(long n) {
+            if (SubscriptionHelper.validate(n)) {
+                if (BackpressureHelper.add(this, n) == 0L) {
+                    if (n == Long.MAX_VALUE) {
+                        fastPath();
+                    } else {
+                        slowPath(n);
+                    }
+                }
+            }
+        }
+
+        void fastPath() {
+            Subscriber<? super ByteBuffer> a = actual;
+            for (;;) {
+                if (cancelled) {
+                    return;
+                }
+                if (position == size) {
+                    complete();
+                    return;
+                }
+                ByteBuffer b;
+                try {
+                    b = next();
+                } catch (Throwable ex) {
+                    fail(ex);
+                    return;
+                }
+                a.onNext(b);
+            }
+        }
+
+        void slowPath(long r) {
+            Subscriber<? super ByteBuffer> a = actual;
+            long e = 0L;
+            for (;;) {
+                while (e != r) {
+                    if (cancelled) {
+                        return;
+                    }
+                    if (position == size) {
+                        complete();
+                        return;
+                    }
+                    ByteBuffer b;
+                    try {
+                        b = next();
+                    } catch (Throwable ex) {
+                        fail(ex);
+                        return;
+                    }
+                    a.onNext(b);
+                    e++;
+                }
+
+                if (cancelled) {
+                    return;
+                }
+                if (position == size) {
+                    complete();
+                    return;
+                }
+
+                r = get();
+                if (e == r) {
+                    r = addAndGet(-e);
+                    if (r == 0L) {
+                        return;
+                    }
+                    e = 0L;
+                }
+            }
+        }
+
+        void complete() {
+            // an empty file never reaches next() which closes the channel after the last mapping
+            close(channel);
+            actual.onComplete();
+        }
+
+        void fail(Throwable ex) {
+            Exceptions.throwIfFatal(ex);
+            if (!cancelled) {
+                cancelled = true;
+                close(channel);
+                actual.onError(ex);
+            }
+        }
+
+        ByteBuffer next() throws IOException {
+            long p = position;
+            ByteBuffer w = window;
+            if (w == null || p == windowStart + w.capacity()) {
+                long n = Math.min(windowSize, size - p);
+                w = channel.map(FileChannel.MapMode.READ_ONLY, p, n);
+                window = w;
+                windowStart = p;
+                if (p + n == size) {
+                    // the mapping stays valid after the channel is closed
+                    close(channel);
+                }
+            }
+            int offset = (int)(p - windowStart);
+            int len = Math.min(chunkSize, w.capacity() - offset);
+
+            ByteBuffer b = w.duplicate();
+            b.position(offset);
+            b.limit(offset + len);
+            position = p + len;
+            if (position == size) {
+                window = null;
+            }
+            return b.slice();
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                close(channel);
+            }
+        }
+
+        @Override
+        public int requestFusion(int mode) {
+            return mode & SYNC;
+        }
+
+        @Override
+        public ByteBuffer poll() throws Exception {
+            if (cleared) {
+                return null;
+            }
+            if (position == size) {
+                close(channel);
+                return null;
+            }
+            return next();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return cleared || position == size;
+        }
+
+        @Override
+        public void clear() {
+            if (!cleared) {
+                cleared = true;
+                window = null;
+                close(channel);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.math;
+
+import org.reactivestreams.Subscriber;
+
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.internal.subscriptions.*;
+import io.reactivex.internal.util.BackpressureHelper;
+
+/**
+ * Emits the boxed values of a primitive cursor with backpressure and
+ * synchronous fusion support.
+ *
+ * @param <T> the boxed value type
+ */
+abstract class CursorSubscription<T> extends BasicQueueSubscription<T> {
+
+    private static final long serialVersionUID = -2252972430506210021L;
+
+    final Subscriber<? super T> actual;
+
+    volatile boolean cancelled;
+
+    boolean cleared;
+
+    CursorSubscription(Subscriber<? super T> actual) {
+        this.actual = actual;
+    }
+
+    abstract boolean hasNextValue();
+
+    abstract T nextValue();
+
+    @Override
+    public final void request(long n) {
+        if (SubscriptionHelper.validate(n)) {
+            if (BackpressureHelper.add(this, n) == 0L) {
+                if (n == Long.MAX_VALUE) {
+                    fastPath();
+                } else {
+                    slowPath(n);
+                }
+            }
+        }
+    }
+
+    void fastPath() {
+        Subscriber<? super T> a = actual;
+        for (;;) {
+            if (cancelled) {
+                return;
+            }
+
+            boolean b;
+            T v;
+            try {
+                b = hasNextValue();
+                v = b ? nextValue() : null;
+            } catch (Throwable ex) {
+                fail(ex);
+                return;
+            }
+
+            if (!b) {
+                a.onComplete();
+                return;
+            }
+            a.onNext(v);
+        }
+    }
+
+    void slowPath(long r) {
+        Subscriber<? super T> a = actual;
+        long e = 0L;
+        for (;;) {
+            while (e != r) {
+                if (cancelled) {
+                    return;
+                }
+
+                boolean b;
+                T v;
+                try {
+                    b = hasNextValue();
+                    v = b ? nextValue() : null;
+                } catch (Throwable ex) {
+                    fail(ex);
+                    return;
+                }
+
+                if (!b) {
+                    a.onComplete();
+                    return;
+                }
+                a.onNext(v);
+                e++;
+            }
+
+            if (cancelled) {
+                return;
+            }
+
+            boolean b;
+            try {
+                b = hasNextValue();
+            } catch (Throwable ex) {
+                fail(ex);
+                return;
+            }
+
+            if (!b) {
+                a.onComplete();
+                return;
+            }
+
+            r = get();
+            if (e == r) {
+                r = addAndGet(-e);
+                if (r == 0L) {
+                    return;
+                }
+                e = 0L;
+            }
+        }
+    }
+
+    /**
+     * Stops the emission and signals the crash of the user-supplied cursor.
+     * @param ex the exception thrown by the cursor
+     */
+    void fail(Throwable ex) {
+        Exceptions.throwIfFatal(ex);
+        cancelled = true;
+        actual.onError(ex);
+    }
+
+    @Override
+    public final void cancel() {
+        cancelled = true;
+    }
+
+    @Override
+    public final int requestFusion(int mode) {
+        return mode & SYNC;
+    }
+
+    @Override
+    public final T poll() {
+        if (cleared || !hasNextValue()) {
+            return null;
+        }
+        return nextValue();
+    }
+
+    @Override
+    public final boolean isEmpty() {
+        return cleared || !hasNextValue();
+    }
+
+    @Override
+    public final void clear() {
+        cleared = true;
+    }
+}
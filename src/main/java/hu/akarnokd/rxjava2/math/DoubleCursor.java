@@ -0,0 +1,37 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.math;
+
+/**
+ * Pulls primitive double values one by one without boxing.
+ *
+ * @since 0.17.0
+ */
+public interface DoubleCursor {
+
+    /**
+     * Returns true if there is a next value available.
+     * @return true if there is a next value available
+     */
+    boolean hasNext();
+
+    /**
+     * Returns the next value; call only if {@link #hasNext()} returned true.
+     * @return the next value
+     */
+    double next();
+}
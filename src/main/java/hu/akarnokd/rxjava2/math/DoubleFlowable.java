@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.math;
+
+import org.reactivestreams.Subscriber;
+
+import io.reactivex.Flowable;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.internal.functions.ObjectHelper;
+import io.reactivex.internal.subscriptions.EmptySubscription;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * A Flowable of {@code Double}s which also exposes its values as primitive {@code double}s
+ * through a {@link DoubleCursor}.
+ * <p>
+ * The aggregating operators of this class (and the {@link MathFlowable} methods when given
+ * an instance of this class) pull the values through the cursor, thus the values don't get
+ * boxed at all; only the final result is.
+ * <p>
+ * When subscribed to as a regular Flowable, the values are emitted in their boxed form.
+ *
+ * @since 0.17.0
+ */
+public abstract class DoubleFlowable extends Flowable<Double> {
+
+    /**
+     * Returns a new, independent cursor over the values of this source.
+     * @return the new cursor
+     */
+    public abstract DoubleCursor cursor();
+
+    @Override
+    protected void subscribeActual(Subscriber<? super Double> s) {
+        DoubleCursor c;
+        try {
+            c = ObjectHelper.requireNonNull(cursor(), "The cursor() returned a null DoubleCursor");
+        } catch (Throwable ex) {
+            Exceptions.throwIfFatal(ex);
+            EmptySubscription.error(ex, s);
+            return;
+        }
+        s.onSubscribe(new DoubleCursorSubscription(s, c));
+    }
+
+    /**
+     * Creates a DoubleFlowable that emits the values of the given array.
+     * <p>
+     * Note that the array is not copied.
+     * @param values the values to emit
+     * @return the new DoubleFlowable instance
+     */
+    public static DoubleFlowable fromDoubleArray(double... values) {
+        ObjectHelper.requireNonNull(values, "values is null");
+        return new DoubleFlowableArray(values);
+    }
+
+    /**
+     * Sums up the values; an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<Double> sum() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<Double>(this, FlowablePrimitiveAggregate.SUM));
+    }
+
+    /**
+     * Emits the smallest value; an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<Double> min() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<Double>(this, FlowablePrimitiveAggregate.MIN));
+    }
+
+    /**
+     * Emits the largest value; an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<Double> max() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<Double>(this, FlowablePrimitiveAggregate.MAX));
+    }
+
+    /**
+     * Emits the arithmetic mean of the values; an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<Double> average() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<Double>(this, FlowablePrimitiveAggregate.AVERAGE));
+    }
+
+    /**
+     * Emits the population variance of the values, computed with Welford's method;
+     * an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<Double> variance() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<Double>(this, FlowablePrimitiveAggregate.VARIANCE));
+    }
+
+    /**
+     * Emits the count, sum, minimum, maximum, mean and variance of the values, computed in one pass;
+     * an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<SummaryStatistics> statistics() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<SummaryStatistics>(this, FlowablePrimitiveAggregate.STATISTICS));
+    }
+
+    static final class DoubleCursorSubscription extends CursorSubscription<Double> {
+
+        private static final long serialVersionUID = 8062745013402446375L;
+
+        final DoubleCursor cursor;
+
+        DoubleCursorSubscription(Subscriber<? super Double> actual, DoubleCursor cursor) {
+            super(actual);
+            this.cursor = cursor;
+        }
+
+        @Override
+        boolean hasNextValue() {
+            return cursor.hasNext();
+        }
+
+        @Override
+        Double nextValue() {
+            return cursor.next();
+        }
+    }
+
+    static final class DoubleFlowableArray extends DoubleFlowable {
+
+        final double[] array;
+
+        DoubleFlowableArray(double[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public DoubleCursor cursor() {
+            return new ArrayCursor(array);
+        }
+
+        static final class ArrayCursor implements DoubleCursor {
+
+            final double[] array;
+
+            int index;
+
+            ArrayCursor(double[] array) {
+                this.array = array;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index != array.length;
+            }
+
+            @Override
+            public double next() {
+                return array[index++];
+            }
+        }
+    }
+}
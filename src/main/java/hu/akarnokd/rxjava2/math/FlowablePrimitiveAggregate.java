@@ -0,0 +1,324 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.math;
+
+import org.reactivestreams.Subscriber;
+
+import io.reactivex.Flowable;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.internal.subscriptions.DeferredScalarSubscription;
+
+/**
+ * Aggregates the values of a primitive cursor without boxing them, in one synchronous
+ * pass upon subscription and emitting the single result.
+ * <p>
+ * The integral values are summed and compared as longs, the int sum wraps around
+ * just like an int accumulator would; the averages and statistics are computed on doubles.
+ *
+ * @param <R> the result type
+ */
+final class FlowablePrimitiveAggregate<R> extends Flowable<R> {
+
+    static final int SUM = 0;
+    static final int MIN = 1;
+    static final int MAX = 2;
+    static final int AVERAGE = 3;
+    static final int VARIANCE = 4;
+    static final int STATISTICS = 5;
+
+    static final int INT = 0;
+    static final int LONG = 1;
+    static final int DOUBLE = 2;
+
+    /** Check for cancellation after every this many values. */
+    static final int CANCEL_CHECK_MASK = 1023;
+
+    final Flowable<?> source;
+
+    final int kind;
+
+    final int mode;
+
+    FlowablePrimitiveAggregate(IntFlowable source, int mode) {
+        this(source, INT, mode);
+    }
+
+    FlowablePrimitiveAggregate(LongFlowable source, int mode) {
+        this(source, LONG, mode);
+    }
+
+    FlowablePrimitiveAggregate(DoubleFlowable source, int mode) {
+        this(source, DOUBLE, mode);
+    }
+
+    private FlowablePrimitiveAggregate(Flowable<?> source, int kind, int mode) {
+        this.source = source;
+        this.kind = kind;
+        this.mode = mode;
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super R> s) {
+        DeferredScalarSubscription<R> ds = new DeferredScalarSubscription<R>(s);
+        s.onSubscribe(ds);
+
+        if (ds.isCancelled()) {
+            return;
+        }
+
+        Object result;
+        try {
+            result = aggregate(ds);
+        } catch (Throwable ex) {
+            Exceptions.throwIfFatal(ex);
+            if (!ds.isCancelled()) {
+                s.onError(ex);
+            }
+            return;
+        }
+
+        if (ds.isCancelled()) {
+            return;
+        }
+
+        if (result == null) {
+            s.onComplete();
+        } else {
+            @SuppressWarnings("unchecked")
+            R r = (R)result;
+            ds.complete(r);
+        }
+    }
+
+    Values values() {
+        switch (kind) {
+        case INT:
+            return new IntValues(((IntFlowable)source).cursor());
+        case LONG:
+            return new LongValues(((LongFlowable)source).cursor());
+        default:
+            return new DoubleValues(((DoubleFlowable)source).cursor());
+        }
+    }
+
+    Object box(long v) {
+        if (kind == INT) {
+            return Integer.valueOf((int)v);
+        }
+        return Long.valueOf(v);
+    }
+
+    /**
+     * Aggregates the values according to the mode.
+     * @param ds the subscription to check for cancellation
+     * @return the result or null if there were no values or the sequence got cancelled
+     */
+    Object aggregate(DeferredScalarSubscription<R> ds) {
+        Values c = values();
+
+        if (!c.hasNext()) {
+            return null;
+        }
+
+        switch (mode) {
+        case SUM: {
+            long n = 1;
+            if (kind == DOUBLE) {
+                double sum = c.nextDouble();
+                while (c.hasNext()) {
+                    sum += c.nextDouble();
+                    if ((++n & CANCEL_CHECK_MASK) == 0 && ds.isCancelled()) {
+                        return null;
+                    }
+                }
+                return Double.valueOf(sum);
+            }
+            long sum = c.nextLong();
+            while (c.hasNext()) {
+                sum += c.nextLong();
+                if ((++n & CANCEL_CHECK_MASK) == 0 && ds.isCancelled()) {
+                    return null;
+                }
+            }
+            return box(sum);
+        }
+        case MIN:
+        case MAX: {
+            boolean max = mode == MAX;
+            long n = 1;
+            if (kind == DOUBLE) {
+                double m = c.nextDouble();
+                while (c.hasNext()) {
+                    double v = c.nextDouble();
+                    m = max ? Math.max(m, v) : Math.min(m, v);
+                    if ((++n & CANCEL_CHECK_MASK) == 0 && ds.isCancelled()) {
+                        return null;
+                    }
+                }
+                return Double.valueOf(m);
+            }
+            long m = c.nextLong();
+            while (c.hasNext()) {
+                long v = c.nextLong();
+                m = max ? Math.max(m, v) : Math.min(m, v);
+                if ((++n & CANCEL_CHECK_MASK) == 0 && ds.isCancelled()) {
+                    return null;
+                }
+            }
+            return box(m);
+        }
+        case AVERAGE: {
+            double sum = c.nextDouble();
+            long n = 1;
+            while (c.hasNext()) {
+                sum += c.nextDouble();
+                if ((++n & CANCEL_CHECK_MASK) == 0 && ds.isCancelled()) {
+                    return null;
+                }
+            }
+            return Double.valueOf(sum / n);
+        }
+        case VARIANCE: {
+            double mean = c.nextDouble();
+            double m2 = 0d;
+            long n = 1;
+            while (c.hasNext()) {
+                double v = c.nextDouble();
+                n++;
+                double delta = v - mean;
+                mean += delta / n;
+                m2 += delta * (v - mean);
+                if ((n & CANCEL_CHECK_MASK) == 0 && ds.isCancelled()) {
+                    return null;
+                }
+            }
+            return Double.valueOf(m2 / n);
+        }
+        default: {
+            double first = c.nextDouble();
+            double min = first;
+            double max = first;
+            double sum = first;
+            double mean = first;
+            double m2 = 0d;
+            long n = 1;
+            while (c.hasNext()) {
+                double v = c.nextDouble();
+                n++;
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+                sum += v;
+                double delta = v - mean;
+                mean += delta / n;
+                m2 += delta * (v - mean);
+                if ((n & CANCEL_CHECK_MASK) == 0 && ds.isCancelled()) {
+                    return null;
+                }
+            }
+            return new SummaryStatistics(n, sum, min, max, mean, m2);
+        }
+        }
+    }
+
+    /**
+     * Reads the values of any of the primitive cursors without boxing.
+     */
+    abstract static class Values {
+
+        abstract boolean hasNext();
+
+        /**
+         * Returns the next value of an integral cursor.
+         * @return the next value
+         */
+        abstract long nextLong();
+
+        abstract double nextDouble();
+    }
+
+    static final class IntValues extends Values {
+
+        final IntCursor cursor;
+
+        IntValues(IntCursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        boolean hasNext() {
+            return cursor.hasNext();
+        }
+
+        @Override
+        long nextLong() {
+            return cursor.next();
+        }
+
+        @Override
+        double nextDouble() {
+            return cursor.next();
+        }
+    }
+
+    static final class LongValues extends Values {
+
+        final LongCursor cursor;
+
+        LongValues(LongCursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        boolean hasNext() {
+            return cursor.hasNext();
+        }
+
+        @Override
+        long nextLong() {
+            return cursor.next();
+        }
+
+        @Override
+        double nextDouble() {
+            return cursor.next();
+        }
+    }
+
+    static final class DoubleValues extends Values {
+
+        final DoubleCursor cursor;
+
+        DoubleValues(DoubleCursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        boolean hasNext() {
+            return cursor.hasNext();
+        }
+
+        @Override
+        long nextLong() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        double nextDouble() {
+            return cursor.next();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.math;
+
+import org.reactivestreams.Subscriber;
+
+import hu.akarnokd.rxjava2.functions.IntConsumer;
+import io.reactivex.Flowable;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.internal.functions.ObjectHelper;
+import io.reactivex.internal.subscriptions.EmptySubscription;
+import io.reactivex.internal.util.ExceptionHelper;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * A Flowable of {@code Integer}s which also exposes its values as primitive {@code int}s
+ * through a {@link IntCursor}.
+ * <p>
+ * The aggregating operators of this class (and the {@link MathFlowable} methods when given
+ * an instance of this class) pull the values through the cursor, thus the values don't get
+ * boxed at all; only the final result is.
+ * <p>
+ * When subscribed to as a regular Flowable, the values are emitted in their boxed form.
+ *
+ * @since 0.17.0
+ */
+public abstract class IntFlowable extends Flowable<Integer> {
+
+    /**
+     * Returns a new, independent cursor over the values of this source.
+     * @return the new cursor
+     */
+    public abstract IntCursor cursor();
+
+    @Override
+    protected void subscribeActual(Subscriber<? super Integer> s) {
+        IntCursor c;
+        try {
+            c = ObjectHelper.requireNonNull(cursor(), "The cursor() returned a null IntCursor");
+        } catch (Throwable ex) {
+            Exceptions.throwIfFatal(ex);
+            EmptySubscription.error(ex, s);
+            return;
+        }
+        s.onSubscribe(new IntCursorSubscription(s, c));
+    }
+
+    /**
+     * Creates a IntFlowable that emits the values of the given array.
+     * <p>
+     * Note that the array is not copied.
+     * @param values the values to emit
+     * @return the new IntFlowable instance
+     */
+    public static IntFlowable fromIntArray(int... values) {
+        ObjectHelper.requireNonNull(values, "values is null");
+        return new IntFlowableArray(values);
+    }
+
+    /**
+     * Creates an IntFlowable that emits a range of int values.
+     * @param start the first value
+     * @param count the number of values, non-negative
+     * @return the new IntFlowable instance
+     */
+    public static IntFlowable range(int start, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count >= 0 required but it was " + count);
+        }
+        if ((long)start + (count - 1) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Integer overflow");
+        }
+        return new IntFlowableRange(start, count);
+    }
+
+    /**
+     * Sums up the values; an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<Integer> sum() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<Integer>(this, FlowablePrimitiveAggregate.SUM));
+    }
+
+    /**
+     * Emits the smallest value; an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<Integer> min() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<Integer>(this, FlowablePrimitiveAggregate.MIN));
+    }
+
+    /**
+     * Emits the largest value; an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<Integer> max() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<Integer>(this, FlowablePrimitiveAggregate.MAX));
+    }
+
+    /**
+     * Emits the arithmetic mean of the values; an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<Double> average() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<Double>(this, FlowablePrimitiveAggregate.AVERAGE));
+    }
+
+    /**
+     * Emits the population variance of the values, computed with Welford's method;
+     * an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<Double> variance() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<Double>(this, FlowablePrimitiveAggregate.VARIANCE));
+    }
+
+    /**
+     * Emits the count, sum, minimum, maximum, mean and variance of the values, computed in one pass;
+     * an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<SummaryStatistics> statistics() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<SummaryStatistics>(this, FlowablePrimitiveAggregate.STATISTICS));
+    }
+
+    /**
+     * Feeds the values to the given consumer on the current thread without boxing them.
+     * <p>
+     * Exceptions thrown by the cursor or the consumer are rethrown, checked exceptions
+     * wrapped into RuntimeExceptions.
+     * @param onNext the consumer of the values
+     */
+    public final void blockingForEachInt(IntConsumer onNext) {
+        ObjectHelper.requireNonNull(onNext, "onNext is null");
+        try {
+            IntCursor c = cursor();
+            while (c.hasNext()) {
+                onNext.accept(c.next());
+            }
+        } catch (Throwable ex) {
+            Exceptions.throwIfFatal(ex);
+            throw ExceptionHelper.wrapOrThrow(ex);
+        }
+    }
+
+    static final class IntCursorSubscription extends CursorSubscription<Integer> {
+
+        private static final long serialVersionUID = -4209262498425437428L;
+
+        final IntCursor cursor;
+
+        IntCursorSubscription(Subscriber<? super Integer> actual, IntCursor cursor) {
+            super(actual);
+            this.cursor = cursor;
+        }
+
+        @Override
+        boolean hasNextValue() {
+            return cursor.hasNext();
+        }
+
+        @Override
+        Integer nextValue() {
+            return cursor.next();
+        }
+    }
+
+    static final class IntFlowableArray extends IntFlowable {
+
+        final int[] array;
+
+        IntFlowableArray(int[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public IntCursor cursor() {
+            return new ArrayCursor(array);
+        }
+
+        static final class ArrayCursor implements IntCursor {
+
+            final int[] array;
+
+            int index;
+
+            ArrayCursor(int[] array) {
+                this.array = array;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index != array.length;
+            }
+
+            @Override
+            public int next() {
+                return array[index++];
+            }
+        }
+    }
+
+    static final class IntFlowableRange extends IntFlowable {
+
+        final int start;
+
+        final int end;
+
+        IntFlowableRange(int start, int count) {
+            this.start = start;
+            this.end = start + count;
+        }
+
+        @Override
+        public IntCursor cursor() {
+            return new RangeCursor(start, end);
+        }
+
+        static final class RangeCursor implements IntCursor {
+
+            final int end;
+
+            int index;
+
+            RangeCursor(int start, int end) {
+                this.index = start;
+                this.end = end;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index != end;
+            }
+
+            @Override
+            public int next() {
+                return index++;
+            }
+        }
+    }
+}
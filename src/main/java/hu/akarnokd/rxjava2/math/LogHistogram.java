@@ -0,0 +1,267 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.math;
+
+import java.util.Arrays;
+
+/**
+ * Records non-negative long values into logarithmic buckets with a bounded
+ * relative error (similar to HdrHistogram), using memory proportional to the
+ * logarithm of the largest recorded value only.
+ * <p>
+ * Each power-of-two range is split into {@code 2^precisionBits} equal sub-buckets,
+ * thus a value reported by {@link #valueAtQuantile(double)} is within a relative error
+ * of {@code 2^-precisionBits} of the actual recorded value. Values below
+ * {@code 2^(precisionBits + 1)} are recorded exactly.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @since 0.17.0
+ */
+public final class LogHistogram {
+
+    /** The default precision, about 1.6% relative error. */
+    public static final int DEFAULT_PRECISION_BITS = 6;
+
+    final int precisionBits;
+
+    final int subBuckets;
+
+    long[] counts;
+
+    long count;
+
+    long min;
+
+    long max;
+
+    double sum;
+
+    /**
+     * Constructs an empty histogram with the default precision.
+     */
+    public LogHistogram() {
+        this(DEFAULT_PRECISION_BITS);
+    }
+
+    /**
+     * Constructs an empty histogram with the given precision.
+     * @param precisionBits the number of bits for the sub-buckets, 1 to 16
+     */
+    public LogHistogram(int precisionBits) {
+        if (precisionBits < 1 || precisionBits > 16) {
+            throw new IllegalArgumentException("precisionBits in [1, 16] required but it was " + precisionBits);
+        }
+        this.precisionBits = precisionBits;
+        this.subBuckets = 1 << precisionBits;
+        this.counts = new long[subBuckets << 1];
+        this.min = Long.MAX_VALUE;
+        this.max = Long.MIN_VALUE;
+    }
+
+    /**
+     * Records a value.
+     * @param value the value to record, non-negative
+     */
+    public void record(long value) {
+        record(value, 1L);
+    }
+
+    /**
+     * Records a value multiple times.
+     * @param value the value to record, non-negative
+     * @param times the number of times to record the value, non-negative
+     */
+    public void record(long value, long times) {
+        if (value < 0L) {
+            throw new IllegalArgumentException("value >= 0 required but it was " + value);
+        }
+        if (times < 0L) {
+            throw new IllegalArgumentException("times >= 0 required but it was " + times);
+        }
+        if (times == 0L) {
+            return;
+        }
+        int index = indexOf(value);
+        long[] a = counts;
+        if (index >= a.length) {
+            a = Arrays.copyOf(a, Math.max(a.length << 1, index + 1));
+            counts = a;
+        }
+        a[index] += times;
+        count += times;
+        sum += (double)value * times;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Adds the counts of the other histogram, which must have the same precision.
+     * @param other the other histogram
+     */
+    public void add(LogHistogram other) {
+        if (other.precisionBits != precisionBits) {
+            throw new IllegalArgumentException("Different precision: " + other.precisionBits + " vs. " + precisionBits);
+        }
+        long[] b = other.counts;
+        long[] a = counts;
+        if (a.length < b.length) {
+            a = Arrays.copyOf(a, b.length);
+            counts = a;
+        }
+        for (int i = 0; i < b.length; i++) {
+            a[i] += b[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    int indexOf(long value) {
+        if (value < subBuckets) {
+            return (int)value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - precisionBits;
+        return ((shift + 1) << precisionBits) + (int)((value >>> shift) - subBuckets);
+    }
+
+    /**
+     * Returns the lowest value that is recorded into the bucket of the given index.
+     * @param index the bucket index
+     * @return the lowest value of the bucket
+     */
+    long lowestValueAt(int index) {
+        if (index < subBuckets) {
+            return index;
+        }
+        int shift = (index >> precisionBits) - 1;
+        long sub = (index & (subBuckets - 1)) + (long)subBuckets;
+        return sub << shift;
+    }
+
+    /**
+     * Returns the highest value that is recorded into the bucket of the given index.
+     * @param index the bucket index
+     * @return the highest value of the bucket
+     */
+    long highestValueAt(int index) {
+        if (index < subBuckets) {
+            return index;
+        }
+        int shift = (index >> precisionBits) - 1;
+        return lowestValueAt(index) + ((1L << shift) - 1);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * @return the number of recorded values
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns the smallest recorded value or 0 if the histogram is empty.
+     * @return the smallest recorded value
+     */
+    public long min() {
+        return count != 0L ? min : 0L;
+    }
+
+    /**
+     * Returns the largest recorded value or 0 if the histogram is empty.
+     * @return the largest recorded value
+     */
+    public long max() {
+        return count != 0L ? max : 0L;
+    }
+
+    /**
+     * Returns the exact arithmetic mean of the recorded values or NaN if the histogram is empty.
+     * @return the arithmetic mean
+     */
+    public double mean() {
+        return count != 0L ? sum / count : Double.NaN;
+    }
+
+    /**
+     * Returns the number of sub-bucket bits.
+     * @return the number of sub-bucket bits
+     */
+    public int precisionBits() {
+        return precisionBits;
+    }
+
+    /**
+     * Returns the value at the given quantile, i.e., the highest value of the bucket
+     * where the cumulative count reaches {@code q * count()}, capped by the recorded
+     * minimum and maximum; returns 0 if the histogram is empty.
+     * @param q the quantile in [0, 1], for example, 0.99 for the 99th percentile
+     * @return the value at the quantile
+     */
+    public long valueAtQuantile(double q) {
+        if (q < 0d || q > 1d || Double.isNaN(q)) {
+            throw new IllegalArgumentException("q in [0, 1] required but it was " + q);
+        }
+        long c = count;
+        if (c == 0L) {
+            return 0L;
+        }
+        long target = Math.max(1L, (long)Math.ceil(q * c));
+        long[] a = counts;
+        long cumulative = 0L;
+        for (int i = 0; i < a.length; i++) {
+            cumulative += a[i];
+            if (cumulative >= target) {
+                return Math.max(min, Math.min(max, highestValueAt(i)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the number of recorded values less than or equal to the given value,
+     * counting whole buckets.
+     * @param value the value
+     * @return the number of values at or below the value
+     */
+    public long countAtOrBelow(long value) {
+        if (value < 0L) {
+            return 0L;
+        }
+        int index = indexOf(value);
+        long[] a = counts;
+        int n = Math.min(index + 1, a.length);
+        long cumulative = 0L;
+        for (int i = 0; i < n; i++) {
+            cumulative += a[i];
+        }
+        return cumulative;
+    }
+
+    @Override
+    public String toString() {
+        return "LogHistogram[count=" + count + ", min=" + min() + ", max=" + max()
+                + ", p50=" + valueAtQuantile(0.5) + ", p99=" + valueAtQuantile(0.99) + "]";
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.math;
+
+import org.reactivestreams.Subscriber;
+
+import io.reactivex.Flowable;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.internal.functions.ObjectHelper;
+import io.reactivex.internal.subscriptions.EmptySubscription;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * A Flowable of {@code Long}s which also exposes its values as primitive {@code long}s
+ * through a {@link LongCursor}.
+ * <p>
+ * The aggregating operators of this class (and the {@link MathFlowable} methods when given
+ * an instance of this class) pull the values through the cursor, thus the values don't get
+ * boxed at all; only the final result is.
+ * <p>
+ * When subscribed to as a regular Flowable, the values are emitted in their boxed form.
+ *
+ * @since 0.17.0
+ */
+public abstract class LongFlowable extends Flowable<Long> {
+
+    /**
+     * Returns a new, independent cursor over the values of this source.
+     * @return the new cursor
+     */
+    public abstract LongCursor cursor();
+
+    @Override
+    protected void subscribeActual(Subscriber<? super Long> s) {
+        LongCursor c;
+        try {
+            c = ObjectHelper.requireNonNull(cursor(), "The cursor() returned a null LongCursor");
+        } catch (Throwable ex) {
+            Exceptions.throwIfFatal(ex);
+            EmptySubscription.error(ex, s);
+            return;
+        }
+        s.onSubscribe(new LongCursorSubscription(s, c));
+    }
+
+    /**
+     * Creates a LongFlowable that emits the values of the given array.
+     * <p>
+     * Note that the array is not copied.
+     * @param values the values to emit
+     * @return the new LongFlowable instance
+     */
+    public static LongFlowable fromLongArray(long... values) {
+        ObjectHelper.requireNonNull(values, "values is null");
+        return new LongFlowableArray(values);
+    }
+
+    /**
+     * Creates a LongFlowable that emits a range of long values.
+     * @param start the first value
+     * @param count the number of values, non-negative
+     * @return the new LongFlowable instance
+     */
+    public static LongFlowable rangeLong(long start, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count >= 0 required but it was " + count);
+        }
+        if (start > 0L && start + (count - 1) < 0L) {
+            throw new IllegalArgumentException("Long overflow");
+        }
+        return new LongFlowableRange(start, count);
+    }
+
+    /**
+     * Sums up the values; an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<Long> sum() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<Long>(this, FlowablePrimitiveAggregate.SUM));
+    }
+
+    /**
+     * Emits the smallest value; an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<Long> min() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<Long>(this, FlowablePrimitiveAggregate.MIN));
+    }
+
+    /**
+     * Emits the largest value; an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<Long> max() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<Long>(this, FlowablePrimitiveAggregate.MAX));
+    }
+
+    /**
+     * Emits the arithmetic mean of the values; an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<Double> average() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<Double>(this, FlowablePrimitiveAggregate.AVERAGE));
+    }
+
+    /**
+     * Emits the population variance of the values, computed with Welford's method;
+     * an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<Double> variance() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<Double>(this, FlowablePrimitiveAggregate.VARIANCE));
+    }
+
+    /**
+     * Emits the count, sum, minimum, maximum, mean and variance of the values, computed in one pass;
+     * an empty source results in an empty Flowable.
+     * @return the new Flowable instance
+     */
+    public final Flowable<SummaryStatistics> statistics() {
+        return RxJavaPlugins.onAssembly(new FlowablePrimitiveAggregate<SummaryStatistics>(this, FlowablePrimitiveAggregate.STATISTICS));
+    }
+
+    static final class LongCursorSubscription extends CursorSubscription<Long> {
+
+        private static final long serialVersionUID = 3035474946453125546L;
+
+        final LongCursor cursor;
+
+        LongCursorSubscription(Subscriber<? super Long> actual, LongCursor cursor) {
+            super(actual);
+            this.cursor = cursor;
+        }
+
+        @Override
+        boolean hasNextValue() {
+            return cursor.hasNext();
+        }
+
+        @Override
+        Long nextValue() {
+            return cursor.next();
+        }
+    }
+
+    static final class LongFlowableArray extends LongFlowable {
+
+        final long[] array;
+
+        LongFlowableArray(long[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public LongCursor cursor() {
+            return new ArrayCursor(array);
+        }
+
+        static final class ArrayCursor implements LongCursor {
+
+            final long[] array;
+
+            int index;
+
+            ArrayCursor(long[] array) {
+                this.array = array;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index != array.length;
+            }
+
+            @Override
+            public long next() {
+                return array[index++];
+            }
+        }
+    }
+
+    static final class LongFlowableRange extends LongFlowable {
+
+        final long start;
+
+        final long end;
+
+        LongFlowableRange(long start, long count) {
+            this.start = start;
+            this.end = start + count;
+        }
+
+        @Override
+        public LongCursor cursor() {
+            return new RangeCursor(start, end);
+        }
+
+        static final class RangeCursor implements LongCursor {
+
+            final long end;
+
+            long index;
+
+            RangeCursor(long start, long end) {
+                this.index = start;
+                this.end = end;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index != end;
+            }
+
+            @Override
+            public long next() {
+                return index++;
+            }
+        }
+    }
+}
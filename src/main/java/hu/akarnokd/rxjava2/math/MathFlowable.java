@@ -17,15 +17,23 @@
 package hu.akarnokd.rxjava2.math;
 
 import java.util.Comparator;
+import java.util.concurrent.*;
 
 import org.reactivestreams.Publisher;
 
 import hu.akarnokd.rxjava2.util.SelfComparator;
-import io.reactivex.Flowable;
+import io.reactivex.*;
+import io.reactivex.functions.Function;
+import io.reactivex.internal.functions.ObjectHelper;
 import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.Schedulers;
 
 /**
- * Utility methods to work with numerical Flowable sources: sum, min, max and average.
+ * Utility methods to work with numerical Flowable sources: sum, min, max, average
+ * and bounded-memory statistics (variance, histogram, quantiles).
+ * <p>
+ * The sum and average methods recognize the {@link IntFlowable}, {@link LongFlowable}
+ * and {@link DoubleFlowable} sources and aggregate their values without boxing.
  */
 public final class MathFlowable {
     /** Utility class. */
@@ -34,10 +42,16 @@ public final class MathFlowable {
     }
 
     public static Flowable<Integer> sumInt(Publisher<Integer> source) {
+        if (source instanceof IntFlowable) {
+            return ((IntFlowable)source).sum();
+        }
         return RxJavaPlugins.onAssembly(new FlowableSumInt(source));
     }
 
     public static Flowable<Long> sumLong(Publisher<Long> source) {
+        if (source instanceof LongFlowable) {
+            return ((LongFlowable)source).sum();
+        }
         return RxJavaPlugins.onAssembly(new FlowableSumLong(source));
     }
 
@@ -46,6 +60,9 @@ public final class MathFlowable {
     }
 
     public static Flowable<Double> sumDouble(Publisher<Double> source) {
+        if (source instanceof DoubleFlowable) {
+            return ((DoubleFlowable)source).sum();
+        }
         return RxJavaPlugins.onAssembly(new FlowableSumDouble(source));
     }
 
@@ -74,7 +91,205 @@ public final class MathFlowable {
 
     @SuppressWarnings("unchecked")
     public static Flowable<Double> averageDouble(Publisher<? extends Number> source) {
+        if (source instanceof IntFlowable) {
+            return ((IntFlowable)source).average();
+        }
+        if (source instanceof LongFlowable) {
+            return ((LongFlowable)source).average();
+        }
+        if (source instanceof DoubleFlowable) {
+            return ((DoubleFlowable)source).average();
+        }
         return RxJavaPlugins.onAssembly(new FlowableAverageDouble((Publisher<Number>)source));
     }
 
+    /**
+     * Computes the count, sum, minimum, maximum, mean and variance of the numbers
+     * in one pass (variance via Welford's method); an empty source results in an empty Flowable.
+     * @param source the source of numbers
+     * @return the new Flowable instance
+     * @since 0.17.0
+     */
+    @SuppressWarnings("unchecked")
+    public static Flowable<SummaryStatistics> statistics(Publisher<? extends Number> source) {
+        ObjectHelper.requireNonNull(source, "source is null");
+        return RxJavaPlugins.onAssembly(new FlowableAggregateNumbers<SummaryStatistics>((Publisher<Number>)source,
+                new NumberAggregator.StatisticsSupplier<SummaryStatistics>(NumberAggregator.STATISTICS)));
+    }
+
+    /**
+     * Computes the statistics of the numbers of each time window and emits them at the
+     * end of each window, running the windowing on the computation {@link Scheduler};
+     * empty windows are skipped.
+     * @param source the source of numbers
+     * @param timespan the length of the windows
+     * @param unit the time unit of the timespan
+     * @return the new Flowable instance
+     * @since 0.17.0
+     */
+    public static Flowable<SummaryStatistics> statistics(Publisher<? extends Number> source, long timespan, TimeUnit unit) {
+        return statistics(source, timespan, unit, Schedulers.computation());
+    }
+
+    /**
+     * Computes the statistics of the numbers of each time window and emits them at the
+     * end of each window; empty windows are skipped.
+     * <p>
+     * The raw values are not retained, each window only keeps its running statistics.
+     * @param source the source of numbers
+     * @param timespan the length of the windows
+     * @param unit the time unit of the timespan
+     * @param scheduler the scheduler where the windows are timed
+     * @return the new Flowable instance
+     * @since 0.17.0
+     */
+    public static Flowable<SummaryStatistics> statistics(Publisher<? extends Number> source, long timespan, TimeUnit unit, Scheduler scheduler) {
+        return windowed(source, timespan, unit, scheduler,
+                new NumberAggregator.StatisticsSupplier<SummaryStatistics>(NumberAggregator.STATISTICS));
+    }
+
+    /**
+     * Computes the population variance of the numbers in one pass via Welford's method;
+     * an empty source results in an empty Flowable.
+     * @param source the source of numbers
+     * @return the new Flowable instance
+     * @since 0.17.0
+     */
+    @SuppressWarnings("unchecked")
+    public static Flowable<Double> variance(Publisher<? extends Number> source) {
+        ObjectHelper.requireNonNull(source, "source is null");
+        return RxJavaPlugins.onAssembly(new FlowableAggregateNumbers<Double>((Publisher<Number>)source,
+                new NumberAggregator.StatisticsSupplier<Double>(NumberAggregator.VARIANCE)));
+    }
+
+    /**
+     * Computes the population standard deviation of the numbers in one pass via Welford's method;
+     * an empty source results in an empty Flowable.
+     * @param source the source of numbers
+     * @return the new Flowable instance
+     * @since 0.17.0
+     */
+    @SuppressWarnings("unchecked")
+    public static Flowable<Double> standardDeviation(Publisher<? extends Number> source) {
+        ObjectHelper.requireNonNull(source, "source is null");
+        return RxJavaPlugins.onAssembly(new FlowableAggregateNumbers<Double>((Publisher<Number>)source,
+                new NumberAggregator.StatisticsSupplier<Double>(NumberAggregator.STANDARD_DEVIATION)));
+    }
+
+    /**
+     * Records the long value of the non-negative numbers into a {@link LogHistogram}
+     * with the default precision and emits it when the source completes.
+     * @param source the source of non-negative numbers
+     * @return the new Flowable instance
+     * @since 0.17.0
+     */
+    public static Flowable<LogHistogram> histogram(Publisher<? extends Number> source) {
+        return histogram(source, LogHistogram.DEFAULT_PRECISION_BITS);
+    }
+
+    /**
+     * Records the long value of the non-negative numbers into a {@link LogHistogram}
+     * with the given precision and emits it when the source completes.
+     * @param source the source of non-negative numbers
+     * @param precisionBits the number of sub-bucket bits, 1 to 16
+     * @return the new Flowable instance
+     * @since 0.17.0
+     */
+    @SuppressWarnings("unchecked")
+    public static Flowable<LogHistogram> histogram(Publisher<? extends Number> source, int precisionBits) {
+        ObjectHelper.requireNonNull(source, "source is null");
+        validatePrecisionBits(precisionBits);
+        return RxJavaPlugins.onAssembly(new FlowableAggregateNumbers<LogHistogram>((Publisher<Number>)source,
+                new NumberAggregator.HistogramSupplier(precisionBits)));
+    }
+
+    /**
+     * Records the long value of the non-negative numbers of each time window into
+     * a new {@link LogHistogram} and emits it at the end of each window.
+     * @param source the source of non-negative numbers
+     * @param precisionBits the number of sub-bucket bits, 1 to 16
+     * @param timespan the length of the windows
+     * @param unit the time unit of the timespan
+     * @param scheduler the scheduler where the windows are timed
+     * @return the new Flowable instance
+     * @since 0.17.0
+     */
+    public static Flowable<LogHistogram> histogram(Publisher<? extends Number> source, int precisionBits,
+            long timespan, TimeUnit unit, Scheduler scheduler) {
+        validatePrecisionBits(precisionBits);
+        return windowed(source, timespan, unit, scheduler, new NumberAggregator.HistogramSupplier(precisionBits));
+    }
+
+    /**
+     * Adds the double value of the numbers to a {@link QuantileSketch} with the default
+     * compression and emits it when the source completes.
+     * @param source the source of numbers
+     * @return the new Flowable instance
+     * @since 0.17.0
+     */
+    public static Flowable<QuantileSketch> quantiles(Publisher<? extends Number> source) {
+        return quantiles(source, QuantileSketch.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Adds the double value of the numbers to a {@link QuantileSketch} with the given
+     * compression and emits it when the source completes.
+     * @param source the source of numbers
+     * @param compression the compression of the sketch, at least 10
+     * @return the new Flowable instance
+     * @since 0.17.0
+     */
+    @SuppressWarnings("unchecked")
+    public static Flowable<QuantileSketch> quantiles(Publisher<? extends Number> source, double compression) {
+        ObjectHelper.requireNonNull(source, "source is null");
+        validateCompression(compression);
+        return RxJavaPlugins.onAssembly(new FlowableAggregateNumbers<QuantileSketch>((Publisher<Number>)source,
+                new NumberAggregator.SketchSupplier(compression)));
+    }
+
+    /**
+     * Adds the double value of the numbers of each time window to a new
+     * {@link QuantileSketch} and emits it at the end of each window.
+     * @param source the source of numbers
+     * @param compression the compression of the sketch, at least 10
+     * @param timespan the length of the windows
+     * @param unit the time unit of the timespan
+     * @param scheduler the scheduler where the windows are timed
+     * @return the new Flowable instance
+     * @since 0.17.0
+     */
+    public static Flowable<QuantileSketch> quantiles(Publisher<? extends Number> source, double compression,
+            long timespan, TimeUnit unit, Scheduler scheduler) {
+        validateCompression(compression);
+        return windowed(source, timespan, unit, scheduler, new NumberAggregator.SketchSupplier(compression));
+    }
+
+    @SuppressWarnings("unchecked")
+    static <R> Flowable<R> windowed(Publisher<? extends Number> source, long timespan, TimeUnit unit, Scheduler scheduler,
+            final Callable<? extends NumberAggregator<R>> aggregatorSupplier) {
+        ObjectHelper.requireNonNull(source, "source is null");
+        ObjectHelper.requireNonNull(unit, "unit is null");
+        ObjectHelper.requireNonNull(scheduler, "scheduler is null");
+        // concatMapEager subscribes to each window right away so their items are not buffered
+        return Flowable.fromPublisher((Publisher<Number>)source)
+                .window(timespan, unit, scheduler)
+                .concatMapEager(new Function<Flowable<Number>, Publisher<R>>() {
+                    @Override
+                    public Publisher<R> apply(Flowable<Number> w) throws Exception {
+                        return RxJavaPlugins.onAssembly(new FlowableAggregateNumbers<R>(w, aggregatorSupplier));
+                    }
+                }, Integer.MAX_VALUE, 1);
+    }
+
+    static void validatePrecisionBits(int precisionBits) {
+        if (precisionBits < 1 || precisionBits > 16) {
+            throw new IllegalArgumentException("precisionBits in [1, 16] required but it was " + precisionBits);
+        }
+    }
+
+    static void validateCompression(double compression) {
+        if (!(compression >= 10d)) {
+            throw new IllegalArgumentException("compression >= 10 required but it was " + compression);
+        }
+    }
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.math;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Accumulates numbers in bounded memory and produces a result.
+ *
+ * @param <R> the result type
+ */
+abstract class NumberAggregator<R> {
+
+    /**
+     * Accumulates the next value.
+     * @param value the value, not null
+     */
+    abstract void accept(Number value);
+
+    /**
+     * Returns the result of the accumulation.
+     * @return the result or null to indicate an empty result
+     */
+    abstract R result();
+
+    static final int STATISTICS = 0;
+    static final int VARIANCE = 1;
+    static final int STANDARD_DEVIATION = 2;
+
+    /**
+     * Computes the count, sum, min, max, mean and variance via Welford's method.
+     *
+     * @param <R> the result type matching the mode: {@link SummaryStatistics} or {@link Double}
+     */
+    static final class StatisticsAggregator<R> extends NumberAggregator<R> {
+
+        final int mode;
+
+        long count;
+
+        double sum;
+
+        double min = Double.POSITIVE_INFINITY;
+
+        double max = Double.NEGATIVE_INFINITY;
+
+        double mean;
+
+        double m2;
+
+        StatisticsAggregator(int mode) {
+            this.mode = mode;
+        }
+
+        @Override
+        void accept(Number value) {
+            double v = value.doubleValue();
+            long n = ++count;
+            sum += v;
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+            double delta = v - mean;
+            mean += delta / n;
+            m2 += delta * (v - mean);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        R result() {
+            long n = count;
+            if (n == 0L) {
+                return null;
+            }
+            Object r;
+            if (mode == VARIANCE) {
+                r = m2 / n;
+            } else if (mode == STANDARD_DEVIATION) {
+                r = Math.sqrt(m2 / n);
+            } else {
+                r = new SummaryStatistics(n, sum, min, max, mean, m2);
+            }
+            return (R)r;
+        }
+    }
+
+    static final class StatisticsSupplier<R> implements Callable<NumberAggregator<R>> {
+
+        final int mode;
+
+        StatisticsSupplier(int mode) {
+            this.mode = mode;
+        }
+
+        @Override
+        public NumberAggregator<R> call() {
+            return new StatisticsAggregator<R>(mode);
+        }
+    }
+
+    /**
+     * Records the long value of the numbers into a LogHistogram.
+     */
+    static final class HistogramAggregator extends NumberAggregator<LogHistogram> {
+
+        final LogHistogram histogram;
+
+        HistogramAggregator(int precisionBits) {
+            this.histogram = new LogHistogram(precisionBits);
+        }
+
+        @Override
+        void accept(Number value) {
+            histogram.record(value.longValue());
+        }
+
+        @Override
+        LogHistogram result() {
+            return histogram;
+        }
+    }
+
+    static final class HistogramSupplier implements Callable<NumberAggregator<LogHistogram>> {
+
+        final int precisionBits;
+
+        HistogramSupplier(int precisionBits) {
+            this.precisionBits = precisionBits;
+        }
+
+        @Override
+        public NumberAggregator<LogHistogram> call() {
+            return new HistogramAggregator(precisionBits);
+        }
+    }
+
+    /**
+     * Adds the double value of the numbers to a QuantileSketch.
+     */
+    static final class SketchAggregator extends NumberAggregator<QuantileSketch> {
+
+        final QuantileSketch sketch;
+
+        SketchAggregator(double compression) {
+            this.sketch = new QuantileSketch(compression);
+        }
+
+        @Override
+        void accept(Number value) {
+            sketch.add(value.doubleValue());
+        }
+
+        @Override
+        QuantileSketch result() {
+            return sketch;
+        }
+    }
+
+    static final class SketchSupplier implements Callable<NumberAggregator<QuantileSketch>> {
+
+        final double compression;
+
+        SketchSupplier(double compression) {
+            this.compression = compression;
+        }
+
+        @Override
+        public NumberAggregator<QuantileSketch> call() {
+            return new SketchAggregator(compression);
+        }
+    }
+}
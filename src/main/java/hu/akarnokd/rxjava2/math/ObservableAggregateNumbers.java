@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.math;
+
+import java.util.concurrent.Callable;
+
+import io.reactivex.*;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.internal.disposables.EmptyDisposable;
+import io.reactivex.internal.functions.ObjectHelper;
+import io.reactivex.internal.observers.DeferredScalarObserver;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Accumulates the numbers of the source via a NumberAggregator and emits its result.
+ *
+ * @param <R> the result type
+ */
+final class ObservableAggregateNumbers<R> extends ObservableWithSource<Number, R> {
+
+    final Callable<? extends NumberAggregator<R>> aggregatorSupplier;
+
+    ObservableAggregateNumbers(ObservableSource<Number> source, Callable<? extends NumberAggregator<R>> aggregatorSupplier) {
+        super(source);
+        this.aggregatorSupplier = aggregatorSupplier;
+    }
+
+    @Override
+    protected void subscribeActual(Observer<? super R> observer) {
+        NumberAggregator<R> aggregator;
+        try {
+            aggregator = ObjectHelper.requireNonNull(aggregatorSupplier.call(), "The aggregatorSupplier returned a null NumberAggregator");
+        } catch (Throwable ex) {
+            Exceptions.throwIfFatal(ex);
+            EmptyDisposable.error(ex, observer);
+            return;
+        }
+        source.subscribe(new AggregateNumbersObserver<R>(observer, aggregator));
+    }
+
+    static final class AggregateNumbersObserver<R> extends DeferredScalarObserver<Number, R> {
+
+        private static final long serialVersionUID = 3460706300349316240L;
+
+        final NumberAggregator<R> aggregator;
+
+        boolean done;
+
+        AggregateNumbersObserver(Observer<? super R> actual, NumberAggregator<R> aggregator) {
+            super(actual);
+            this.aggregator = aggregator;
+        }
+
+        @Override
+        public void onNext(Number t) {
+            if (done) {
+                return;
+            }
+            try {
+                aggregator.accept(t);
+            } catch (Throwable ex) {
+                Exceptions.throwIfFatal(ex);
+                s.dispose();
+                onError(ex);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (done) {
+                RxJavaPlugins.onError(t);
+                return;
+            }
+            done = true;
+            super.onError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            if (done) {
+                return;
+            }
+            done = true;
+            R r = aggregator.result();
+            if (r != null) {
+                complete(r);
+            } else {
+                actual.onComplete();
+            }
+        }
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.math;
+
+import java.util.*;
+
+/**
+ * Estimates quantiles of a stream of double values in bounded memory, based on
+ * the merging t-digest of Ted Dunning.
+ * <p>
+ * The values are buffered and periodically merged into a sorted list of weighted
+ * centroids whose size is kept small near the tails (q close to 0 or 1) and larger
+ * in the middle, thus extreme quantiles (such as p99.9) are estimated more accurately
+ * than the median. The number of centroids is proportional to the compression parameter.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @since 0.17.0
+ */
+public final class QuantileSketch {
+
+    /** The default compression. */
+    public static final double DEFAULT_COMPRESSION = 100d;
+
+    final double compression;
+
+    /** The centroid means in ascending order. */
+    double[] means;
+
+    /** The centroid weights. */
+    double[] weights;
+
+    int centroids;
+
+    /** The weight of the centroids. */
+    double centroidWeight;
+
+    /** The values (and weights) not yet merged into the centroids. */
+    final double[] bufferValues;
+
+    final double[] bufferWeights;
+
+    int buffered;
+
+    double bufferedWeight;
+
+    double min;
+
+    double max;
+
+    /** True if the buffer contains values with weights other than 1. */
+    boolean weighted;
+
+    /**
+     * Constructs an empty sketch with the default compression.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Constructs an empty sketch with the given compression; larger values
+     * yield more accurate estimates at the cost of more memory.
+     * @param compression the compression, at least 10
+     */
+    public QuantileSketch(double compression) {
+        if (!(compression >= 10d)) {
+            throw new IllegalArgumentException("compression >= 10 required but it was " + compression);
+        }
+        this.compression = compression;
+        int b = (int)Math.ceil(compression * 5);
+        this.bufferValues = new double[b];
+        this.bufferWeights = new double[b];
+        int c = (int)Math.ceil(compression * 2) + 8;
+        this.means = new double[c];
+        this.weights = new double[c];
+        this.min = Double.POSITIVE_INFINITY;
+        this.max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Adds a value.
+     * @param value the value, not NaN
+     */
+    public void add(double value) {
+        add(value, 1d);
+    }
+
+    void add(double value, double weight) {
+        if (Double.isNaN(value)) {
+            throw new IllegalArgumentException("NaN values are not supported");
+        }
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+        int n = buffered;
+        bufferValues[n] = value;
+        bufferWeights[n] = weight;
+        bufferedWeight += weight;
+        if (weight != 1d) {
+            weighted = true;
+        }
+        buffered = ++n;
+        if (n == bufferValues.length) {
+            merge();
+        }
+    }
+
+    /**
+     * Adds the contents of another sketch to this sketch.
+     * @param other the other sketch
+     */
+    public void add(QuantileSketch other) {
+        other.merge();
+        double[] m = other.means;
+        double[] w = other.weights;
+        int n = other.centroids;
+        for (int i = 0; i < n; i++) {
+            add(m[i], w[i]);
+        }
+        if (other.min < min) {
+            min = other.min;
+        }
+        if (other.max > max) {
+            max = other.max;
+        }
+    }
+
+    /**
+     * Merges the buffered values into the centroids.
+     */
+    void merge() {
+        final int n = buffered;
+        if (n == 0) {
+            return;
+        }
+        final double[] bv = bufferValues;
+        final double[] bw = bufferWeights;
+
+        if (weighted) {
+            sortWeighted(bv, bw, n);
+            weighted = false;
+        } else {
+            Arrays.sort(bv, 0, n);
+        }
+
+        double[] oldMeans = means;
+        double[] oldWeights = weights;
+        int oldCount = centroids;
+
+        double total = centroidWeight + bufferedWeight;
+
+        double[] newMeans = new double[Math.max(oldMeans.length, 16)];
+        double[] newWeights = new double[newMeans.length];
+        int newCount = 0;
+
+        int i = 0;
+        int j = 0;
+
+        double curMean = 0d;
+        double curWeight = 0d;
+        double weightSoFar = 0d;
+
+        while (i < oldCount || j < n) {
+            double m;
+            double w;
+            if (j == n || (i < oldCount && oldMeans[i] <= bv[j])) {
+                m = oldMeans[i];
+                w = oldWeights[i];
+                i++;
+            } else {
+                m = bv[j];
+                w = bw[j];
+                j++;
+            }
+
+            if (curWeight == 0d) {
+                curMean = m;
+                curWeight = w;
+                continue;
+            }
+
+            double proposed = curWeight + w;
+            double q = (weightSoFar + proposed / 2) / total;
+            double limit = Math.max(1d, 4 * total * q * (1 - q) / compression);
+
+            if (proposed <= limit) {
+                curMean += (m - curMean) * w / proposed;
+                curWeight = proposed;
+            } else {
+                if (newCount == newMeans.length) {
+                    newMeans = Arrays.copyOf(newMeans, newCount << 1);
+                    newWeights = Arrays.copyOf(newWeights, newCount << 1);
+                }
+                newMeans[newCount] = curMean;
+                newWeights[newCount] = curWeight;
+                newCount++;
+                weightSoFar += curWeight;
+                curMean = m;
+                curWeight = w;
+            }
+        }
+
+        if (curWeight != 0d) {
+            if (newCount == newMeans.length) {
+                newMeans = Arrays.copyOf(newMeans, newCount + 1);
+                newWeights = Arrays.copyOf(newWeights, newCount + 1);
+            }
+            newMeans[newCount] = curMean;
+            newWeights[newCount] = curWeight;
+            newCount++;
+        }
+
+        means = newMeans;
+        weights = newWeights;
+        centroids = newCount;
+        centroidWeight = total;
+        buffered = 0;
+        bufferedWeight = 0d;
+    }
+
+    /**
+     * Sorts the values and keeps the weights aligned with them.
+     */
+    static void sortWeighted(final double[] values, double[] weights, int n) {
+        Integer[] idx = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            idx[i] = i;
+        }
+        Arrays.sort(idx, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(values[a], values[b]);
+            }
+        });
+        double[] v = Arrays.copyOf(values, n);
+        double[] w = Arrays.copyOf(weights, n);
+        for (int i = 0; i < n; i++) {
+            int k = idx[i];
+            values[i] = v[k];
+            weights[i] = w[k];
+        }
+    }
+
+    /**
+     * Returns the number of values added.
+     * @return the number of values added
+     */
+    public long count() {
+        return (long)(centroidWeight + bufferedWeight);
+    }
+
+    /**
+     * Returns the smallest value added or NaN if the sketch is empty.
+     * @return the smallest value added
+     */
+    public double min() {
+        return count() != 0L ? min : Double.NaN;
+    }
+
+    /**
+     * Returns the largest value added or NaN if the sketch is empty.
+     * @return the largest value added
+     */
+    public double max() {
+        return count() != 0L ? max : Double.NaN;
+    }
+
+    /**
+     * Returns the compression parameter.
+     * @return the compression parameter
+     */
+    public double compression() {
+        return compression;
+    }
+
+    /**
+     * Returns the number of centroids after merging the buffered values.
+     * @return the number of centroids
+     */
+    public int centroidCount() {
+        merge();
+        return centroids;
+    }
+
+    /**
+     * Estimates the value at the given quantile by interpolating between
+     * the centroids; returns NaN if the sketch is empty.
+     * @param q the quantile in [0, 1], for example, 0.99 for the 99th percentile
+     * @return the estimated value
+     */
+    public double quantile(double q) {
+        if (q < 0d || q > 1d || Double.isNaN(q)) {
+            throw new IllegalArgumentException("q in [0, 1] required but it was " + q);
+        }
+        merge();
+        int n = centroids;
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double[] m = means;
+        double[] w = weights;
+        if (n == 1) {
+            return m[0];
+        }
+        double total = centroidWeight;
+        double index = q * total;
+
+        // before the center of the first centroid
+        if (index < w[0] / 2) {
+            return min + (m[0] - min) * index / (w[0] / 2);
+        }
+
+        double weightSoFar = 0d;
+        for (int i = 0; i < n - 1; i++) {
+            double left = weightSoFar + w[i] / 2;
+            double right = weightSoFar + w[i] + w[i + 1] / 2;
+            if (index <= right) {
+                double span = right - left;
+                return m[i] + (m[i + 1] - m[i]) * (index - left) / span;
+            }
+            weightSoFar += w[i];
+        }
+
+        // after the center of the last centroid
+        double left = total - w[n - 1] / 2;
+        double span = w[n - 1] / 2;
+        return m[n - 1] + (max - m[n - 1]) * Math.min(1d, (index - left) / span);
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch[count=" + count() + ", min=" + min() + ", max=" + max()
+                + ", p50=" + quantile(0.5) + ", p99=" + quantile(0.99) + "]";
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.math;
+
+/**
+ * Holds the count, sum, minimum, maximum, mean and variance of a sequence
+ * of numbers, computed in one pass.
+ * <p>
+ * The variance is computed with Welford's method which is numerically
+ * more stable than the sum of squares approach.
+ *
+ * @since 0.17.0
+ */
+public final class SummaryStatistics {
+
+    final long count;
+
+    final double sum;
+
+    final double min;
+
+    final double max;
+
+    final double mean;
+
+    final double m2;
+
+    SummaryStatistics(long count, double sum, double min, double max, double mean, double m2) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.m2 = m2;
+    }
+
+    /**
+     * Returns the number of values.
+     * @return the number of values
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns the sum of the values.
+     * @return the sum of the values
+     */
+    public double sum() {
+        return sum;
+    }
+
+    /**
+     * Returns the smallest value.
+     * @return the smallest value
+     */
+    public double min() {
+        return min;
+    }
+
+    /**
+     * Returns the largest value.
+     * @return the largest value
+     */
+    public double max() {
+        return max;
+    }
+
+    /**
+     * Returns the arithmetic mean of the values.
+     * @return the arithmetic mean of the values
+     */
+    public double average() {
+        return mean;
+    }
+
+    /**
+     * Returns the population variance of the values.
+     * @return the population variance of the values
+     */
+    public double variance() {
+        return m2 / count;
+    }
+
+    /**
+     * Returns the sample variance (with Bessel's correction) of the values,
+     * or 0 if there is only one value.
+     * @return the sample variance
+     */
+    public double sampleVariance() {
+        return count > 1 ? m2 / (count - 1) : 0d;
+    }
+
+    /**
+     * Returns the population standard deviation of the values.
+     * @return the population standard deviation of the values
+     */
+    public double standardDeviation() {
+        return Math.sqrt(variance());
+    }
+
+    @Override
+    public String toString() {
+        return "SummaryStatistics[count=" + count + ", sum=" + sum + ", min=" + min
+                + ", max=" + max + ", average=" + mean + ", variance=" + variance() + "]";
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.operators;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import io.reactivex.internal.functions.ObjectHelper;
+
+/**
+ * A bounded pool of List buffers that can be used as the {@code bufferSupplier} of
+ * {@link FlowableTransformers#bufferWhile(io.reactivex.functions.Predicate, Callable) bufferWhile},
+ * {@link FlowableTransformers#bufferUntil(io.reactivex.functions.Predicate, Callable) bufferUntil} and
+ * {@link FlowableTransformers#bufferSplit(io.reactivex.functions.Predicate, Callable) bufferSplit}
+ * so that the buffers, once consumed, can be handed back via {@link #release(List)} and reused.
+ * <p>
+ * The pool learns the size of the recent buffers released to it and new or reused
+ * ArrayLists are sized accordingly, thus in the steady state, the batching
+ * allocates neither buffers nor their backing arrays.
+ * <p>
+ * Both {@link #call()} and {@link #release(List)} are thread-safe and don't allocate
+ * (unless the pool is empty). A buffer must not be used after it has been released.
+ * <pre><code>
+ * BufferPool&lt;Row&gt; pool = new BufferPool&lt;Row&gt;(16);
+ *
+ * rows.compose(FlowableTransformers.bufferUntil(isLast, pool))
+ * .subscribe(batch -&gt; {
+ *     database.insertAll(batch);
+ *     pool.release(batch);
+ * });
+ * </code></pre>
+ *
+ * @param <T> the element type
+ * @since 0.17.0
+ */
+public final class BufferPool<T> implements Callable<List<T>> {
+
+    /** The initial size hint, same as the default buffers of the bufferX operators. */
+    static final int INITIAL_SIZE_HINT = 16;
+
+    final AtomicReferenceArray<List<T>> slots;
+
+    /** The decaying maximum of the recently released buffer sizes. */
+    volatile int sizeHint;
+
+    /**
+     * Constructs a pool which keeps at most the given number of idle buffers.
+     * @param capacity the maximum number of idle buffers kept, positive
+     * @throws IllegalArgumentException if capacity is non-positive
+     */
+    public BufferPool(int capacity) {
+        ObjectHelper.verifyPositive(capacity, "capacity");
+        this.slots = new AtomicReferenceArray<List<T>>(capacity);
+        this.sizeHint = INITIAL_SIZE_HINT;
+    }
+
+    /**
+     * Returns an idle buffer or creates a new ArrayList sized by the current size hint.
+     * @return the empty buffer to fill
+     */
+    @Override
+    public List<T> call() {
+        AtomicReferenceArray<List<T>> a = slots;
+        int n = a.length();
+        for (int i = 0; i < n; i++) {
+            List<T> list = a.get(i);
+            if (list != null && a.compareAndSet(i, list, null)) {
+                if (list instanceof ArrayList) {
+                    ((ArrayList<T>)list).ensureCapacity(sizeHint);
+                }
+                return list;
+            }
+        }
+        return new ArrayList<T>(sizeHint);
+    }
+
+    /**
+     * Clears the given buffer and keeps it for reuse unless the pool is full.
+     * @param buffer the buffer no longer in use
+     */
+    public void release(List<T> buffer) {
+        ObjectHelper.requireNonNull(buffer, "buffer is null");
+        int size = buffer.size();
+        int h = sizeHint;
+        if (size >= h) {
+            sizeHint = size;
+        } else {
+            // decay slowly towards smaller batches
+            sizeHint = h - ((h - size) >> 3);
+        }
+        buffer.clear();
+
+        AtomicReferenceArray<List<T>> a = slots;
+        int n = a.length();
+        for (int i = 0; i < n; i++) {
+            if (a.get(i) == null && a.compareAndSet(i, null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of idle buffers in the pool.
+     * @return the number of idle buffers
+     */
+    public int idle() {
+        AtomicReferenceArray<List<T>> a = slots;
+        int c = 0;
+        for (int i = 0; i < a.length(); i++) {
+            if (a.get(i) != null) {
+                c++;
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Returns the current size hint for the buffers.
+     * @return the current size hint
+     */
+    public int sizeHint() {
+        return sizeHint;
+    }
+}
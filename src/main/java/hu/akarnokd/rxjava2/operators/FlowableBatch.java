@@ -0,0 +1,374 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.operators;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.rxjava2.functions.ToLongFunction;
+import io.reactivex.*;
+import io.reactivex.Scheduler.Worker;
+import io.reactivex.exceptions.*;
+import io.reactivex.internal.fuseable.SimplePlainQueue;
+import io.reactivex.internal.queue.SpscArrayQueue;
+import io.reactivex.internal.subscriptions.SubscriptionHelper;
+import io.reactivex.internal.util.BackpressureHelper;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Collects items into batches which are emitted when the number of items or their
+ * total weight reaches a limit or the first item of the batch has lingered
+ * for a given time, whichever happens first.
+ * <p>
+ * If there is no downstream demand when the linger time is up, the batch keeps
+ * growing up to the count and weight limits, so the batches get bigger when the
+ * downstream is slow. There is at most one timer task scheduled at a time.
+ *
+ * @param <T> the value type
+ *
+ * @since 0.17.0
+ */
+final class FlowableBatch<T> extends Flowable<List<T>> implements FlowableTransformer<T, List<T>> {
+
+    final Publisher<T> source;
+
+    final int maxCount;
+
+    final long maxWeight;
+
+    final ToLongFunction<? super T> weigher;
+
+    final long linger;
+
+    final TimeUnit unit;
+
+    final Scheduler scheduler;
+
+    final int prefetch;
+
+    FlowableBatch(Publisher<T> source, int maxCount, long maxWeight, ToLongFunction<? super T> weigher,
+            long linger, TimeUnit unit, Scheduler scheduler, int prefetch) {
+        this.source = source;
+        this.maxCount = maxCount;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.linger = linger;
+        this.unit = unit;
+        this.scheduler = scheduler;
+        this.prefetch = prefetch;
+    }
+
+    @Override
+    public Publisher<List<T>> apply(Flowable<T> upstream) {
+        return new FlowableBatch<T>(upstream, maxCount, maxWeight, weigher, linger, unit, scheduler, prefetch);
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super List<T>> s) {
+        source.subscribe(new BatchSubscriber<T>(s, maxCount, maxWeight, weigher,
+                unit.toNanos(linger), scheduler.createWorker(), prefetch));
+    }
+
+    static final class BatchSubscriber<T> extends AtomicInteger
+    implements FlowableSubscriber<T>, Subscription, Runnable {
+
+        private static final long serialVersionUID = -1945563718466208316L;
+
+        static final int INITIAL_CAPACITY = 16;
+
+        final Subscriber<? super List<T>> actual;
+
+        final int maxCount;
+
+        final long maxWeight;
+
+        final ToLongFunction<? super T> weigher;
+
+        final long lingerNanos;
+
+        final Worker worker;
+
+        final int prefetch;
+
+        final int limit;
+
+        final SimplePlainQueue<T> queue;
+
+        final AtomicLong requested;
+
+        Subscription s;
+
+        volatile boolean cancelled;
+
+        volatile boolean done;
+        Throwable error;
+
+        /** Set by the drain loop when it schedules the linger timer, cleared when the timer runs. */
+        volatile boolean timerPending;
+
+        long emitted;
+
+        int consumed;
+
+        List<T> batch;
+
+        long weight;
+
+        long batchStart;
+
+        /** The item that didn't fit into the current batch by its weight. */
+        T held;
+
+        long heldWeight;
+
+        /** The capacity of the next batch, the size of the previous one. */
+        int capacityHint;
+
+        BatchSubscriber(Subscriber<? super List<T>> actual, int maxCount, long maxWeight,
+                ToLongFunction<? super T> weigher, long lingerNanos, Worker worker, int prefetch) {
+            this.actual = actual;
+            this.maxCount = maxCount;
+            this.maxWeight = maxWeight;
+            this.weigher = weigher;
+            this.lingerNanos = lingerNanos;
+            this.worker = worker;
+            this.prefetch = prefetch;
+            this.limit = prefetch - (prefetch >> 2);
+            this.queue = new SpscArrayQueue<T>(prefetch);
+            this.requested = new AtomicLong();
+            this.capacityHint = Math.min(INITIAL_CAPACITY, maxCount);
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (SubscriptionHelper.validate(this.s, s)) {
+                this.s = s;
+
+                actual.onSubscribe(this);
+
+                s.request(prefetch);
+            }
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (!queue.offer(t)) {
+                s.cancel();
+                onError(new MissingBackpressureException("Queue is full?!"));
+                return;
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (done) {
+                RxJavaPlugins.onError(t);
+                return;
+            }
+            error = t;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            if (!done) {
+                done = true;
+                drain();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (SubscriptionHelper.validate(n)) {
+                BackpressureHelper.add(requested, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                s.cancel();
+                worker.dispose();
+
+                if (getAndIncrement() == 0) {
+                    cleanup();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            timerPending = false;
+            drain();
+        }
+
+        void cleanup() {
+            queue.clear();
+            batch = null;
+            held = null;
+        }
+
+        void armTimer() {
+            if (!timerPending) {
+                timerPending = true;
+                long delay = lingerNanos - (worker.now(TimeUnit.NANOSECONDS) - batchStart);
+                worker.schedule(this, Math.max(0L, delay), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        void emit(List<T> b) {
+            batch = null;
+            weight = 0L;
+            capacityHint = b.size();
+            actual.onNext(b);
+        }
+
+        void drain() {
+            if (getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+            long e = emitted;
+            SimplePlainQueue<T> q = queue;
+
+            for (;;) {
+
+                for (;;) {
+                    if (cancelled) {
+                        cleanup();
+                        return;
+                    }
+
+                    List<T> b = batch;
+                    int count = b != null ? b.size() : 0;
+
+                    if (count >= maxCount || weight >= maxWeight || held != null) {
+                        if (e == requested.get()) {
+                            break;
+                        }
+                        emit(b);
+                        e++;
+                        T h = held;
+                        if (h != null) {
+                            held = null;
+                            add(h, heldWeight);
+                        }
+                        continue;
+                    }
+
+                    boolean d = done;
+                    T v = q.poll();
+
+                    if (v != null) {
+                        if (++consumed == limit) {
+                            consumed = 0;
+                            s.request(limit);
+                        }
+
+                        long w;
+                        ToLongFunction<? super T> f = weigher;
+                        if (f != null) {
+                            try {
+                                w = f.applyAsLong(v);
+                            } catch (Throwable ex) {
+                                Exceptions.throwIfFatal(ex);
+                                cancelled = true;
+                                s.cancel();
+                                worker.dispose();
+                                cleanup();
+                                actual.onError(ex);
+                                return;
+                            }
+                        } else {
+                            w = 0L;
+                        }
+
+                        if (count != 0 && weight + w > maxWeight) {
+                            held = v;
+                            heldWeight = w;
+                            continue;
+                        }
+                        add(v, w);
+                        continue;
+                    }
+
+                    if (d) {
+                        Throwable ex = error;
+                        if (ex != null) {
+                            cleanup();
+                            worker.dispose();
+                            actual.onError(ex);
+                            return;
+                        }
+                        if (count == 0) {
+                            worker.dispose();
+                            actual.onComplete();
+                            return;
+                        }
+                        if (e == requested.get()) {
+                            break;
+                        }
+                        emit(b);
+                        e++;
+                        continue;
+                    }
+
+                    if (count != 0) {
+                        if (worker.now(TimeUnit.NANOSECONDS) - batchStart >= lingerNanos) {
+                            if (e != requested.get()) {
+                                emit(b);
+                                e++;
+                                continue;
+                            }
+                            // no demand: let the batch grow until it is full
+                        } else {
+                            // the timer may have been for a previous batch
+                            armTimer();
+                        }
+                    }
+                    break;
+                }
+
+                emitted = e;
+                missed = addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        void add(T v, long w) {
+            List<T> b = batch;
+            if (b == null) {
+                b = new ArrayList<T>(capacityHint);
+                batch = b;
+                batchStart = worker.now(TimeUnit.NANOSECONDS);
+                armTimer();
+            }
+            b.add(v);
+            weight += w;
+        }
+    }
+}
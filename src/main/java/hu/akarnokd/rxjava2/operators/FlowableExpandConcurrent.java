@@ -0,0 +1,411 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package hu.akarnokd.rxjava2.operators;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.*;
+
+import io.reactivex.*;
+import io.reactivex.exceptions.*;
+import io.reactivex.functions.Function;
+import io.reactivex.internal.functions.ObjectHelper;
+import io.reactivex.internal.fuseable.SimplePlainQueue;
+import io.reactivex.internal.queue.SpscArrayQueue;
+import io.reactivex.internal.subscriptions.*;
+import io.reactivex.internal.util.*;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Emit and recursively expand elements from upstream while keeping up to
+ * a given number of expanded Publishers subscribed at once.
+ * <p>
+ * The not yet subscribed Publishers form the frontier: a queue in breath-first
+ * mode and a stack in depth-first mode. In level-ordered breath-first mode, a Publisher
+ * is only subscribed once all Publishers of the previous levels have terminated.
+ * Items rejected by the optional visited collection are neither emitted nor expanded.
+ * @param <T> the value type
+ * @since 0.17.0
+ */
+final class FlowableExpandConcurrent<T> extends Flowable<T> implements FlowableTransformer<T, T> {
+
+    final Flowable<T> source;
+
+    final Function<? super T, ? extends Publisher<? extends T>> expander;
+
+    final ExpandStrategy strategy;
+
+    final int maxConcurrency;
+
+    final boolean levelOrdered;
+
+    final Callable<? extends Collection<? super T>> visitedSupplier;
+
+    final int prefetch;
+
+    FlowableExpandConcurrent(Flowable<T> source, Function<? super T, ? extends Publisher<? extends T>> expander,
+            ExpandStrategy strategy, int maxConcurrency, boolean levelOrdered,
+            Callable<? extends Collection<? super T>> visitedSupplier, int prefetch) {
+        this.source = source;
+        this.expander = expander;
+        this.strategy = strategy;
+        this.maxConcurrency = maxConcurrency;
+        this.levelOrdered = levelOrdered;
+        this.visitedSupplier = visitedSupplier;
+        this.prefetch = prefetch;
+    }
+
+    @Override
+    public Publisher<T> apply(Flowable<T> upstream) {
+        return new FlowableExpandConcurrent<T>(upstream, expander, strategy, maxConcurrency,
+                levelOrdered, visitedSupplier, prefetch);
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super T> s) {
+        Collection<? super T> visited = null;
+        if (visitedSupplier != null) {
+            try {
+                visited = ObjectHelper.requireNonNull(visitedSupplier.call(), "The visitedSupplier returned a null Collection");
+            } catch (Throwable ex) {
+                Exceptions.throwIfFatal(ex);
+                EmptySubscription.error(ex, s);
+                return;
+            }
+        }
+
+        ExpandConcurrentSubscription<T> parent = new ExpandConcurrentSubscription<T>(s, expander,
+                strategy == ExpandStrategy.DEPTH_FIRST, maxConcurrency,
+                levelOrdered && strategy == ExpandStrategy.BREATH_FIRST, visited, prefetch);
+        parent.pending.offer(new ExpandInnerSubscriber<T>(parent, source, 0, prefetch));
+        s.onSubscribe(parent);
+        parent.drain();
+    }
+
+    static final class ExpandConcurrentSubscription<T>
+    extends AtomicInteger
+    implements Subscription {
+
+        private static final long serialVersionUID = -6045839291212356424L;
+
+        final Subscriber<? super T> actual;
+
+        final Function<? super T, ? extends Publisher<? extends T>> expander;
+
+        final boolean depthFirst;
+
+        final int maxConcurrency;
+
+        final boolean levelOrdered;
+
+        final Collection<? super T> visited;
+
+        final int prefetch;
+
+        final AtomicLong requested;
+
+        final AtomicThrowable error;
+
+        /** The not yet subscribed Publishers, accessed only from within the drain loop. */
+        final ArrayDeque<ExpandInnerSubscriber<T>> pending;
+
+        /** The subscribed Publishers, accessed only from within the drain loop. */
+        final List<ExpandInnerSubscriber<T>> active;
+
+        volatile boolean cancelled;
+
+        /** Where the round-robin emission resumes among the active Publishers. */
+        int index;
+
+        ExpandConcurrentSubscription(Subscriber<? super T> actual,
+                Function<? super T, ? extends Publisher<? extends T>> expander,
+                boolean depthFirst, int maxConcurrency, boolean levelOrdered,
+                Collection<? super T> visited, int prefetch) {
+            this.actual = actual;
+            this.expander = expander;
+            this.depthFirst = depthFirst;
+            this.maxConcurrency = maxConcurrency;
+            this.levelOrdered = levelOrdered;
+            this.visited = visited;
+            this.prefetch = prefetch;
+            this.requested = new AtomicLong();
+            this.error = new AtomicThrowable();
+            this.pending = new ArrayDeque<ExpandInnerSubscriber<T>>();
+            this.active = new ArrayList<ExpandInnerSubscriber<T>>();
+        }
+
+        @Override
+        public void request(long n) {
+            if (SubscriptionHelper.validate(n)) {
+                BackpressureHelper.add(requested, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                if (getAndIncrement() == 0) {
+                    cleanup();
+                }
+            }
+        }
+
+        void cleanup() {
+            for (ExpandInnerSubscriber<T> inner : active) {
+                inner.cancel();
+            }
+            active.clear();
+            pending.clear();
+        }
+
+        void innerError(Throwable t) {
+            if (error.addThrowable(t)) {
+                drain();
+            } else {
+                RxJavaPlugins.onError(t);
+            }
+        }
+
+        /**
+         * Subscribes to pending Publishers while the concurrency limit and the level
+         * ordering allows it.
+         */
+        void subscribeNext() {
+            ArrayDeque<ExpandInnerSubscriber<T>> p = pending;
+            List<ExpandInnerSubscriber<T>> a = active;
+
+            while (a.size() < maxConcurrency && !cancelled) {
+                ExpandInnerSubscriber<T> inner = p.peekFirst();
+                if (inner == null) {
+                    break;
+                }
+                if (levelOrdered && !a.isEmpty() && minActiveLevel() < inner.level) {
+                    break;
+                }
+                p.pollFirst();
+                a.add(inner);
+                inner.subscribeSource();
+            }
+        }
+
+        int minActiveLevel() {
+            int min = Integer.MAX_VALUE;
+            for (ExpandInnerSubscriber<T> inner : active) {
+                min = Math.min(min, inner.level);
+            }
+            return min;
+        }
+
+        void drain() {
+            if (getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+            Subscriber<? super T> a = actual;
+            List<ExpandInnerSubscriber<T>> act = active;
+            AtomicThrowable err = error;
+
+            for (;;) {
+                long r = requested.get();
+                long e = 0L;
+
+                for (;;) {
+                    if (cancelled) {
+                        cleanup();
+                        return;
+                    }
+
+                    if (err.get() != null) {
+                        cleanup();
+                        a.onError(err.terminate());
+                        return;
+                    }
+
+                    subscribeNext();
+
+                    if (act.isEmpty() && pending.isEmpty()) {
+                        a.onComplete();
+                        return;
+                    }
+
+                    boolean progress = false;
+                    int n = act.size();
+                    int i = index;
+
+                    for (int k = 0; k < n; k++) {
+                        if (cancelled) {
+                            cleanup();
+                            return;
+                        }
+                        if (i >= n) {
+                            i = 0;
+                        }
+                        ExpandInnerSubscriber<T> inner = act.get(i);
+                        SimplePlainQueue<T> q = inner.queue;
+
+                        boolean d = inner.done;
+                        T v = e != r ? q.poll() : null;
+
+                        if (v == null) {
+                            if (d && q.isEmpty()) {
+                                act.remove(i);
+                                n--;
+                                progress = true;
+                            } else {
+                                i++;
+                            }
+                            continue;
+                        }
+
+                        inner.consumedOne();
+                        progress = true;
+
+                        Publisher<? extends T> p;
+                        try {
+                            if (visited != null && !visited.add(v)) {
+                                i++;
+                                continue;
+                            }
+
+                            a.onNext(v);
+                            e++;
+
+                            p = ObjectHelper.requireNonNull(expander.apply(v), "The expander returned a null Publisher");
+                        } catch (Throwable ex) {
+                            Exceptions.throwIfFatal(ex);
+                            err.addThrowable(ex);
+                            cleanup();
+                            a.onError(err.terminate());
+                            return;
+                        }
+
+                        ExpandInnerSubscriber<T> next = new ExpandInnerSubscriber<T>(this, p, inner.level + 1, prefetch);
+                        if (depthFirst) {
+                            pending.offerFirst(next);
+                        } else {
+                            pending.offerLast(next);
+                        }
+                        i++;
+                    }
+
+                    index = i;
+
+                    if (!progress) {
+                        break;
+                    }
+                }
+
+                if (e != 0L) {
+                    BackpressureHelper.produced(requested, e);
+                }
+
+                missed = addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+    }
+
+    static final class ExpandInnerSubscriber<T>
+    extends AtomicReference<Subscription>
+    implements FlowableSubscriber<T> {
+
+        private static final long serialVersionUID = 2960463346224357823L;
+
+        final ExpandConcurrentSubscription<T> parent;
+
+        final int level;
+
+        final int prefetch;
+
+        final int limit;
+
+        /** Created on subscription, the frontier entries don't hold onto a buffer. */
+        SimplePlainQueue<T> queue;
+
+        Publisher<? extends T> source;
+
+        int consumed;
+
+        volatile boolean done;
+
+        ExpandInnerSubscriber(ExpandConcurrentSubscription<T> parent, Publisher<? extends T> source,
+                int level, int prefetch) {
+            this.parent = parent;
+            this.source = source;
+            this.level = level;
+            this.prefetch = prefetch;
+            this.limit = prefetch - (prefetch >> 2);
+        }
+
+        void subscribeSource() {
+            Publisher<? extends T> p = source;
+            source = null;
+            queue = new SpscArrayQueue<T>(prefetch);
+            p.subscribe(this);
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (SubscriptionHelper.setOnce(this, s)) {
+                s.request(prefetch);
+            }
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (!queue.offer(t)) {
+                SubscriptionHelper.cancel(this);
+                onError(new MissingBackpressureException("Queue is full?!"));
+                return;
+            }
+            parent.drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            parent.innerError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            parent.drain();
+        }
+
+        void consumedOne() {
+            int c = consumed + 1;
+            if (c == limit) {
+                consumed = 0;
+                get().request(c);
+            } else {
+                consumed = c;
+            }
+        }
+
+        void cancel() {
+            SubscriptionHelper.cancel(this);
+        }
+    }
+}
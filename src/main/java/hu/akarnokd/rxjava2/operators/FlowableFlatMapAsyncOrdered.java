@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package hu.akarnokd.rxjava2.operators;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.rxjava2.operators.FlowableFlatMapSync.FlatMapInnerSubscriber;
+import hu.akarnokd.rxjava2.operators.FlowableFlatMapSyncOrdered.BaseFlatMapOrderedOuterSubscriber;
+import io.reactivex.*;
+import io.reactivex.functions.Function;
+
+/**
+ * FlatMap a bounded number of inner, non-trivial flows and emit their items
+ * in the order of the upstream values they were mapped from, on the given scheduler.
+ *
+ * @param <T> the input value type
+ * @param <R> the result value type
+ *
+ * @since 0.17.0
+ */
+final class FlowableFlatMapAsyncOrdered<T, R> extends Flowable<R> implements FlowableTransformer<T, R> {
+
+    final Publisher<T> source;
+
+    final Function<? super T, ? extends Publisher<? extends R>> mapper;
+
+    final int maxConcurrency;
+
+    final int bufferSize;
+
+    final Scheduler scheduler;
+
+    FlowableFlatMapAsyncOrdered(Publisher<T> source, Function<? super T, ? extends Publisher<? extends R>> mapper,
+            int maxConcurrency, int bufferSize, Scheduler scheduler) {
+        this.source = source;
+        this.mapper = mapper;
+        this.maxConcurrency = maxConcurrency;
+        this.bufferSize = bufferSize;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super R> s) {
+        source.subscribe(new FlatMapOrderedOuterSubscriber<T, R>(s, mapper, maxConcurrency, bufferSize, scheduler.createWorker()));
+    }
+
+    @Override
+    public Publisher<R> apply(Flowable<T> upstream) {
+        return new FlowableFlatMapAsyncOrdered<T, R>(upstream, mapper, maxConcurrency, bufferSize, scheduler);
+    }
+
+    static final class FlatMapOrderedOuterSubscriber<T, R> extends BaseFlatMapOrderedOuterSubscriber<T, R> implements Runnable {
+
+        private static final long serialVersionUID = 7024416224290467543L;
+
+        final Scheduler.Worker worker;
+
+        FlatMapOrderedOuterSubscriber(Subscriber<? super R> actual,
+                Function<? super T, ? extends Publisher<? extends R>> mapper, int maxConcurrency, int bufferSize,
+                Scheduler.Worker worker) {
+            super(actual, mapper, maxConcurrency, bufferSize);
+            this.worker = worker;
+        }
+
+        @Override
+        public void drain() {
+            if (getAndIncrement() == 0) {
+                worker.schedule(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            drainLoop();
+        }
+
+        @Override
+        void cleanupAfter() {
+            worker.dispose();
+        }
+
+        @Override
+        public void innerNext(FlatMapInnerSubscriber<T, R> inner, R item) {
+            inner.queue().offer(item);
+            drain();
+        }
+    }
+}
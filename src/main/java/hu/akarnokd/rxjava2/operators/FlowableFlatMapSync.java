@@ -25,13 +25,18 @@ import io.reactivex.exceptions.Exceptions;
 import io.reactivex.functions.Function;
 import io.reactivex.internal.functions.ObjectHelper;
 import io.reactivex.internal.fuseable.*;
-import io.reactivex.internal.queue.SpscArrayQueue;
+import io.reactivex.internal.queue.*;
 import io.reactivex.internal.subscriptions.SubscriptionHelper;
 import io.reactivex.internal.util.*;
 import io.reactivex.plugins.RxJavaPlugins;
 
 /**
  * FlatMap a bounded number of inner, non-trivial flows (unbound not supported).
+ * <p>
+ * If minBufferSize is less than maxBufferSize, the prefetch of the inner flows adapts:
+ * new inner flows request about as many items as the previous inner flows produced on average
+ * and an inner flow doubles its next request batch if the downstream could take all of its
+ * items so far.
  *
  * @param <T> the input value type
  * @param <R> the result value type
@@ -48,25 +53,33 @@ final class FlowableFlatMapSync<T, R> extends Flowable<R> implements FlowableTra
 
     final int bufferSize;
 
+    final int maxBufferSize;
+
     final boolean depthFirst;
 
     FlowableFlatMapSync(Publisher<T> source, Function<? super T, ? extends Publisher<? extends R>> mapper,
             int maxConcurrency, int bufferSize, boolean depthFirst) {
+        this(source, mapper, maxConcurrency, bufferSize, bufferSize, depthFirst);
+    }
+
+    FlowableFlatMapSync(Publisher<T> source, Function<? super T, ? extends Publisher<? extends R>> mapper,
+            int maxConcurrency, int minBufferSize, int maxBufferSize, boolean depthFirst) {
         this.source = source;
         this.mapper = mapper;
         this.maxConcurrency = maxConcurrency;
-        this.bufferSize = bufferSize;
+        this.bufferSize = minBufferSize;
+        this.maxBufferSize = maxBufferSize;
         this.depthFirst = depthFirst;
     }
 
     @Override
     protected void subscribeActual(Subscriber<? super R> s) {
-        source.subscribe(new FlatMapOuterSubscriber<T, R>(s, mapper, maxConcurrency, bufferSize, depthFirst));
+        source.subscribe(new FlatMapOuterSubscriber<T, R>(s, mapper, maxConcurrency, bufferSize, maxBufferSize, depthFirst));
     }
 
     @Override
     public Publisher<R> apply(Flowable<T> upstream) {
-        return new FlowableFlatMapSync<T, R>(upstream, mapper, maxConcurrency, bufferSize, depthFirst);
+        return new FlowableFlatMapSync<T, R>(upstream, mapper, maxConcurrency, bufferSize, maxBufferSize, depthFirst);
     }
 
     interface FlatMapInnerSubscriberSupport<T, R> {
@@ -93,6 +106,8 @@ final class FlowableFlatMapSync<T, R> extends Flowable<R> implements FlowableTra
 
         final int bufferSize;
 
+        final int maxBufferSize;
+
         final AtomicLong requested;
 
         final AtomicReferenceArray<FlatMapInnerSubscriber<T, R>> subscribers;
@@ -115,6 +130,12 @@ final class FlowableFlatMapSync<T, R> extends Flowable<R> implements FlowableTra
 
         long finished;
 
+        /** The moving average of the number of items the finished inner flows produced, adaptive mode only. */
+        long averageLength;
+
+        /** The initial prefetch of the new inner flows, adaptive mode only. */
+        volatile int adaptiveBufferSize;
+
         static final int PRODUCER_INDEX = 16;
         static final int CONSUMER_INDEX = 32;
 
@@ -122,10 +143,19 @@ final class FlowableFlatMapSync<T, R> extends Flowable<R> implements FlowableTra
                 Function<? super T, ? extends Publisher<? extends R>> mapper,
                         int maxConcurrency, int bufferSize,
                         boolean depthFirst) {
+            this(actual, mapper, maxConcurrency, bufferSize, bufferSize, depthFirst);
+        }
+
+        BaseFlatMapOuterSubscriber(Subscriber<? super R> actual,
+                Function<? super T, ? extends Publisher<? extends R>> mapper,
+                        int maxConcurrency, int bufferSize, int maxBufferSize,
+                        boolean depthFirst) {
             this.actual = actual;
             this.mapper = mapper;
             this.maxConcurrency = maxConcurrency;
             this.bufferSize = bufferSize;
+            this.maxBufferSize = maxBufferSize;
+            this.adaptiveBufferSize = bufferSize;
             this.requested = new AtomicLong();
             this.error = new AtomicThrowable();
             this.depthFirst = depthFirst;
@@ -178,7 +208,12 @@ final class FlowableFlatMapSync<T, R> extends Flowable<R> implements FlowableTra
                     idx = ci + 1;
                 }
 
-                FlatMapInnerSubscriber<T, R> inner = new FlatMapInnerSubscriber<T, R>(this, bufferSize, idx);
+                FlatMapInnerSubscriber<T, R> inner;
+                if (bufferSize == maxBufferSize) {
+                    inner = new FlatMapInnerSubscriber<T, R>(this, bufferSize, idx);
+                } else {
+                    inner = new FlatMapInnerSubscriber<T, R>(this, adaptiveBufferSize, maxBufferSize, idx);
+                }
                 s.lazySet(idx - 1, inner);
                 fl.lazySet(m + CONSUMER_INDEX, (ci + 1) & (m - 1));
 
@@ -269,8 +304,7 @@ final class FlowableFlatMapSync<T, R> extends Flowable<R> implements FlowableTra
                             SimpleQueue<R> q = inner.queue;
 
                             if (innerDone && (q == null || q.isEmpty())) {
-                                remove(inner);
-                                finished++;
+                                finish(inner);
                                 innerEmpty++;
                                 upstream.request(1);
                             } else
@@ -306,8 +340,7 @@ final class FlowableFlatMapSync<T, R> extends Flowable<R> implements FlowableTra
                                     boolean empty = v == null;
 
                                     if (innerDone && empty) {
-                                        remove(inner);
-                                        finished++;
+                                        finish(inner);
                                         innerEmpty++;
                                         upstream.request(1);
                                         break;
@@ -422,8 +455,7 @@ final class FlowableFlatMapSync<T, R> extends Flowable<R> implements FlowableTra
                             SimpleQueue<R> q = inner.queue;
 
                             if (innerDone && (q == null || q.isEmpty())) {
-                                remove(inner);
-                                finished++;
+                                finish(inner);
                                 innerEmpty++;
                                 upstream.request(1);
                             } else
@@ -506,6 +538,22 @@ final class FlowableFlatMapSync<T, R> extends Flowable<R> implements FlowableTra
             }
         }
 
+        /**
+         * Removes a completed and drained inner subscriber, called from the drain loop.
+         * @param inner the inner subscriber
+         */
+        final void finish(FlatMapInnerSubscriber<T, R> inner) {
+            remove(inner);
+            finished++;
+            int min = bufferSize;
+            int max = maxBufferSize;
+            if (min != max) {
+                long avg = (averageLength * 3 + inner.total) >> 2;
+                averageLength = avg;
+                adaptiveBufferSize = Math.max(min, Math.min(max, Pow2.roundToPowerOfTwo((int)Math.min(avg, max))));
+            }
+        }
+
         final void remove(FlatMapInnerSubscriber<T, R> inner) {
             AtomicIntegerArray fl = freelist;
             AtomicReferenceArray<FlatMapInnerSubscriber<T, R>> s = subscribers;
@@ -535,8 +583,8 @@ final class FlowableFlatMapSync<T, R> extends Flowable<R> implements FlowableTra
 
         FlatMapOuterSubscriber(Subscriber<? super R> actual,
                 Function<? super T, ? extends Publisher<? extends R>> mapper, int maxConcurrency, int bufferSize,
-                boolean depthFirst) {
-            super(actual, mapper, maxConcurrency, bufferSize, depthFirst);
+                int maxBufferSize, boolean depthFirst) {
+            super(actual, mapper, maxConcurrency, bufferSize, maxBufferSize, depthFirst);
         }
 
         @Override
@@ -606,20 +654,28 @@ final class FlowableFlatMapSync<T, R> extends Flowable<R> implements FlowableTra
     }
 
     static final class FlatMapInnerSubscriber<T, R> extends AtomicReference<Subscription>
-    implements Subscriber<R> {
+    implements FlowableSubscriber<R> {
 
         private static final long serialVersionUID = -4991009168975207961L;
 
         final FlatMapInnerSubscriberSupport<T, R> parent;
 
-        final int bufferSize;
+        final int maxBufferSize;
 
-        final int limit;
+        final boolean adaptive;
 
         final int index;
 
+        /** The current request batch size, may grow up to maxBufferSize. */
+        int bufferSize;
+
+        int limit;
+
         int produced;
 
+        /** The total number of items consumed from this inner flow. */
+        long total;
+
         int fusionMode;
 
         volatile boolean done;
@@ -627,8 +683,14 @@ final class FlowableFlatMapSync<T, R> extends Flowable<R> implements FlowableTra
         volatile SimpleQueue<R> queue;
 
         FlatMapInnerSubscriber(FlatMapInnerSubscriberSupport<T, R> parent, int bufferSize, int index) {
+            this(parent, bufferSize, bufferSize, index);
+        }
+
+        FlatMapInnerSubscriber(FlatMapInnerSubscriberSupport<T, R> parent, int bufferSize, int maxBufferSize, int index) {
             this.parent = parent;
             this.bufferSize = bufferSize;
+            this.maxBufferSize = maxBufferSize;
+            this.adaptive = bufferSize != maxBufferSize;
             this.limit = bufferSize - (bufferSize >> 2);
             this.index = index;
         }
@@ -684,10 +746,20 @@ final class FlowableFlatMapSync<T, R> extends Flowable<R> implements FlowableTra
         }
 
         void producedOne() {
+            total++;
             if (fusionMode != QueueSubscription.SYNC) {
                 int p = produced + 1;
                 if (p == limit) {
                     produced = 0;
+                    int b = bufferSize;
+                    SimpleQueue<R> q = queue;
+                    if (adaptive && b != maxBufferSize && (q == null || q.isEmpty())) {
+                        // the downstream keeps up with this inner, request in bigger batches
+                        int next = Math.min(b << 1, maxBufferSize);
+                        p += next - b;
+                        bufferSize = next;
+                        limit = next - (next >> 2);
+                    }
                     get().request(p);
                 } else {
                     produced = p;
@@ -698,7 +770,11 @@ final class FlowableFlatMapSync<T, R> extends Flowable<R> implements FlowableTra
         SimpleQueue<R> queue() {
             SimpleQueue<R> q = queue;
             if (q == null) {
-                q = new SpscArrayQueue<R>(bufferSize);
+                if (adaptive) {
+                    q = new SpscLinkedArrayQueue<R>(bufferSize);
+                } else {
+                    q = new SpscArrayQueue<R>(bufferSize);
+                }
                 queue = q;
             }
             return q;
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package hu.akarnokd.rxjava2.operators;
+
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.*;
+
+import hu.akarnokd.rxjava2.operators.FlowableFlatMapSync.*;
+import io.reactivex.*;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.functions.Function;
+import io.reactivex.internal.functions.ObjectHelper;
+import io.reactivex.internal.fuseable.*;
+import io.reactivex.internal.queue.SpscArrayQueue;
+import io.reactivex.internal.subscriptions.SubscriptionHelper;
+import io.reactivex.internal.util.*;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * FlatMap a bounded number of inner, non-trivial flows and emit their items
+ * in the order of the upstream values they were mapped from.
+ * <p>
+ * All inner flows run at once but only the oldest one is drained; the others
+ * can't get further ahead than their bufferSize prefetch, thus the reorder buffer
+ * is bounded by maxConcurrency * bufferSize items.
+ *
+ * @param <T> the input value type
+ * @param <R> the result value type
+ *
+ * @since 0.17.0
+ */
+final class FlowableFlatMapSyncOrdered<T, R> extends Flowable<R> implements FlowableTransformer<T, R> {
+
+    final Publisher<T> source;
+
+    final Function<? super T, ? extends Publisher<? extends R>> mapper;
+
+    final int maxConcurrency;
+
+    final int bufferSize;
+
+    FlowableFlatMapSyncOrdered(Publisher<T> source, Function<? super T, ? extends Publisher<? extends R>> mapper,
+            int maxConcurrency, int bufferSize) {
+        this.source = source;
+        this.mapper = mapper;
+        this.maxConcurrency = maxConcurrency;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super R> s) {
+        source.subscribe(new FlatMapOrderedOuterSubscriber<T, R>(s, mapper, maxConcurrency, bufferSize));
+    }
+
+    @Override
+    public Publisher<R> apply(Flowable<T> upstream) {
+        return new FlowableFlatMapSyncOrdered<T, R>(upstream, mapper, maxConcurrency, bufferSize);
+    }
+
+    abstract static class BaseFlatMapOrderedOuterSubscriber<T, R> extends AtomicInteger
+    implements Subscriber<T>, Subscription, FlatMapInnerSubscriberSupport<T, R> {
+
+        private static final long serialVersionUID = 2393045165493534453L;
+
+        final Subscriber<? super R> actual;
+
+        final Function<? super T, ? extends Publisher<? extends R>> mapper;
+
+        final int maxConcurrency;
+
+        final int bufferSize;
+
+        final AtomicLong requested;
+
+        /** The inner subscribers in upstream order, not including the current one. */
+        final SimplePlainQueue<FlatMapInnerSubscriber<T, R>> subscribers;
+
+        final AtomicThrowable error;
+
+        volatile boolean done;
+
+        volatile boolean cancelled;
+
+        Subscription upstream;
+
+        /** The inner subscriber being drained, accessed only from within the drain loop. */
+        FlatMapInnerSubscriber<T, R> current;
+
+        long emitted;
+
+        BaseFlatMapOrderedOuterSubscriber(Subscriber<? super R> actual,
+                Function<? super T, ? extends Publisher<? extends R>> mapper,
+                        int maxConcurrency, int bufferSize) {
+            this.actual = actual;
+            this.mapper = mapper;
+            this.maxConcurrency = maxConcurrency;
+            this.bufferSize = bufferSize;
+            this.requested = new AtomicLong();
+            this.error = new AtomicThrowable();
+            this.subscribers = new SpscArrayQueue<FlatMapInnerSubscriber<T, R>>(maxConcurrency);
+        }
+
+        @Override
+        public final void onSubscribe(Subscription s) {
+            if (SubscriptionHelper.validate(this.upstream, s)) {
+                this.upstream = s;
+
+                actual.onSubscribe(this);
+
+                s.request(maxConcurrency);
+            }
+        }
+
+        @Override
+        public final void onNext(T t) {
+
+            Publisher<? extends R> p;
+
+            try {
+                p = ObjectHelper.requireNonNull(mapper.apply(t), "The mapper returned a null value");
+            } catch (Throwable ex) {
+                Exceptions.throwIfFatal(ex);
+                upstream.cancel();
+                onError(ex);
+                return;
+            }
+
+            if (!cancelled) {
+                FlatMapInnerSubscriber<T, R> inner = new FlatMapInnerSubscriber<T, R>(this, bufferSize, 0);
+                subscribers.offer(inner);
+
+                if (cancelled) {
+                    inner.cancel();
+                } else {
+                    p.subscribe(inner);
+                }
+            }
+        }
+
+        @Override
+        public final void onError(Throwable t) {
+            if (error.addThrowable(t)) {
+                done = true;
+                drain();
+            } else {
+                RxJavaPlugins.onError(t);
+            }
+        }
+
+        @Override
+        public final void onComplete() {
+            done = true;
+            drain();
+        }
+
+        @Override
+        public final void request(long n) {
+            if (SubscriptionHelper.validate(n)) {
+                BackpressureHelper.add(requested, n);
+                drain();
+            }
+        }
+
+        @Override
+        public final void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                upstream.cancel();
+                if (getAndIncrement() == 0) {
+                    cancelInners();
+                    cleanupAfter();
+                }
+            }
+        }
+
+        abstract void cleanupAfter();
+
+        @Override
+        public final void innerError(FlatMapInnerSubscriber<T, R> inner, Throwable ex) {
+            if (error.addThrowable(ex)) {
+                inner.done = true;
+                done = true;
+                upstream.cancel();
+                drain();
+            } else {
+                RxJavaPlugins.onError(ex);
+            }
+        }
+
+        @Override
+        public final void innerComplete(FlatMapInnerSubscriber<T, R> inner) {
+            inner.done = true;
+            drain();
+        }
+
+        final void cancelInners() {
+            FlatMapInnerSubscriber<T, R> c = current;
+            current = null;
+            if (c != null) {
+                c.cancel();
+            }
+            SimplePlainQueue<FlatMapInnerSubscriber<T, R>> q = subscribers;
+            for (;;) {
+                c = q.poll();
+                if (c == null) {
+                    break;
+                }
+                c.cancel();
+            }
+        }
+
+        final void drainLoop() {
+            int missed = 1;
+            long e = emitted;
+            Subscriber<? super R> a = actual;
+
+            for (;;) {
+
+                long r = requested.get();
+
+                for (;;) {
+                    if (cancelled) {
+                        cancelInners();
+                        cleanupAfter();
+                        return;
+                    }
+
+                    if (error.get() != null) {
+                        upstream.cancel();
+                        cancelInners();
+                        a.onError(error.terminate());
+                        cleanupAfter();
+                        return;
+                    }
+
+                    FlatMapInnerSubscriber<T, R> inner = current;
+                    if (inner == null) {
+                        boolean d = done;
+                        inner = subscribers.poll();
+                        if (inner == null) {
+                            if (d) {
+                                a.onComplete();
+                                cleanupAfter();
+                                return;
+                            }
+                            break;
+                        }
+                        current = inner;
+                    }
+
+                    boolean innerDone = inner.done;
+                    SimpleQueue<R> q = inner.queue;
+
+                    R v = null;
+                    if (q != null && e != r) {
+                        try {
+                            v = q.poll();
+                        } catch (Throwable ex) {
+                            Exceptions.throwIfFatal(ex);
+                            error.addThrowable(ex);
+                            continue;
+                        }
+                    }
+
+                    if (v == null) {
+                        if (innerDone && (q == null || q.isEmpty())) {
+                            current = null;
+                            upstream.request(1);
+                            continue;
+                        }
+                        break;
+                    }
+
+                    a.onNext(v);
+
+                    e++;
+
+                    inner.producedOne();
+                }
+
+                int w = get();
+                if (w == missed) {
+                    emitted = e;
+                    missed = addAndGet(-missed);
+                    if (missed == 0) {
+                        break;
+                    }
+                } else {
+                    missed = w;
+                }
+            }
+        }
+    }
+
+    static final class FlatMapOrderedOuterSubscriber<T, R> extends BaseFlatMapOrderedOuterSubscriber<T, R> {
+
+        private static final long serialVersionUID = -6493289211286598380L;
+
+        FlatMapOrderedOuterSubscriber(Subscriber<? super R> actual,
+                Function<? super T, ? extends Publisher<? extends R>> mapper, int maxConcurrency, int bufferSize) {
+            super(actual, mapper, maxConcurrency, bufferSize);
+        }
+
+        @Override
+        public void drain() {
+            if (getAndIncrement() == 0) {
+                drainLoop();
+            }
+        }
+
+        @Override
+        void cleanupAfter() {
+        }
+
+        @Override
+        public void innerNext(FlatMapInnerSubscriber<T, R> inner, R item) {
+            if (get() == 0 && compareAndSet(0, 1)) {
+                FlatMapInnerSubscriber<T, R> c = current;
+                if (c == null) {
+                    c = subscribers.poll();
+                    current = c;
+                }
+                SimpleQueue<R> q = inner.queue;
+                long e = emitted;
+                if (inner == c && e != requested.get() && (q == null || q.isEmpty())) {
+                    actual.onNext(item);
+                    emitted = e + 1;
+                    inner.producedOne();
+                    if (decrementAndGet() == 0) {
+                        return;
+                    }
+                } else {
+                    inner.queue().offer(item);
+                }
+            } else {
+                inner.queue().offer(item);
+                if (getAndIncrement() != 0) {
+                    return;
+                }
+            }
+            drainLoop();
+        }
+    }
+}
@@ -0,0 +1,534 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.operators;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.*;
+
+import io.reactivex.*;
+import io.reactivex.exceptions.*;
+import io.reactivex.functions.*;
+import io.reactivex.internal.functions.ObjectHelper;
+import io.reactivex.internal.fuseable.SimplePlainQueue;
+import io.reactivex.internal.queue.*;
+import io.reactivex.internal.subscriptions.SubscriptionHelper;
+import io.reactivex.internal.util.*;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Allows stopping and resuming the flow of the groups of the main source, identified by
+ * a key, independently of each other via a secondary flow of (key, open) signals.
+ * <p>
+ * The upstream items are routed into a bounded queue per key; the open keys having
+ * items are emitted in a round-robin fashion. If the queue of a closed key is full,
+ * its oldest item is evicted. If the queue of an open key is full, the routing
+ * stops until the downstream requests more.
+ * <p>
+ * The state of a key is forgotten once its queue is empty, its gate is in the default
+ * state and it didn't see any traffic for the idle timeout.
+ *
+ * @param <T> the main source's value type
+ * @param <K> the key type
+ *
+ * @since 0.17.0
+ */
+final class FlowableKeyedValve<T, K> extends Flowable<T> implements FlowableTransformer<T, T> {
+
+    final Publisher<T> source;
+
+    final Function<? super T, ? extends K> keySelector;
+
+    final Publisher<? extends Map.Entry<K, Boolean>> control;
+
+    final boolean defaultOpen;
+
+    final int maxPerKey;
+
+    final Consumer<? super T> onEvict;
+
+    final long idleTimeout;
+
+    final TimeUnit unit;
+
+    final Scheduler scheduler;
+
+    final int bufferSize;
+
+    FlowableKeyedValve(Publisher<T> source, Function<? super T, ? extends K> keySelector,
+            Publisher<? extends Map.Entry<K, Boolean>> control, boolean defaultOpen,
+            int maxPerKey, Consumer<? super T> onEvict,
+            long idleTimeout, TimeUnit unit, Scheduler scheduler, int bufferSize) {
+        this.source = source;
+        this.keySelector = keySelector;
+        this.control = control;
+        this.defaultOpen = defaultOpen;
+        this.maxPerKey = maxPerKey;
+        this.onEvict = onEvict;
+        this.idleTimeout = idleTimeout;
+        this.unit = unit;
+        this.scheduler = scheduler;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public Publisher<T> apply(Flowable<T> upstream) {
+        return new FlowableKeyedValve<T, K>(upstream, keySelector, control, defaultOpen,
+                maxPerKey, onEvict, idleTimeout, unit, scheduler, bufferSize);
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super T> s) {
+        KeyedValveSubscriber<T, K> parent = new KeyedValveSubscriber<T, K>(s, keySelector, defaultOpen,
+                maxPerKey, onEvict, unit.toNanos(idleTimeout), scheduler, bufferSize);
+        s.onSubscribe(parent);
+        control.subscribe(parent.other);
+        source.subscribe(parent);
+    }
+
+    static final class KeyedValveSubscriber<T, K>
+    extends AtomicInteger
+    implements Subscriber<T>, Subscription {
+
+        private static final long serialVersionUID = 5476327339232458740L;
+
+        final Subscriber<? super T> actual;
+
+        final Function<? super T, ? extends K> keySelector;
+
+        final boolean defaultOpen;
+
+        final int maxPerKey;
+
+        final Consumer<? super T> onEvict;
+
+        final long idleTimeout;
+
+        final Scheduler scheduler;
+
+        final int bufferSize;
+
+        final int limit;
+
+        final AtomicReference<Subscription> s;
+
+        final SimplePlainQueue<T> queue;
+
+        final SimplePlainQueue<Map.Entry<K, Boolean>> controls;
+
+        final AtomicLong requested;
+
+        final AtomicThrowable error;
+
+        final OtherSubscriber other;
+
+        final Map<K, KeyState<K, T>> states;
+
+        /** The open keys with queued items, in emission order. */
+        final ArrayDeque<KeyState<K, T>> ready;
+
+        volatile boolean done;
+
+        volatile boolean cancelled;
+
+        int consumed;
+
+        /** The number of items in the queues of all keys. */
+        long buffered;
+
+        /** The item that couldn't be routed because its open key's queue was full. */
+        T held;
+
+        KeyState<K, T> heldState;
+
+        long lastSweep;
+
+        KeyedValveSubscriber(Subscriber<? super T> actual, Function<? super T, ? extends K> keySelector,
+                boolean defaultOpen, int maxPerKey, Consumer<? super T> onEvict,
+                long idleTimeout, Scheduler scheduler, int bufferSize) {
+            this.actual = actual;
+            this.keySelector = keySelector;
+            this.defaultOpen = defaultOpen;
+            this.maxPerKey = maxPerKey;
+            this.onEvict = onEvict;
+            this.idleTimeout = idleTimeout;
+            this.scheduler = scheduler;
+            this.bufferSize = bufferSize;
+            this.limit = bufferSize - (bufferSize >> 2);
+            this.s = new AtomicReference<Subscription>();
+            this.queue = new SpscArrayQueue<T>(bufferSize);
+            this.controls = new SpscLinkedArrayQueue<Map.Entry<K, Boolean>>(16);
+            this.requested = new AtomicLong();
+            this.error = new AtomicThrowable();
+            this.other = new OtherSubscriber();
+            this.states = new HashMap<K, KeyState<K, T>>();
+            this.ready = new ArrayDeque<KeyState<K, T>>();
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (SubscriptionHelper.setOnce(this.s, s)) {
+                s.request(bufferSize);
+            }
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (!queue.offer(t)) {
+                SubscriptionHelper.cancel(s);
+                onError(new MissingBackpressureException("Queue is full?!"));
+                return;
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (error.addThrowable(t)) {
+                drain();
+            } else {
+                RxJavaPlugins.onError(t);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (SubscriptionHelper.validate(n)) {
+                BackpressureHelper.add(requested, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            SubscriptionHelper.cancel(s);
+            SubscriptionHelper.cancel(other);
+            if (getAndIncrement() == 0) {
+                cleanup();
+            }
+        }
+
+        void cleanup() {
+            queue.clear();
+            controls.clear();
+            states.clear();
+            ready.clear();
+            held = null;
+            heldState = null;
+        }
+
+        void evict(T evicted) {
+            try {
+                onEvict.accept(evicted);
+            } catch (Throwable ex) {
+                Exceptions.throwIfFatal(ex);
+                RxJavaPlugins.onError(ex);
+            }
+        }
+
+        long now() {
+            return idleTimeout != 0L ? scheduler.now(TimeUnit.NANOSECONDS) : 0L;
+        }
+
+        KeyState<K, T> state(K key, long now) {
+            KeyState<K, T> ks = states.get(key);
+            if (ks == null) {
+                ks = new KeyState<K, T>(key, defaultOpen);
+                states.put(key, ks);
+            }
+            ks.lastActive = now;
+            return ks;
+        }
+
+        /**
+         * Forgets the state of the key if it has nothing worth remembering,
+         * unless idle keys are swept periodically.
+         * @param ks the key state
+         */
+        void release(KeyState<K, T> ks) {
+            if (idleTimeout == 0L && ks.open == defaultOpen && ks.queue.isEmpty() && !ks.ready && ks != heldState) {
+                states.remove(ks.key);
+            }
+        }
+
+        void sweep(long now) {
+            if (idleTimeout == 0L || now - lastSweep < idleTimeout) {
+                return;
+            }
+            lastSweep = now;
+            Iterator<KeyState<K, T>> it = states.values().iterator();
+            while (it.hasNext()) {
+                KeyState<K, T> ks = it.next();
+                if (ks.open == defaultOpen && ks.queue.isEmpty() && !ks.ready && ks != heldState
+                        && now - ks.lastActive >= idleTimeout) {
+                    it.remove();
+                }
+            }
+        }
+
+        void applyControls(long now) throws Exception {
+            SimplePlainQueue<Map.Entry<K, Boolean>> cq = controls;
+            for (;;) {
+                Map.Entry<K, Boolean> entry = cq.poll();
+                if (entry == null) {
+                    break;
+                }
+                K key = ObjectHelper.requireNonNull(entry.getKey(), "The control signal contains a null key");
+                boolean open = ObjectHelper.requireNonNull(entry.getValue(), "The control signal contains a null state");
+
+                KeyState<K, T> ks = states.get(key);
+                if (ks == null) {
+                    if (open == defaultOpen) {
+                        continue;
+                    }
+                    ks = state(key, now);
+                }
+                ks.lastActive = now;
+                ks.open = open;
+                if (open && !ks.ready && !ks.queue.isEmpty()) {
+                    ks.ready = true;
+                    ready.offer(ks);
+                }
+                release(ks);
+            }
+        }
+
+        /**
+         * Moves items from the upstream queue into the queues of their keys.
+         * @param now the current time for the idle tracking
+         * @return true if at least one item was routed
+         * @throws Exception if the key selector failed
+         */
+        boolean route(long now) throws Exception {
+            SimplePlainQueue<T> q = queue;
+            boolean routed = false;
+            for (;;) {
+                T v = held;
+                KeyState<K, T> ks;
+                if (v != null) {
+                    ks = heldState;
+                    held = null;
+                    heldState = null;
+                    ks.lastActive = now;
+                } else {
+                    v = q.poll();
+                    if (v == null) {
+                        break;
+                    }
+                    int c = consumed + 1;
+                    if (c == limit) {
+                        consumed = 0;
+                        s.get().request(c);
+                    } else {
+                        consumed = c;
+                    }
+                    K key = ObjectHelper.requireNonNull(keySelector.apply(v), "The keySelector returned a null key");
+                    ks = state(key, now);
+                }
+
+                ArrayDeque<T> kq = ks.queue;
+                if (ks.open) {
+                    if (kq.size() == maxPerKey) {
+                        held = v;
+                        heldState = ks;
+                        break;
+                    }
+                    kq.offer(v);
+                    buffered++;
+                    if (!ks.ready) {
+                        ks.ready = true;
+                        ready.offer(ks);
+                    }
+                } else {
+                    if (kq.size() == maxPerKey) {
+                        buffered--;
+                        evict(kq.poll());
+                    }
+                    kq.offer(v);
+                    buffered++;
+                }
+                routed = true;
+            }
+            return routed;
+        }
+
+        void drain() {
+            if (getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+            Subscriber<? super T> a = actual;
+            AtomicThrowable error = this.error;
+            ArrayDeque<KeyState<K, T>> rd = ready;
+
+            for (;;) {
+                long r = requested.get();
+                long e = 0L;
+                long now = now();
+
+                for (;;) {
+                    if (cancelled) {
+                        cleanup();
+                        return;
+                    }
+
+                    if (error.get() != null) {
+                        Throwable ex = error.terminate();
+                        cleanup();
+                        SubscriptionHelper.cancel(s);
+                        SubscriptionHelper.cancel(other);
+                        a.onError(ex);
+                        return;
+                    }
+
+                    boolean d = done;
+                    boolean progress;
+
+                    try {
+                        applyControls(now);
+                        progress = route(now);
+                    } catch (Throwable ex) {
+                        Exceptions.throwIfFatal(ex);
+                        error.addThrowable(ex);
+                        continue;
+                    }
+
+                    while (e != r) {
+                        if (cancelled) {
+                            cleanup();
+                            return;
+                        }
+                        KeyState<K, T> ks = rd.poll();
+                        if (ks == null) {
+                            break;
+                        }
+                        if (!ks.open) {
+                            // closed since it became ready, reopening puts it back
+                            ks.ready = false;
+                            continue;
+                        }
+                        T v = ks.queue.poll();
+                        buffered--;
+
+                        a.onNext(v);
+
+                        e++;
+                        progress = true;
+                        if (ks.queue.isEmpty()) {
+                            ks.ready = false;
+                            release(ks);
+                        } else {
+                            rd.offer(ks);
+                        }
+                    }
+
+                    if (d && held == null && buffered == 0L && queue.isEmpty()) {
+                        cleanup();
+                        SubscriptionHelper.cancel(other);
+                        a.onComplete();
+                        return;
+                    }
+
+                    if (!progress) {
+                        break;
+                    }
+                }
+
+                if (e != 0L) {
+                    BackpressureHelper.produced(requested, e);
+                }
+
+                sweep(now);
+
+                missed = addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        void change(Map.Entry<K, Boolean> entry) {
+            controls.offer(entry);
+            drain();
+        }
+
+        void innerError(Throwable ex) {
+            onError(ex);
+        }
+
+        void innerComplete() {
+            innerError(new IllegalStateException("The valve source completed unexpectedly."));
+        }
+
+        final class OtherSubscriber extends AtomicReference<Subscription> implements Subscriber<Map.Entry<K, Boolean>> {
+
+            private static final long serialVersionUID = -8375473366632470355L;
+
+            @Override
+            public void onSubscribe(Subscription s) {
+                if (SubscriptionHelper.setOnce(this, s)) {
+                    s.request(Long.MAX_VALUE);
+                }
+            }
+
+            @Override
+            public void onNext(Map.Entry<K, Boolean> t) {
+                change(t);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                innerError(t);
+            }
+
+            @Override
+            public void onComplete() {
+                innerComplete();
+            }
+        }
+    }
+
+    static final class KeyState<K, T> {
+
+        final K key;
+
+        final ArrayDeque<T> queue;
+
+        boolean open;
+
+        /** Indicates the state is in the ready deque. */
+        boolean ready;
+
+        long lastActive;
+
+        KeyState(K key, boolean open) {
+            this.key = key;
+            this.open = open;
+            this.queue = new ArrayDeque<T>();
+        }
+    }
+}
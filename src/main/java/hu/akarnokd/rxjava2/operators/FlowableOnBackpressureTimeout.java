@@ -16,7 +16,6 @@
 
 package hu.akarnokd.rxjava2.operators;
 
-import java.util.ArrayDeque;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.*;
 
@@ -33,6 +32,12 @@ import io.reactivex.plugins.RxJavaPlugins;
 /**
  * If the downstream doesn't request, it buffers events and times out
  * old elements from the front of the buffer.
+ * <p>
+ * The buffer is a lock-free single-producer multi-consumer queue: the upstream
+ * appends to it and evicts the oldest elements above the size limit, the timeout task
+ * evicts the expired elements and the drain loop emits, hence the buffer stays bounded
+ * even while the downstream is busy in its onNext. There is at most one timeout task
+ * scheduled at a time, for the oldest element.
  */
 final class FlowableOnBackpressureTimeout<T> extends Flowable<T>
 implements FlowableTransformer<T, T> {
@@ -79,19 +84,20 @@ implements FlowableTransformer<T, T> {
 
         final AtomicLong requested;
 
-        final int maxSizeDouble;
+        final int maxSize;
 
+        /** The timeout in nanoseconds, the arrival times are measured at this granularity. */
         final long timeout;
 
-        final TimeUnit unit;
-
         final Worker worker;
 
         final Consumer<? super T> onEvict;
 
+        final AtomicBoolean timerPending;
+
         Subscription s;
 
-        final ArrayDeque<Object> queue;
+        final TimedQueue<T> queue;
 
         volatile boolean done;
         Throwable error;
@@ -101,13 +107,13 @@ implements FlowableTransformer<T, T> {
         OnBackpressureTimeoutSubscriber(Subscriber<? super T> actual, int maxSize, long timeout, TimeUnit unit,
                 Worker worker, Consumer<? super T> onEvict) {
             this.actual = actual;
-            this.maxSizeDouble = maxSize << 1;
-            this.timeout = timeout;
-            this.unit = unit;
+            this.maxSize = maxSize;
+            this.timeout = unit.toNanos(timeout);
             this.worker = worker;
             this.onEvict = onEvict;
             this.requested = new AtomicLong();
-            this.queue = new ArrayDeque<Object>();
+            this.timerPending = new AtomicBoolean();
+            this.queue = new TimedQueue<T>();
         }
 
         @Override
@@ -129,19 +135,13 @@ implements FlowableTransformer<T, T> {
             }
         }
 
-        @SuppressWarnings("unchecked")
         void clearQueue() {
+            TimedQueue<T> q = queue;
             for (;;) {
-                T evicted;
-                synchronized (this) {
-                    if (queue.isEmpty()) {
-                        break;
-                    }
-
-                    queue.poll();
-                    evicted = (T)queue.poll();
+                T evicted = q.poll();
+                if (evicted == null) {
+                    break;
                 }
-
                 evict(evicted);
             }
         }
@@ -157,20 +157,24 @@ implements FlowableTransformer<T, T> {
             }
         }
 
-        @SuppressWarnings("unchecked")
         @Override
         public void onNext(T t) {
-            T evicted = null;
-            synchronized (this) {
-                if (queue.size() == maxSizeDouble) {
-                    queue.poll();
-                    evicted = (T)queue.poll();
+            long now = worker.now(TimeUnit.NANOSECONDS);
+            TimedQueue<T> q = queue;
+            q.offer(t, now);
+            // enforce the bound here, the drain loop may be blocked in a slow consumer
+            while (q.size() > maxSize) {
+                T evicted = q.poll();
+                if (evicted == null) {
+                    break;
                 }
-                queue.offer(worker.now(unit));
-                queue.offer(t);
+                evict(evicted);
+            }
+            // run() may have just released the timer, aim for the oldest item instead of this one
+            long time = q.peekTime();
+            if (time != TimedQueue.NO_TIME) {
+                armTimer(time + timeout - now);
             }
-            evict(evicted);
-            worker.schedule(this, timeout, unit);
             drain();
         }
 
@@ -187,83 +191,73 @@ implements FlowableTransformer<T, T> {
             drain();
         }
 
-        @SuppressWarnings("unchecked")
         @Override
         public void run() {
+            timerPending.set(false);
+            TimedQueue<T> q = queue;
+            long expired = worker.now(TimeUnit.NANOSECONDS) - timeout;
+            // evict here, the drain loop may be blocked in a slow consumer
             for (;;) {
                 if (cancelled) {
-                    break;
+                    return;
                 }
-
-                boolean d = done;
-                boolean empty;
-                T evicted = null;
-
-                synchronized (this) {
-                    Long ts = (Long)queue.peek();
-                    empty = ts == null;
-                    if (!empty) {
-                        if (ts.longValue() <= worker.now(unit) - timeout) {
-                            queue.poll();
-                            evicted = (T)queue.poll();
-                        } else {
-                            break;
-                        }
-                    }
+                T evicted = q.pollExpired(expired);
+                if (evicted == null) {
+                    break;
                 }
-
                 evict(evicted);
+            }
+            long time = q.peekTime();
+            if (time != TimedQueue.NO_TIME) {
+                armTimer(time - expired);
+            }
+            drain();
+        }
 
-                if (empty) {
-                    if (d) {
-                        drain();
-                    }
-                    break;
-                }
+        void armTimer(long delay) {
+            AtomicBoolean tp = timerPending;
+            if (!tp.get() && tp.compareAndSet(false, true)) {
+                worker.schedule(this, delay, TimeUnit.NANOSECONDS);
             }
         }
 
         void evict(T evicted) {
-            if (evicted != null) {
-                try {
-                    onEvict.accept(evicted);
-                } catch (Throwable ex) {
-                    Exceptions.throwIfFatal(ex);
-                    RxJavaPlugins.onError(ex);
-                }
+            try {
+                onEvict.accept(evicted);
+            } catch (Throwable ex) {
+                Exceptions.throwIfFatal(ex);
+                RxJavaPlugins.onError(ex);
             }
         }
 
-        @SuppressWarnings("unchecked")
         void drain() {
             if (getAndIncrement() != 0) {
                 return;
             }
 
             int missed = 1;
+            TimedQueue<T> q = queue;
 
             for (;;) {
                 long r = requested.get();
                 long e = 0;
+                long expired = worker.now(TimeUnit.NANOSECONDS) - timeout;
 
-                while (e != r) {
+                for (;;) {
                     if (cancelled) {
                         clearQueue();
                         return;
                     }
 
                     boolean d = done;
-                    T v;
 
-                    synchronized (this) {
-                        if (queue.poll() != null) {
-                            v = (T)queue.poll();
-                        } else {
-                            v = null;
-                        }
+                    T evicted = q.pollExpired(expired);
+                    if (evicted != null) {
+                        evict(evicted);
+                        continue;
                     }
 
-                    boolean empty = v == null;
+                    boolean empty = q.isEmpty();
 
                     if (d && empty) {
                         Throwable ex = error;
@@ -281,34 +275,29 @@ implements FlowableTransformer<T, T> {
                         break;
                     }
 
+                    if (e == r) {
+                        break;
+                    }
+
+                    T v = q.poll();
+                    if (v == null) {
+                        // evicted by the producer or the timer in the meantime
+                        continue;
+                    }
+
                     actual.onNext(v);
 
                     e++;
                 }
 
-                if (e == r) {
-                    if (cancelled) {
-                        clearQueue();
-                        return;
-                    }
-
-                    boolean d = done;
-                    boolean empty;
-                    synchronized (this) {
-                        empty = queue.isEmpty();
-                    }
-
-                    if (d && empty) {
-                        Throwable ex = error;
-                        if (ex != null) {
-                            actual.onError(ex);
-                        } else {
-                            actual.onComplete();
-                        }
+                if (e != 0L) {
+                    BackpressureHelper.produced(requested, e);
+                }
 
-                        worker.dispose();
-                        return;
-                    }
+                long time = q.peekTime();
+                if (time != TimedQueue.NO_TIME) {
+                    // the oldest element is not yet expired
+                    armTimer(time - expired);
                 }
 
                 missed = addAndGet(-missed);
@@ -318,4 +307,165 @@ implements FlowableTransformer<T, T> {
             }
         }
     }
+
+    /**
+     * An unbounded single-producer multi-consumer queue of elements and their arrival
+     * time, stored in linked chunks of an element array and a parallel primitive long array.
+     * <p>
+     * The consumers claim the oldest element by incrementing the consumer index, thus
+     * the producer and the timer can evict while the drain loop is emitting.
+     * @param <T> the element type
+     */
+    static final class TimedQueue<T> {
+
+        static final int CHUNK_SIZE = 128;
+
+        /** Returned by {@link #peekTime()} if the queue is empty. */
+        static final long NO_TIME = Long.MIN_VALUE;
+
+        final AtomicLong producerIndex;
+
+        final AtomicLong consumerIndex;
+
+        Chunk<T> producerChunk;
+
+        int producerOffset;
+
+        /** The chunk of a recently claimed index, never ahead of the consumer index. */
+        volatile Chunk<T> consumerChunk;
+
+        TimedQueue() {
+            Chunk<T> c = new Chunk<T>(0L);
+            this.producerChunk = c;
+            this.consumerChunk = c;
+            this.producerIndex = new AtomicLong();
+            this.consumerIndex = new AtomicLong();
+        }
+
+        void offer(T value, long time) {
+            Chunk<T> c = producerChunk;
+            int o = producerOffset;
+            if (o == CHUNK_SIZE) {
+                Chunk<T> n = new Chunk<T>(c.base + CHUNK_SIZE);
+                n.times[0] = time;
+                n.lazySet(0, value);
+                producerChunk = n;
+                producerOffset = 1;
+                c.next = n;
+            } else {
+                c.times[o] = time;
+                c.lazySet(o, value);
+                producerOffset = o + 1;
+            }
+            producerIndex.lazySet(producerIndex.get() + 1);
+        }
+
+        /**
+         * Returns the chunk holding the given, already produced index or null if
+         * the consumer index has moved past it in the meantime.
+         * @param index the index
+         * @return the chunk or null
+         */
+        Chunk<T> chunk(long index) {
+            Chunk<T> c = consumerChunk;
+            if (c.base > index) {
+                return null;
+            }
+            if (index - c.base >= CHUNK_SIZE) {
+                do {
+                    c = c.next;
+                } while (index - c.base >= CHUNK_SIZE);
+                consumerChunk = c;
+            }
+            return c;
+        }
+
+        T poll() {
+            AtomicLong ci = consumerIndex;
+            for (;;) {
+                long index = ci.get();
+                if (index == producerIndex.get()) {
+                    return null;
+                }
+                Chunk<T> c = chunk(index);
+                if (c != null && ci.compareAndSet(index, index + 1)) {
+                    return take(c, index);
+                }
+            }
+        }
+
+        /**
+         * Removes the oldest element if it arrived at or before the given time.
+         * @param expired the latest arrival time considered expired
+         * @return the element or null if the queue is empty or the oldest element is not expired
+         */
+        T pollExpired(long expired) {
+            AtomicLong ci = consumerIndex;
+            for (;;) {
+                long index = ci.get();
+                if (index == producerIndex.get()) {
+                    return null;
+                }
+                Chunk<T> c = chunk(index);
+                if (c != null) {
+                    if (c.times[(int)(index - c.base)] > expired) {
+                        return null;
+                    }
+                    if (ci.compareAndSet(index, index + 1)) {
+                        return take(c, index);
+                    }
+                }
+            }
+        }
+
+        static <T> T take(Chunk<T> c, long index) {
+            int o = (int)(index - c.base);
+            T v = c.get(o);
+            c.lazySet(o, null);
+            return v;
+        }
+
+        /**
+         * Returns the arrival time of the oldest element.
+         * @return the arrival time or {@link #NO_TIME} if the queue is empty
+         */
+        long peekTime() {
+            for (;;) {
+                long index = consumerIndex.get();
+                if (index == producerIndex.get()) {
+                    return NO_TIME;
+                }
+                Chunk<T> c = chunk(index);
+                if (c != null) {
+                    return c.times[(int)(index - c.base)];
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return consumerIndex.get() == producerIndex.get();
+        }
+
+        long size() {
+            return producerIndex.get() - consumerIndex.get();
+        }
+
+        static final class Chunk<T> extends AtomicReferenceArray<T> {
+
+            private static final long serialVersionUID = -8546405012542498587L;
+
+            /** The queue index of the first slot. */
+            final long base;
+
+            final long[] times;
+
+            volatile Chunk<T> next;
+
+            Chunk(long base) {
+                super(CHUNK_SIZE);
+                this.base = base;
+                this.times = new long[CHUNK_SIZE];
+            }
+        }
+    }
 }
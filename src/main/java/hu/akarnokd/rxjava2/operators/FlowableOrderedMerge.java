@@ -33,6 +33,10 @@ import io.reactivex.plugins.RxJavaPlugins;
 /**
  * Merges a fixed set of sources by picking the next smallest
  * available element from any of the sources based on a comparator.
+ * <p>
+ * With {@link #HEAP_THRESHOLD} or more sources, the sources holding a value
+ * are kept in a binary heap so that emitting an item only re-sifts the slot
+ * it came from, instead of comparing the latest items of all sources.
  * 
  * @param <T> the source value types
  * 
@@ -40,6 +44,9 @@ import io.reactivex.plugins.RxJavaPlugins;
  */
 final class FlowableOrderedMerge<T> extends Flowable<T> {
 
+    /** The number of sources from which the heap-based merge is used. */
+    static final int HEAP_THRESHOLD = 8;
+
     final Publisher<T>[] sources;
 
     final Iterable<? extends Publisher<T>> sourcesIterable;
@@ -95,12 +102,17 @@ final class FlowableOrderedMerge<T> extends Flowable<T> {
             return;
         }
 
-        MergeCoordinator<T> parent = new MergeCoordinator<T>(s, comparator, n, prefetch, delayErrors);
+        MergeCoordinator<T> parent;
+        if (n >= HEAP_THRESHOLD) {
+            parent = new HeapMergeCoordinator<T>(s, comparator, n, prefetch, delayErrors);
+        } else {
+            parent = new MergeCoordinator<T>(s, comparator, n, prefetch, delayErrors);
+        }
         s.onSubscribe(parent);
         parent.subscribe(array, n);
     }
 
-    static final class MergeCoordinator<T>
+    static class MergeCoordinator<T>
     extends AtomicInteger
     implements Subscription, InnerQueuedSubscriberSupport<T> {
         private static final long serialVersionUID = -8467324377226330554L;
@@ -409,4 +421,236 @@ final class FlowableOrderedMerge<T> extends Flowable<T> {
             }
         }
     }
+
+    static final class HeapMergeCoordinator<T> extends MergeCoordinator<T> {
+
+        private static final long serialVersionUID = 2890553452283658512L;
+
+        /** The indexes of sources with a value in latest, ordered as a binary heap. */
+        final int[] heap;
+
+        /** The indexes of sources without a value in latest which haven't terminated yet. */
+        final int[] missing;
+
+        int heapSize;
+
+        int missingSize;
+
+        HeapMergeCoordinator(Subscriber<? super T> actual, Comparator<? super T> comparator, int n, int prefetch, boolean delayErrors) {
+            super(actual, comparator, n, prefetch, delayErrors);
+            this.heap = new int[n];
+            int[] m = new int[n];
+            for (int i = 0; i < n; i++) {
+                m[i] = i;
+            }
+            this.missing = m;
+            this.missingSize = n;
+        }
+
+        @Override
+        public void drain() {
+            if (getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+
+            Subscriber<? super T> a = actual;
+            AtomicThrowable err = errors;
+            InnerQueuedSubscriber<T>[] subs = subscribers;
+            Object[] latest = this.latest;
+            int[] heap = this.heap;
+            int[] missing = this.missing;
+
+            for (;;) {
+
+                long r = requested.get();
+                long e = 0L;
+
+                for (;;) {
+                    if (cancelled) {
+                        clearSources();
+                        return;
+                    }
+
+                    if (!delayErrors && err.get() != null) {
+                        cancelAndClearSources();
+                        a.onError(err.terminate());
+                        return;
+                    }
+
+                    int m = missingSize;
+                    int j = 0;
+                    for (int i = 0; i < m; i++) {
+                        int index = missing[i];
+                        InnerQueuedSubscriber<T> inner = subs[index];
+                        boolean innerDone = inner.isDone();
+                        SimpleQueue<T> q = inner.queue();
+                        T v;
+                        try {
+                            v = q != null ? q.poll() : null;
+                        } catch (Throwable ex) {
+                            Exceptions.throwIfFatal(ex);
+                            err.addThrowable(ex);
+                            inner.setDone();
+                            if (!delayErrors) {
+                                cancelAndClearSources();
+                                a.onError(err.terminate());
+                                return;
+                            }
+                            innerDone = true;
+                            v = null;
+                        }
+
+                        if (v != null) {
+                            latest[index] = v;
+                            int k = heapSize++;
+                            heap[k] = index;
+                            try {
+                                siftUp(k);
+                            } catch (Throwable ex) {
+                                Exceptions.throwIfFatal(ex);
+                                err.addThrowable(ex);
+                                cancelAndClearSources();
+                                a.onError(err.terminate());
+                                return;
+                            }
+                        } else
+                        if (!innerDone) {
+                            missing[j++] = index;
+                        }
+                    }
+                    missingSize = j;
+
+                    if (j != 0) {
+                        break;
+                    }
+
+                    if (heapSize == 0) {
+                        if (err.get() != null) {
+                            a.onError(err.terminate());
+                        } else {
+                            a.onComplete();
+                        }
+                        return;
+                    }
+
+                    if (e == r) {
+                        break;
+                    }
+
+                    int pick = heap[0];
+                    @SuppressWarnings("unchecked")
+                    T smallest = (T)latest[pick];
+                    latest[pick] = null;
+
+                    a.onNext(smallest);
+                    InnerQueuedSubscriber<T> inner = subs[pick];
+                    inner.requestOne();
+
+                    e++;
+
+                    boolean innerDone = inner.isDone();
+                    SimpleQueue<T> q = inner.queue();
+                    T v;
+                    try {
+                        v = q != null ? q.poll() : null;
+                    } catch (Throwable ex) {
+                        Exceptions.throwIfFatal(ex);
+                        err.addThrowable(ex);
+                        inner.setDone();
+                        if (!delayErrors) {
+                            cancelAndClearSources();
+                            a.onError(err.terminate());
+                            return;
+                        }
+                        innerDone = true;
+                        v = null;
+                    }
+
+                    if (v != null) {
+                        latest[pick] = v;
+                    } else {
+                        heap[0] = heap[--heapSize];
+                        if (!innerDone) {
+                            missing[missingSize++] = pick;
+                        }
+                    }
+
+                    try {
+                        siftDown(0);
+                    } catch (Throwable ex) {
+                        Exceptions.throwIfFatal(ex);
+                        err.addThrowable(ex);
+                        cancelAndClearSources();
+                        a.onError(err.terminate());
+                        return;
+                    }
+                }
+
+                if (e != 0L) {
+                    BackpressureHelper.produced(requested, e);
+                }
+
+                missed = addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Returns true if the latest item of source {@code i} should be emitted
+         * before the latest item of source {@code j}; equal items are
+         * emitted in source order.
+         * @param i the first source index
+         * @param j the second source index
+         * @return true if source i comes first
+         */
+        @SuppressWarnings("unchecked")
+        boolean less(int i, int j) {
+            int c = comparator.compare((T)latest[i], (T)latest[j]);
+            return c < 0 || (c == 0 && i < j);
+        }
+
+        void siftUp(int k) {
+            int[] h = heap;
+            int index = h[k];
+            while (k > 0) {
+                int parent = (k - 1) >> 1;
+                int p = h[parent];
+                if (!less(index, p)) {
+                    break;
+                }
+                h[k] = p;
+                k = parent;
+            }
+            h[k] = index;
+        }
+
+        void siftDown(int k) {
+            int[] h = heap;
+            int size = heapSize;
+            if (k >= size) {
+                return;
+            }
+            int index = h[k];
+            int half = size >> 1;
+            while (k < half) {
+                int child = (k << 1) + 1;
+                int c = h[child];
+                int right = child + 1;
+                if (right < size && less(h[right], c)) {
+                    child = right;
+                    c = h[child];
+                }
+                if (!less(c, index)) {
+                    break;
+                }
+                h[k] = c;
+                k = child;
+            }
+            h[k] = index;
+        }
+    }
 }
@@ -21,6 +21,7 @@ import java.util.concurrent.*;
 
 import org.reactivestreams.Publisher;
 
+import hu.akarnokd.rxjava2.functions.ToLongFunction;
 import io.reactivex.*;
 import io.reactivex.annotations.*;
 import io.reactivex.functions.*;
@@ -117,6 +118,123 @@ public final class FlowableTransformers {
         return new FlowableValve<T>(null, other, defaultOpen, bufferSize);
     }
 
+    /**
+     * Relays values grouped by a key and stops or resumes the flow of each group
+     * individually when the control Publisher signals a (key, false) or (key, true) entry.
+     * <p>Properties:
+     * <ul>
+     * <li>The operator starts with open gates for all keys.</li>
+     * <li>The open keys having items are emitted in a round-robin fashion.</li>
+     * <li>Each key can hold up to {@link Flowable#bufferSize()} items; if a closed key's
+     * queue is full, its oldest item is dropped.</li>
+     * <li>The state of a key is forgotten as soon as its queue is empty and its gate is open.</li>
+     * <li>If the control Publisher completes, the sequence terminates with an {@code IllegalStateException}.</li>
+     * <li>The operator doesn't run on any particular {@link io.reactivex.Scheduler Scheduler}.</li>
+     * </ul>
+     * @param <T> the value type of the main source
+     * @param <K> the key type
+     * @param keySelector the function that returns the key for an item
+     * @param control the Publisher of key and gate state pairs, true indicating an open gate
+     * @return the new FlowableTransformer instance
+     * @throws NullPointerException if {@code keySelector} or {@code control} is null
+     * @since 0.17.0
+     */
+    @SchedulerSupport(SchedulerSupport.NONE)
+    @BackpressureSupport(BackpressureKind.FULL)
+    public static <T, K> FlowableTransformer<T, T> keyedValve(Function<? super T, ? extends K> keySelector,
+            Publisher<? extends Map.Entry<K, Boolean>> control) {
+        return keyedValve(keySelector, control, true, Flowable.bufferSize(), Functions.emptyConsumer());
+    }
+
+    /**
+     * Relays values grouped by a key and stops or resumes the flow of each group
+     * individually when the control Publisher signals a (key, false) or (key, true) entry,
+     * with the specified default gate state and per-key capacity.
+     * <p>Properties:
+     * <ul>
+     * <li>The open keys having items are emitted in a round-robin fashion.</li>
+     * <li>If a closed key's queue is full, its oldest item is evicted and handed to the {@code onEvict} callback.</li>
+     * <li>If an open key's queue is full, the routing of further items waits for the downstream to request more.</li>
+     * <li>The state of a key is forgotten as soon as its queue is empty and its gate is in the default state.</li>
+     * <li>If the control Publisher completes, the sequence terminates with an {@code IllegalStateException}.</li>
+     * <li>The operator doesn't run on any particular {@link io.reactivex.Scheduler Scheduler}.</li>
+     * </ul>
+     * @param <T> the value type of the main source
+     * @param <K> the key type
+     * @param keySelector the function that returns the key for an item
+     * @param control the Publisher of key and gate state pairs, true indicating an open gate
+     * @param defaultOpen should the gates of the keys start as open?
+     * @param maxPerKey the maximum number of items queued per key
+     * @param onEvict called with the items evicted from the queue of a closed key
+     * @return the new FlowableTransformer instance
+     * @throws NullPointerException if {@code keySelector}, {@code control} or {@code onEvict} is null
+     * @throws IllegalArgumentException if {@code maxPerKey} is non-positive
+     * @since 0.17.0
+     */
+    @SchedulerSupport(SchedulerSupport.NONE)
+    @BackpressureSupport(BackpressureKind.FULL)
+    public static <T, K> FlowableTransformer<T, T> keyedValve(Function<? super T, ? extends K> keySelector,
+            Publisher<? extends Map.Entry<K, Boolean>> control, boolean defaultOpen,
+            int maxPerKey, Consumer<? super T> onEvict) {
+        ObjectHelper.requireNonNull(keySelector, "keySelector is null");
+        ObjectHelper.requireNonNull(control, "control is null");
+        ObjectHelper.verifyPositive(maxPerKey, "maxPerKey");
+        ObjectHelper.requireNonNull(onEvict, "onEvict is null");
+        return new FlowableKeyedValve<T, K>(null, keySelector, control, defaultOpen, maxPerKey, onEvict,
+                0L, TimeUnit.NANOSECONDS, null, Flowable.bufferSize());
+    }
+
+    /**
+     * Relays values grouped by a key and stops or resumes the flow of each group
+     * individually when the control Publisher signals a (key, false) or (key, true) entry,
+     * with the specified default gate state and per-key capacity and remembers
+     * the idle keys for the given amount of time.
+     * <p>Properties:
+     * <ul>
+     * <li>The open keys having items are emitted in a round-robin fashion.</li>
+     * <li>If a closed key's queue is full, its oldest item is evicted and handed to the {@code onEvict} callback.</li>
+     * <li>If an open key's queue is full, the routing of further items waits for the downstream to request more.</li>
+     * <li>The state of a key is forgotten once its queue is empty, its gate is in the default state
+     * and it didn't receive items or control signals for the idle timeout.</li>
+     * <li>If the control Publisher completes, the sequence terminates with an {@code IllegalStateException}.</li>
+     * <li>The scheduler is only used as the time source, the idle keys are removed when
+     * the operator processes the next event.</li>
+     * </ul>
+     * @param <T> the value type of the main source
+     * @param <K> the key type
+     * @param keySelector the function that returns the key for an item
+     * @param control the Publisher of key and gate state pairs, true indicating an open gate
+     * @param defaultOpen should the gates of the keys start as open?
+     * @param maxPerKey the maximum number of items queued per key
+     * @param onEvict called with the items evicted from the queue of a closed key
+     * @param idleTimeout the time a key has to be idle before its state is forgotten, zero forgets it immediately
+     * @param unit the time unit
+     * @param scheduler the scheduler providing the current time
+     * @return the new FlowableTransformer instance
+     * @throws NullPointerException if {@code keySelector}, {@code control}, {@code onEvict},
+     * {@code unit} or {@code scheduler} is null
+     * @throws IllegalArgumentException if {@code maxPerKey} is non-positive or {@code idleTimeout} is negative
+     * @since 0.17.0
+     */
+    @SchedulerSupport(SchedulerSupport.CUSTOM)
+    @BackpressureSupport(BackpressureKind.FULL)
+    public static <T, K> FlowableTransformer<T, T> keyedValve(Function<? super T, ? extends K> keySelector,
+            Publisher<? extends Map.Entry<K, Boolean>> control, boolean defaultOpen,
+            int maxPerKey, Consumer<? super T> onEvict,
+            long idleTimeout, TimeUnit unit, Scheduler scheduler) {
+        ObjectHelper.requireNonNull(keySelector, "keySelector is null");
+        ObjectHelper.requireNonNull(control, "control is null");
+        ObjectHelper.verifyPositive(maxPerKey, "maxPerKey");
+        ObjectHelper.requireNonNull(onEvict, "onEvict is null");
+        if (idleTimeout < 0L) {
+            throw new IllegalArgumentException("idleTimeout >= 0 required but it was " + idleTimeout);
+        }
+        ObjectHelper.requireNonNull(unit, "unit is null");
+        ObjectHelper.requireNonNull(scheduler, "scheduler is null");
+        return new FlowableKeyedValve<T, K>(null, keySelector, control, defaultOpen, maxPerKey, onEvict,
+                idleTimeout, unit, scheduler, Flowable.bufferSize());
+    }
+
     /**
      * Buffers elements into a List while the given predicate returns true; if the
      * predicate returns false for an item, a new buffer is created with the specified item.
@@ -140,7 +258,8 @@ public final class FlowableTransformers {
      * @param <C> the collection type
      * @param predicate the predicate receiving the current value and if returns false,
      *                  a new collection is created with the specified item
-     * @param bufferSupplier the callable that returns a fresh collection
+     * @param bufferSupplier the callable that returns a fresh collection,
+     *                       use a {@link BufferPool} to recycle the buffers
      * @return the new FlowableTransformer instance
      *
      * @since 0.8.0
@@ -175,7 +294,8 @@ public final class FlowableTransformers {
      * @param <C> the collection type
      * @param predicate the predicate receiving the current item and if returns true,
      *                  the current collection is emitted and a fresh empty collection is created
-     * @param bufferSupplier the callable that returns a fresh collection
+     * @param bufferSupplier the callable that returns a fresh collection,
+     *                       use a {@link BufferPool} to recycle the buffers
      * @return the new Flowable instance
      *
      * @since 0.8.0
@@ -210,7 +330,8 @@ public final class FlowableTransformers {
      * @param <C> the collection type
      * @param predicate the predicate receiving the current item and if returns true,
      *                  the current collection is emitted and a fresh empty collection is created
-     * @param bufferSupplier the callable that returns a fresh collection
+     * @param bufferSupplier the callable that returns a fresh collection,
+     *                       use a {@link BufferPool} to recycle the buffers
      * @return the new Flowable instance
      *
      * @since 0.14.3
@@ -221,6 +342,93 @@ public final class FlowableTransformers {
         return new FlowableBufferPredicate<T, C>(null, predicate, FlowableBufferPredicate.Mode.SPLIT, bufferSupplier);
     }
 
+    /**
+     * Collects items into Lists of at most the given number of items, emitted when
+     * a List is full or its first item has lingered for the given time, whichever happens first.
+     * <p>
+     * If the downstream has no demand when the linger time is up, the List keeps
+     * growing until it is full, thus the batches adapt to the pace of the downstream.
+     * The operator doesn't schedule a timer per item.
+     * @param <T> the value type
+     * @param maxCount the maximum number of items in a List, positive
+     * @param linger the maximum time the first item of a List waits for the List to be emitted
+     *               (if there is downstream demand), positive
+     * @param unit the time unit of the linger time
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    @SchedulerSupport(SchedulerSupport.COMPUTATION)
+    @BackpressureSupport(BackpressureKind.FULL)
+    public static <T> FlowableTransformer<T, List<T>> batch(int maxCount, long linger, TimeUnit unit) {
+        ObjectHelper.verifyPositive(maxCount, "maxCount");
+        ObjectHelper.verifyPositive(linger, "linger");
+        ObjectHelper.requireNonNull(unit, "unit is null");
+        return new FlowableBatch<T>(null, maxCount, Long.MAX_VALUE, null, linger, unit, Schedulers.computation(), Flowable.bufferSize());
+    }
+
+    /**
+     * Collects items into Lists which are emitted when the number of items or their total
+     * weight reaches its limit or the first item has lingered for the given time, whichever happens first.
+     * <p>
+     * An item that would push the total weight of a non-empty List over the limit starts the next List;
+     * an item heavier than the limit is emitted alone.
+     * If the downstream has no demand when the linger time is up, the List keeps
+     * growing until it is full, thus the batches adapt to the pace of the downstream.
+     * The operator doesn't schedule a timer per item.
+     * @param <T> the value type
+     * @param maxCount the maximum number of items in a List, positive
+     * @param maxWeight the maximum total weight of the items in a List, positive
+     * @param weigher the function returning the weight (for example, the estimated size in bytes) of an item
+     * @param linger the maximum time the first item of a List waits for the List to be emitted
+     *               (if there is downstream demand), positive
+     * @param unit the time unit of the linger time
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    @SchedulerSupport(SchedulerSupport.COMPUTATION)
+    @BackpressureSupport(BackpressureKind.FULL)
+    public static <T> FlowableTransformer<T, List<T>> batch(int maxCount, long maxWeight, ToLongFunction<? super T> weigher,
+            long linger, TimeUnit unit) {
+        return batch(maxCount, maxWeight, weigher, linger, unit, Schedulers.computation());
+    }
+
+    /**
+     * Collects items into Lists which are emitted when the number of items or their total
+     * weight reaches its limit or the first item has lingered for the given time, whichever happens first,
+     * measuring the time and scheduling the linger timer on the given Scheduler.
+     * <p>
+     * An item that would push the total weight of a non-empty List over the limit starts the next List;
+     * an item heavier than the limit is emitted alone.
+     * If the downstream has no demand when the linger time is up, the List keeps
+     * growing until it is full, thus the batches adapt to the pace of the downstream.
+     * The operator doesn't schedule a timer per item.
+     * @param <T> the value type
+     * @param maxCount the maximum number of items in a List, positive
+     * @param maxWeight the maximum total weight of the items in a List, positive
+     * @param weigher the function returning the weight (for example, the estimated size in bytes) of an item
+     * @param linger the maximum time the first item of a List waits for the List to be emitted
+     *               (if there is downstream demand), positive
+     * @param unit the time unit of the linger time
+     * @param scheduler the scheduler providing the time and running the linger timer
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    @SchedulerSupport(SchedulerSupport.CUSTOM)
+    @BackpressureSupport(BackpressureKind.FULL)
+    public static <T> FlowableTransformer<T, List<T>> batch(int maxCount, long maxWeight, ToLongFunction<? super T> weigher,
+            long linger, TimeUnit unit, Scheduler scheduler) {
+        ObjectHelper.verifyPositive(maxCount, "maxCount");
+        ObjectHelper.verifyPositive(maxWeight, "maxWeight");
+        ObjectHelper.requireNonNull(weigher, "weigher is null");
+        ObjectHelper.verifyPositive(linger, "linger");
+        ObjectHelper.requireNonNull(unit, "unit is null");
+        ObjectHelper.requireNonNull(scheduler, "scheduler is null");
+        return new FlowableBatch<T>(null, maxCount, maxWeight, weigher, linger, unit, scheduler, Flowable.bufferSize());
+    }
+
     /**
      * Inserts a time delay between emissions from the upstream source.
      * <dl>
@@ -769,6 +977,38 @@ public final class FlowableTransformers {
         return new FlowableFlatMapSync<T, R>(null, mapper, maxConcurrency, bufferSize, depthFirst);
     }
 
+    /**
+     * Maps the upstream values into Publisher and merges at most maxConcurrency of them at once,
+     * optimized for mainly synchronous sources, adapting the prefetch of each inner source
+     * between the given bounds.
+     * <p>A new inner source requests about as many items as the previous inner sources produced
+     * on average and doubles its next request batch, up to maxBufferSize, if the downstream could
+     * take all of its items so far. This helps when the inner sources are of varying length: short
+     * ones don't allocate large buffers and long ones aren't held back by small request batches.
+     * @param <T> the input value type
+     * @param <R> the result value type
+     * @param mapper the function mapping from a value into a Publisher
+     * @param maxConcurrency the maximum number of sources merged at once
+     * @param minBufferSize the minimum prefetch on each inner source
+     * @param maxBufferSize the maximum prefetch on each inner source
+     * @param depthFirst if true, the inner sources are drained as much as possible
+     *                   if false, the inner sources are consumed in a round-robin fashion
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    public static <T, R> FlowableTransformer<T, R> flatMapSync(Function<? super T, ? extends Publisher<? extends R>> mapper, int maxConcurrency,
+            int minBufferSize, int maxBufferSize, boolean depthFirst) {
+        ObjectHelper.requireNonNull(mapper, "mapper is null");
+        ObjectHelper.verifyPositive(maxConcurrency, "maxConcurrency");
+        ObjectHelper.verifyPositive(minBufferSize, "minBufferSize");
+        ObjectHelper.verifyPositive(maxBufferSize, "maxBufferSize");
+        if (minBufferSize > maxBufferSize) {
+            throw new IllegalArgumentException("minBufferSize <= maxBufferSize required but it was " + minBufferSize + " > " + maxBufferSize);
+        }
+        return new FlowableFlatMapSync<T, R>(null, mapper, maxConcurrency, minBufferSize, maxBufferSize, depthFirst);
+    }
+
     /**
      * Maps the upstream values into Publisher and merges at most 32 of them at once,
      * collects and emits the items on the specified scheduler.
@@ -826,6 +1066,87 @@ public final class FlowableTransformers {
         return new FlowableFlatMapAsync<T, R>(null, mapper, maxConcurrency, bufferSize, depthFirst, scheduler);
     }
 
+    /**
+     * Maps the upstream values into Publisher and runs at most 32 of them at once,
+     * optimized for mainly synchronous sources, emitting their items in the order
+     * of the upstream values they were mapped from.
+     * <p>The items of the inner Publishers running ahead of the oldest one are buffered,
+     * up to the prefetch amount per inner Publisher.
+     * @param <T> the input value type
+     * @param <R> the result value type
+     * @param mapper the function mapping from a value into a Publisher
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    public static <T, R> FlowableTransformer<T, R> flatMapSyncOrdered(Function<? super T, ? extends Publisher<? extends R>> mapper) {
+        return flatMapSyncOrdered(mapper, 32, Flowable.bufferSize());
+    }
+
+    /**
+     * Maps the upstream values into Publisher and runs at most maxConcurrency of them at once,
+     * optimized for mainly synchronous sources, emitting their items in the order
+     * of the upstream values they were mapped from.
+     * <p>The items of the inner Publishers running ahead of the oldest one are buffered,
+     * up to bufferSize items per inner Publisher.
+     * @param <T> the input value type
+     * @param <R> the result value type
+     * @param mapper the function mapping from a value into a Publisher
+     * @param maxConcurrency the maximum number of sources running at once
+     * @param bufferSize the prefetch on each inner source
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    public static <T, R> FlowableTransformer<T, R> flatMapSyncOrdered(Function<? super T, ? extends Publisher<? extends R>> mapper, int maxConcurrency, int bufferSize) {
+        ObjectHelper.requireNonNull(mapper, "mapper is null");
+        ObjectHelper.verifyPositive(maxConcurrency, "maxConcurrency");
+        ObjectHelper.verifyPositive(bufferSize, "bufferSize");
+        return new FlowableFlatMapSyncOrdered<T, R>(null, mapper, maxConcurrency, bufferSize);
+    }
+
+    /**
+     * Maps the upstream values into Publisher and runs at most 32 of them at once,
+     * emitting their items in the order of the upstream values they were mapped from
+     * on the specified scheduler.
+     * <p>The items of the inner Publishers running ahead of the oldest one are buffered,
+     * up to the prefetch amount per inner Publisher.
+     * @param <T> the input value type
+     * @param <R> the output value type
+     * @param mapper the function mapping from a value into a Publisher
+     * @param scheduler the Scheduler to use to collect and emit the items
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    public static <T, R> FlowableTransformer<T, R> flatMapAsyncOrdered(Function<? super T, ? extends Publisher<? extends R>> mapper, Scheduler scheduler) {
+        return flatMapAsyncOrdered(mapper, scheduler, 32, Flowable.bufferSize());
+    }
+
+    /**
+     * Maps the upstream values into Publisher and runs at most maxConcurrency of them at once,
+     * emitting their items in the order of the upstream values they were mapped from
+     * on the specified scheduler.
+     * <p>The items of the inner Publishers running ahead of the oldest one are buffered,
+     * up to bufferSize items per inner Publisher.
+     * @param <T> the input value type
+     * @param <R> the output value type
+     * @param mapper the function mapping from a value into a Publisher
+     * @param scheduler the Scheduler to use to collect and emit the items
+     * @param maxConcurrency the maximum number of sources running at once
+     * @param bufferSize the prefetch on each inner source
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    public static <T, R> FlowableTransformer<T, R> flatMapAsyncOrdered(Function<? super T, ? extends Publisher<? extends R>> mapper, Scheduler scheduler, int maxConcurrency, int bufferSize) {
+        ObjectHelper.requireNonNull(mapper, "mapper is null");
+        ObjectHelper.requireNonNull(scheduler, "scheduler is null");
+        ObjectHelper.verifyPositive(maxConcurrency, "maxConcurrency");
+        ObjectHelper.verifyPositive(bufferSize, "bufferSize");
+        return new FlowableFlatMapAsyncOrdered<T, R>(null, mapper, maxConcurrency, bufferSize, scheduler);
+    }
+
     /**
      * If the upstream turns out to be empty, it keeps switching to the alternative sources until
      * one of them is non-empty or there are no more alternatives remaining.
@@ -902,4 +1223,82 @@ public final class FlowableTransformers {
         ObjectHelper.verifyPositive(capacityHint, "capacityHint");
         return new FlowableExpand<T>(null, expander, strategy, capacityHint);
     }
+
+    /**
+     * Emits elements from the source and then expands them into another layer of Publishers, emitting
+     * those items recursively until all Publishers become empty, keeping up to the given number
+     * of Publishers subscribed at once.
+     * <p>
+     * The emission order among the concurrently active Publishers is not defined.
+     * @param <T> the value type
+     * @param expander the function that converts an element into a Publisher to be expanded
+     * @param strategy the expansion strategy; depth-first subscribes to the most recently expanded
+     *                 Publisher next, breath-first subscribes to the Publishers in the order they were expanded
+     * @param maxConcurrency the maximum number of Publishers subscribed at once, positive
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    public static <T> FlowableTransformer<T, T> expandConcurrent(Function<? super T, ? extends Publisher<? extends T>> expander,
+            ExpandStrategy strategy, int maxConcurrency) {
+        return expandConcurrent(expander, strategy, maxConcurrency, false);
+    }
+
+    /**
+     * Emits elements from the source and then expands them into another layer of Publishers, emitting
+     * those items recursively until all Publishers become empty, keeping up to the given number
+     * of Publishers subscribed at once.
+     * <p>
+     * The emission order among the concurrently active Publishers is not defined.
+     * @param <T> the value type
+     * @param expander the function that converts an element into a Publisher to be expanded
+     * @param strategy the expansion strategy; depth-first subscribes to the most recently expanded
+     *                 Publisher next, breath-first subscribes to the Publishers in the order they were expanded
+     * @param maxConcurrency the maximum number of Publishers subscribed at once, positive
+     * @param levelOrdered if true and the strategy is breath-first, all items of a level are emitted before
+     *                 the items of the next level; ignored with the depth-first strategy
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    public static <T> FlowableTransformer<T, T> expandConcurrent(Function<? super T, ? extends Publisher<? extends T>> expander,
+            ExpandStrategy strategy, int maxConcurrency, boolean levelOrdered) {
+        ObjectHelper.requireNonNull(expander, "expander is null");
+        ObjectHelper.requireNonNull(strategy, "strategy is null");
+        ObjectHelper.verifyPositive(maxConcurrency, "maxConcurrency");
+        return new FlowableExpandConcurrent<T>(null, expander, strategy, maxConcurrency, levelOrdered, null, Flowable.bufferSize());
+    }
+
+    /**
+     * Emits elements from the source and then expands them into another layer of Publishers, emitting
+     * those items recursively until all Publishers become empty, keeping up to the given number
+     * of Publishers subscribed at once and skipping the items already visited.
+     * <p>
+     * The emission order among the concurrently active Publishers is not defined.
+     * An item is emitted and expanded only if adding it to the visited Collection returns true, hence a
+     * {@code HashSet} breaks cycles exactly while a probabilistic set may skip some unvisited items in exchange
+     * for less memory. The Collection is accessed from one thread at a time.
+     * @param <T> the value type
+     * @param expander the function that converts an element into a Publisher to be expanded
+     * @param strategy the expansion strategy; depth-first subscribes to the most recently expanded
+     *                 Publisher next, breath-first subscribes to the Publishers in the order they were expanded
+     * @param maxConcurrency the maximum number of Publishers subscribed at once, positive
+     * @param levelOrdered if true and the strategy is breath-first, all items of a level are emitted before
+     *                 the items of the next level; ignored with the depth-first strategy
+     * @param visitedSupplier the callback called for each subscriber to return the Collection of visited items
+     * @param prefetch the number of items to prefetch from each Publisher
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    public static <T> FlowableTransformer<T, T> expandConcurrent(Function<? super T, ? extends Publisher<? extends T>> expander,
+            ExpandStrategy strategy, int maxConcurrency, boolean levelOrdered,
+            Callable<? extends Collection<? super T>> visitedSupplier, int prefetch) {
+        ObjectHelper.requireNonNull(expander, "expander is null");
+        ObjectHelper.requireNonNull(strategy, "strategy is null");
+        ObjectHelper.verifyPositive(maxConcurrency, "maxConcurrency");
+        ObjectHelper.requireNonNull(visitedSupplier, "visitedSupplier is null");
+        ObjectHelper.verifyPositive(prefetch, "prefetch");
+        return new FlowableExpandConcurrent<T>(null, expander, strategy, maxConcurrency, levelOrdered, visitedSupplier, prefetch);
+    }
 }
@@ -20,6 +20,15 @@ import java.util.*;
 
 import io.reactivex.functions.BiFunction;
 
+/**
+ * Merges two sorted lists into a new sorted list, keeping the elements of the first
+ * list before the equal elements of the second.
+ * <p>
+ * If either list is empty, the other list is returned as is instead of a copy,
+ * thus the caller shouldn't modify the input lists afterwards.
+ *
+ * @param <T> the element type
+ */
 final class MergerBiFunction<T> implements BiFunction<List<T>, List<T>, List<T>> {
 
     Comparator<? super T> comparator;
@@ -34,8 +43,21 @@ final class MergerBiFunction<T> implements BiFunction<List<T>, List<T>, List<T>>
         if (n == 0) {
             return new ArrayList<T>();
         }
+        if (b.isEmpty()) {
+            return a;
+        }
+        if (a.isEmpty()) {
+            return b;
+        }
         List<T> both = new ArrayList<T>(n);
 
+        // already in order, no need to compare element-by-element
+        if (comparator.compare(a.get(a.size() - 1), b.get(0)) <= 0) {
+            both.addAll(a);
+            both.addAll(b);
+            return both;
+        }
+
         Iterator<T> at = a.iterator();
         Iterator<T> bt = b.iterator();
 
@@ -43,7 +65,7 @@ final class MergerBiFunction<T> implements BiFunction<List<T>, List<T>, List<T>>
         T s2 = bt.hasNext() ? bt.next() : null;
 
         while (s1 != null && s2 != null) {
-            if (comparator.compare(s1, s2) < 0) { // s1 comes before s2
+            if (comparator.compare(s1, s2) <= 0) { // s1 comes before s2 or they are equal, keep it stable
                 both.add(s1);
                 s1 = at.hasNext() ? at.next() : null;
             } else {
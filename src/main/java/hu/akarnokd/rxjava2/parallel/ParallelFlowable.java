@@ -123,6 +123,68 @@ public abstract class ParallelFlowable<T> {
         return new ParallelFromPublisher<T>(source, parallelism, prefetch);
     }
 
+    /**
+     * Take a Publisher and prepare to consume it on parallallism number of 'rails' in a
+     * round-robin fashion where each ready rail receives a run of up to batchSize values
+     * before moving onto the next rail.
+     * <p>
+     * Larger batches reduce the per-value dispatch overhead at the expense of
+     * a coarser distribution of the values among the rails.
+     * @param <T> the value type
+     * @param source the source Publisher
+     * @param parallelism the number of parallel rails
+     * @param prefetch the number of values to prefetch from the source
+     * @param batchSize the maximum number of values to hand to a rail at once
+     * @return the new ParallelFlowable instance
+     * @since 0.17.0
+     */
+    public static <T> ParallelFlowable<T> from(Publisher<? extends T> source,
+            int parallelism, int prefetch, int batchSize) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism > 0 required but it was " + parallelism);
+        }
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch > 0 required but it was " + prefetch);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize > 0 required but it was " + batchSize);
+        }
+
+        ObjectHelper.requireNonNull(source, "source");
+
+        return new ParallelFromPublisher<T>(source, parallelism, prefetch, batchSize, null);
+    }
+
+    /**
+     * Take a Publisher and prepare to consume it on parallallism number of 'rails' where
+     * each value is routed to the rail selected by the hash of the key extracted from it,
+     * thus values with the same key are always processed by the same rail.
+     * <p>
+     * Note that if the rail of the next value is not ready, the dispatching stops until
+     * that rail requests more, i.e., a slow rail holds up the other rails.
+     * @param <T> the value type
+     * @param source the source Publisher
+     * @param parallelism the number of parallel rails
+     * @param prefetch the number of values to prefetch from the source
+     * @param keySelector the function that returns the non-null key for a value
+     * @return the new ParallelFlowable instance
+     * @since 0.17.0
+     */
+    public static <T> ParallelFlowable<T> from(Publisher<? extends T> source,
+            int parallelism, int prefetch, Function<? super T, ?> keySelector) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism > 0 required but it was " + parallelism);
+        }
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("prefetch > 0 required but it was " + prefetch);
+        }
+
+        ObjectHelper.requireNonNull(source, "source");
+        ObjectHelper.requireNonNull(keySelector, "keySelector");
+
+        return new ParallelFromPublisher<T>(source, parallelism, prefetch, 1, keySelector);
+    }
+
     /**
      * Maps the source values on each 'rail' to another value.
      * <p>
@@ -258,6 +320,12 @@ public abstract class ParallelFlowable<T> {
         return RxJavaPlugins.onAssembly(new ParallelJoin<T>(this, prefetch));
     }
 
+    /**
+     * The number of lists the rails of {@link #sorted(Comparator, int)} are merged into,
+     * in parallel, before the final sequential merge.
+     */
+    static final int SORTED_JOIN_RAILS = 4;
+
     /**
      * Sorts the 'rails' of this ParallelFlowable and returns a Publisher that sequentially
      * picks the smallest next value from the rails.
@@ -275,6 +343,9 @@ public abstract class ParallelFlowable<T> {
      * Sorts the 'rails' of this ParallelFlowable and returns a Publisher that sequentially
      * picks the smallest next value from the rails.
      * <p>
+     * The sorted rails are first merged pairwise, in parallel on the rails' threads, into
+     * a few lists from which the smallest next value is picked via a heap.
+     * <p>
      * This operator requires a finite source ParallelFlowable.
      *
      * @param comparator the comparator to use
@@ -285,8 +356,9 @@ public abstract class ParallelFlowable<T> {
         int ch = capacityHint / parallelism() + 1;
         ParallelFlowable<List<T>> railReduced = reduce(Functions.<T>createArrayList(ch), ListAddBiConsumer.<T>instance());
         ParallelFlowable<List<T>> railSorted = railReduced.map(new SorterFunction<T>(comparator));
+        ParallelFlowable<List<T>> railMerged = new ParallelSortedMerge<T>(railSorted, comparator, SORTED_JOIN_RAILS);
 
-        return RxJavaPlugins.onAssembly(new ParallelSortedJoin<T>(railSorted, comparator));
+        return RxJavaPlugins.onAssembly(new ParallelSortedJoin<T>(railMerged, comparator));
     }
 
     /**
@@ -303,6 +375,8 @@ public abstract class ParallelFlowable<T> {
     /**
      * Sorts the 'rails' according to the comparator and returns a full sorted list as a Publisher.
      * <p>
+     * The sorted rails are merged pairwise along a balanced tree, in parallel on the rails' threads.
+     * <p>
      * This operator requires a finite source ParallelFlowable.
      *
      * @param comparator the comparator to compare elements
@@ -313,8 +387,9 @@ public abstract class ParallelFlowable<T> {
         int ch = capacityHint / parallelism() + 1;
         ParallelFlowable<List<T>> railReduced = reduce(Functions.<T>createArrayList(ch), ListAddBiConsumer.<T>instance());
         ParallelFlowable<List<T>> railSorted = railReduced.map(new SorterFunction<T>(comparator));
+        ParallelFlowable<List<T>> railMerged = new ParallelSortedMerge<T>(railSorted, comparator, 1);
 
-        Flowable<List<T>> merged = railSorted.reduce(new MergerBiFunction<T>(comparator));
+        Flowable<List<T>> merged = railMerged.reduce(new MergerBiFunction<T>(comparator));
 
         return RxJavaPlugins.onAssembly(merged);
     }
@@ -21,6 +21,8 @@ import java.util.concurrent.atomic.*;
 import org.reactivestreams.*;
 
 import io.reactivex.exceptions.Exceptions;
+import io.reactivex.functions.Function;
+import io.reactivex.internal.functions.ObjectHelper;
 import io.reactivex.internal.fuseable.*;
 import io.reactivex.internal.queue.SpscArrayQueue;
 import io.reactivex.internal.subscriptions.SubscriptionHelper;
@@ -29,6 +31,13 @@ import io.reactivex.internal.util.BackpressureHelper;
 /**
  * Dispatches the values from upstream in a round robin fashion to subscribers which are
  * ready to consume elements. A value from upstream is sent to only one of the subscribers.
+ * <p>
+ * With a batch size greater than one, a ready subscriber receives a run of up to
+ * batch size values (limited by its outstanding demand) before the dispatcher moves
+ * onto the next subscriber.
+ * <p>
+ * With a key selector, the values are routed to the subscriber selected by the hash of
+ * their key, thus values with the same key always end up on the same rail.
  *
  * @param <T> the value type
  */
@@ -40,10 +49,21 @@ final class ParallelFromPublisher<T> extends ParallelFlowable<T> {
 
     final int prefetch;
 
+    final int batchSize;
+
+    final Function<? super T, ?> keySelector;
+
     ParallelFromPublisher(Publisher<? extends T> source, int parallelism, int prefetch) {
+        this(source, parallelism, prefetch, 1, null);
+    }
+
+    ParallelFromPublisher(Publisher<? extends T> source, int parallelism, int prefetch,
+            int batchSize, Function<? super T, ?> keySelector) {
         this.source = source;
         this.parallelism = parallelism;
         this.prefetch = prefetch;
+        this.batchSize = batchSize;
+        this.keySelector = keySelector;
     }
 
     @Override
@@ -57,7 +77,7 @@ final class ParallelFromPublisher<T> extends ParallelFlowable<T> {
             return;
         }
 
-        source.subscribe(new ParallelDispatcher<T>(subscribers, prefetch));
+        source.subscribe(new ParallelDispatcher<T>(subscribers, prefetch, batchSize, keySelector));
     }
 
     static final class ParallelDispatcher<T>
@@ -77,6 +97,25 @@ final class ParallelFromPublisher<T> extends ParallelFlowable<T> {
 
         final int limit;
 
+        final int batchSize;
+
+        final Function<? super T, ?> keySelector;
+
+        /**
+         * The last known request amount of each rail so that the requests
+         * array is read only when this amount has been used up.
+         */
+        final long[] requested;
+
+        /** The number of values emitted to the current rail in the current run. */
+        int run;
+
+        /** The value polled in keyed mode whose rail was not ready. */
+        T pending;
+
+        /** The rail index of the pending value. */
+        int pendingIndex;
+
         Subscription s;
 
         SimpleQueue<T> queue;
@@ -99,12 +138,16 @@ final class ParallelFromPublisher<T> extends ParallelFlowable<T> {
 
         int sourceMode;
 
-        ParallelDispatcher(Subscriber<? super T>[] subscribers, int prefetch) {
+        ParallelDispatcher(Subscriber<? super T>[] subscribers, int prefetch,
+                int batchSize, Function<? super T, ?> keySelector) {
             this.subscribers = subscribers;
             this.prefetch = prefetch;
             this.limit = prefetch - (prefetch >> 2);
             this.requests = new AtomicLongArray(subscribers.length);
             this.emissions = new long[subscribers.length];
+            this.batchSize = batchSize;
+            this.keySelector = keySelector;
+            this.requested = new long[subscribers.length];
         }
 
         @Override
@@ -217,6 +260,7 @@ final class ParallelFromPublisher<T> extends ParallelFlowable<T> {
                 this.s.cancel();
 
                 if (getAndIncrement() == 0) {
+                    pending = null;
                     queue.clear();
                 }
             }
@@ -229,9 +273,12 @@ final class ParallelFromPublisher<T> extends ParallelFlowable<T> {
             Subscriber<? super T>[] a = this.subscribers;
             AtomicLongArray r = this.requests;
             long[] e = this.emissions;
+            long[] rs = this.requested;
             int n = e.length;
             int idx = index;
             int consumed = produced;
+            int batch = batchSize;
+            int run = this.run;
 
             for (;;) {
 
@@ -268,8 +315,12 @@ final class ParallelFromPublisher<T> extends ParallelFlowable<T> {
                         break;
                     }
 
-                    long ridx = r.get(idx);
                     long eidx = e[idx];
+                    long ridx = rs[idx];
+                    if (ridx == eidx) {
+                        ridx = r.get(idx);
+                        rs[idx] = ridx;
+                    }
                     if (ridx != eidx) {
 
                         T v;
@@ -291,7 +342,7 @@ final class ParallelFromPublisher<T> extends ParallelFlowable<T> {
 
                         a[idx].onNext(v);
 
-                        e[idx] = eidx + 1;
+                        e[idx] = ++eidx;
 
                         int c = ++consumed;
                         if (c == limit) {
@@ -299,10 +350,15 @@ final class ParallelFromPublisher<T> extends ParallelFlowable<T> {
                             s.request(c);
                         }
                         notReady = 0;
+
+                        if (++run != batch && eidx != ridx) {
+                            continue;
+                        }
                     } else {
                         notReady++;
                     }
 
+                    run = 0;
                     idx++;
                     if (idx == n) {
                         idx = 0;
@@ -317,6 +373,7 @@ final class ParallelFromPublisher<T> extends ParallelFlowable<T> {
                 if (w == missed) {
                     index = idx;
                     produced = consumed;
+                    this.run = run;
                     missed = addAndGet(-missed);
                     if (missed == 0) {
                         break;
@@ -334,8 +391,11 @@ final class ParallelFromPublisher<T> extends ParallelFlowable<T> {
             Subscriber<? super T>[] a = this.subscribers;
             AtomicLongArray r = this.requests;
             long[] e = this.emissions;
+            long[] rs = this.requested;
             int n = e.length;
             int idx = index;
+            int batch = batchSize;
+            int run = this.run;
 
             for (;;) {
 
@@ -367,8 +427,12 @@ final class ParallelFromPublisher<T> extends ParallelFlowable<T> {
                         return;
                     }
 
-                    long ridx = r.get(idx);
                     long eidx = e[idx];
+                    long ridx = rs[idx];
+                    if (ridx == eidx) {
+                        ridx = r.get(idx);
+                        rs[idx] = ridx;
+                    }
                     if (ridx != eidx) {
 
                         T v;
@@ -393,13 +457,18 @@ final class ParallelFromPublisher<T> extends ParallelFlowable<T> {
 
                         a[idx].onNext(v);
 
-                        e[idx] = eidx + 1;
+                        e[idx] = ++eidx;
 
                         notReady = 0;
+
+                        if (++run != batch && eidx != ridx) {
+                            continue;
+                        }
                     } else {
                         notReady++;
                     }
 
+                    run = 0;
                     idx++;
                     if (idx == n) {
                         idx = 0;
@@ -413,6 +482,7 @@ final class ParallelFromPublisher<T> extends ParallelFlowable<T> {
                 int w = get();
                 if (w == missed) {
                     index = idx;
+                    this.run = run;
                     missed = addAndGet(-missed);
                     if (missed == 0) {
                         break;
@@ -428,11 +498,138 @@ final class ParallelFromPublisher<T> extends ParallelFlowable<T> {
                 return;
             }
 
+            if (keySelector != null) {
+                drainKeyed();
+            } else
             if (sourceMode == QueueSubscription.SYNC) {
                 drainSync();
             } else {
                 drainAsync();
             }
         }
+
+        /**
+         * Routes each value to the rail selected by the hash of its key. If that
+         * rail is not ready, the value is kept as pending and the dispatching stops
+         * until the rail requests more.
+         */
+        void drainKeyed() {
+            int missed = 1;
+
+            SimpleQueue<T> q = queue;
+            Subscriber<? super T>[] a = this.subscribers;
+            AtomicLongArray r = this.requests;
+            long[] e = this.emissions;
+            long[] rs = this.requested;
+            int n = e.length;
+            int consumed = produced;
+            boolean sync = sourceMode == QueueSubscription.SYNC;
+
+            for (;;) {
+
+                for (;;) {
+                    if (cancelled) {
+                        pending = null;
+                        q.clear();
+                        return;
+                    }
+
+                    boolean d = done;
+                    if (d && !sync) {
+                        Throwable ex = error;
+                        if (ex != null) {
+                            pending = null;
+                            q.clear();
+                            for (Subscriber<? super T> s : a) {
+                                s.onError(ex);
+                            }
+                            return;
+                        }
+                    }
+
+                    T v = pending;
+                    int idx;
+
+                    if (v == null) {
+                        try {
+                            v = q.poll();
+                        } catch (Throwable ex) {
+                            Exceptions.throwIfFatal(ex);
+                            s.cancel();
+                            for (Subscriber<? super T> s : a) {
+                                s.onError(ex);
+                            }
+                            return;
+                        }
+
+                        if (v == null) {
+                            if (d) {
+                                for (Subscriber<? super T> s : a) {
+                                    s.onComplete();
+                                }
+                                return;
+                            }
+                            break;
+                        }
+
+                        try {
+                            idx = railIndex(ObjectHelper.requireNonNull(keySelector.apply(v), "The keySelector returned a null key"), n);
+                        } catch (Throwable ex) {
+                            Exceptions.throwIfFatal(ex);
+                            s.cancel();
+                            q.clear();
+                            for (Subscriber<? super T> s : a) {
+                                s.onError(ex);
+                            }
+                            return;
+                        }
+                    } else {
+                        idx = pendingIndex;
+                    }
+
+                    long eidx = e[idx];
+                    if (rs[idx] == eidx) {
+                        long ridx = r.get(idx);
+                        rs[idx] = ridx;
+                        if (ridx == eidx) {
+                            pending = v;
+                            pendingIndex = idx;
+                            break;
+                        }
+                    }
+
+                    pending = null;
+
+                    a[idx].onNext(v);
+
+                    e[idx] = eidx + 1;
+
+                    if (!sync) {
+                        int c = ++consumed;
+                        if (c == limit) {
+                            consumed = 0;
+                            s.request(c);
+                        }
+                    }
+                }
+
+                int w = get();
+                if (w == missed) {
+                    produced = consumed;
+                    missed = addAndGet(-missed);
+                    if (missed == 0) {
+                        break;
+                    }
+                } else {
+                    missed = w;
+                }
+            }
+        }
+
+        static int railIndex(Object key, int n) {
+            int h = key.hashCode();
+            h ^= h >>> 16;
+            return (h & Integer.MAX_VALUE) % n;
+        }
     }
 }
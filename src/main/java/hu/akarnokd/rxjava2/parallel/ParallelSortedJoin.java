@@ -22,6 +22,7 @@ import java.util.concurrent.atomic.*;
 import org.reactivestreams.*;
 
 import io.reactivex.Flowable;
+import io.reactivex.exceptions.Exceptions;
 import io.reactivex.internal.subscriptions.SubscriptionHelper;
 import io.reactivex.internal.util.*;
 import io.reactivex.plugins.RxJavaPlugins;
@@ -30,6 +31,10 @@ import io.reactivex.plugins.RxJavaPlugins;
  * Given sorted rail sequences (according to the provided comparator) as List
  * emit the smallest item from these parallel Lists to the Subscriber.
  * <p>
+ * The current item of each non-exhausted list is kept in a binary heap (ties
+ * are broken by the rail index), thus picking the next item takes
+ * O(log n) comparisons for n rails.
+ * <p>
  * It expects the source to emit exactly one list (which could be empty).
  *
  * @param <T> the value type
@@ -68,6 +73,12 @@ final class ParallelSortedJoin<T> extends Flowable<T> {
 
         final int[] indexes;
 
+        /** The binary heap of rail indexes with remaining items, ordered by their current item. */
+        final int[] heap;
+
+        /** The number of rails in the heap, -1 if the heap hasn't been built yet. */
+        int heapSize;
+
         final Comparator<? super T> comparator;
 
         final AtomicLong requested = new AtomicLong();
@@ -91,6 +102,8 @@ final class ParallelSortedJoin<T> extends Flowable<T> {
             this.subscribers = s;
             this.lists = new List[n];
             this.indexes = new int[n];
+            this.heap = new int[n];
+            this.heapSize = -1;
             remaining.lazySet(n);
         }
 
@@ -145,7 +158,14 @@ final class ParallelSortedJoin<T> extends Flowable<T> {
             Subscriber<? super T> a = actual;
             List<T>[] lists = this.lists;
             int[] indexes = this.indexes;
-            int n = indexes.length;
+            int[] heap = this.heap;
+
+            // an error or cancellation may trigger the drain before all lists arrived
+            if (heapSize < 0 && !cancelled && error.get() == null) {
+                if (!buildHeap()) {
+                    return;
+                }
+            }
 
             for (;;) {
 
@@ -166,36 +186,41 @@ final class ParallelSortedJoin<T> extends Flowable<T> {
                         return;
                     }
 
-                    T min = null;
-                    int minIndex = -1;
-
-                    for (int i = 0; i < n; i++) {
-                        List<T> list = lists[i];
-                        int index = indexes[i];
-
-                        if (list.size() != index) {
-                            if (min == null) {
-                                min = list.get(index);
-                                minIndex = i;
-                            } else {
-                                T b = list.get(index);
-                                if (comparator.compare(min, b) > 0) {
-                                    min = b;
-                                    minIndex = i;
-                                }
-                            }
-                        }
-                    }
+                    int size = heapSize;
 
-                    if (min == null) {
+                    if (size == 0) {
                         Arrays.fill(lists, null);
                         a.onComplete();
                         return;
                     }
 
-                    a.onNext(min);
+                    int minIndex = heap[0];
+                    List<T> list = lists[minIndex];
+                    int index = indexes[minIndex];
+
+                    T min = list.get(index);
 
-                    indexes[minIndex]++;
+                    indexes[minIndex] = ++index;
+
+                    int last = minIndex;
+                    if (index == list.size()) {
+                        last = heap[--size];
+                        heapSize = size;
+                    }
+                    if (size != 0) {
+                        try {
+                            siftDown(0, last, size);
+                        } catch (Throwable exc) {
+                            Exceptions.throwIfFatal(exc);
+                            error.addThrowable(exc);
+                            cancelAll();
+                            Arrays.fill(lists, null);
+                            a.onError(error.terminate());
+                            return;
+                        }
+                    }
+
+                    a.onNext(min);
 
                     e++;
                 }
@@ -214,16 +239,7 @@ final class ParallelSortedJoin<T> extends Flowable<T> {
                         return;
                     }
 
-                    boolean empty = true;
-
-                    for (int i = 0; i < n; i++) {
-                        if (indexes[i] != lists[i].size()) {
-                            empty = false;
-                            break;
-                        }
-                    }
-
-                    if (empty) {
+                    if (heapSize == 0) {
                         Arrays.fill(lists, null);
                         a.onComplete();
                         return;
@@ -245,6 +261,68 @@ final class ParallelSortedJoin<T> extends Flowable<T> {
                 }
             }
         }
+
+        /**
+         * Puts the rails with items into the heap.
+         * @return false if the comparator crashed and the error has been signalled
+         */
+        boolean buildHeap() {
+            int[] heap = this.heap;
+            List<T>[] lists = this.lists;
+            int n = heap.length;
+            int size = 0;
+            for (int i = 0; i < n; i++) {
+                if (!lists[i].isEmpty()) {
+                    heap[size++] = i;
+                }
+            }
+            heapSize = size;
+            try {
+                for (int i = (size >> 1) - 1; i >= 0; i--) {
+                    siftDown(i, heap[i], size);
+                }
+            } catch (Throwable ex) {
+                Exceptions.throwIfFatal(ex);
+                error.addThrowable(ex);
+                cancelAll();
+                Arrays.fill(lists, null);
+                actual.onError(error.terminate());
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Places the rail into the heap starting from the given position
+         * and moving it down while it is greater than its smaller child.
+         */
+        void siftDown(int pos, int rail, int size) {
+            int[] heap = this.heap;
+            int half = size >> 1;
+            while (pos < half) {
+                int child = (pos << 1) + 1;
+                int c = heap[child];
+                int right = child + 1;
+                if (right < size && less(heap[right], c)) {
+                    child = right;
+                    c = heap[right];
+                }
+                if (!less(c, rail)) {
+                    break;
+                }
+                heap[pos] = c;
+                pos = child;
+            }
+            heap[pos] = rail;
+        }
+
+        boolean less(int i, int j) {
+            int c = comparator.compare(lists[i].get(indexes[i]), lists[j].get(indexes[j]));
+            if (c != 0) {
+                return c < 0;
+            }
+            return i < j;
+        }
     }
 
     static final class SortedJoinInnerSubscriber<T>
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.parallel;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.*;
+
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.internal.subscriptions.*;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Merges the sorted lists of the source rails pairwise along a balanced binary tree
+ * and emits the merged lists on fewer output rails.
+ * <p>
+ * The source rails are split into contiguous groups, one per output rail, and each
+ * group is merged by its own tree. A tree node is merged by the rail that delivered
+ * the second of its two lists, thus the merging runs on the rails' own threads and
+ * the independent nodes are merged in parallel.
+ * <p>
+ * It expects each source rail to emit exactly one list (which could be empty).
+ * The merger may return one of its input lists as is, which is fine here as the
+ * lists are created by the preceding sort for this subscription only.
+ *
+ * @param <T> the value type
+ */
+@SuppressWarnings("deprecation")
+final class ParallelSortedMerge<T> extends ParallelFlowable<List<T>> {
+
+    final ParallelFlowable<List<T>> source;
+
+    final Comparator<? super T> comparator;
+
+    final int parallelism;
+
+    ParallelSortedMerge(ParallelFlowable<List<T>> source, Comparator<? super T> comparator, int parallelism) {
+        this.source = source;
+        this.comparator = comparator;
+        this.parallelism = Math.min(parallelism, source.parallelism());
+    }
+
+    @Override
+    public int parallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super List<T>>[] subscribers) {
+        if (!validate(subscribers)) {
+            return;
+        }
+
+        SortedMergeCoordinator<T> parent = new SortedMergeCoordinator<T>(subscribers, source.parallelism(), comparator);
+
+        for (int i = 0; i < subscribers.length; i++) {
+            subscribers[i].onSubscribe(parent.outputs[i]);
+        }
+
+        source.subscribe(parent.subscribers);
+    }
+
+    static final class SortedMergeCoordinator<T> extends AtomicBoolean {
+
+        private static final long serialVersionUID = -2575224549383516213L;
+
+        final SortedMergeInnerSubscriber<T>[] subscribers;
+
+        final SortedMergeOutput<T>[] outputs;
+
+        final MergerBiFunction<T> merger;
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        SortedMergeCoordinator(Subscriber<? super List<T>>[] actual, int n, Comparator<? super T> comparator) {
+            this.merger = new MergerBiFunction<T>(comparator);
+            int m = actual.length;
+
+            SortedMergeInnerSubscriber<T>[] s = new SortedMergeInnerSubscriber[n];
+            SortedMergeOutput<T>[] o = new SortedMergeOutput[m];
+
+            for (int j = 0; j < m; j++) {
+                o[j] = new SortedMergeOutput<T>(actual[j], this);
+
+                int lo = (int)((long)j * n / m);
+                int hi = (int)((long)(j + 1) * n / m);
+                build(s, lo, hi, new MergeNode<T>(null, 0, o[j], hi - lo == 1 ? 1 : 2));
+            }
+
+            this.subscribers = s;
+            this.outputs = o;
+        }
+
+        /**
+         * Builds the subtree over the source rails [lo, hi) below the given node.
+         */
+        void build(SortedMergeInnerSubscriber<T>[] s, int lo, int hi, MergeNode<T> node) {
+            if (hi - lo == 1) {
+                s[lo] = new SortedMergeInnerSubscriber<T>(this, node, 0);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            child(s, lo, mid, node, 0);
+            child(s, mid, hi, node, 1);
+        }
+
+        void child(SortedMergeInnerSubscriber<T>[] s, int lo, int hi, MergeNode<T> parent, int side) {
+            if (hi - lo == 1) {
+                s[lo] = new SortedMergeInnerSubscriber<T>(this, parent, side);
+            } else {
+                build(s, lo, hi, new MergeNode<T>(parent, side, null, 2));
+            }
+        }
+
+        void arrive(MergeNode<T> node, int side, List<T> list) {
+            for (;;) {
+                if (get()) {
+                    return;
+                }
+                if (side == 0) {
+                    node.left = list;
+                } else {
+                    node.right = list;
+                }
+                if (node.incrementAndGet() != node.expected) {
+                    return;
+                }
+
+                if (node.expected == 2) {
+                    List<T> a = node.left;
+                    List<T> b = node.right;
+                    node.left = null;
+                    node.right = null;
+                    try {
+                        list = merger.apply(a, b);
+                    } catch (Throwable ex) {
+                        Exceptions.throwIfFatal(ex);
+                        onError(ex);
+                        return;
+                    }
+                }
+
+                if (node.output != null) {
+                    node.output.succeed(list);
+                    return;
+                }
+                side = node.side;
+                node = node.parent;
+            }
+        }
+
+        void onError(Throwable ex) {
+            if (compareAndSet(false, true)) {
+                cancelAll();
+                boolean delivered = false;
+                for (SortedMergeOutput<T> o : outputs) {
+                    // the outputs that already completed or got cancelled can't take an error
+                    delivered |= o.error(ex);
+                }
+                if (delivered) {
+                    return;
+                }
+            }
+            RxJavaPlugins.onError(ex);
+        }
+
+        void cancelAll() {
+            for (SortedMergeInnerSubscriber<T> s : subscribers) {
+                s.cancel();
+            }
+        }
+    }
+
+    /**
+     * A node of the merge tree, counts the arrived lists of its children.
+     */
+    static final class MergeNode<T> extends AtomicInteger {
+
+        private static final long serialVersionUID = 8150413525474522006L;
+
+        final MergeNode<T> parent;
+
+        final int side;
+
+        final SortedMergeOutput<T> output;
+
+        /** The number of children: 2, or 1 for a single-rail group. */
+        final int expected;
+
+        List<T> left;
+
+        List<T> right;
+
+        MergeNode(MergeNode<T> parent, int side, SortedMergeOutput<T> output, int expected) {
+            this.parent = parent;
+            this.side = side;
+            this.output = output;
+            this.expected = expected;
+        }
+    }
+
+    static final class SortedMergeOutput<T> extends DeferredScalarSubscription<List<T>> {
+
+        private static final long serialVersionUID = -8300148767826425693L;
+
+        final SortedMergeCoordinator<T> parent;
+
+        /** Set once the output completed, failed or got cancelled. */
+        final AtomicBoolean terminated;
+
+        SortedMergeOutput(Subscriber<? super List<T>> actual, SortedMergeCoordinator<T> parent) {
+            super(actual);
+            this.parent = parent;
+            this.terminated = new AtomicBoolean();
+        }
+
+        @Override
+        public void cancel() {
+            terminated.set(true);
+            super.cancel();
+            if (parent.compareAndSet(false, true)) {
+                parent.cancelAll();
+            }
+        }
+
+        void succeed(List<T> list) {
+            if (terminated.compareAndSet(false, true)) {
+                complete(list);
+            }
+        }
+
+        boolean error(Throwable ex) {
+            if (terminated.compareAndSet(false, true)) {
+                actual.onError(ex);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    static final class SortedMergeInnerSubscriber<T>
+    extends AtomicReference<Subscription>
+    implements Subscriber<List<T>> {
+
+        private static final long serialVersionUID = 4340253217620404478L;
+
+        final SortedMergeCoordinator<T> parent;
+
+        final MergeNode<T> node;
+
+        final int side;
+
+        SortedMergeInnerSubscriber(SortedMergeCoordinator<T> parent, MergeNode<T> node, int side) {
+            this.parent = parent;
+            this.node = node;
+            this.side = side;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (SubscriptionHelper.setOnce(this, s)) {
+                s.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(List<T> t) {
+            parent.arrive(node, side, t);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            parent.onError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            // ignored
+        }
+
+        void cancel() {
+            SubscriptionHelper.cancel(this);
+        }
+    }
+}
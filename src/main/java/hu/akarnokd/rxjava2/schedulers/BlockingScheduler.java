@@ -16,17 +16,15 @@
 
 package hu.akarnokd.rxjava2.schedulers;
 
-import java.util.concurrent.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.*;
-import java.util.concurrent.locks.*;
+import java.util.concurrent.locks.LockSupport;
 
 import io.reactivex.Scheduler;
 import io.reactivex.disposables.*;
 import io.reactivex.functions.Action;
-import io.reactivex.internal.disposables.SequentialDisposable;
 import io.reactivex.internal.functions.*;
 import io.reactivex.plugins.RxJavaPlugins;
-import io.reactivex.schedulers.Schedulers;
 
 /**
  * A Scheduler that uses the current thread, in an event-loop and
@@ -52,6 +50,17 @@ import io.reactivex.schedulers.Schedulers;
  * 
  * In the example code above, {@code observeOn(scheduler)} will execute
  * on the main thread of the Java application.
+ * <p>
+ * Tasks are handed over through a lock-free multi-producer single-consumer
+ * queue that links the tasks themselves, thus there is no per-task node allocation.
+ * When there is no work, the event loop spins, then yields and then parks;
+ * producers unpark the loop only when it is actually parked.
+ * <p>
+ * Delayed tasks are kept in a binary heap owned by the event loop, ordered by their
+ * {@link System#nanoTime()} due time, and are executed directly on the blocking thread;
+ * the loop parks with a timeout until the earliest due time. The heap is also checked
+ * between batches of immediate tasks so that a steady stream of them doesn't delay the
+ * timed tasks, and it is purged of the disposed tasks once they make up half of it.
  * 
  * @since 0.15.1
  */
@@ -66,30 +75,74 @@ public final class BlockingScheduler extends Scheduler {
 
     static final int SPIN_LIMIT = 64;
 
-    final ConcurrentLinkedQueue<Action> queue;
+    static final int YIELD_LIMIT = 0;
 
-    final AtomicLong wip;
+    static final int INITIAL_HEAP_CAPACITY = 16;
 
-    final Lock lock;
+    /** The number of immediate tasks executed between checks for due delayed tasks. */
+    static final int DUE_CHECK_BATCH = 64;
 
-    final Condition condition;
+    /** Caps the delay so that due time comparisons don't overflow. */
+    static final long MAX_DELAY_NANOS = Long.MAX_VALUE >> 1;
+
+    final TaskQueue queue;
+
+    final AtomicLong wip;
 
     final AtomicBoolean running;
 
     final AtomicBoolean shutdown;
 
-    final Scheduler timedHelper;
+    /** The binary heap of delayed tasks, accessed only from the event loop. */
+    BlockingQueueNode[] timedHeap;
+
+    /** The number of delayed tasks in the heap, accessed only from the event loop. */
+    int timedSize;
+
+    /** Keeps the FIFO order between delayed tasks with the same due time. */
+    long timedSequence;
+
+    /** The number of delayed tasks disposed since the last purge of the heap. */
+    final AtomicInteger timedCancelled;
+
+    final int spinLimit;
+
+    final int yieldLimit;
+
+    final BlockingQueueNode shutdownNode;
 
     volatile Thread thread;
 
+    volatile boolean parked;
+
     public BlockingScheduler() {
-        this.queue = new ConcurrentLinkedQueue<Action>();
-        this.lock = new ReentrantLock();
-        this.condition = this.lock.newCondition();
+        this(SPIN_LIMIT, YIELD_LIMIT);
+    }
+
+    /**
+     * Constructs a BlockingScheduler with the given idle strategy: when there are no
+     * tasks to execute, the event loop checks for new tasks {@code spinLimit} times in a
+     * busy loop, then {@code yieldLimit} times while yielding the thread and then parks.
+     * @param spinLimit the number of busy checks before yielding, non-negative
+     * @param yieldLimit the number of yielding checks before parking, non-negative
+     * @since 0.17.0
+     */
+    public BlockingScheduler(int spinLimit, int yieldLimit) {
+        if (spinLimit < 0) {
+            throw new IllegalArgumentException("spinLimit >= 0 required but it was " + spinLimit);
+        }
+        if (yieldLimit < 0) {
+            throw new IllegalArgumentException("yieldLimit >= 0 required but it was " + yieldLimit);
+        }
+        this.spinLimit = spinLimit;
+        this.yieldLimit = yieldLimit;
+        this.queue = new TaskQueue();
         this.running = new AtomicBoolean();
         this.shutdown = new AtomicBoolean();
         this.wip = new AtomicLong();
-        this.timedHelper = Schedulers.single();
+        this.timedCancelled = new AtomicInteger();
+        this.timedHeap = new BlockingQueueNode[INITIAL_HEAP_CAPACITY];
+        this.shutdownNode = new ActionNode(SHUTDOWN);
     }
 
     /**
@@ -113,7 +166,7 @@ public final class BlockingScheduler extends Scheduler {
         ObjectHelper.requireNonNull(action, "action is null");
         if (!running.get() && running.compareAndSet(false, true)) {
             thread = Thread.currentThread();
-            queue.offer(action);
+            queue.offer(new ActionNode(action));
             wip.getAndIncrement();
             drainLoop();
         }
@@ -122,42 +175,141 @@ public final class BlockingScheduler extends Scheduler {
     void drainLoop() {
         final AtomicBoolean stop = shutdown;
         final AtomicLong wip = this.wip;
+        final TaskQueue q = queue;
 
         for (;;) {
             if (stop.get()) {
                 cancelAll();
                 return;
             }
-            do {
-                Action a = queue.poll();
-                if (a == SHUTDOWN) {
-                    cancelAll();
-                    return;
-                }
-                try {
-                    a.run();
-                } catch (Throwable ex) {
-                    RxJavaPlugins.onError(ex);
-                }
-            } while (wip.decrementAndGet() != 0);
-
-            if (wip.get() == 0 && !stop.get()) {
-                lock.lock();
-                try {
-                    while (wip.get() == 0 && !stop.get()) {
-                        condition.await();
+            if (wip.get() != 0L) {
+                int batch = 0;
+                do {
+                    BlockingQueueNode a = q.poll();
+                    if (a == shutdownNode) {
+                        cancelAll();
+                        return;
                     }
-                } catch (InterruptedException ex) {
-                    // deliberately ignored
-                } finally {
-                    lock.unlock();
+                    if (a.delayed && a.due - System.nanoTime() > 0L) {
+                        if (a.get() == READY) {
+                            timedOffer(a);
+                        }
+                    } else {
+                        runTask(a);
+                    }
+                    // don't let a steady stream of immediate tasks starve the delayed ones
+                    if (++batch == DUE_CHECK_BATCH) {
+                        batch = 0;
+                        runDueTasks();
+                        if (stop.get()) {
+                            cancelAll();
+                            return;
+                        }
+                    }
+                } while (wip.decrementAndGet() != 0);
+            }
+
+            long timeout = runDueTasks();
+
+            if (timeout > 0L && wip.get() == 0L) {
+                idle(timeout);
+            }
+        }
+    }
+
+    static void runTask(BlockingQueueNode a) {
+        try {
+            a.run();
+        } catch (Throwable ex) {
+            RxJavaPlugins.onError(ex);
+        }
+    }
+
+    /**
+     * Executes the delayed tasks that are due.
+     * @return the nanoseconds until the next delayed task is due or
+     * Long.MAX_VALUE if there are no delayed tasks
+     */
+    long runDueTasks() {
+        if (timedSize == 0) {
+            return Long.MAX_VALUE;
+        }
+        if (timedCancelled.get() > timedSize >> 1) {
+            timedCancelled.set(0);
+            if (timedPurge() == 0) {
+                return Long.MAX_VALUE;
+            }
+        }
+        final AtomicBoolean stop = shutdown;
+        long now = System.nanoTime();
+        for (;;) {
+            BlockingQueueNode a = timedHeap[0];
+            long delay = a.due - now;
+            if (delay > 0L) {
+                return delay;
+            }
+            timedPoll();
+            runTask(a);
+            if (stop.get()) {
+                return 0L;
+            }
+            if (timedSize == 0) {
+                return Long.MAX_VALUE;
+            }
+        }
+    }
+
+    /**
+     * Waits for new tasks by spinning, yielding and then parking.
+     * @param timeout the maximum time to wait in nanoseconds, Long.MAX_VALUE means
+     * wait indefinitely
+     */
+    void idle(long timeout) {
+        final AtomicBoolean stop = shutdown;
+        final AtomicLong wip = this.wip;
+
+        for (int i = 0; i < spinLimit; i++) {
+            if (wip.get() != 0L || stop.get()) {
+                return;
+            }
+        }
+
+        final long deadline = timeout != Long.MAX_VALUE ? System.nanoTime() + timeout : 0L;
+
+        for (int i = 0; i < yieldLimit; i++) {
+            Thread.yield();
+            if (wip.get() != 0L || stop.get()) {
+                return;
+            }
+            if (timeout != Long.MAX_VALUE && deadline - System.nanoTime() <= 0L) {
+                return;
+            }
+        }
+
+        for (;;) {
+            parked = true;
+            if (wip.get() != 0L || stop.get()) {
+                parked = false;
+                return;
+            }
+            if (timeout == Long.MAX_VALUE) {
+                LockSupport.park(this);
+            } else {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) {
+                    parked = false;
+                    return;
                 }
+                LockSupport.parkNanos(this, remaining);
             }
+            parked = false;
+            // interrupts are deliberately ignored
+            Thread.interrupted();
         }
     }
 
     void cancelAll() {
-        final ConcurrentLinkedQueue<Action> q = queue;
+        final TaskQueue q = queue;
 
         Action a;
 
@@ -166,6 +318,130 @@ public final class BlockingScheduler extends Scheduler {
                 ((Disposable)a).dispose();
             }
         }
+
+        BlockingQueueNode[] h = timedHeap;
+        int n = timedSize;
+        for (int i = 0; i < n; i++) {
+            a = h[i];
+            h[i] = null;
+            if (a instanceof Disposable) {
+                ((Disposable)a).dispose();
+            }
+        }
+        timedSize = 0;
+    }
+
+    void timedOffer(BlockingQueueNode a) {
+        BlockingQueueNode[] h = timedHeap;
+        int n = timedSize;
+        if (n == h.length) {
+            n = timedPurge();
+            if (n > h.length >> 1) {
+                BlockingQueueNode[] b = new BlockingQueueNode[h.length << 1];
+                System.arraycopy(h, 0, b, 0, n);
+                timedHeap = b;
+                h = b;
+            }
+        }
+        a.sequence = timedSequence++;
+        timedSize = n + 1;
+
+        // sift up
+        while (n > 0) {
+            int parent = (n - 1) >> 1;
+            BlockingQueueNode p = h[parent];
+            if (!less(a, p)) {
+                break;
+            }
+            h[n] = p;
+            n = parent;
+        }
+        h[n] = a;
+    }
+
+    void timedPoll() {
+        BlockingQueueNode[] h = timedHeap;
+        int n = --timedSize;
+        BlockingQueueNode last = h[n];
+        h[n] = null;
+        if (n != 0) {
+            siftDown(h, n, 0, last);
+        }
+    }
+
+    /**
+     * Removes the disposed tasks from the heap and restores the heap property.
+     * @return the new size
+     */
+    int timedPurge() {
+        BlockingQueueNode[] h = timedHeap;
+        int n = timedSize;
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            BlockingQueueNode a = h[i];
+            if (a.get() != READY) {
+                continue;
+            }
+            h[j++] = a;
+        }
+        for (int i = j; i < n; i++) {
+            h[i] = null;
+        }
+        for (int i = (j >> 1) - 1; i >= 0; i--) {
+            siftDown(h, j, i, h[i]);
+        }
+        timedSize = j;
+        return j;
+    }
+
+    static void siftDown(BlockingQueueNode[] h, int n, int index, BlockingQueueNode a) {
+        int half = n >> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            BlockingQueueNode c = h[child];
+            int right = child + 1;
+            if (right < n && less(h[right], c)) {
+                child = right;
+                c = h[child];
+            }
+            if (!less(c, a)) {
+                break;
+            }
+            h[index] = c;
+            index = child;
+        }
+        h[index] = a;
+    }
+
+    static boolean less(BlockingQueueNode a, BlockingQueueNode b) {
+        long d = a.due - b.due;
+        if (d != 0L) {
+            return d < 0L;
+        }
+        return a.sequence < b.sequence;
+    }
+
+    /**
+     * Marks the task as delayed and computes its due time.
+     * @param task the task to prepare
+     * @param delay the delay amount
+     * @param unit the delay unit
+     */
+    static void setDue(BlockingQueueNode task, long delay, TimeUnit unit) {
+        long nanos = Math.min(unit.toNanos(delay), MAX_DELAY_NANOS);
+        task.due = System.nanoTime() + nanos;
+        task.delayed = true;
+    }
+
+    /**
+     * Counts the disposed delayed tasks so that the event loop can
+     * purge the heap before it fills up.
+     * @param task the task disposed before it could run
+     */
+    void cancelled(BlockingQueueNode task) {
+        if (task.delayed) {
+            timedCancelled.getAndIncrement();
+        }
     }
 
     @Override
@@ -178,47 +454,25 @@ public final class BlockingScheduler extends Scheduler {
 
         final BlockingDirectTask task = new BlockingDirectTask(run);
 
-        if (delay == 0L) {
-            enqueue(task);
-            return task;
+        if (delay > 0L) {
+            setDue(task, delay, unit);
         }
 
-        SequentialDisposable inner = new SequentialDisposable();
-        final SequentialDisposable outer = new SequentialDisposable(inner);
-
-        Disposable d = timedHelper.scheduleDirect(new Runnable() {
-            @Override
-            public void run() {
-                outer.replace(task);
-                enqueue(task);
-            }
-        }, delay, unit);
-
-        if (d == Disposables.disposed()) {
-            return d;
-        }
-
-        inner.replace(d);
-
-        return outer;
+        enqueue(task);
+        return task;
     }
 
     @Override
     public void shutdown() {
         if (shutdown.compareAndSet(false, true)) {
-            enqueue(SHUTDOWN);
+            enqueue(shutdownNode);
         }
     }
 
-    void enqueue(Action action) {
+    void enqueue(BlockingQueueNode action) {
         queue.offer(action);
-        if (wip.getAndIncrement() == 0L) {
-            lock.lock();
-            try {
-                condition.signal();
-            } finally {
-                lock.unlock();
-            }
+        if (wip.getAndIncrement() == 0L && parked) {
+            LockSupport.unpark(thread);
         }
     }
 
@@ -234,9 +488,85 @@ public final class BlockingScheduler extends Scheduler {
     static final int FINISHED = 4;
     static final int CANCELLED = 5;
 
-    final class BlockingDirectTask
+    /**
+     * A task that can be linked into the TaskQueue.
+     */
+    abstract static class BlockingQueueNode
     extends AtomicInteger
-    implements Action, Disposable {
+    implements Action {
+
+        private static final long serialVersionUID = 3366420004224457584L;
+
+        volatile BlockingQueueNode next;
+
+        /** Set before the task is offered, read by the event loop only. */
+        boolean delayed;
+
+        /** The System.nanoTime() based due time if delayed. */
+        long due;
+
+        /** The insertion order into the delayed task heap. */
+        long sequence;
+    }
+
+    static final class ActionNode extends BlockingQueueNode {
+
+        private static final long serialVersionUID = -3734237862462880573L;
+
+        final Action action;
+
+        ActionNode(Action action) {
+            this.action = action;
+        }
+
+        @Override
+        public void run() throws Exception {
+            action.run();
+        }
+    }
+
+    /**
+     * Intrusive multi-producer single-consumer queue of tasks
+     * where the AtomicReference holds the last task offered.
+     * <p>
+     * The consumer keeps the last task it polled as the head, thus
+     * each task can be offered only once.
+     */
+    static final class TaskQueue extends AtomicReference<BlockingQueueNode> {
+
+        private static final long serialVersionUID = -5429428380693006813L;
+
+        BlockingQueueNode head;
+
+        TaskQueue() {
+            BlockingQueueNode stub = new ActionNode(Functions.EMPTY_ACTION);
+            head = stub;
+            lazySet(stub);
+        }
+
+        void offer(BlockingQueueNode node) {
+            BlockingQueueNode prev = getAndSet(node);
+            prev.next = node;
+        }
+
+        BlockingQueueNode poll() {
+            BlockingQueueNode h = head;
+            BlockingQueueNode next = h.next;
+            if (next == null) {
+                if (h == get()) {
+                    return null;
+                }
+                // a producer has swapped the tail but not linked the node yet
+                while ((next = h.next) == null) { }
+            }
+            head = next;
+            return next;
+        }
+    }
+
+    final class BlockingDirectTask
+    extends BlockingQueueNode
+    implements Disposable {
 
         private static final long serialVersionUID = -9165914884456950194L;
         final Runnable task;
@@ -273,6 +603,7 @@ public final class BlockingScheduler extends Scheduler {
                 }
 
                 if (s == READY && compareAndSet(READY, CANCELLED)) {
+                    cancelled(this);
                     break;
                 }
                 if (compareAndSet(RUNNING, INTERRUPTING)) {
@@ -322,34 +653,17 @@ public final class BlockingScheduler extends Scheduler {
             final BlockingTask task = new BlockingTask(run);
             tasks.add(task);
 
-            if (delay == 0L) {
-                enqueue(task);
-                return task;
-            }
-
-            SequentialDisposable inner = new SequentialDisposable();
-            final SequentialDisposable outer = new SequentialDisposable(inner);
-
-            Disposable d = timedHelper.scheduleDirect(new Runnable() {
-                @Override
-                public void run() {
-                    outer.replace(task);
-                    enqueue(task);
-                }
-            }, delay, unit);
-
-            if (d == Disposables.disposed()) {
-                return d;
+            if (delay > 0L) {
+                setDue(task, delay, unit);
             }
 
-            inner.replace(d);
-
-            return outer;
+            enqueue(task);
+            return task;
         }
 
         final class BlockingTask
-        extends AtomicInteger
-        implements Action, Disposable {
+        extends BlockingQueueNode
+        implements Disposable {
 
             private static final long serialVersionUID = -9165914884456950194L;
 
@@ -388,6 +702,7 @@ public final class BlockingScheduler extends Scheduler {
                     }
 
                     if (s == READY && compareAndSet(READY, CANCELLED)) {
+                        cancelled(this);
                         break;
                     }
                     if (compareAndSet(RUNNING, INTERRUPTING)) {
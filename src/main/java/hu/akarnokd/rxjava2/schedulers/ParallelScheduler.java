@@ -17,7 +17,7 @@
 package hu.akarnokd.rxjava2.schedulers;
 
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.*;
 
 import io.reactivex.Scheduler;
 import io.reactivex.disposables.*;
@@ -29,6 +29,11 @@ import io.reactivex.plugins.RxJavaPlugins;
 
 /**
  * Scheduler with a configurable fixed amount of thread-pools.
+ * <p>
+ * By default, workers are assigned to the thread-pools in a round-robin fashion.
+ * In load-aware mode, {@link #createWorker()} samples two random thread-pools and
+ * picks the one with fewer live workers and pending tasks (power-of-two-choices),
+ * so long-lived workers don't pile onto the same thread.
  */
 public final class ParallelScheduler extends Scheduler {
 
@@ -42,10 +47,14 @@ public final class ParallelScheduler extends Scheduler {
 
     final boolean tracking;
 
+    final boolean loadAware;
+
     final AtomicReference<ScheduledExecutorService[]> pool;
 
     int n;
 
+    int seed;
+
     static {
         SHUTDOWN = new ScheduledExecutorService[0];
 
@@ -89,12 +98,29 @@ public final class ParallelScheduler extends Scheduler {
     }
 
     public ParallelScheduler(int parallelism, ThreadFactory factory, boolean tracking) {
+        this(parallelism, factory, tracking, false);
+    }
+
+    /**
+     * Constructs a ParallelScheduler with the given number of thread-pools, thread factory,
+     * task tracking mode and worker assignment policy.
+     * @param parallelism the number of thread-pools, positive
+     * @param factory the thread factory
+     * @param tracking if true, disposing a worker cancels its outstanding tasks
+     * @param loadAware if true, workers are assigned to the less loaded of two randomly
+     * chosen thread-pools, where the load is the number of live workers plus queued tasks;
+     * if false, workers are assigned in a round-robin fashion
+     * @since 0.17.0
+     */
+    public ParallelScheduler(int parallelism, ThreadFactory factory, boolean tracking, boolean loadAware) {
         if (parallelism <= 0) {
             throw new IllegalArgumentException("parallelism > 0 required but it was " + parallelism);
         }
         this.parallelism = parallelism;
         this.factory = factory;
         this.tracking = tracking;
+        this.loadAware = loadAware;
+        this.seed = (int)System.nanoTime() | 1;
         this.pool = new AtomicReference<ScheduledExecutorService[]>(SHUTDOWN);
         start();
     }
@@ -115,7 +141,11 @@ public final class ParallelScheduler extends Scheduler {
             if (next == null) {
                 next = new ScheduledExecutorService[parallelism];
                 for (int i = 0; i < next.length; i++) {
-                    next[i] = Executors.newSingleThreadScheduledExecutor(factory);
+                    if (loadAware) {
+                        next[i] = new LoadTrackingExecutor(factory);
+                    } else {
+                        next[i] = Executors.newSingleThreadScheduledExecutor(factory);
+                    }
                 }
             }
 
@@ -153,12 +183,59 @@ public final class ParallelScheduler extends Scheduler {
         return current[idx];
     }
 
+    /**
+     * Picks the less loaded of two randomly chosen thread-pools.
+     * @return the thread-pool to assign a new worker to
+     */
+    ScheduledExecutorService pickLeastLoaded() {
+        ScheduledExecutorService[] current = pool.get();
+        int len = current.length;
+        if (len == 0) {
+            return REJECTING;
+        }
+        if (len == 1) {
+            return current[0];
+        }
+        int a = nextRandom(len);
+        int b = nextRandom(len - 1);
+        if (b >= a) {
+            b++;
+        }
+        ScheduledExecutorService ea = current[a];
+        ScheduledExecutorService eb = current[b];
+        if (ea instanceof LoadTrackingExecutor && eb instanceof LoadTrackingExecutor) {
+            if (((LoadTrackingExecutor)eb).load() < ((LoadTrackingExecutor)ea).load()) {
+                return eb;
+            }
+        }
+        return ea;
+    }
+
+    int nextRandom(int bound) {
+        int x = seed;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        seed = x; // may race, we don't care
+        return (x & Integer.MAX_VALUE) % bound;
+    }
+
     @Override
     public Worker createWorker() {
+        ScheduledExecutorService exec;
+        ExecutorLease lease = null;
+        if (loadAware) {
+            exec = pickLeastLoaded();
+            if (exec instanceof LoadTrackingExecutor) {
+                lease = new ExecutorLease((LoadTrackingExecutor)exec);
+            }
+        } else {
+            exec = pick();
+        }
         if (tracking) {
-            return new TrackingParallelWorker(pick());
+            return new TrackingParallelWorker(exec, lease);
         }
-        return new NonTrackingParallelWorker(pick());
+        return new NonTrackingParallelWorker(exec, lease);
     }
 
     @Override
@@ -200,19 +277,188 @@ public final class ParallelScheduler extends Scheduler {
         }
     }
 
+    /**
+     * A single-threaded ScheduledExecutorService which tracks the number of
+     * live workers assigned to it and the number of tasks waiting to be run.
+     * <p>
+     * The tasks are counted as pending from their submission until they start running
+     * or get cancelled; a cancelled task also removes itself from the queue.
+     */
+    static final class LoadTrackingExecutor extends ScheduledThreadPoolExecutor {
+
+        final AtomicInteger workers;
+
+        final AtomicInteger pending;
+
+        /** The number of cancelled tasks that may still be in the queue. */
+        final AtomicInteger cancelled;
+
+        /** Purge the queue only if at least this many cancelled tasks accumulated. */
+        static final int PURGE_THRESHOLD = 64;
+
+        LoadTrackingExecutor(ThreadFactory factory) {
+            super(1, factory);
+            this.workers = new AtomicInteger();
+            this.pending = new AtomicInteger();
+            this.cancelled = new AtomicInteger();
+        }
+
+        /**
+         * Returns the number of live workers plus the number of pending tasks.
+         * @return the current load
+         */
+        int load() {
+            return workers.get() + pending.get();
+        }
+
+        /**
+         * Purges the queue in one pass once the cancelled tasks outnumber the pending ones,
+         * as removing a decorated task one by one requires a linear search of the queue.
+         */
+        void cancelledTask() {
+            int c = cancelled.incrementAndGet();
+            if (c >= PURGE_THRESHOLD && c > pending.get() && cancelled.compareAndSet(c, 0)) {
+                purge();
+            }
+        }
+
+        @Override
+        protected <V> RunnableScheduledFuture<V> decorateTask(Runnable runnable, RunnableScheduledFuture<V> task) {
+            return new PendingTask<V>(task);
+        }
+
+        @Override
+        protected <V> RunnableScheduledFuture<V> decorateTask(Callable<V> callable, RunnableScheduledFuture<V> task) {
+            return new PendingTask<V>(task);
+        }
+
+        final class PendingTask<V> implements RunnableScheduledFuture<V> {
+
+            final RunnableScheduledFuture<V> task;
+
+            final AtomicBoolean once;
+
+            PendingTask(RunnableScheduledFuture<V> task) {
+                this.task = task;
+                this.once = new AtomicBoolean();
+                pending.getAndIncrement();
+            }
+
+            /**
+             * Stops counting this task as pending.
+             * @return true if this call stopped it, false if it was not pending anymore
+             */
+            boolean started() {
+                AtomicBoolean o = once;
+                if (!o.get() && o.compareAndSet(false, true)) {
+                    pending.getAndDecrement();
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public void run() {
+                if (!started() && task.isCancelled()) {
+                    // a cancelled task has come due before being purged
+                    cancelled.getAndDecrement();
+                    return;
+                }
+                task.run();
+            }
+
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean c = task.cancel(mayInterruptIfRunning);
+                if (c) {
+                    started();
+                    // stays in the queue until it comes due or gets purged
+                    cancelledTask();
+                }
+                return c;
+            }
+
+            @Override
+            public boolean isPeriodic() {
+                return task.isPeriodic();
+            }
+
+            @Override
+            public long getDelay(TimeUnit unit) {
+                return task.getDelay(unit);
+            }
+
+            @Override
+            public int compareTo(Delayed o) {
+                // keep the FIFO order of the tasks with the same due time
+                if (o instanceof LoadTrackingExecutor.PendingTask) {
+                    return task.compareTo(((LoadTrackingExecutor.PendingTask<?>)o).task);
+                }
+                return task.compareTo(o);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return task.isCancelled();
+            }
+
+            @Override
+            public boolean isDone() {
+                return task.isDone();
+            }
+
+            @Override
+            public V get() throws InterruptedException, ExecutionException {
+                return task.get();
+            }
+
+            @Override
+            public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+                return task.get(timeout, unit);
+            }
+        }
+    }
+
+    /**
+     * Counts a live worker on a LoadTrackingExecutor until released.
+     */
+    static final class ExecutorLease extends AtomicBoolean {
+
+        private static final long serialVersionUID = -2187208930281339357L;
+
+        final LoadTrackingExecutor exec;
+
+        ExecutorLease(LoadTrackingExecutor exec) {
+            this.exec = exec;
+            exec.workers.getAndIncrement();
+        }
+
+        void release() {
+            if (compareAndSet(false, true)) {
+                exec.workers.getAndDecrement();
+            }
+        }
+    }
+
     static final class NonTrackingParallelWorker extends Worker {
 
         final ScheduledExecutorService exec;
 
+        final ExecutorLease lease;
+
         volatile boolean shutdown;
 
-        NonTrackingParallelWorker(ScheduledExecutorService exec) {
+        NonTrackingParallelWorker(ScheduledExecutorService exec, ExecutorLease lease) {
             this.exec = exec;
+            this.lease = lease;
         }
 
         @Override
         public void dispose() {
             shutdown = true;
+            if (lease != null) {
+                lease.release();
+            }
         }
 
         @Override
@@ -291,14 +537,20 @@ public final class ParallelScheduler extends Scheduler {
 
         final CompositeDisposable tasks;
 
-        TrackingParallelWorker(ScheduledExecutorService exec) {
+        final ExecutorLease lease;
+
+        TrackingParallelWorker(ScheduledExecutorService exec, ExecutorLease lease) {
             this.exec = exec;
+            this.lease = lease;
             this.tasks = new CompositeDisposable();
         }
 
         @Override
         public void dispose() {
             tasks.dispose();
+            if (lease != null) {
+                lease.release();
+            }
         }
 
         @Override
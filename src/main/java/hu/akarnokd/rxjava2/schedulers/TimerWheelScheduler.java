@@ -0,0 +1,526 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.schedulers;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.*;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.internal.disposables.*;
+import io.reactivex.internal.schedulers.RxThreadFactory;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Scheduler that keeps delayed tasks in a hashed timing wheel and hands them
+ * to another Scheduler (or its Workers) for execution when they become due.
+ * <p>
+ * Scheduling and cancelling a delayed task is O(1): the task is queued up for
+ * the wheel thread which moves it into its bucket on the next tick and cancelled tasks
+ * are unlinked from their bucket instead of lingering in a priority queue until their due time.
+ * The price is that tasks fire on tick boundaries, i.e., up to one tick later than requested.
+ * <p>
+ * Non-delayed tasks go directly to the other Scheduler. Shutting down this Scheduler
+ * stops the timing wheel and rejects further tasks but doesn't shut down the other Scheduler.
+ * @since 0.17.0
+ */
+public final class TimerWheelScheduler extends Scheduler {
+
+    /** The default tick duration in milliseconds. */
+    static final long DEFAULT_TICK_MILLIS = 1;
+
+    /** The default number of buckets in the wheel. */
+    static final int DEFAULT_WHEEL_SIZE = 512;
+
+    static final TimerWheel SHUTDOWN;
+
+    static {
+        SHUTDOWN = new TimerWheel(1, 1);
+        SHUTDOWN.shutdown = true;
+    }
+
+    final Scheduler actual;
+
+    final long tickNanos;
+
+    final int wheelSize;
+
+    final ThreadFactory factory;
+
+    final AtomicReference<TimerWheel> wheel;
+
+    /**
+     * Constructs a TimerWheelScheduler with 1 millisecond tick resolution and 512 buckets.
+     * @param actual the scheduler executing the tasks
+     */
+    public TimerWheelScheduler(Scheduler actual) {
+        this(actual, DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructs a TimerWheelScheduler with the given tick resolution and 512 buckets.
+     * @param actual the scheduler executing the tasks
+     * @param tick the tick duration, positive
+     * @param unit the tick duration unit
+     */
+    public TimerWheelScheduler(Scheduler actual, long tick, TimeUnit unit) {
+        this(actual, tick, unit, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Constructs a TimerWheelScheduler with the given tick resolution and number of buckets.
+     * @param actual the scheduler executing the tasks
+     * @param tick the tick duration, positive
+     * @param unit the tick duration unit
+     * @param wheelSize the number of buckets in the wheel, rounded up to the next power of 2
+     */
+    public TimerWheelScheduler(Scheduler actual, long tick, TimeUnit unit, int wheelSize) {
+        this(actual, tick, unit, wheelSize, new RxThreadFactory("RxTimerWheelScheduler"));
+    }
+
+    /**
+     * Constructs a TimerWheelScheduler with the given tick resolution, number of buckets
+     * and the ThreadFactory for the wheel thread.
+     * @param actual the scheduler executing the tasks
+     * @param tick the tick duration, positive
+     * @param unit the tick duration unit
+     * @param wheelSize the number of buckets in the wheel, rounded up to the next power of 2
+     * @param factory the thread factory creating the wheel thread
+     */
+    public TimerWheelScheduler(Scheduler actual, long tick, TimeUnit unit, int wheelSize, ThreadFactory factory) {
+        if (tick <= 0L) {
+            throw new IllegalArgumentException("tick > 0 required but it was " + tick);
+        }
+        if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("wheelSize in (0, 2^30] required but it was " + wheelSize);
+        }
+        this.actual = actual;
+        this.tickNanos = unit.toNanos(tick);
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.wheelSize = size;
+        this.factory = factory;
+        this.wheel = new AtomicReference<TimerWheel>(SHUTDOWN);
+        start();
+    }
+
+    @Override
+    public void start() {
+        TimerWheel next = null;
+        for (;;) {
+            TimerWheel current = wheel.get();
+            if (current != SHUTDOWN) {
+                return;
+            }
+            if (next == null) {
+                next = new TimerWheel(tickNanos, wheelSize);
+            }
+            if (wheel.compareAndSet(current, next)) {
+                Thread t = factory.newThread(next);
+                next.thread = t;
+                t.start();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        TimerWheel current = wheel.getAndSet(SHUTDOWN);
+        if (current != SHUTDOWN) {
+            current.stop();
+        }
+    }
+
+    @Override
+    public long now(TimeUnit unit) {
+        return actual.now(unit);
+    }
+
+    @Override
+    public Disposable scheduleDirect(Runnable run) {
+        if (wheel.get() == SHUTDOWN) {
+            return Disposables.disposed();
+        }
+        return actual.scheduleDirect(run);
+    }
+
+    @Override
+    public Disposable scheduleDirect(Runnable run, long delay, TimeUnit unit) {
+        if (delay <= 0L) {
+            return scheduleDirect(run);
+        }
+        TimerWheel w = wheel.get();
+        if (w == SHUTDOWN) {
+            return Disposables.disposed();
+        }
+        DirectWheelTask task = new DirectWheelTask(RxJavaPlugins.onSchedule(run), w, actual);
+        w.add(task, unit.toNanos(delay));
+        return task;
+    }
+
+    @Override
+    public Worker createWorker() {
+        return new TimerWheelWorker(actual.createWorker(), wheel.get());
+    }
+
+    static final class TimerWheelWorker extends Worker {
+
+        final Worker worker;
+
+        final TimerWheel wheel;
+
+        final CompositeDisposable tasks;
+
+        TimerWheelWorker(Worker worker, TimerWheel wheel) {
+            this.worker = worker;
+            this.wheel = wheel;
+            this.tasks = new CompositeDisposable();
+        }
+
+        @Override
+        public void dispose() {
+            tasks.dispose();
+            worker.dispose();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return tasks.isDisposed();
+        }
+
+        @Override
+        public long now(TimeUnit unit) {
+            return worker.now(unit);
+        }
+
+        @Override
+        public Disposable schedule(Runnable run) {
+            if (isDisposed() || wheel.shutdown) {
+                return Disposables.disposed();
+            }
+            return worker.schedule(run);
+        }
+
+        @Override
+        public Disposable schedule(Runnable run, long delay, TimeUnit unit) {
+            if (delay <= 0L) {
+                return schedule(run);
+            }
+            if (isDisposed() || wheel.shutdown) {
+                return Disposables.disposed();
+            }
+            WorkerWheelTask task = new WorkerWheelTask(RxJavaPlugins.onSchedule(run), wheel, worker, tasks);
+            if (tasks.add(task)) {
+                wheel.add(task, unit.toNanos(delay));
+                return task;
+            }
+            return Disposables.disposed();
+        }
+    }
+
+    /**
+     * A delayed task sitting in the timing wheel. Once due, it is handed to
+     * its target and holds onto the Disposable of that scheduling.
+     * <p>
+     * The fields other than the AtomicReference state are accessed
+     * by the wheel thread only.
+     */
+    abstract static class WheelTask
+    extends AtomicReference<Disposable>
+    implements Runnable, Disposable {
+
+        private static final long serialVersionUID = -7004651734069549212L;
+
+        final Runnable actual;
+
+        final TimerWheel wheel;
+
+        /** The due time relative to the start of the wheel, in nanoseconds. */
+        long deadline;
+
+        /** The number of wheel revolutions left before the task is due. */
+        long rounds;
+
+        /** The bucket index the task is linked into, -1 if not in a bucket. */
+        int bucket = -1;
+
+        WheelTask prev;
+
+        WheelTask next;
+
+        WheelTask(Runnable actual, TimerWheel wheel) {
+            this.actual = actual;
+            this.wheel = wheel;
+        }
+
+        /**
+         * Hands this task to its target for execution.
+         * @return the Disposable of the target scheduling
+         */
+        abstract Disposable dispatch();
+
+        void expire() {
+            if (!isDisposed()) {
+                DisposableHelper.replace(this, dispatch());
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!isDisposed()) {
+                actual.run();
+            }
+        }
+
+        @Override
+        public void dispose() {
+            if (DisposableHelper.dispose(this)) {
+                wheel.cancel(this);
+            }
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return DisposableHelper.isDisposed(get());
+        }
+    }
+
+    static final class DirectWheelTask extends WheelTask {
+
+        private static final long serialVersionUID = 2206624934963839837L;
+
+        final Scheduler target;
+
+        DirectWheelTask(Runnable actual, TimerWheel wheel, Scheduler target) {
+            super(actual, wheel);
+            this.target = target;
+        }
+
+        @Override
+        Disposable dispatch() {
+            return target.scheduleDirect(this);
+        }
+    }
+
+    static final class WorkerWheelTask extends WheelTask {
+
+        private static final long serialVersionUID = -3537306046386283386L;
+
+        final Worker target;
+
+        final DisposableContainer parent;
+
+        WorkerWheelTask(Runnable actual, TimerWheel wheel, Worker target, DisposableContainer parent) {
+            super(actual, wheel);
+            this.target = target;
+            this.parent = parent;
+        }
+
+        @Override
+        Disposable dispatch() {
+            // from now on, disposing the target worker cancels the task
+            parent.delete(this);
+            return target.schedule(this);
+        }
+
+        @Override
+        public void dispose() {
+            if (DisposableHelper.dispose(this)) {
+                parent.delete(this);
+                wheel.cancel(this);
+            }
+        }
+    }
+
+    /**
+     * The hashed timing wheel running on its own thread.
+     */
+    static final class TimerWheel implements Runnable {
+
+        /** The maximum number of new tasks moved into the wheel per tick. */
+        static final int MAX_TRANSFER = 100000;
+
+        final long tickNanos;
+
+        final int mask;
+
+        final WheelTask[] heads;
+
+        final WheelTask[] tails;
+
+        final Queue<WheelTask> added;
+
+        final Queue<WheelTask> cancelled;
+
+        final long startTime;
+
+        volatile boolean shutdown;
+
+        volatile Thread thread;
+
+        long tick;
+
+        TimerWheel(long tickNanos, int wheelSize) {
+            this.tickNanos = tickNanos;
+            this.mask = wheelSize - 1;
+            this.heads = new WheelTask[wheelSize];
+            this.tails = new WheelTask[wheelSize];
+            this.added = new ConcurrentLinkedQueue<WheelTask>();
+            this.cancelled = new ConcurrentLinkedQueue<WheelTask>();
+            this.startTime = System.nanoTime();
+        }
+
+        void add(WheelTask task, long delayNanos) {
+            task.deadline = System.nanoTime() - startTime + delayNanos;
+            added.offer(task);
+        }
+
+        void cancel(WheelTask task) {
+            cancelled.offer(task);
+        }
+
+        void stop() {
+            shutdown = true;
+            Thread t = thread;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+
+        @Override
+        public void run() {
+            for (;;) {
+                if (!waitForNextTick()) {
+                    break;
+                }
+                removeCancelled();
+                transferAdded();
+                expire((int)(tick & mask));
+                tick++;
+            }
+            added.clear();
+            cancelled.clear();
+            for (int i = 0; i < heads.length; i++) {
+                heads[i] = null;
+                tails[i] = null;
+            }
+        }
+
+        /**
+         * Waits until the end of the current tick.
+         * @return false if the wheel has been shut down
+         */
+        boolean waitForNextTick() {
+            long deadline = tickNanos * (tick + 1);
+            for (;;) {
+                if (shutdown) {
+                    return false;
+                }
+                long sleep = deadline - (System.nanoTime() - startTime);
+                if (sleep <= 0L) {
+                    return true;
+                }
+                LockSupport.parkNanos(this, sleep);
+            }
+        }
+
+        void removeCancelled() {
+            for (;;) {
+                WheelTask task = cancelled.poll();
+                if (task == null) {
+                    break;
+                }
+                if (task.bucket >= 0) {
+                    unlink(task);
+                }
+            }
+        }
+
+        void transferAdded() {
+            for (int i = 0; i < MAX_TRANSFER; i++) {
+                WheelTask task = added.poll();
+                if (task == null) {
+                    break;
+                }
+                if (task.isDisposed()) {
+                    continue;
+                }
+                long calculated = task.deadline / tickNanos;
+                task.rounds = (calculated - tick) / heads.length;
+                long ticks = Math.max(calculated, tick);
+                link(task, (int)(ticks & mask));
+            }
+        }
+
+        void expire(int index) {
+            WheelTask task = heads[index];
+            while (task != null) {
+                WheelTask next = task.next;
+                if (task.rounds <= 0L) {
+                    unlink(task);
+                    try {
+                        task.expire();
+                    } catch (Throwable ex) {
+                        Exceptions.throwIfFatal(ex);
+                        RxJavaPlugins.onError(ex);
+                    }
+                } else {
+                    task.rounds--;
+                }
+                task = next;
+            }
+        }
+
+        void link(WheelTask task, int index) {
+            task.bucket = index;
+            WheelTask tail = tails[index];
+            task.prev = tail;
+            task.next = null;
+            if (tail == null) {
+                heads[index] = task;
+            } else {
+                tail.next = task;
+            }
+            tails[index] = task;
+        }
+
+        void unlink(WheelTask task) {
+            int index = task.bucket;
+            WheelTask prev = task.prev;
+            WheelTask next = task.next;
+            if (prev == null) {
+                heads[index] = next;
+            } else {
+                prev.next = next;
+            }
+            if (next == null) {
+                tails[index] = prev;
+            } else {
+                next.prev = prev;
+            }
+            task.prev = null;
+            task.next = null;
+            task.bucket = -1;
+        }
+    }
+}
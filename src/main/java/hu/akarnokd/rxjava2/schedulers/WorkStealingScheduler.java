@@ -0,0 +1,520 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.schedulers;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.*;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.internal.disposables.DisposableContainer;
+import io.reactivex.internal.schedulers.RxThreadFactory;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Scheduler with a fixed number of threads where idle threads steal
+ * direct tasks queued up at busy threads.
+ * <p>
+ * Tasks scheduled via {@link #scheduleDirect(Runnable)} are handed out to the threads
+ * in a round-robin fashion but can be executed by any thread that runs out of work.
+ * Tasks scheduled on a {@link io.reactivex.Scheduler.Worker Worker} are bound
+ * to the thread the worker was assigned to and are never stolen, thus they
+ * execute in FIFO order.
+ * <p>
+ * Delayed tasks are kept by a single timer thread and moved to the
+ * run queues when they become due.
+ * @since 0.17.0
+ */
+public final class WorkStealingScheduler extends Scheduler {
+
+    static final RunnerPool SHUTDOWN = new RunnerPool(new WorkStealingRunner[0], null);
+
+    final ThreadFactory factory;
+
+    final int parallelism;
+
+    final AtomicReference<RunnerPool> pool;
+
+    int n;
+
+    /**
+     * Constructs a WorkStealingScheduler with as many threads as there are available processors.
+     */
+    public WorkStealingScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a WorkStealingScheduler with as many threads as there are available processors
+     * and the given thread name prefix.
+     * @param threadNamePrefix the thread name prefix
+     */
+    public WorkStealingScheduler(String threadNamePrefix) {
+        this(Runtime.getRuntime().availableProcessors(), new RxThreadFactory(threadNamePrefix));
+    }
+
+    /**
+     * Constructs a WorkStealingScheduler with the given number of threads.
+     * @param parallelism the number of threads, positive
+     */
+    public WorkStealingScheduler(int parallelism) {
+        this(parallelism, new RxThreadFactory("RxWorkStealingScheduler"));
+    }
+
+    /**
+     * Constructs a WorkStealingScheduler with the given number of threads, created
+     * by the given ThreadFactory.
+     * @param parallelism the number of threads, positive
+     * @param factory the thread factory
+     */
+    public WorkStealingScheduler(int parallelism, ThreadFactory factory) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism > 0 required but it was " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.factory = factory;
+        this.pool = new AtomicReference<RunnerPool>(SHUTDOWN);
+        start();
+    }
+
+    @Override
+    public void start() {
+        RunnerPool next = null;
+        for (;;) {
+            RunnerPool current = pool.get();
+            if (current != SHUTDOWN) {
+                if (next != null) {
+                    next.shutdown();
+                }
+                return;
+            }
+            if (next == null) {
+                WorkStealingRunner[] runners = new WorkStealingRunner[parallelism];
+                for (int i = 0; i < runners.length; i++) {
+                    runners[i] = new WorkStealingRunner(runners, i);
+                }
+                next = new RunnerPool(runners, Executors.newSingleThreadScheduledExecutor(factory));
+            }
+
+            if (pool.compareAndSet(current, next)) {
+                for (WorkStealingRunner r : next.runners) {
+                    Thread t = factory.newThread(r);
+                    r.thread = t;
+                    t.start();
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        RunnerPool current = pool.getAndSet(SHUTDOWN);
+        if (current != SHUTDOWN) {
+            current.shutdown();
+        }
+    }
+
+    WorkStealingRunner pick(WorkStealingRunner[] runners) {
+        int idx = this.n;
+        if (idx >= runners.length) {
+            idx = 0;
+        }
+        this.n = idx + 1; // may race, we don't care
+        return runners[idx];
+    }
+
+    @Override
+    public Worker createWorker() {
+        RunnerPool p = pool.get();
+        if (p == SHUTDOWN) {
+            return new WorkStealingWorker(null, null);
+        }
+        return new WorkStealingWorker(pick(p.runners), p.timer);
+    }
+
+    @Override
+    public Disposable scheduleDirect(Runnable run) {
+        RunnerPool p = pool.get();
+        if (p == SHUTDOWN) {
+            return Disposables.disposed();
+        }
+        WorkStealingRunner r = pick(p.runners);
+        DirectTask task = new DirectTask(RxJavaPlugins.onSchedule(run), r);
+        r.offerShared(task);
+        return task;
+    }
+
+    @Override
+    public Disposable scheduleDirect(Runnable run, long delay, TimeUnit unit) {
+        if (delay <= 0L) {
+            return scheduleDirect(run);
+        }
+        RunnerPool p = pool.get();
+        if (p == SHUTDOWN) {
+            return Disposables.disposed();
+        }
+        DirectTask task = new DirectTask(RxJavaPlugins.onSchedule(run), pick(p.runners));
+        try {
+            task.setFuture(p.timer.schedule((Callable<Object>)task, delay, unit));
+        } catch (RejectedExecutionException ex) {
+            return Disposables.disposed();
+        }
+        return task;
+    }
+
+    static final class RunnerPool {
+
+        final WorkStealingRunner[] runners;
+
+        final ScheduledExecutorService timer;
+
+        RunnerPool(WorkStealingRunner[] runners, ScheduledExecutorService timer) {
+            this.runners = runners;
+            this.timer = timer;
+        }
+
+        void shutdown() {
+            if (timer != null) {
+                timer.shutdownNow();
+            }
+            for (WorkStealingRunner r : runners) {
+                r.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Executes the worker-bound tasks of its own and the direct tasks of its own
+     * or any other runner if it has nothing else to do.
+     */
+    static final class WorkStealingRunner implements Runnable {
+
+        final WorkStealingRunner[] runners;
+
+        final int index;
+
+        /** Tasks of the workers bound to this runner; never stolen. */
+        final Queue<Runnable> bound;
+
+        /** Direct tasks which can be executed by any runner. */
+        final Queue<Runnable> shared;
+
+        volatile Thread thread;
+
+        volatile boolean parked;
+
+        volatile boolean shutdown;
+
+        WorkStealingRunner(WorkStealingRunner[] runners, int index) {
+            this.runners = runners;
+            this.index = index;
+            this.bound = new ConcurrentLinkedQueue<Runnable>();
+            this.shared = new ConcurrentLinkedQueue<Runnable>();
+        }
+
+        void offerBound(Runnable task) {
+            bound.offer(task);
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        void offerShared(Runnable task) {
+            shared.offer(task);
+            if (parked) {
+                LockSupport.unpark(thread);
+            } else {
+                wakeThief();
+            }
+        }
+
+        /**
+         * Wakes up one parked runner, if any, so it can steal from this busy runner.
+         */
+        void wakeThief() {
+            WorkStealingRunner[] rs = runners;
+            int n = rs.length;
+            for (int i = 1; i < n; i++) {
+                int j = index + i;
+                if (j >= n) {
+                    j -= n;
+                }
+                WorkStealingRunner r = rs[j];
+                if (r.parked) {
+                    LockSupport.unpark(r.thread);
+                    return;
+                }
+            }
+        }
+
+        Runnable steal() {
+            WorkStealingRunner[] rs = runners;
+            int n = rs.length;
+            for (int i = 1; i < n; i++) {
+                int j = index + i;
+                if (j >= n) {
+                    j -= n;
+                }
+                Runnable task = rs[j].shared.poll();
+                if (task != null) {
+                    return task;
+                }
+            }
+            return null;
+        }
+
+        boolean hasWork() {
+            if (!bound.isEmpty()) {
+                return true;
+            }
+            for (WorkStealingRunner r : runners) {
+                if (!r.shared.isEmpty()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void shutdown() {
+            shutdown = true;
+            Thread t = thread;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+
+        @Override
+        public void run() {
+            for (;;) {
+                if (shutdown) {
+                    bound.clear();
+                    shared.clear();
+                    return;
+                }
+
+                Runnable task = bound.poll();
+                if (task == null) {
+                    task = shared.poll();
+                    if (task == null) {
+                        task = steal();
+                    }
+                }
+
+                if (task != null) {
+                    task.run();
+                    continue;
+                }
+
+                parked = true;
+                if (!shutdown && !hasWork()) {
+                    LockSupport.park(this);
+                }
+                parked = false;
+            }
+        }
+    }
+
+    static final class DirectTask
+    extends AtomicBoolean
+    implements Runnable, Callable<Object>, Disposable {
+
+        private static final long serialVersionUID = -2346307452693706745L;
+
+        final Runnable actual;
+
+        final WorkStealingRunner runner;
+
+        volatile Future<?> future;
+
+        DirectTask(Runnable actual, WorkStealingRunner runner) {
+            this.actual = actual;
+            this.runner = runner;
+        }
+
+        @Override
+        public Object call() {
+            if (!get()) {
+                runner.offerShared(this);
+            }
+            return null;
+        }
+
+        @Override
+        public void run() {
+            if (!get()) {
+                try {
+                    actual.run();
+                } catch (Throwable ex) {
+                    Exceptions.throwIfFatal(ex);
+                    RxJavaPlugins.onError(ex);
+                }
+            }
+        }
+
+        void setFuture(Future<?> f) {
+            future = f;
+            if (get()) {
+                f.cancel(false);
+            }
+        }
+
+        @Override
+        public void dispose() {
+            if (compareAndSet(false, true)) {
+                Future<?> f = future;
+                if (f != null) {
+                    f.cancel(false);
+                }
+            }
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return get();
+        }
+    }
+
+    static final class WorkStealingWorker extends Worker {
+
+        final WorkStealingRunner runner;
+
+        final ScheduledExecutorService timer;
+
+        final CompositeDisposable tasks;
+
+        WorkStealingWorker(WorkStealingRunner runner, ScheduledExecutorService timer) {
+            this.runner = runner;
+            this.timer = timer;
+            this.tasks = new CompositeDisposable();
+            if (runner == null) {
+                tasks.dispose();
+            }
+        }
+
+        @Override
+        public void dispose() {
+            tasks.dispose();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return tasks.isDisposed();
+        }
+
+        @Override
+        public Disposable schedule(Runnable run) {
+            if (!isDisposed() && !runner.shutdown) {
+                WorkerTask wt = new WorkerTask(RxJavaPlugins.onSchedule(run), tasks, runner);
+                if (tasks.add(wt)) {
+                    runner.offerBound(wt);
+                    return wt;
+                }
+            }
+            return Disposables.disposed();
+        }
+
+        @Override
+        public Disposable schedule(Runnable run, long delay, TimeUnit unit) {
+            if (delay <= 0L) {
+                return schedule(run);
+            }
+            if (!isDisposed() && !runner.shutdown) {
+                WorkerTask wt = new WorkerTask(RxJavaPlugins.onSchedule(run), tasks, runner);
+                if (tasks.add(wt)) {
+                    try {
+                        wt.setFuture(timer.schedule((Callable<Object>)wt, delay, unit));
+                        return wt;
+                    } catch (RejectedExecutionException ex) {
+                        // let it fall through
+                    }
+                }
+            }
+            return Disposables.disposed();
+        }
+    }
+
+    static final class WorkerTask
+    extends AtomicReference<DisposableContainer>
+    implements Runnable, Callable<Object>, Disposable {
+
+        private static final long serialVersionUID = 4396628225928718134L;
+
+        final Runnable actual;
+
+        final WorkStealingRunner runner;
+
+        volatile Future<?> future;
+
+        WorkerTask(Runnable actual, DisposableContainer parent, WorkStealingRunner runner) {
+            this.actual = actual;
+            this.runner = runner;
+            this.lazySet(parent);
+        }
+
+        @Override
+        public Object call() {
+            if (get() != null) {
+                runner.offerBound(this);
+            }
+            return null;
+        }
+
+        @Override
+        public void run() {
+            if (get() != null) {
+                try {
+                    actual.run();
+                } catch (Throwable ex) {
+                    Exceptions.throwIfFatal(ex);
+                    RxJavaPlugins.onError(ex);
+                }
+                DisposableContainer cd = get();
+                if (cd != null && compareAndSet(cd, null)) {
+                    cd.delete(this);
+                }
+            }
+        }
+
+        void setFuture(Future<?> f) {
+            future = f;
+            if (get() == null) {
+                f.cancel(false);
+            }
+        }
+
+        @Override
+        public void dispose() {
+            DisposableContainer cd = getAndSet(null);
+            if (cd != null) {
+                cd.delete(this);
+                Future<?> f = future;
+                if (f != null) {
+                    f.cancel(false);
+                }
+            }
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return get() == null;
+        }
+    }
+}
@@ -20,15 +20,16 @@ import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 import org.reactivestreams.Subscriber;
 
-import io.reactivex.Flowable;
+import hu.akarnokd.rxjava2.math.*;
 import io.reactivex.internal.fuseable.QueueSubscription;
 import io.reactivex.internal.subscriptions.*;
 import io.reactivex.internal.util.BackpressureHelper;
 
 /**
- * Streams the characters of a string.
+ * Streams the characters of a string; the characters can be also pulled
+ * unboxed via the {@link IntCursor}.
  */
-final class FlowableCharSequence extends Flowable<Integer> {
+final class FlowableCharSequence extends IntFlowable {
 
     final CharSequence string;
 
@@ -41,6 +42,35 @@ final class FlowableCharSequence extends Flowable<Integer> {
         s.onSubscribe(new CharSequenceSubscription(s, string));
     }
 
+    @Override
+    public IntCursor cursor() {
+        return new CharCursor(string);
+    }
+
+    static final class CharCursor implements IntCursor {
+
+        final CharSequence string;
+
+        final int end;
+
+        int index;
+
+        CharCursor(CharSequence string) {
+            this.string = string;
+            this.end = string.length();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index != end;
+        }
+
+        @Override
+        public int next() {
+            return string.charAt(index++);
+        }
+    }
+
     static final class CharSequenceSubscription
     extends BasicQueueSubscription<Integer> {
 
@@ -157,7 +187,7 @@ final class FlowableCharSequence extends Flowable<Integer> {
 
         @Override
         public boolean isEmpty() {
-            return index != end;
+            return index == end;
         }
 
         @Override
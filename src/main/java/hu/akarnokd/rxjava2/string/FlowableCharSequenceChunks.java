@@ -0,0 +1,198 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.string;
+
+import java.nio.CharBuffer;
+
+import org.reactivestreams.Subscriber;
+
+import io.reactivex.Flowable;
+import io.reactivex.internal.subscriptions.*;
+import io.reactivex.internal.util.BackpressureHelper;
+
+/**
+ * Streams the characters of a string in chunks of CharBuffer views
+ * or char[] copies, supporting synchronous fusion.
+ * <p>
+ * A chunk never ends between the two halves of a surrogate pair unless the
+ * chunk size is 1.
+ *
+ * @param <T> the chunk type, CharBuffer or char[]
+ * @since 0.17.0
+ */
+final class FlowableCharSequenceChunks<T> extends Flowable<T> {
+
+    final CharSequence string;
+
+    final int chunkSize;
+
+    final boolean arrays;
+
+    FlowableCharSequenceChunks(CharSequence string, int chunkSize, boolean arrays) {
+        this.string = string;
+        this.chunkSize = chunkSize;
+        this.arrays = arrays;
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super T> s) {
+        s.onSubscribe(new CharSequenceChunksSubscription<T>(s, string, chunkSize, arrays));
+    }
+
+    static final class CharSequenceChunksSubscription<T>
+    extends BasicQueueSubscription<T> {
+
+        private static final long serialVersionUID = 6165562604226766305L;
+
+        final Subscriber<? super T> actual;
+
+        final CharSequence string;
+
+        final int chunkSize;
+
+        final boolean arrays;
+
+        final int end;
+
+        int index;
+
+        volatile boolean cancelled;
+
+        CharSequenceChunksSubscription(Subscriber<? super T> actual, CharSequence string, int chunkSize, boolean arrays) {
+            this.actual = actual;
+            this.string = string;
+            this.chunkSize = chunkSize;
+            this.arrays = arrays;
+            this.end = string.length();
+        }
+
+        @SuppressWarnings("unchecked")
+        T next() {
+            CharSequence s = string;
+            int i = index;
+            int j = i + Math.min(chunkSize, end - i);
+            if (j != end && j - i > 1 && Character.isHighSurrogate(s.charAt(j - 1))) {
+                j--;
+            }
+            index = j;
+            if (arrays) {
+                char[] a = new char[j - i];
+                if (s instanceof String) {
+                    ((String)s).getChars(i, j, a, 0);
+                } else
+                if (s instanceof StringBuilder) {
+                    ((StringBuilder)s).getChars(i, j, a, 0);
+                } else {
+                    for (int k = i; k < j; k++) {
+                        a[k - i] = s.charAt(k);
+                    }
+                }
+                return (T)a;
+            }
+            return (T)CharBuffer.wrap(s, i, j);
+        }
+
+        @Override
+        public void request(long n) {
+            if (SubscriptionHelper.validate(n)) {
+                if (BackpressureHelper.add(this, n) == 0L) {
+                    if (n == Long.MAX_VALUE) {
+                        fastPath();
+                    } else {
+                        slowPath(n);
+                    }
+                }
+            }
+        }
+
+        void fastPath() {
+            Subscriber<? super T> a = actual;
+            int f = end;
+
+            while (index != f) {
+                if (cancelled) {
+                    return;
+                }
+                a.onNext(next());
+            }
+
+            if (!cancelled) {
+                a.onComplete();
+            }
+        }
+
+        void slowPath(long r) {
+            Subscriber<? super T> a = actual;
+            int f = end;
+            long e = 0L;
+
+            for (;;) {
+                while (e != r && index != f) {
+                    if (cancelled) {
+                        return;
+                    }
+                    a.onNext(next());
+                    e++;
+                }
+
+                if (index == f) {
+                    if (!cancelled) {
+                        a.onComplete();
+                    }
+                    return;
+                }
+
+                r = get();
+                if (e == r) {
+                    r = addAndGet(-e);
+                    if (r == 0L) {
+                        return;
+                    }
+                    e = 0L;
+                }
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int requestFusion(int mode) {
+            return mode & SYNC;
+        }
+
+        @Override
+        public T poll() {
+            if (index != end) {
+                return next();
+            }
+            return null;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return index == end;
+        }
+
+        @Override
+        public void clear() {
+            index = end;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.string;
+
+import hu.akarnokd.rxjava2.math.*;
+
+/**
+ * Streams the Unicode code points of a string, combining the surrogate pairs;
+ * unpaired surrogates are emitted as they are.
+ *
+ * @since 0.17.0
+ */
+final class FlowableCodePoints extends IntFlowable {
+
+    final CharSequence string;
+
+    FlowableCodePoints(CharSequence string) {
+        this.string = string;
+    }
+
+    @Override
+    public IntCursor cursor() {
+        return new CodePointCursor(string);
+    }
+
+    static final class CodePointCursor implements IntCursor {
+
+        final CharSequence string;
+
+        final int end;
+
+        int index;
+
+        CodePointCursor(CharSequence string) {
+            this.string = string;
+            this.end = string.length();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index != end;
+        }
+
+        @Override
+        public int next() {
+            CharSequence s = string;
+            int i = index;
+            char c = s.charAt(i++);
+            if (Character.isHighSurrogate(c) && i != end) {
+                char d = s.charAt(i);
+                if (Character.isLowSurrogate(d)) {
+                    index = i + 1;
+                    return Character.toCodePoint(c, d);
+                }
+            }
+            index = i;
+            return c;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.string;
+
+import java.nio.*;
+import java.nio.charset.*;
+
+import org.reactivestreams.*;
+
+import io.reactivex.*;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.internal.subscribers.SinglePostCompleteSubscriber;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Decodes ByteBuffers into Strings with a single, reused CharsetDecoder per subscriber;
+ * malformed input and unmappable characters are replaced.
+ * <p>
+ * In frame mode, each ByteBuffer is decoded on its own. In stream mode, the ByteBuffers
+ * are considered as one byte stream and a character whose bytes are split between two
+ * subsequent ByteBuffers is emitted as part of the String of the second one.
+ *
+ * @since 0.17.0
+ */
+final class FlowableDecode extends Flowable<String> implements FlowableTransformer<ByteBuffer, String> {
+
+    final Publisher<? extends ByteBuffer> source;
+
+    final Charset charset;
+
+    final boolean stream;
+
+    FlowableDecode(Publisher<? extends ByteBuffer> source, Charset charset, boolean stream) {
+        this.source = source;
+        this.charset = charset;
+        this.stream = stream;
+    }
+
+    @Override
+    public Publisher<String> apply(Flowable<ByteBuffer> upstream) {
+        return new FlowableDecode(upstream, charset, stream);
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super String> s) {
+        source.subscribe(new DecodeSubscriber(s, charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), stream));
+    }
+
+    static final class DecodeSubscriber extends SinglePostCompleteSubscriber<ByteBuffer, String> {
+
+        private static final long serialVersionUID = -1591218380467541513L;
+
+        /** Enough to hold the bytes of any single character. */
+        static final int CARRY_SIZE = 16;
+
+        final CharsetDecoder decoder;
+
+        final boolean stream;
+
+        /** The bytes of an incomplete character in stream mode. */
+        final ByteBuffer carry;
+
+        CharBuffer out;
+
+        boolean done;
+
+        DecodeSubscriber(Subscriber<? super String> actual, CharsetDecoder decoder, boolean stream) {
+            super(actual);
+            this.decoder = decoder;
+            this.stream = stream;
+            this.carry = stream ? ByteBuffer.allocate(CARRY_SIZE) : null;
+            this.out = CharBuffer.allocate(64);
+        }
+
+        @Override
+        public void onNext(ByteBuffer t) {
+            if (done) {
+                return;
+            }
+            String v;
+            try {
+                v = decode(t);
+            } catch (Throwable ex) {
+                Exceptions.throwIfFatal(ex);
+                s.cancel();
+                onError(ex);
+                return;
+            }
+
+            if (v.isEmpty() && stream) {
+                s.request(1);
+                return;
+            }
+            produced++;
+            actual.onNext(v);
+        }
+
+        String decode(ByteBuffer t) throws CharacterCodingException {
+            CharsetDecoder dec = decoder;
+            ByteBuffer in = t.duplicate();
+            CharBuffer o = out;
+            o.clear();
+
+            if (stream) {
+                ByteBuffer c = carry;
+                if (c.position() != 0) {
+                    // complete the split character from the head of the new chunk
+                    int add = Math.min(c.remaining(), in.remaining());
+                    int lim = in.limit();
+                    in.limit(in.position() + add);
+                    c.put(in);
+                    in.limit(lim);
+                    c.flip();
+                    o = decodeInto(dec, c, o, false);
+                    int left = c.remaining();
+                    if (left <= add) {
+                        in.position(in.position() - left);
+                        c.clear();
+                    } else {
+                        // still incomplete, all of the new bytes are in the carry
+                        c.compact();
+                    }
+                }
+                o = decodeInto(dec, in, o, false);
+                if (in.hasRemaining()) {
+                    carry.put(in);
+                }
+            } else {
+                dec.reset();
+                o = decodeInto(dec, in, o, true);
+                o = flushInto(dec, o);
+            }
+            out = o;
+            return new String(o.array(), 0, o.position());
+        }
+
+        static CharBuffer decodeInto(CharsetDecoder dec, ByteBuffer in, CharBuffer o, boolean endOfInput) throws CharacterCodingException {
+            for (;;) {
+                CoderResult cr = dec.decode(in, o, endOfInput);
+                if (cr.isOverflow()) {
+                    o = grow(o, in.remaining());
+                } else
+                if (cr.isUnderflow()) {
+                    return o;
+                } else {
+                    cr.throwException();
+                }
+            }
+        }
+
+        static CharBuffer flushInto(CharsetDecoder dec, CharBuffer o) throws CharacterCodingException {
+            for (;;) {
+                CoderResult cr = dec.flush(o);
+                if (cr.isOverflow()) {
+                    o = grow(o, 0);
+                } else
+                if (cr.isUnderflow()) {
+                    return o;
+                } else {
+                    cr.throwException();
+                }
+            }
+        }
+
+        static CharBuffer grow(CharBuffer o, int remaining) {
+            int cap = Math.max(o.capacity() * 2, o.position() + remaining + 16);
+            CharBuffer n = CharBuffer.allocate(cap);
+            o.flip();
+            n.put(o);
+            return n;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (done) {
+                RxJavaPlugins.onError(t);
+                return;
+            }
+            done = true;
+            actual.onError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            if (done) {
+                return;
+            }
+            done = true;
+            if (stream) {
+                String v;
+                try {
+                    CharBuffer o = out;
+                    o.clear();
+                    ByteBuffer c = carry;
+                    c.flip();
+                    o = decodeInto(decoder, c, o, true);
+                    o = flushInto(decoder, o);
+                    v = new String(o.array(), 0, o.position());
+                } catch (Throwable ex) {
+                    Exceptions.throwIfFatal(ex);
+                    actual.onError(ex);
+                    return;
+                }
+                if (!v.isEmpty()) {
+                    complete(v);
+                    return;
+                }
+            }
+            actual.onComplete();
+        }
+    }
+}
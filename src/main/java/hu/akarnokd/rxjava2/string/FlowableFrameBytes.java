@@ -0,0 +1,418 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.string;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.*;
+
+import org.reactivestreams.*;
+
+import io.reactivex.*;
+import io.reactivex.internal.fuseable.SimplePlainQueue;
+import io.reactivex.internal.queue.SpscArrayQueue;
+import io.reactivex.internal.subscriptions.SubscriptionHelper;
+import io.reactivex.internal.util.BackpressureHelper;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Consider a sequence of ByteBuffers as one stream of bytes and cut it into frames
+ * along a delimiter or based on a length prefix, without decoding them.
+ * <p>
+ * The incoming chunks are appended to a growable byte array which is never
+ * written below its current end: when it runs out of space, the unconsumed
+ * tail is copied into a fresh array, hence the frames already emitted, which are
+ * {@link ByteBuffer#slice() slices} of the array, stay valid.
+ *
+ * @since 0.17.0
+ */
+final class FlowableFrameBytes extends Flowable<ByteBuffer> implements FlowableTransformer<ByteBuffer, ByteBuffer> {
+
+    final Publisher<? extends ByteBuffer> source;
+
+    /** The delimiter or null if the frames are length-prefixed. */
+    final byte[] delimiter;
+
+    /** Remove the trailing '\r' of the delimited frames. */
+    final boolean stripReturn;
+
+    final int prefixLength;
+
+    final int maxFrameLength;
+
+    final int bufferSize;
+
+    FlowableFrameBytes(Publisher<? extends ByteBuffer> source, byte[] delimiter, boolean stripReturn,
+            int prefixLength, int maxFrameLength, int bufferSize) {
+        this.source = source;
+        this.delimiter = delimiter;
+        this.stripReturn = stripReturn;
+        this.prefixLength = prefixLength;
+        this.maxFrameLength = maxFrameLength;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public Publisher<ByteBuffer> apply(Flowable<ByteBuffer> upstream) {
+        return new FlowableFrameBytes(upstream, delimiter, stripReturn, prefixLength, maxFrameLength, bufferSize);
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super ByteBuffer> s) {
+        source.subscribe(new FrameSubscriber(s, delimiter, stripReturn, prefixLength, maxFrameLength, bufferSize));
+    }
+
+    static final class FrameSubscriber
+    extends AtomicInteger
+    implements FlowableSubscriber<ByteBuffer>, Subscription {
+
+        private static final long serialVersionUID = 2850446826405526946L;
+
+        static final int MIN_CAPACITY = 1024;
+
+        final Subscriber<? super ByteBuffer> actual;
+
+        final byte[] delimiter;
+
+        final boolean stripReturn;
+
+        final int prefixLength;
+
+        final int maxFrameLength;
+
+        final SimplePlainQueue<ByteBuffer> queue;
+
+        final AtomicLong requested;
+
+        final int bufferSize;
+
+        final int limit;
+
+        Subscription s;
+
+        volatile boolean cancelled;
+
+        volatile boolean done;
+        Throwable error;
+
+        int produced;
+
+        /** The chunks have all been appended to the buffer. */
+        boolean inputDone;
+
+        byte[] buffer;
+
+        /** The start of the not yet emitted bytes. */
+        int start;
+
+        /** The number of valid bytes in the buffer. */
+        int end;
+
+        /** Where the next delimiter search should resume. */
+        int scan;
+
+        boolean hasFrame;
+
+        int frameStart;
+
+        int frameEnd;
+
+        FrameSubscriber(Subscriber<? super ByteBuffer> actual, byte[] delimiter, boolean stripReturn,
+                int prefixLength, int maxFrameLength, int bufferSize) {
+            this.actual = actual;
+            this.delimiter = delimiter;
+            this.stripReturn = stripReturn;
+            this.prefixLength = prefixLength;
+            this.maxFrameLength = maxFrameLength;
+            this.bufferSize = bufferSize;
+            this.limit = bufferSize - (bufferSize >> 2);
+            this.queue = new SpscArrayQueue<ByteBuffer>(bufferSize);
+            this.requested = new AtomicLong();
+            this.buffer = new byte[MIN_CAPACITY];
+        }
+
+        @Override
+        public void request(long n) {
+            if (SubscriptionHelper.validate(n)) {
+                BackpressureHelper.add(requested, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            s.cancel();
+
+            if (getAndIncrement() == 0) {
+                cleanup();
+            }
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (SubscriptionHelper.validate(this.s, s)) {
+                this.s = s;
+
+                actual.onSubscribe(this);
+
+                s.request(bufferSize);
+            }
+        }
+
+        @Override
+        public void onNext(ByteBuffer t) {
+            if (!queue.offer(t)) {
+                s.cancel();
+                onError(new IllegalStateException("Queue is full?!"));
+                return;
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (done) {
+                RxJavaPlugins.onError(t);
+                return;
+            }
+            error = t;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            if (!done) {
+                done = true;
+                drain();
+            }
+        }
+
+        void cleanup() {
+            queue.clear();
+            buffer = null;
+        }
+
+        void append(ByteBuffer chunk) {
+            int n = chunk.remaining();
+            if (n == 0) {
+                return;
+            }
+            byte[] b = buffer;
+            int e = end;
+            if (b.length - e < n) {
+                int st = start;
+                int keep = e - st;
+                int need = keep + n;
+                int cap = b.length;
+                if (cap < need * 2 || cap > need * 16) {
+                    cap = Math.max(MIN_CAPACITY, need * 2);
+                }
+                // never write over already emitted frames, they may still be in use
+                byte[] c = new byte[cap];
+                System.arraycopy(b, st, c, 0, keep);
+                b = c;
+                buffer = c;
+                scan -= st;
+                start = 0;
+                e = keep;
+            }
+
+            if (chunk.hasArray()) {
+                System.arraycopy(chunk.array(), chunk.arrayOffset() + chunk.position(), b, e, n);
+            } else {
+                chunk.duplicate().get(b, e, n);
+            }
+            end = e + n;
+        }
+
+        /**
+         * Locates the next frame.
+         * @return true if a frame was found
+         * @throws Exception if the frame is too long or malformed
+         */
+        boolean findFrame() throws Exception {
+            if (delimiter != null) {
+                return findDelimited(delimiter);
+            }
+            return findPrefixed();
+        }
+
+        boolean findDelimited(byte[] delim) throws Exception {
+            byte[] b = buffer;
+            int e = end;
+            int n = delim.length;
+            byte first = delim[0];
+            int last = e - n;
+            int i = scan;
+
+            outer:
+            for (; i <= last; i++) {
+                if (b[i] == first) {
+                    for (int j = 1; j < n; j++) {
+                        if (b[i + j] != delim[j]) {
+                            continue outer;
+                        }
+                    }
+                    setFrame(start, i);
+                    start = i + n;
+                    scan = i + n;
+                    return true;
+                }
+            }
+            // a delimiter may still start within the last n - 1 bytes
+            int st = start;
+            scan = Math.max(st, last + 1);
+            if (scan - st > maxFrameLength) {
+                throw new IllegalStateException("Frame longer than " + maxFrameLength + " bytes");
+            }
+            return false;
+        }
+
+        void setFrame(int from, int to) {
+            if (stripReturn && to != from && buffer[to - 1] == '\r') {
+                to--;
+            }
+            frameStart = from;
+            frameEnd = to;
+        }
+
+        boolean findPrefixed() throws Exception {
+            int st = start;
+            int p = prefixLength;
+            if (end - st < p) {
+                return false;
+            }
+            byte[] b = buffer;
+            long len = 0L;
+            for (int i = 0; i < p; i++) {
+                len = (len << 8) | (b[st + i] & 0xFF);
+            }
+            if (len > maxFrameLength) {
+                throw new IllegalStateException("Frame longer than " + maxFrameLength + " bytes: " + len);
+            }
+            int fs = st + p;
+            int fe = fs + (int)len;
+            if (fe > end) {
+                return false;
+            }
+            frameStart = fs;
+            frameEnd = fe;
+            start = fe;
+            scan = fe;
+            return true;
+        }
+
+        void drain() {
+            if (getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+            int consumed = produced;
+            SimplePlainQueue<ByteBuffer> q = queue;
+            Subscriber<? super ByteBuffer> a = actual;
+
+            for (;;) {
+                long r = requested.get();
+                long e = 0L;
+
+                for (;;) {
+                    if (cancelled) {
+                        cleanup();
+                        return;
+                    }
+
+                    if (!hasFrame) {
+                        boolean found;
+                        try {
+                            found = findFrame();
+                        } catch (Throwable ex) {
+                            cancelled = true;
+                            s.cancel();
+                            cleanup();
+                            a.onError(ex);
+                            return;
+                        }
+                        if (found) {
+                            hasFrame = true;
+                        } else
+                        if (!inputDone) {
+                            boolean d = done;
+                            ByteBuffer chunk = q.poll();
+
+                            if (chunk != null) {
+                                append(chunk);
+                                if (++consumed == limit) {
+                                    consumed = 0;
+                                    s.request(limit);
+                                }
+                                continue;
+                            }
+
+                            if (d) {
+                                inputDone = true;
+                                continue;
+                            }
+                            break;
+                        } else
+                        if (start != end && error == null && delimiter == null) {
+                            cancelled = true;
+                            cleanup();
+                            a.onError(new EOFException("Truncated frame: " + (end - start) + " bytes remaining"));
+                            return;
+                        } else
+                        if (start != end && delimiter != null) {
+                            setFrame(start, end);
+                            start = end;
+                            scan = end;
+                            hasFrame = true;
+                        } else {
+                            cleanup();
+                            Throwable ex = error;
+                            if (ex != null) {
+                                a.onError(ex);
+                            } else {
+                                a.onComplete();
+                            }
+                            return;
+                        }
+                    }
+
+                    if (e == r) {
+                        break;
+                    }
+
+                    hasFrame = false;
+                    a.onNext(ByteBuffer.wrap(buffer, frameStart, frameEnd - frameStart).slice());
+                    e++;
+                }
+
+                if (e != 0L) {
+                    BackpressureHelper.produced(requested, e);
+                }
+
+                produced = consumed;
+                missed = addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,531 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.string;
+
+import java.util.concurrent.atomic.*;
+import java.util.regex.*;
+
+import org.reactivestreams.*;
+
+import io.reactivex.*;
+import io.reactivex.internal.fuseable.SimplePlainQueue;
+import io.reactivex.internal.queue.SpscArrayQueue;
+import io.reactivex.internal.subscriptions.SubscriptionHelper;
+import io.reactivex.internal.util.BackpressureHelper;
+import io.reactivex.plugins.RxJavaPlugins;
+
+/**
+ * Consider a sequence of CharSequences as one and split it based on
+ * a pattern, emitting the parts as read-only CharSequence views over an
+ * internal character buffer.
+ * <p>
+ * The incoming chunks are appended to a growable char array which is never
+ * written below its current end: when it runs out of space, the unconsumed
+ * tail is copied into a fresh array, hence the views already emitted stay valid.
+ * Literal patterns (no metacharacters, {@link Pattern#LITERAL} or
+ * {@code \Q...\E} quoted) are searched for directly, resuming right where the
+ * previous search stopped; other patterns use a single {@link Matcher}
+ * over the buffer, restarted from the end of the last match with each new chunk,
+ * as a failed regex search can't tell where a match could still start.
+ *
+ * @since 0.17.0
+ */
+final class FlowableSplitSequence extends Flowable<CharSequence> implements FlowableTransformer<CharSequence, CharSequence> {
+
+    final Publisher<? extends CharSequence> source;
+
+    final Pattern pattern;
+
+    final int bufferSize;
+
+    FlowableSplitSequence(Publisher<? extends CharSequence> source, Pattern pattern, int bufferSize) {
+        this.source = source;
+        this.pattern = pattern;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public Publisher<CharSequence> apply(Flowable<CharSequence> upstream) {
+        return new FlowableSplitSequence(upstream, pattern, bufferSize);
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super CharSequence> s) {
+        source.subscribe(new SplitSequenceSubscriber(s, pattern, literalOf(pattern), bufferSize));
+    }
+
+    /**
+     * Returns the characters of the pattern if it matches only a fixed, non-empty string
+     * or null if the regex engine is required.
+     * @param pattern the pattern to check
+     * @return the literal characters or null
+     */
+    static char[] literalOf(Pattern pattern) {
+        String p = pattern.pattern();
+        int flags = pattern.flags();
+        if (flags == Pattern.LITERAL) {
+            return p.isEmpty() ? null : p.toCharArray();
+        }
+        if (flags != 0) {
+            return null;
+        }
+        int n = p.length();
+        if (n > 4 && p.startsWith("\\Q") && p.endsWith("\\E") && p.indexOf("\\E") == n - 2) {
+            return p.substring(2, n - 2).toCharArray();
+        }
+        if (n == 2 && p.charAt(0) == '\\' && !Character.isLetterOrDigit(p.charAt(1))) {
+            return new char[] { p.charAt(1) };
+        }
+        if (n == 0) {
+            return null;
+        }
+        for (int i = 0; i < n; i++) {
+            if ("\\[](){}.*+?^$|".indexOf(p.charAt(i)) >= 0) {
+                return null;
+            }
+        }
+        return p.toCharArray();
+    }
+
+    static final class SplitSequenceSubscriber
+    extends AtomicInteger
+    implements FlowableSubscriber<CharSequence>, Subscription {
+
+        private static final long serialVersionUID = -6207722442245853451L;
+
+        static final int MIN_CAPACITY = 256;
+
+        final Subscriber<? super CharSequence> actual;
+
+        final char[] literal;
+
+        final Matcher matcher;
+
+        final BufferSequence text;
+
+        final SimplePlainQueue<CharSequence> queue;
+
+        final AtomicLong requested;
+
+        final int bufferSize;
+
+        final int limit;
+
+        Subscription s;
+
+        volatile boolean cancelled;
+
+        volatile boolean done;
+        Throwable error;
+
+        int produced;
+
+        /** The chunks have all been appended to the buffer. */
+        boolean inputDone;
+
+        char[] buffer;
+
+        /** The start of the not yet emitted characters. */
+        int start;
+
+        /** The number of valid characters in the buffer. */
+        int end;
+
+        /** Where the next search should resume. */
+        int scan;
+
+        boolean hasSegment;
+
+        int segmentStart;
+
+        int segmentEnd;
+
+        int empty;
+
+        SplitSequenceSubscriber(Subscriber<? super CharSequence> actual, Pattern pattern, char[] literal, int bufferSize) {
+            this.actual = actual;
+            this.literal = literal;
+            this.bufferSize = bufferSize;
+            this.limit = bufferSize - (bufferSize >> 2);
+            this.queue = new SpscArrayQueue<CharSequence>(bufferSize);
+            this.requested = new AtomicLong();
+            this.buffer = new char[MIN_CAPACITY];
+            if (literal == null) {
+                this.text = new BufferSequence();
+                this.matcher = pattern.matcher(text);
+                this.matcher.useTransparentBounds(true);
+                this.matcher.useAnchoringBounds(false);
+            } else {
+                this.text = null;
+                this.matcher = null;
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (SubscriptionHelper.validate(n)) {
+                BackpressureHelper.add(requested, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            s.cancel();
+
+            if (getAndIncrement() == 0) {
+                cleanup();
+            }
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (SubscriptionHelper.validate(this.s, s)) {
+                this.s = s;
+
+                actual.onSubscribe(this);
+
+                s.request(bufferSize);
+            }
+        }
+
+        @Override
+        public void onNext(CharSequence t) {
+            if (!queue.offer(t)) {
+                s.cancel();
+                onError(new IllegalStateException("Queue is full?!"));
+                return;
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (done) {
+                RxJavaPlugins.onError(t);
+                return;
+            }
+            error = t;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            if (!done) {
+                done = true;
+                drain();
+            }
+        }
+
+        void cleanup() {
+            queue.clear();
+            buffer = null;
+            if (text != null) {
+                text.array = null;
+            }
+        }
+
+        void append(CharSequence chunk) {
+            int n = chunk.length();
+            if (n == 0) {
+                return;
+            }
+            char[] b = buffer;
+            int e = end;
+            if (b.length - e < n) {
+                int st = start;
+                int keep = e - st;
+                int need = keep + n;
+                int cap = b.length;
+                if (cap < need * 2 || cap > need * 16) {
+                    cap = Math.max(MIN_CAPACITY, need * 2);
+                }
+                // never write over already emitted parts, they may still be in use
+                char[] c = new char[cap];
+                System.arraycopy(b, st, c, 0, keep);
+                b = c;
+                buffer = c;
+                scan -= st;
+                start = 0;
+                e = keep;
+            }
+
+            if (chunk instanceof String) {
+                ((String)chunk).getChars(0, n, b, e);
+            } else
+            if (chunk instanceof StringBuilder) {
+                ((StringBuilder)chunk).getChars(0, n, b, e);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    b[e + i] = chunk.charAt(i);
+                }
+            }
+            end = e + n;
+        }
+
+        /**
+         * Locates the next delimiter and sets up the segment before it.
+         * @return true if a segment was found
+         */
+        boolean findSegment() {
+            char[] lit = literal;
+            if (lit != null) {
+                return findLiteral(lit);
+            }
+            return findPattern();
+        }
+
+        boolean findLiteral(char[] lit) {
+            char[] b = buffer;
+            int e = end;
+            int n = lit.length;
+            char first = lit[0];
+            int last = e - n;
+            int i = scan;
+
+            outer:
+            for (; i <= last; i++) {
+                if (b[i] == first) {
+                    for (int j = 1; j < n; j++) {
+                        if (b[i + j] != lit[j]) {
+                            continue outer;
+                        }
+                    }
+                    segmentStart = start;
+                    segmentEnd = i;
+                    start = i + n;
+                    scan = i + n;
+                    return true;
+                }
+            }
+            // a delimiter may still start within the last n - 1 characters
+            scan = Math.max(start, last + 1);
+            return false;
+        }
+
+        boolean findPattern() {
+            Matcher m = matcher;
+            BufferSequence t = text;
+            t.array = buffer;
+            t.length = end;
+
+            int st = start;
+            int e = end;
+            int from = scan;
+            boolean complete = inputDone;
+
+            for (;;) {
+                if (from > e) {
+                    return false;
+                }
+                m.region(from, e);
+                if (!m.find()) {
+                    // the pending tail is searched again once more input arrives
+                    return false;
+                }
+                // with more input, the match could turn out differently
+                if (m.hitEnd() && !complete) {
+                    return false;
+                }
+                int ms = m.start();
+                int me = m.end();
+                if (ms == me && ms == st) {
+                    // a zero-length match right after the previous delimiter splits nothing
+                    from = st + 1;
+                    continue;
+                }
+                segmentStart = st;
+                segmentEnd = ms;
+                start = me;
+                scan = me;
+                return true;
+            }
+        }
+
+        void drain() {
+            if (getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+            int consumed = produced;
+            int emptyCount = empty;
+            SimplePlainQueue<CharSequence> q = queue;
+            Subscriber<? super CharSequence> a = actual;
+
+            for (;;) {
+                long r = requested.get();
+                long e = 0L;
+
+                for (;;) {
+                    if (cancelled) {
+                        cleanup();
+                        return;
+                    }
+
+                    if (!hasSegment) {
+                        if (findSegment()) {
+                            if (segmentStart == segmentEnd) {
+                                emptyCount++;
+                            } else {
+                                hasSegment = true;
+                            }
+                            continue;
+                        }
+
+                        if (!inputDone) {
+                            boolean d = done;
+                            CharSequence chunk = q.poll();
+
+                            if (chunk != null) {
+                                append(chunk);
+                                if (++consumed == limit) {
+                                    consumed = 0;
+                                    s.request(limit);
+                                }
+                                continue;
+                            }
+
+                            if (d) {
+                                inputDone = true;
+                                continue;
+                            }
+                            break;
+                        }
+
+                        if (start != end) {
+                            segmentStart = start;
+                            segmentEnd = end;
+                            start = end;
+                            scan = end;
+                            hasSegment = true;
+                        } else {
+                            cleanup();
+                            Throwable ex = error;
+                            if (ex != null) {
+                                a.onError(ex);
+                            } else {
+                                a.onComplete();
+                            }
+                            return;
+                        }
+                    }
+
+                    if (e == r) {
+                        break;
+                    }
+
+                    if (emptyCount != 0) {
+                        a.onNext("");
+                        emptyCount--;
+                    } else {
+                        hasSegment = false;
+                        a.onNext(new Segment(buffer, segmentStart, segmentEnd - segmentStart));
+                    }
+                    e++;
+                }
+
+                if (e != 0L) {
+                    BackpressureHelper.produced(requested, e);
+                }
+
+                empty = emptyCount;
+                produced = consumed;
+                missed = addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * The mutable view of the buffer the Matcher runs on.
+     */
+    static final class BufferSequence implements CharSequence {
+
+        char[] array;
+
+        int length;
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return array[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(array, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(array, 0, length);
+        }
+    }
+
+    /**
+     * An immutable view of a part of a buffer.
+     */
+    static final class Segment implements CharSequence {
+
+        final char[] array;
+
+        final int offset;
+
+        final int length;
+
+        Segment(char[] array, int offset, int length) {
+            this.array = array;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+            }
+            return array[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+            }
+            return new Segment(array, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(array, offset, length);
+        }
+    }
+}
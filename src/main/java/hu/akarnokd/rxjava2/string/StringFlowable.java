@@ -16,8 +16,11 @@
 
 package hu.akarnokd.rxjava2.string;
 
+import java.nio.*;
+import java.nio.charset.Charset;
 import java.util.regex.Pattern;
 
+import hu.akarnokd.rxjava2.math.IntFlowable;
 import io.reactivex.*;
 import io.reactivex.internal.functions.ObjectHelper;
 import io.reactivex.plugins.RxJavaPlugins;
@@ -41,6 +44,70 @@ public final class StringFlowable {
         return RxJavaPlugins.onAssembly(new FlowableCharSequence(string));
     }
 
+    /**
+     * Signals each character of the given string CharSequence as Integers, or as primitive
+     * ints when consumed via {@link IntFlowable#cursor()} or {@link IntFlowable#blockingForEachInt}.
+     * @param string the source of characters
+     * @return the new IntFlowable instance
+     *
+     * @since 0.17.0
+     */
+    public static IntFlowable chars(CharSequence string) {
+        ObjectHelper.requireNonNull(string, "string is null");
+        return new FlowableCharSequence(string);
+    }
+
+    /**
+     * Signals each Unicode code point of the given string CharSequence as Integers, or as
+     * primitive ints when consumed via {@link IntFlowable#cursor()} or
+     * {@link IntFlowable#blockingForEachInt}; surrogate pairs are combined into one
+     * code point, unpaired surrogates are signalled as they are.
+     * @param string the source of characters
+     * @return the new IntFlowable instance
+     *
+     * @since 0.17.0
+     */
+    public static IntFlowable codePoints(CharSequence string) {
+        ObjectHelper.requireNonNull(string, "string is null");
+        return new FlowableCodePoints(string);
+    }
+
+    /**
+     * Signals the characters of the given string CharSequence in read-only CharBuffer
+     * views of at most the given number of characters each, one chunk per requested item.
+     * <p>
+     * A chunk doesn't end between the halves of a surrogate pair unless chunkSize is 1.
+     * Note that the views are not copies, hence changes to a mutable CharSequence are
+     * visible through them.
+     * @param string the source of characters
+     * @param chunkSize the maximum number of characters per chunk
+     * @return the new Flowable instance
+     *
+     * @since 0.17.0
+     */
+    public static Flowable<CharBuffer> characterBuffers(CharSequence string, int chunkSize) {
+        ObjectHelper.requireNonNull(string, "string is null");
+        ObjectHelper.verifyPositive(chunkSize, "chunkSize");
+        return RxJavaPlugins.onAssembly(new FlowableCharSequenceChunks<CharBuffer>(string, chunkSize, false));
+    }
+
+    /**
+     * Signals the characters of the given string CharSequence in new char arrays
+     * of at most the given number of characters each, one chunk per requested item.
+     * <p>
+     * A chunk doesn't end between the halves of a surrogate pair unless chunkSize is 1.
+     * @param string the source of characters
+     * @param chunkSize the maximum number of characters per chunk
+     * @return the new Flowable instance
+     *
+     * @since 0.17.0
+     */
+    public static Flowable<char[]> characterArrays(CharSequence string, int chunkSize) {
+        ObjectHelper.requireNonNull(string, "string is null");
+        ObjectHelper.verifyPositive(chunkSize, "chunkSize");
+        return RxJavaPlugins.onAssembly(new FlowableCharSequenceChunks<char[]>(string, chunkSize, true));
+    }
+
     /**
      * Splits the input sequence of strings based on a pattern even across subsequent
      * elements if needed.
@@ -93,4 +160,220 @@ public final class StringFlowable {
         return split(Pattern.compile(pattern), bufferSize);
     }
 
+    /**
+     * Splits the input sequence of CharSequences based on a pattern even across subsequent
+     * elements if needed, emitting the parts as views over an internal buffer instead of
+     * new Strings.
+     * <p>
+     * Patterns without regex metacharacters, {@link Pattern#LITERAL} patterns and
+     * {@link Pattern#quote(String) quoted} patterns are matched without the regex engine.
+     * Other patterns are searched from the last delimiter again with each new element,
+     * which is quadratic in the length of the parts spanning many elements.
+     * <p>
+     * The emitted CharSequences are immutable and can be retained, but they keep a
+     * reference to the (shared) buffer they were cut from; call {@code toString()} on them
+     * for long term storage. Note that they don't implement {@code equals}/{@code hashCode}.
+     * @param pattern the Regexp pattern to split along
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    public static FlowableTransformer<CharSequence, CharSequence> splitSequence(Pattern pattern) {
+        return splitSequence(pattern, Flowable.bufferSize());
+    }
+
+    /**
+     * Splits the input sequence of CharSequences based on a pattern even across subsequent
+     * elements if needed, emitting the parts as views over an internal buffer instead of
+     * new Strings.
+     * <p>
+     * Patterns without regex metacharacters, {@link Pattern#LITERAL} patterns and
+     * {@link Pattern#quote(String) quoted} patterns are matched without the regex engine.
+     * Other patterns are searched from the last delimiter again with each new element,
+     * which is quadratic in the length of the parts spanning many elements.
+     * <p>
+     * The emitted CharSequences are immutable and can be retained, but they keep a
+     * reference to the (shared) buffer they were cut from; call {@code toString()} on them
+     * for long term storage. Note that they don't implement {@code equals}/{@code hashCode}.
+     * @param pattern the Regexp pattern to split along
+     * @param bufferSize the number of items to prefetch from the upstream
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    public static FlowableTransformer<CharSequence, CharSequence> splitSequence(Pattern pattern, int bufferSize) {
+        ObjectHelper.requireNonNull(pattern, "pattern is null");
+        ObjectHelper.verifyPositive(bufferSize, "bufferSize");
+        return new FlowableSplitSequence(null, pattern, bufferSize);
+    }
+
+    /**
+     * Splits the input sequence of CharSequences based on a pattern even across subsequent
+     * elements if needed, emitting the parts as views over an internal buffer instead of
+     * new Strings.
+     * @param pattern the Regexp pattern to split along
+     * @return the new FlowableTransformer instance
+     * @see #splitSequence(Pattern)
+     *
+     * @since 0.17.0
+     */
+    public static FlowableTransformer<CharSequence, CharSequence> splitSequence(String pattern) {
+        return splitSequence(pattern, Flowable.bufferSize());
+    }
+
+    /**
+     * Splits the input sequence of CharSequences based on a pattern even across subsequent
+     * elements if needed, emitting the parts as views over an internal buffer instead of
+     * new Strings.
+     * @param pattern the Regexp pattern to split along
+     * @param bufferSize the number of items to prefetch from the upstream
+     * @return the new FlowableTransformer instance
+     * @see #splitSequence(Pattern, int)
+     *
+     * @since 0.17.0
+     */
+    public static FlowableTransformer<CharSequence, CharSequence> splitSequence(String pattern, int bufferSize) {
+        return splitSequence(Pattern.compile(pattern), bufferSize);
+    }
+
+    /**
+     * Cuts the input sequence of bytes, considered as one, into lines along the
+     * {@code '\n'} byte, removing a trailing {@code '\r'} from each line, without decoding them.
+     * <p>
+     * Use it with ASCII compatible character sets (such as UTF-8 or ISO-8859-1) and
+     * decode the lines that are needed via {@link #decode(Charset)}.
+     * <p>
+     * The lines are emitted as {@link ByteBuffer#slice() slices} of an internal buffer
+     * which is never overwritten; they should be treated as read-only.
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    public static FlowableTransformer<ByteBuffer, ByteBuffer> frameLines() {
+        return frameLines(Flowable.bufferSize());
+    }
+
+    /**
+     * Cuts the input sequence of bytes, considered as one, into lines along the
+     * {@code '\n'} byte, removing a trailing {@code '\r'} from each line, without decoding them.
+     * @param bufferSize the number of items to prefetch from the upstream
+     * @return the new FlowableTransformer instance
+     * @see #frameLines()
+     *
+     * @since 0.17.0
+     */
+    public static FlowableTransformer<ByteBuffer, ByteBuffer> frameLines(int bufferSize) {
+        ObjectHelper.verifyPositive(bufferSize, "bufferSize");
+        return new FlowableFrameBytes(null, new byte[] { '\n' }, true, 0, Integer.MAX_VALUE, bufferSize);
+    }
+
+    /**
+     * Cuts the input sequence of bytes, considered as one, into frames along the
+     * given delimiter, without decoding them.
+     * <p>
+     * The frames are emitted as {@link ByteBuffer#slice() slices} of an internal buffer
+     * which is never overwritten; they should be treated as read-only.
+     * @param delimiter the non-empty delimiter bytes
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    public static FlowableTransformer<ByteBuffer, ByteBuffer> frameDelimited(byte[] delimiter) {
+        return frameDelimited(delimiter, Flowable.bufferSize());
+    }
+
+    /**
+     * Cuts the input sequence of bytes, considered as one, into frames along the
+     * given delimiter, without decoding them.
+     * @param delimiter the non-empty delimiter bytes
+     * @param bufferSize the number of items to prefetch from the upstream
+     * @return the new FlowableTransformer instance
+     * @see #frameDelimited(byte[])
+     *
+     * @since 0.17.0
+     */
+    public static FlowableTransformer<ByteBuffer, ByteBuffer> frameDelimited(byte[] delimiter, int bufferSize) {
+        ObjectHelper.requireNonNull(delimiter, "delimiter is null");
+        if (delimiter.length == 0) {
+            throw new IllegalArgumentException("delimiter is empty");
+        }
+        ObjectHelper.verifyPositive(bufferSize, "bufferSize");
+        return new FlowableFrameBytes(null, delimiter.clone(), false, 0, Integer.MAX_VALUE, bufferSize);
+    }
+
+    /**
+     * Cuts the input sequence of bytes, considered as one, into frames each preceded
+     * by its length as a big-endian unsigned number of {@code prefixLength} bytes,
+     * without decoding them.
+     * <p>
+     * A frame longer than {@code maxFrameLength} or an incomplete frame at the end
+     * of the sequence is signalled as an error.
+     * <p>
+     * The frames (without the prefix) are emitted as {@link ByteBuffer#slice() slices}
+     * of an internal buffer which is never overwritten; they should be treated as read-only.
+     * @param prefixLength the length of the prefix in bytes: 1, 2, 3 or 4
+     * @param maxFrameLength the maximum length of a frame
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    public static FlowableTransformer<ByteBuffer, ByteBuffer> frameLengthPrefixed(int prefixLength, int maxFrameLength) {
+        return frameLengthPrefixed(prefixLength, maxFrameLength, Flowable.bufferSize());
+    }
+
+    /**
+     * Cuts the input sequence of bytes, considered as one, into frames each preceded
+     * by its length as a big-endian unsigned number of {@code prefixLength} bytes,
+     * without decoding them.
+     * @param prefixLength the length of the prefix in bytes: 1, 2, 3 or 4
+     * @param maxFrameLength the maximum length of a frame
+     * @param bufferSize the number of items to prefetch from the upstream
+     * @return the new FlowableTransformer instance
+     * @see #frameLengthPrefixed(int, int)
+     *
+     * @since 0.17.0
+     */
+    public static FlowableTransformer<ByteBuffer, ByteBuffer> frameLengthPrefixed(int prefixLength, int maxFrameLength, int bufferSize) {
+        if (prefixLength < 1 || prefixLength > 4) {
+            throw new IllegalArgumentException("prefixLength in [1, 4] required but it was " + prefixLength);
+        }
+        if (maxFrameLength < 0) {
+            throw new IllegalArgumentException("maxFrameLength >= 0 required but it was " + maxFrameLength);
+        }
+        ObjectHelper.verifyPositive(bufferSize, "bufferSize");
+        return new FlowableFrameBytes(null, null, false, prefixLength, maxFrameLength, bufferSize);
+    }
+
+    /**
+     * Decodes each ByteBuffer into a String on its own, reusing the same decoder
+     * for a subscriber; malformed input is replaced.
+     * <p>
+     * Use it on complete records such as the output of {@link #frameLines()}.
+     * @param charset the character set
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    public static FlowableTransformer<ByteBuffer, String> decode(Charset charset) {
+        ObjectHelper.requireNonNull(charset, "charset is null");
+        return new FlowableDecode(null, charset, false);
+    }
+
+    /**
+     * Decodes the sequence of ByteBuffers, considered as one byte stream, into Strings,
+     * handling the characters whose bytes are split between subsequent ByteBuffers;
+     * malformed input is replaced.
+     * <p>
+     * Use it on arbitrary chunks of bytes, for example, before {@link #split(Pattern)}.
+     * Chunks that don't complete any character don't produce a String.
+     * @param charset the character set
+     * @return the new FlowableTransformer instance
+     *
+     * @since 0.17.0
+     */
+    public static FlowableTransformer<ByteBuffer, String> decodeStream(Charset charset) {
+        ObjectHelper.requireNonNull(charset, "charset is null");
+        return new FlowableDecode(null, charset, true);
+    }
+
 }
@@ -27,6 +27,7 @@ import io.reactivex.*;
 import io.reactivex.functions.Action;
 import io.reactivex.observers.TestObserver;
 import io.reactivex.parallel.ParallelFlowable;
+import io.reactivex.plugins.RxJavaPlugins;
 import io.reactivex.subscribers.TestSubscriber;
 
 /**
@@ -232,4 +233,150 @@ public class RxJava2AssemblyTrackingTest {
 
         assertNull(RxJavaAssemblyException.find(ts.errors().get(0)));
     }
+
+    @Test
+    public void flowableLowOverhead() {
+        RxJavaAssemblyTracking.enable(1, true);
+        try {
+            Flowable<Integer> source = createFlowable();
+
+            TestSubscriber<Integer> ts = source.test()
+            .assertFailure(IOException.class, 1, 2, 3, 4, 5);
+
+            RxJavaAssemblyException ex = RxJavaAssemblyException.find(ts.errors().get(0));
+
+            assertNull(ex.stacktrace);
+
+            String st = ex.stacktrace();
+
+            assertTrue(st, st.contains("RxJava2AssemblyTrackingTest.createFlowable"));
+            assertSame(st, ex.stacktrace);
+        } finally {
+            RxJavaAssemblyTracking.disable();
+        }
+    }
+
+    @Test
+    public void lowOverheadCachedPerCallSite() {
+        RxJavaAssemblyTracking.enable(1, true);
+        try {
+            String[] traces = new String[3];
+            for (int i = 0; i < traces.length; i++) {
+                TestSubscriber<Integer> ts = createFlowable().test();
+                traces[i] = RxJavaAssemblyException.find(ts.errors().get(0)).stacktrace();
+            }
+
+            assertSame(traces[0], traces[1]);
+            assertSame(traces[0], traces[2]);
+
+            TestObserver<Integer> to = createObservable().test();
+            String st = RxJavaAssemblyException.find(to.errors().get(0)).stacktrace();
+
+            assertNotSame(traces[0], st);
+            assertTrue(st, st.contains("RxJava2AssemblyTrackingTest.createObservable"));
+        } finally {
+            RxJavaAssemblyTracking.disable();
+        }
+        assertTrue(RxJavaAssemblyException.CACHE.isEmpty());
+    }
+
+    @Test
+    public void sampling() {
+        RxJavaAssemblyTracking.enable(4, false);
+        try {
+            int tracked = 0;
+            for (int i = 0; i < 100; i++) {
+                if (Flowable.range(1, 5) instanceof FlowableOnAssembly) {
+                    tracked++;
+                }
+            }
+            assertEquals(25, tracked);
+        } finally {
+            RxJavaAssemblyTracking.disable();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSamplingPeriod() {
+        RxJavaAssemblyTracking.enable(0, false);
+    }
+
+    @Test
+    public void metricsThenTracking() {
+        try {
+            RxJavaMetricsTracking.enable();
+            RxJavaAssemblyTracking.enable();
+
+            Flowable<Integer> f = Flowable.range(1, 5);
+            assertTrue(f instanceof FlowableOnAssembly);
+            assertTrue(((FlowableOnAssembly<Integer>)f).source instanceof FlowableOnMetrics);
+            Observable<Integer> o = Observable.range(1, 5);
+            assertTrue(o instanceof ObservableOnAssembly);
+            assertTrue(((ObservableOnAssembly<Integer>)o).source instanceof ObservableOnMetrics);
+
+            RxJavaAssemblyTracking.disable();
+
+            assertTrue(Flowable.range(1, 5) instanceof FlowableOnMetrics);
+            assertTrue(Observable.range(1, 5) instanceof ObservableOnMetrics);
+
+            RxJavaMetricsTracking.disable();
+
+            assertNull(RxJavaPlugins.getOnFlowableAssembly());
+            assertNull(RxJavaPlugins.getOnObservableAssembly());
+        } finally {
+            RxJavaAssemblyTracking.disable();
+            RxJavaMetricsTracking.disable();
+            RxJavaPlugins.reset();
+        }
+    }
+
+    @Test
+    public void trackingThenMetrics() {
+        try {
+            RxJavaAssemblyTracking.enable();
+            RxJavaMetricsTracking.enable();
+
+            Flowable<Integer> f = Flowable.range(1, 5);
+            assertTrue(f instanceof FlowableOnMetrics);
+            assertTrue(((FlowableOnMetrics<Integer>)f).source instanceof FlowableOnAssembly);
+            Observable<Integer> o = Observable.range(1, 5);
+            assertTrue(o instanceof ObservableOnMetrics);
+            assertTrue(((ObservableOnMetrics<Integer>)o).source instanceof ObservableOnAssembly);
+
+            RxJavaAssemblyTracking.disable();
+
+            f = Flowable.range(1, 5);
+            assertTrue(f instanceof FlowableOnMetrics);
+            assertFalse(((FlowableOnMetrics<Integer>)f).source instanceof FlowableOnAssembly);
+            o = Observable.range(1, 5);
+            assertTrue(o instanceof ObservableOnMetrics);
+            assertFalse(((ObservableOnMetrics<Integer>)o).source instanceof ObservableOnAssembly);
+
+            RxJavaMetricsTracking.disable();
+
+            assertNull(RxJavaPlugins.getOnFlowableAssembly());
+            assertNull(RxJavaPlugins.getOnObservableAssembly());
+        } finally {
+            RxJavaAssemblyTracking.disable();
+            RxJavaMetricsTracking.disable();
+            RxJavaPlugins.reset();
+        }
+    }
+
+    @Test
+    public void enabledTwice() {
+        RxJavaAssemblyTracking.enable();
+        try {
+            RxJavaAssemblyTracking.enable(2, false);
+
+            Flowable<Integer> f = Flowable.range(1, 5);
+            if (f instanceof FlowableOnAssembly) {
+                assertFalse(((FlowableOnAssembly<Integer>)f).source instanceof FlowableOnAssembly);
+            }
+        } finally {
+            RxJavaAssemblyTracking.disable();
+        }
+
+        assertNull(RxJavaPlugins.getOnFlowableAssembly());
+    }
 }
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.debug;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import hu.akarnokd.rxjava2.test.TestHelper;
+import io.reactivex.Flowable;
+import io.reactivex.functions.*;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subscribers.TestSubscriber;
+
+/**
+ * Named as such to avoid being filtered out in stacktraces of this test.
+ */
+public class RxJava2StallWatchdogTest {
+
+    static final Function<Integer, Integer> IDENTITY = new Function<Integer, Integer>() {
+        @Override
+        public Integer apply(Integer v) throws Exception {
+            return v;
+        }
+    };
+
+    final TestScheduler scheduler = new TestScheduler();
+
+    final List<StallReport> reports = Collections.synchronizedList(new ArrayList<StallReport>());
+
+    void enable() {
+        RxJavaStallWatchdog.enable(1, TimeUnit.SECONDS, scheduler, new Consumer<StallReport>() {
+            @Override
+            public void accept(StallReport r) throws Exception {
+                reports.add(r);
+            }
+        });
+    }
+
+    StallReport find(String operator) {
+        StallReport found = null;
+        for (StallReport r : reports) {
+            if (r.operator().endsWith("." + operator)) {
+                assertNull(reports.toString(), found);
+                found = r;
+            }
+        }
+        assertNotNull(reports.toString(), found);
+        return found;
+    }
+
+    @Test
+    public void utilityClass() {
+        TestHelper.checkUtilityClass(RxJavaStallWatchdog.class);
+    }
+
+    @Test
+    public void stallReported() {
+        enable();
+        try {
+            TestSubscriber<Integer> ts = Flowable.range(1, 10).onBackpressureBuffer().map(IDENTITY).test(0L);
+
+            ts.request(2);
+
+            scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+
+            assertTrue(reports.toString(), reports.isEmpty());
+
+            scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS);
+
+            assertEquals(reports.toString(), 1, reports.size());
+
+            StallReport r = find("FlowableOnBackpressureBuffer");
+            assertEquals(2, r.requested());
+            assertEquals(8, r.buffered());
+            assertEquals(1, r.stalledFor(TimeUnit.SECONDS));
+            assertEquals(1, r.sinceLastRequest(TimeUnit.SECONDS));
+            String st = r.assembled().stacktrace();
+            assertTrue(st, st.contains("RxJava2StallWatchdogTest.stallReported"));
+            assertTrue(r.toString(), r.toString().contains("FlowableOnBackpressureBuffer"));
+
+            // reported only once
+            scheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+
+            assertEquals(reports.toString(), 1, reports.size());
+
+            reports.clear();
+
+            ts.request(1);
+
+            scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+
+            r = find("FlowableOnBackpressureBuffer");
+            assertEquals(3, r.requested());
+            assertEquals(7, r.buffered());
+
+            ts.request(10);
+
+            ts.assertResult(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+
+            reports.clear();
+
+            scheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+
+            assertTrue(reports.toString(), reports.isEmpty());
+        } finally {
+            RxJavaStallWatchdog.disable();
+        }
+    }
+
+    @Test
+    public void neverRequestedReported() {
+        enable();
+        try {
+            Flowable.range(1, 5).onBackpressureBuffer().map(IDENTITY).test(0L);
+
+            scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+
+            StallReport r = find("FlowableOnBackpressureBuffer");
+            assertEquals(0, r.requested());
+            assertEquals(5, r.buffered());
+        } finally {
+            RxJavaStallWatchdog.disable();
+        }
+    }
+
+    @Test
+    public void idleConsumerNotReported() {
+        enable();
+        try {
+            // the demand is used up, but nothing is pending upstream
+            Flowable.just(1).concatWith(Flowable.<Integer>never()).map(IDENTITY).test(1).assertValue(1);
+
+            Flowable.range(1, 10).map(IDENTITY).test(2);
+
+            scheduler.advanceTimeBy(10, TimeUnit.SECONDS);
+
+            assertTrue(reports.toString(), reports.isEmpty());
+        } finally {
+            RxJavaStallWatchdog.disable();
+        }
+    }
+
+    @Test
+    public void outstandingDemandNotReported() {
+        enable();
+        try {
+            Flowable.range(1, 10).concatWith(Flowable.<Integer>never()).map(IDENTITY).test();
+
+            Flowable.<Integer>never().map(IDENTITY).test(5);
+
+            scheduler.advanceTimeBy(10, TimeUnit.SECONDS);
+
+            assertTrue(reports.toString(), reports.isEmpty());
+        } finally {
+            RxJavaStallWatchdog.disable();
+        }
+    }
+
+    @Test
+    public void terminatedNotReported() {
+        enable();
+        try {
+            Flowable.range(1, 2).map(IDENTITY).test(2).assertResult(1, 2);
+
+            Flowable.range(1, 5).map(IDENTITY).test(2).cancel();
+
+            scheduler.advanceTimeBy(10, TimeUnit.SECONDS);
+
+            assertTrue(reports.toString(), reports.isEmpty());
+        } finally {
+            RxJavaStallWatchdog.disable();
+        }
+    }
+
+    @Test
+    public void disableStopsScan() {
+        enable();
+        try {
+            Flowable.range(1, 10).map(IDENTITY).test(1);
+        } finally {
+            RxJavaStallWatchdog.disable();
+        }
+
+        assertFalse(Flowable.range(1, 10) instanceof FlowableOnWatchdog);
+
+        scheduler.advanceTimeBy(10, TimeUnit.SECONDS);
+
+        assertTrue(reports.toString(), reports.isEmpty());
+    }
+
+    @Test
+    public void enabledTogetherWithMetrics() {
+        try {
+            RxJavaMetricsTracking.enable();
+            enable();
+
+            Flowable<Integer> f = Flowable.range(1, 10);
+            assertTrue(f instanceof FlowableOnWatchdog);
+            assertTrue(((FlowableOnWatchdog<Integer>)f).source instanceof FlowableOnMetrics);
+
+            RxJavaMetricsTracking.disable();
+
+            f = Flowable.range(1, 10);
+            assertTrue(f instanceof FlowableOnWatchdog);
+            assertFalse(((FlowableOnWatchdog<Integer>)f).source instanceof FlowableOnMetrics);
+
+            RxJavaStallWatchdog.disable();
+
+            assertNull(RxJavaPlugins.getOnFlowableAssembly());
+
+            RxJavaMetricsTracking.enable();
+            enable();
+
+            RxJavaStallWatchdog.disable();
+
+            assertTrue(Flowable.range(1, 10) instanceof FlowableOnMetrics);
+
+            RxJavaMetricsTracking.disable();
+
+            assertNull(RxJavaPlugins.getOnFlowableAssembly());
+        } finally {
+            RxJavaStallWatchdog.disable();
+            RxJavaMetricsTracking.disable();
+            RxJavaPlugins.reset();
+        }
+    }
+
+    @Test
+    public void enabledTogetherWithAssemblyTracking() {
+        try {
+            enable();
+            RxJavaAssemblyTracking.enable();
+
+            assertTrue(Flowable.range(1, 10) instanceof FlowableOnAssembly);
+
+            RxJavaAssemblyTracking.disable();
+
+            assertTrue(Flowable.range(1, 10) instanceof FlowableOnWatchdog);
+
+            RxJavaAssemblyTracking.enable();
+            RxJavaStallWatchdog.disable();
+
+            Flowable<Integer> f = Flowable.range(1, 10);
+            assertTrue(f instanceof FlowableOnAssembly);
+            assertFalse(((FlowableOnAssembly<Integer>)f).source instanceof FlowableOnWatchdog);
+
+            RxJavaAssemblyTracking.disable();
+
+            assertNull(RxJavaPlugins.getOnFlowableAssembly());
+        } finally {
+            RxJavaAssemblyTracking.disable();
+            RxJavaStallWatchdog.disable();
+            RxJavaPlugins.reset();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidThreshold() {
+        RxJavaStallWatchdog.enable(0, TimeUnit.SECONDS, scheduler, new Consumer<StallReport>() {
+            @Override
+            public void accept(StallReport r) throws Exception {
+            }
+        });
+    }
+}
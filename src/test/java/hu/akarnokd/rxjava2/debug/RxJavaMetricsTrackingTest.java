@@ -0,0 +1,314 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.debug;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import hu.akarnokd.rxjava2.test.TestHelper;
+import io.reactivex.*;
+import io.reactivex.functions.Function;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class RxJavaMetricsTrackingTest {
+
+    static final Function<Integer, Integer> IDENTITY = new Function<Integer, Integer>() {
+        @Override
+        public Integer apply(Integer v) throws Exception {
+            return v;
+        }
+    };
+
+    static OperatorMetricsSnapshot find(String operator) {
+        OperatorMetricsSnapshot found = null;
+        for (OperatorMetricsSnapshot s : RxJavaMetricsTracking.snapshot()) {
+            if (s.site().equals(operator) || s.site().startsWith(operator + " @ ")) {
+                assertNull("Multiple sites: " + RxJavaMetricsTracking.snapshot(), found);
+                found = s;
+            }
+        }
+        assertNotNull("No site: " + RxJavaMetricsTracking.snapshot(), found);
+        return found;
+    }
+
+    @Test
+    public void utilityClass() {
+        TestHelper.checkUtilityClass(RxJavaMetricsTracking.class);
+    }
+
+    @Test
+    public void flowableItemsAndRequests() {
+        RxJavaMetricsTracking.enable(true);
+        try {
+            TestSubscriber<Integer> ts = Flowable.range(1, 10).map(IDENTITY).test(0L);
+
+            ts.request(4);
+
+            OperatorMetricsSnapshot s = find("FlowableMap");
+            assertTrue(s.site(), s.site().contains("RxJavaMetricsTrackingTest.flowableItemsAndRequests"));
+            assertEquals(1, s.subscriptions());
+            assertEquals(1, s.activeSubscriptions());
+            assertEquals(4, s.items());
+            assertEquals(4, s.requested());
+            assertEquals(0, s.outstandingDemand());
+
+            ts.request(20);
+
+            ts.assertResult(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+
+            s = find("FlowableMap");
+            assertEquals(10, s.items());
+            assertEquals(24, s.requested());
+            assertEquals(0, s.unboundedRequests());
+            assertEquals(1, s.completions());
+            assertEquals(0, s.activeSubscriptions());
+            // the unfulfilled demand is dropped on termination
+            assertEquals(0, s.outstandingDemand());
+        } finally {
+            RxJavaMetricsTracking.disable();
+        }
+
+        assertTrue(RxJavaMetricsTracking.snapshot().isEmpty());
+    }
+
+    @Test
+    public void outstandingDemand() {
+        RxJavaMetricsTracking.enable();
+        try {
+            TestSubscriber<Integer> ts = Flowable.range(1, 5).map(IDENTITY).test(0L);
+            TestSubscriber<Integer> ts2 = Flowable.range(1, 5).concatWith(Flowable.<Integer>never()).test(0L);
+
+            ts.request(3);
+            ts2.request(8);
+
+            assertEquals(0, find("FlowableMap").outstandingDemand());
+            assertEquals(3, find("FlowableConcatArray").outstandingDemand());
+
+            ts2.request(Long.MAX_VALUE);
+
+            OperatorMetricsSnapshot s = find("FlowableConcatArray");
+            assertEquals(0, s.outstandingDemand());
+            assertEquals(1, s.unboundedRequests());
+
+            ts2.cancel();
+
+            s = find("FlowableConcatArray");
+            assertEquals(1, s.cancellations());
+            assertEquals(0, s.activeSubscriptions());
+        } finally {
+            RxJavaMetricsTracking.disable();
+        }
+    }
+
+    @Test
+    public void flowableError() {
+        RxJavaMetricsTracking.enable();
+        try {
+            Flowable.error(new IOException())
+            .test()
+            .assertFailure(IOException.class);
+
+            OperatorMetricsSnapshot s = find("FlowableError");
+            assertEquals(1, s.errors());
+            assertEquals(0, s.items());
+            assertEquals(1, s.unboundedRequests());
+        } finally {
+            RxJavaMetricsTracking.disable();
+        }
+    }
+
+    @Test
+    public void timeToFirstItem() {
+        RxJavaMetricsTracking.enable();
+        try {
+            Flowable.range(1, 2).delay(50, TimeUnit.MILLISECONDS)
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertResult(1, 2);
+
+            OperatorMetricsSnapshot s = find("FlowableDelay");
+            assertTrue("" + s, s.averageTimeToFirstItem(TimeUnit.MILLISECONDS) >= 40);
+            assertTrue("" + s, s.maxTimeToFirstItem(TimeUnit.MILLISECONDS) >= 40);
+            assertTrue("" + s, s.averageLifetime(TimeUnit.MILLISECONDS) >= 40);
+            assertTrue("" + s, s.maxLifetime(TimeUnit.MILLISECONDS) >= 40);
+        } finally {
+            RxJavaMetricsTracking.disable();
+        }
+    }
+
+    @Test
+    public void syncFused() {
+        RxJavaMetricsTracking.enable();
+        try {
+            Flowable.range(1, 5)
+            .observeOn(Schedulers.single())
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertResult(1, 2, 3, 4, 5);
+
+            OperatorMetricsSnapshot s = find("FlowableRange");
+            assertEquals(5, s.items());
+            assertEquals(1, s.completions());
+            assertEquals(0, s.requested());
+            assertEquals(0, s.outstandingDemand());
+        } finally {
+            RxJavaMetricsTracking.disable();
+        }
+    }
+
+    @Test
+    public void observable() {
+        RxJavaMetricsTracking.enable();
+        try {
+            Observable.range(1, 5).map(IDENTITY)
+            .test()
+            .assertResult(1, 2, 3, 4, 5);
+
+            OperatorMetricsSnapshot s = find("ObservableMap");
+            assertEquals(1, s.subscriptions());
+            assertEquals(5, s.items());
+            assertEquals(1, s.completions());
+            assertEquals(0, s.outstandingDemand());
+
+            Observable.never().test().cancel();
+
+            assertEquals(1, find("ObservableNever").cancellations());
+        } finally {
+            RxJavaMetricsTracking.disable();
+        }
+    }
+
+    @Test
+    public void scalarsNotInstrumented() {
+        RxJavaMetricsTracking.enable();
+        try {
+            assertFalse(Flowable.just(1) instanceof FlowableOnMetrics);
+            assertFalse(Observable.just(1) instanceof ObservableOnMetrics);
+            assertTrue(Flowable.range(1, 5) instanceof FlowableOnMetrics);
+        } finally {
+            RxJavaMetricsTracking.disable();
+        }
+    }
+
+    @Test
+    public void export() throws IOException {
+        RxJavaMetricsTracking.enable();
+        try {
+            Flowable.range(1, 5).test().assertResult(1, 2, 3, 4, 5);
+
+            StringBuilder sb = new StringBuilder();
+            RxJavaMetricsTracking.export(sb);
+
+            String[] lines = sb.toString().split("\n");
+            assertEquals(2, lines.length);
+            assertTrue(lines[0], lines[0].startsWith("site\tsubscriptions\t"));
+            assertTrue(lines[1], lines[1].startsWith("FlowableRange\t"));
+            assertEquals(lines[0].split("\t").length, lines[1].split("\t").length);
+        } finally {
+            RxJavaMetricsTracking.disable();
+        }
+    }
+
+    @Test
+    public void perOperatorClassByDefault() {
+        RxJavaMetricsTracking.enable();
+        try {
+            Flowable.range(1, 5).map(IDENTITY).test().assertResult(1, 2, 3, 4, 5);
+            Flowable.range(1, 5).map(IDENTITY).test().assertResult(1, 2, 3, 4, 5);
+
+            OperatorMetricsSnapshot s = find("FlowableMap");
+            assertEquals("FlowableMap", s.site());
+            assertEquals(2, s.subscriptions());
+        } finally {
+            RxJavaMetricsTracking.disable();
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void previousHooksChainedAndRestored() {
+        final int[] calls = { 0, 0 };
+        Function<Flowable, Flowable> fh = new Function<Flowable, Flowable>() {
+            @Override
+            public Flowable apply(Flowable f) throws Exception {
+                calls[0]++;
+                return f;
+            }
+        };
+        Function<Observable, Observable> oh = new Function<Observable, Observable>() {
+            @Override
+            public Observable apply(Observable f) throws Exception {
+                calls[1]++;
+                return f;
+            }
+        };
+        RxJavaPlugins.setOnFlowableAssembly(fh);
+        RxJavaPlugins.setOnObservableAssembly(oh);
+        try {
+            RxJavaMetricsTracking.enable();
+            try {
+                assertTrue(Flowable.range(1, 5) instanceof FlowableOnMetrics);
+                assertTrue(Observable.range(1, 5) instanceof ObservableOnMetrics);
+
+                assertEquals(1, calls[0]);
+                assertEquals(1, calls[1]);
+                assertEquals(0, find("FlowableRange").subscriptions());
+            } finally {
+                RxJavaMetricsTracking.disable();
+            }
+
+            assertSame(fh, RxJavaPlugins.getOnFlowableAssembly());
+            assertSame(oh, RxJavaPlugins.getOnObservableAssembly());
+        } finally {
+            RxJavaPlugins.reset();
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void disabledUnderLaterHook() {
+        RxJavaMetricsTracking.enable();
+        try {
+            final Function<? super Flowable, ? extends Flowable> metrics = RxJavaPlugins.getOnFlowableAssembly();
+            // a hook installed later on top of the metrics, chaining to them
+            Function<Flowable, Flowable> later = new Function<Flowable, Flowable>() {
+                @Override
+                public Flowable apply(Flowable f) throws Exception {
+                    return metrics.apply(f);
+                }
+            };
+            RxJavaPlugins.setOnFlowableAssembly(later);
+
+            assertTrue(Flowable.range(1, 5) instanceof FlowableOnMetrics);
+
+            RxJavaMetricsTracking.disable();
+
+            assertSame(later, RxJavaPlugins.getOnFlowableAssembly());
+            assertFalse(Flowable.range(1, 5) instanceof FlowableOnMetrics);
+            assertTrue(RxJavaMetricsTracking.snapshot().isEmpty());
+        } finally {
+            RxJavaMetricsTracking.disable();
+            RxJavaPlugins.reset();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.io;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+import org.junit.*;
+
+import hu.akarnokd.rxjava2.string.StringFlowable;
+import hu.akarnokd.rxjava2.test.*;
+import io.reactivex.Flowable;
+import io.reactivex.functions.Function;
+import io.reactivex.internal.fuseable.QueueSubscription;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class FileFlowableTest extends BaseTest {
+
+    File file;
+
+    @Before
+    public void before() throws IOException {
+        file = File.createTempFile("rxjava2-extensions", ".txt");
+    }
+
+    @After
+    public void after() {
+        file.delete();
+    }
+
+    void write(byte[] content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    static byte[] content(int n) {
+        byte[] b = new byte[n];
+        for (int i = 0; i < n; i++) {
+            b[i] = (byte)i;
+        }
+        return b;
+    }
+
+    static byte[] concat(List<ByteBuffer> list) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ByteBuffer bb : list) {
+            byte[] b = new byte[bb.remaining()];
+            bb.duplicate().get(b);
+            out.write(b, 0, b.length);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void utilityClass() {
+        TestHelper.checkUtilityClass(FileFlowable.class);
+    }
+
+    @Test
+    public void chunks() throws IOException {
+        byte[] b = content(1000);
+        write(b);
+
+        List<ByteBuffer> list = FileFlowable.mapped(file, 64, 256).toList().blockingGet();
+
+        assertEquals(16, list.size());
+        for (int i = 0; i < 15; i++) {
+            assertEquals(64, list.get(i).remaining());
+            assertTrue(list.get(i).isReadOnly());
+        }
+        assertEquals(1000 - 15 * 64, list.get(15).remaining());
+        assertArrayEquals(b, concat(list));
+    }
+
+    @Test
+    public void windowNotMultipleOfChunk() throws IOException {
+        byte[] b = content(1000);
+        write(b);
+
+        assertArrayEquals(b, concat(FileFlowable.mapped(file, 30, 100).toList().blockingGet()));
+        assertArrayEquals(b, concat(FileFlowable.mapped(file, 300, 100).toList().blockingGet()));
+    }
+
+    @Test
+    public void backpressured() throws IOException {
+        byte[] b = content(1000);
+        write(b);
+
+        TestSubscriber<ByteBuffer> ts = FileFlowable.mapped(file, 100, 300).test(0);
+
+        ts.assertEmpty();
+
+        ts.request(3);
+
+        ts.assertValueCount(3).assertNoErrors().assertNotComplete();
+
+        ts.request(6);
+
+        ts.assertValueCount(9).assertNoErrors().assertNotComplete();
+
+        ts.request(1);
+
+        ts.assertValueCount(10).assertNoErrors().assertComplete();
+
+        assertArrayEquals(b, concat(ts.values()));
+    }
+
+    @Test
+    public void rebatched() throws IOException {
+        byte[] b = content(10000);
+        write(b);
+
+        assertArrayEquals(b, concat(FileFlowable.mapped(file, 7, 1000).rebatchRequests(3).toList().blockingGet()));
+    }
+
+    @Test
+    public void syncFused() throws IOException {
+        byte[] b = content(1000);
+        write(b);
+
+        // map() fuses synchronously with the source and pulls the chunks via poll()
+        List<Integer> sizes = FileFlowable.mapped(file, 256)
+        .map(new Function<ByteBuffer, Integer>() {
+            @Override
+            public Integer apply(ByteBuffer v) throws Exception {
+                return v.remaining();
+            }
+        })
+        .observeOn(Schedulers.single())
+        .toList()
+        .blockingGet();
+
+        assertEquals(Arrays.asList(256, 256, 256, 232), sizes);
+    }
+
+    @Test
+    public void empty() throws IOException {
+        FileFlowable.mapped(file)
+        .test()
+        .assertResult();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+
+            TestSubscriber<ByteBuffer> ts = new TestSubscriber<ByteBuffer>();
+            ts.onSubscribe(new FlowableMappedFile.MappedFileSubscription(ts, channel, 0L, 16, 1024L));
+            ts.assertResult();
+
+            assertFalse(channel.isOpen());
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test
+    public void emptyFused() throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+
+            FlowableMappedFile.MappedFileSubscription qs = new FlowableMappedFile.MappedFileSubscription(
+                    new TestSubscriber<ByteBuffer>(), channel, 0L, 16, 1024L);
+
+            assertEquals(QueueSubscription.SYNC, qs.requestFusion(QueueSubscription.ANY));
+            assertNull(qs.poll());
+
+            assertFalse(channel.isOpen());
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test
+    public void missingFile() {
+        FileFlowable.mapped(new File(file.getPath() + ".missing"))
+        .test()
+        .assertFailure(FileNotFoundException.class);
+    }
+
+    @Test
+    public void cancel() throws IOException {
+        write(content(1000));
+
+        FileFlowable.mapped(file, 100)
+        .take(2)
+        .test()
+        .assertValueCount(2)
+        .assertNoErrors()
+        .assertComplete();
+    }
+
+    @Test
+    public void lines() throws IOException {
+        Charset utf8 = Charset.forName("UTF-8");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("line \u00e1 ").append(i).append('\n');
+        }
+        write(sb.toString().getBytes(utf8));
+
+        FileFlowable.mapped(file, 33, 330)
+        .compose(StringFlowable.frameLines())
+        .compose(StringFlowable.decode(utf8))
+        .skip(999)
+        .test()
+        .assertResult("line \u00e1 999");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidWindowSize() {
+        FileFlowable.mapped(file, 16, 0);
+    }
+}
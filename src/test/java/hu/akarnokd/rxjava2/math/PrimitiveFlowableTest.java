@@ -0,0 +1,326 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.math;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+
+import hu.akarnokd.rxjava2.test.BaseTest;
+import io.reactivex.FlowableSubscriber;
+import io.reactivex.functions.Function;
+import io.reactivex.internal.fuseable.QueueSubscription;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class PrimitiveFlowableTest extends BaseTest {
+
+    @Test
+    public void intRange() {
+        IntFlowable.range(1, 5)
+        .test()
+        .assertResult(1, 2, 3, 4, 5);
+    }
+
+    @Test
+    public void intRangeBackpressured() {
+        TestSubscriber<Integer> ts = IntFlowable.range(1, 5).test(0);
+
+        ts.assertEmpty();
+
+        ts.request(2);
+
+        ts.assertValues(1, 2).assertNotComplete();
+
+        ts.request(3);
+
+        ts.assertResult(1, 2, 3, 4, 5);
+    }
+
+    @Test
+    public void intRangeCancel() {
+        IntFlowable.range(1, 5)
+        .take(2)
+        .test()
+        .assertResult(1, 2);
+    }
+
+    @Test
+    public void intRangeFused() {
+        IntFlowable.range(1, 5)
+        .map(new Function<Integer, Integer>() {
+            @Override
+            public Integer apply(Integer v) throws Exception {
+                return v * 2;
+            }
+        })
+        .test()
+        .assertResult(2, 4, 6, 8, 10);
+
+        final List<Integer> list = new ArrayList<Integer>();
+        IntFlowable.range(1, 3).subscribe(new FlowableSubscriber<Integer>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public void onSubscribe(Subscription s) {
+                QueueSubscription<Integer> qs = (QueueSubscription<Integer>)s;
+                assertEquals(QueueSubscription.SYNC, qs.requestFusion(QueueSubscription.ANY));
+                Integer v;
+                try {
+                    while ((v = qs.poll()) != null) {
+                        list.add(v);
+                    }
+                } catch (Exception ex) {
+                    throw new AssertionError(ex);
+                }
+                assertTrue(qs.isEmpty());
+            }
+
+            @Override
+            public void onNext(Integer t) {
+                fail("Should not be called");
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                fail("Should not be called");
+            }
+
+            @Override
+            public void onComplete() {
+                fail("Should not be called");
+            }
+        });
+
+        assertEquals(Arrays.asList(1, 2, 3), list);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void intRangeOverflow() {
+        IntFlowable.range(Integer.MAX_VALUE, 2);
+    }
+
+    @Test
+    public void intAggregates() {
+        IntFlowable f = IntFlowable.fromIntArray(3, 1, 4, 1, 5, 9, 2, 6);
+
+        assertResult(f.sum(), 31);
+        assertResult(f.min(), 1);
+        assertResult(f.max(), 9);
+        assertResult(f.average(), 31 / 8d);
+        assertResult(MathFlowable.sumInt(f), 31);
+        assertResult(MathFlowable.averageDouble(f), 31 / 8d);
+
+        SummaryStatistics st = f.statistics().blockingFirst();
+        assertEquals(8, st.count());
+        assertEquals(31d, st.sum(), 0d);
+        assertEquals(1d, st.min(), 0d);
+        assertEquals(9d, st.max(), 0d);
+        assertEquals(31 / 8d, st.average(), 1e-12);
+        assertEquals(f.variance().blockingFirst(), st.variance(), 1e-12);
+    }
+
+    @Test
+    public void intVariance() {
+        assertEquals(4d, IntFlowable.fromIntArray(2, 4, 4, 4, 5, 5, 7, 9).variance().blockingFirst(), 1e-12);
+
+        SummaryStatistics st = IntFlowable.fromIntArray(2, 4, 4, 4, 5, 5, 7, 9).statistics().blockingFirst();
+
+        assertEquals(4d, st.variance(), 1e-12);
+        assertEquals(2d, st.standardDeviation(), 1e-12);
+        assertEquals(32d / 7, st.sampleVariance(), 1e-12);
+    }
+
+    @Test
+    public void intEmpty() {
+        IntFlowable f = IntFlowable.fromIntArray();
+
+        f.sum().test().assertResult();
+        f.min().test().assertResult();
+        f.max().test().assertResult();
+        f.average().test().assertResult();
+        f.variance().test().assertResult();
+        f.statistics().test().assertResult();
+    }
+
+    @Test
+    public void longAggregates() {
+        LongFlowable f = LongFlowable.rangeLong(Integer.MAX_VALUE, 10);
+
+        long sum = 0;
+        for (long i = Integer.MAX_VALUE; i < Integer.MAX_VALUE + 10L; i++) {
+            sum += i;
+        }
+
+        assertResult(f.sum(), sum);
+        assertResult(f.min(), (long)Integer.MAX_VALUE);
+        assertResult(f.max(), Integer.MAX_VALUE + 9L);
+        assertResult(MathFlowable.sumLong(f), sum);
+        assertEquals(8.25d, f.variance().blockingFirst(), 1e-9);
+        assertEquals(10, f.statistics().blockingFirst().count());
+
+        LongFlowable.fromLongArray(1L, 2L).test().assertResult(1L, 2L);
+    }
+
+    @Test
+    public void doubleAggregates() {
+        DoubleFlowable f = DoubleFlowable.fromDoubleArray(1.5, -2.5, 4.0);
+
+        assertResult(f.sum(), 3d);
+        assertResult(f.min(), -2.5d);
+        assertResult(f.max(), 4d);
+        assertResult(f.average(), 1d);
+        assertResult(MathFlowable.sumDouble(f), 3d);
+        assertResult(MathFlowable.averageDouble(f), 1d);
+
+        f.test().assertResult(1.5, -2.5, 4.0);
+    }
+
+    @Test
+    public void cancelledWhileAggregating() {
+        final TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+
+        new IntFlowable() {
+            @Override
+            public IntCursor cursor() {
+                return new IntCursor() {
+                    int i;
+
+                    @Override
+                    public boolean hasNext() {
+                        return true;
+                    }
+
+                    @Override
+                    public int next() {
+                        if (++i == 5000) {
+                            ts.cancel();
+                        }
+                        return 1;
+                    }
+                };
+            }
+        }
+        .sum()
+        .subscribe(ts);
+
+        ts.assertEmpty();
+    }
+
+    @Test
+    public void cursorCrash() {
+        new IntFlowable() {
+            @Override
+            public IntCursor cursor() {
+                return new IntCursor() {
+                    @Override
+                    public boolean hasNext() {
+                        return true;
+                    }
+
+                    @Override
+                    public int next() {
+                        throw new IllegalStateException();
+                    }
+                };
+            }
+        }
+        .sum()
+        .test()
+        .assertFailure(IllegalStateException.class);
+    }
+
+    static IntFlowable crashingAfter(final int n, final boolean inHasNext) {
+        return new IntFlowable() {
+            @Override
+            public IntCursor cursor() {
+                return new IntCursor() {
+                    int i;
+
+                    @Override
+                    public boolean hasNext() {
+                        if (inHasNext && i == n) {
+                            throw new IllegalStateException();
+                        }
+                        return true;
+                    }
+
+                    @Override
+                    public int next() {
+                        if (i == n) {
+                            throw new IllegalStateException();
+                        }
+                        return ++i;
+                    }
+                };
+            }
+        };
+    }
+
+    @Test
+    public void emissionCursorCrash() {
+        crashingAfter(2, false)
+        .test()
+        .assertFailure(IllegalStateException.class, 1, 2);
+
+        crashingAfter(2, true)
+        .test()
+        .assertFailure(IllegalStateException.class, 1, 2);
+    }
+
+    @Test
+    public void emissionCursorCrashBackpressured() {
+        crashingAfter(2, false)
+        .test(1)
+        .assertValues(1)
+        .assertNoErrors()
+        .requestMore(5)
+        .assertFailure(IllegalStateException.class, 1, 2);
+
+        // the crash is detected while checking for completion after the requested amount
+        crashingAfter(2, true)
+        .test(2)
+        .assertFailure(IllegalStateException.class, 1, 2);
+    }
+
+    @Test
+    public void cursorCreationCrash() {
+        new IntFlowable() {
+            @Override
+            public IntCursor cursor() {
+                throw new IllegalStateException();
+            }
+        }
+        .test()
+        .assertFailure(IllegalStateException.class);
+
+        new LongFlowable() {
+            @Override
+            public LongCursor cursor() {
+                return null;
+            }
+        }
+        .test()
+        .assertFailure(NullPointerException.class);
+    }
+
+    @Test
+    public void intSumOverflow() {
+        assertResult(IntFlowable.fromIntArray(Integer.MAX_VALUE, 1).sum(), Integer.MIN_VALUE);
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.math;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import hu.akarnokd.rxjava2.test.BaseTest;
+import io.reactivex.*;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class StreamingStatisticsTest extends BaseTest {
+
+    @Test
+    public void statistics() {
+        SummaryStatistics s = MathFlowable.statistics(Flowable.just(2, 4, 4, 4, 5, 5, 7, 9))
+        .blockingSingle();
+
+        assertEquals(8, s.count());
+        assertEquals(40d, s.sum(), 1e-9);
+        assertEquals(2d, s.min(), 1e-9);
+        assertEquals(9d, s.max(), 1e-9);
+        assertEquals(5d, s.average(), 1e-9);
+        assertEquals(4d, s.variance(), 1e-9);
+        assertEquals(2d, s.standardDeviation(), 1e-9);
+        assertEquals(32d / 7, s.sampleVariance(), 1e-9);
+    }
+
+    @Test
+    public void statisticsEmpty() {
+        MathFlowable.statistics(Flowable.<Integer>empty())
+        .test()
+        .assertResult();
+    }
+
+    @Test
+    public void statisticsError() {
+        MathFlowable.statistics(Flowable.<Integer>error(new IOException()))
+        .test()
+        .assertFailure(IOException.class);
+    }
+
+    @Test
+    public void varianceAndDeviation() {
+        MathFlowable.variance(Flowable.just(2, 4, 4, 4, 5, 5, 7, 9))
+        .test()
+        .assertResult(4d);
+
+        MathFlowable.standardDeviation(Flowable.just(2L, 4L, 4L, 4L, 5L, 5L, 7L, 9L))
+        .test()
+        .assertResult(2d);
+
+        MathFlowable.variance(Flowable.<Double>empty())
+        .test()
+        .assertResult();
+    }
+
+    @Test
+    public void varianceLargeOffset() {
+        // the naive sum-of-squares formula loses all precision here
+        MathFlowable.variance(Flowable.just(1e9 + 4, 1e9 + 7, 1e9 + 13, 1e9 + 16))
+        .test()
+        .assertResult(22.5d);
+    }
+
+    @Test
+    public void histogramSmallValuesExact() {
+        LogHistogram h = MathFlowable.histogram(Flowable.range(0, 64))
+        .blockingSingle();
+
+        assertEquals(64, h.count());
+        assertEquals(0, h.min());
+        assertEquals(63, h.max());
+        assertEquals(31.5d, h.mean(), 1e-9);
+        assertEquals(31, h.valueAtQuantile(0.5));
+        assertEquals(63, h.valueAtQuantile(1.0));
+        assertEquals(0, h.valueAtQuantile(0.0));
+        assertEquals(11, h.countAtOrBelow(10));
+    }
+
+    @Test
+    public void histogramRelativeError() {
+        LogHistogram h = MathFlowable.histogram(Flowable.range(1, 100000), 7)
+        .blockingSingle();
+
+        for (double q : new double[] { 0.1, 0.5, 0.9, 0.99, 0.999 }) {
+            double expected = q * 100000;
+            double actual = h.valueAtQuantile(q);
+            assertEquals(expected, actual, expected / 64);
+        }
+    }
+
+    @Test
+    public void histogramEmpty() {
+        LogHistogram h = MathFlowable.histogram(Flowable.<Integer>empty())
+        .blockingSingle();
+
+        assertEquals(0, h.count());
+    }
+
+    @Test
+    public void histogramNegative() {
+        MathFlowable.histogram(Flowable.just(1, -1, 2))
+        .test()
+        .assertFailure(IllegalArgumentException.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void histogramInvalidPrecision() {
+        MathFlowable.histogram(Flowable.just(1), 0);
+    }
+
+    @Test
+    public void histogramAdd() {
+        LogHistogram h1 = new LogHistogram();
+        LogHistogram h2 = new LogHistogram();
+
+        h1.record(5, 3);
+        h2.record(1000000);
+
+        h1.add(h2);
+
+        assertEquals(4, h1.count());
+        assertEquals(5, h1.min());
+        assertEquals(1000000, h1.max());
+        assertEquals(5, h1.valueAtQuantile(0.75));
+        assertEquals(1000000, h1.valueAtQuantile(1.0));
+    }
+
+    @Test
+    public void quantiles() {
+        QuantileSketch s = MathFlowable.quantiles(Flowable.range(0, 100000))
+        .blockingSingle();
+
+        assertEquals(100000, s.count());
+        assertEquals(0d, s.min(), 0d);
+        assertEquals(99999d, s.max(), 0d);
+        assertTrue("" + s.centroidCount(), s.centroidCount() < 1000);
+
+        assertEquals(0d, s.quantile(0), 0d);
+        assertEquals(99999d, s.quantile(1), 0d);
+        assertEquals(50000d, s.quantile(0.5), 1000d);
+        assertEquals(90000d, s.quantile(0.9), 500d);
+        assertEquals(99000d, s.quantile(0.99), 100d);
+        assertEquals(99900d, s.quantile(0.999), 50d);
+    }
+
+    @Test
+    public void quantilesEmpty() {
+        QuantileSketch s = MathFlowable.quantiles(Flowable.<Double>empty())
+        .blockingSingle();
+
+        assertEquals(0, s.count());
+        assertTrue(Double.isNaN(s.quantile(0.5)));
+    }
+
+    @Test
+    public void quantilesNaN() {
+        MathFlowable.quantiles(Flowable.just(1d, Double.NaN))
+        .test()
+        .assertFailure(IllegalArgumentException.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void quantilesInvalidCompression() {
+        MathFlowable.quantiles(Flowable.just(1), 5);
+    }
+
+    @Test
+    public void quantilesAdd() {
+        QuantileSketch s1 = new QuantileSketch();
+        QuantileSketch s2 = new QuantileSketch();
+
+        for (int i = 0; i < 50000; i++) {
+            s1.add(i);
+            s2.add(i + 50000);
+        }
+
+        s1.add(s2);
+
+        assertEquals(100000, s1.count());
+        assertEquals(50000d, s1.quantile(0.5), 1000d);
+        assertEquals(99999d, s1.max(), 0d);
+    }
+
+    @Test
+    public void statisticsWindowed() {
+        TestScheduler scheduler = new TestScheduler();
+        PublishProcessor<Integer> pp = PublishProcessor.create();
+
+        TestSubscriber<SummaryStatistics> ts = MathFlowable.statistics(pp, 1, TimeUnit.SECONDS, scheduler)
+        .test();
+
+        pp.onNext(1);
+        pp.onNext(3);
+
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+        ts.assertValueCount(1);
+        assertEquals(2d, ts.values().get(0).average(), 1e-9);
+
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+        ts.assertValueCount(1);
+
+        pp.onNext(10);
+        pp.onComplete();
+
+        ts.assertValueCount(2)
+        .assertNoErrors()
+        .assertComplete();
+        assertEquals(10d, ts.values().get(1).max(), 1e-9);
+    }
+
+    @Test
+    public void histogramWindowed() {
+        TestScheduler scheduler = new TestScheduler();
+        PublishProcessor<Integer> pp = PublishProcessor.create();
+
+        TestSubscriber<LogHistogram> ts = MathFlowable.histogram(pp, 6, 1, TimeUnit.SECONDS, scheduler)
+        .test();
+
+        pp.onNext(1);
+        pp.onNext(2);
+
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+        pp.onNext(5);
+
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+        pp.onComplete();
+
+        ts.assertValueCount(3)
+        .assertNoErrors()
+        .assertComplete();
+
+        assertEquals(2, ts.values().get(0).count());
+        assertEquals(1, ts.values().get(1).count());
+        assertEquals(0, ts.values().get(2).count());
+    }
+
+    @Test
+    public void statisticsObservable() {
+        SummaryStatistics s = MathObservable.statistics(Observable.just(2, 4, 4, 4, 5, 5, 7, 9))
+        .blockingSingle();
+
+        assertEquals(4d, s.variance(), 1e-9);
+
+        MathObservable.standardDeviation(Observable.just(2, 4, 4, 4, 5, 5, 7, 9))
+        .test()
+        .assertResult(2d);
+
+        MathObservable.variance(Observable.<Integer>empty())
+        .test()
+        .assertResult();
+    }
+
+    @Test
+    public void histogramAndQuantilesObservable() {
+        assertEquals(63, MathObservable.histogram(Observable.range(0, 64)).blockingSingle().max());
+
+        assertEquals(50000d, MathObservable.quantiles(Observable.range(0, 100000)).blockingSingle().quantile(0.5), 1000d);
+
+        MathObservable.quantiles(Observable.just(Double.NaN))
+        .test()
+        .assertFailure(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void quantilesWindowedObservable() {
+        TestScheduler scheduler = new TestScheduler();
+        PublishSubject<Integer> ps = PublishSubject.create();
+
+        TestObserver<QuantileSketch> to = MathObservable.quantiles(ps, 50, 1, TimeUnit.SECONDS, scheduler)
+        .test();
+
+        for (int i = 0; i < 100; i++) {
+            ps.onNext(i);
+        }
+
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+        to.assertValueCount(1);
+        assertEquals(99d, to.values().get(0).max(), 0d);
+
+        ps.onComplete();
+
+        to.assertValueCount(2)
+        .assertNoErrors()
+        .assertComplete();
+    }
+}
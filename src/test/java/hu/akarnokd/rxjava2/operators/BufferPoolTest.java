@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.operators;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import io.reactivex.Flowable;
+import io.reactivex.functions.*;
+
+public class BufferPoolTest {
+
+    @Test
+    public void reuse() {
+        BufferPool<Integer> pool = new BufferPool<Integer>(2);
+
+        List<Integer> a = pool.call();
+        a.add(1);
+        pool.release(a);
+
+        assertTrue(a.isEmpty());
+        assertEquals(1, pool.idle());
+        assertSame(a, pool.call());
+        assertEquals(0, pool.idle());
+        assertNotSame(a, pool.call());
+    }
+
+    @Test
+    public void capacityLimit() {
+        BufferPool<Integer> pool = new BufferPool<Integer>(2);
+
+        pool.release(new ArrayList<Integer>());
+        pool.release(new ArrayList<Integer>());
+        pool.release(new ArrayList<Integer>());
+
+        assertEquals(2, pool.idle());
+    }
+
+    @Test
+    public void sizeHint() {
+        BufferPool<Integer> pool = new BufferPool<Integer>(1);
+
+        assertEquals(16, pool.sizeHint());
+
+        List<Integer> list = pool.call();
+        for (int i = 0; i < 1000; i++) {
+            list.add(i);
+        }
+        pool.release(list);
+
+        assertEquals(1000, pool.sizeHint());
+
+        list = pool.call();
+        list.add(1);
+        pool.release(list);
+
+        assertTrue("" + pool.sizeHint(), pool.sizeHint() < 1000 && pool.sizeHint() > 800);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCapacity() {
+        new BufferPool<Integer>(0);
+    }
+
+    @Test
+    public void recycledByBufferUntil() {
+        final BufferPool<Integer> pool = new BufferPool<Integer>(4);
+        final Set<List<Integer>> instances = Collections.newSetFromMap(new IdentityHashMap<List<Integer>, Boolean>());
+        final List<Integer> sizes = new ArrayList<Integer>();
+
+        Flowable.range(1, 1000)
+        .compose(FlowableTransformers.bufferUntil(new Predicate<Integer>() {
+            @Override
+            public boolean test(Integer v) throws Exception {
+                return v % 100 == 0;
+            }
+        }, pool))
+        .subscribe(new Consumer<List<Integer>>() {
+            @Override
+            public void accept(List<Integer> batch) throws Exception {
+                instances.add(batch);
+                sizes.add(batch.size());
+                pool.release(batch);
+            }
+        });
+
+        assertEquals(Collections.nCopies(10, 100), sizes);
+        // released synchronously, before the operator needs the next buffer
+        assertEquals(1, instances.size());
+        assertEquals(100, pool.sizeHint());
+    }
+}
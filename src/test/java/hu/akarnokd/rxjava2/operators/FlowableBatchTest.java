@@ -0,0 +1,219 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.operators;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import hu.akarnokd.rxjava2.functions.ToLongFunction;
+import io.reactivex.Flowable;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class FlowableBatchTest {
+
+    final TestScheduler scheduler = new TestScheduler();
+
+    static final ToLongFunction<Object> ONE = new ToLongFunction<Object>() {
+        @Override
+        public long applyAsLong(Object t) throws Exception {
+            return 1L;
+        }
+    };
+
+    static final ToLongFunction<String> LENGTH = new ToLongFunction<String>() {
+        @Override
+        public long applyAsLong(String t) throws Exception {
+            return t.length();
+        }
+    };
+
+    <T> TestSubscriber<List<T>> batch(Flowable<T> source, int maxCount, long maxWeight, ToLongFunction<? super T> weigher, long initialRequest) {
+        return source.compose(FlowableTransformers.<T>batch(maxCount, maxWeight, weigher, 1, TimeUnit.SECONDS, scheduler))
+                .test(initialRequest);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void countBound() {
+        batch(Flowable.range(1, 10), 3, Long.MAX_VALUE, ONE, Long.MAX_VALUE)
+        .assertResult(Arrays.asList(1, 2, 3), Arrays.asList(4, 5, 6), Arrays.asList(7, 8, 9), Arrays.asList(10));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void countBoundComputation() {
+        Flowable.range(1, 5)
+        .compose(FlowableTransformers.<Integer>batch(2, 1, TimeUnit.MINUTES))
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertResult(Arrays.asList(1, 2), Arrays.asList(3, 4), Arrays.asList(5));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void weightBound() {
+        batch(Flowable.just("ab", "cd", "e", "fgh", "abcdef", "x"), 100, 5, LENGTH, Long.MAX_VALUE)
+        .assertResult(Arrays.asList("ab", "cd", "e"), Arrays.asList("fgh"), Arrays.asList("abcdef"), Arrays.asList("x"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void lingerFlush() {
+        PublishProcessor<Integer> pp = PublishProcessor.create();
+
+        TestSubscriber<List<Integer>> ts = batch(pp, 10, Long.MAX_VALUE, ONE, Long.MAX_VALUE);
+
+        pp.onNext(1);
+        pp.onNext(2);
+
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+
+        ts.assertEmpty();
+
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+
+        ts.assertValues(Arrays.asList(1, 2)).assertNoErrors().assertNotComplete();
+
+        pp.onNext(3);
+
+        scheduler.advanceTimeBy(999, TimeUnit.MILLISECONDS);
+
+        ts.assertValueCount(1);
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+
+        ts.assertValues(Arrays.asList(1, 2), Arrays.asList(3)).assertNoErrors().assertNotComplete();
+
+        pp.onComplete();
+
+        ts.assertResult(Arrays.asList(1, 2), Arrays.asList(3));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void lingerTimerOfPreviousBatch() {
+        PublishProcessor<Integer> pp = PublishProcessor.create();
+
+        TestSubscriber<List<Integer>> ts = batch(pp, 2, Long.MAX_VALUE, ONE, Long.MAX_VALUE);
+
+        pp.onNext(1);
+        pp.onNext(2);
+
+        ts.assertValues(Arrays.asList(1, 2)).assertNoErrors().assertNotComplete();
+
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+
+        pp.onNext(3);
+
+        // the timer armed for the first batch fires but the second batch has to linger longer
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+
+        ts.assertValueCount(1);
+
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+
+        ts.assertValues(Arrays.asList(1, 2), Arrays.asList(3)).assertNoErrors().assertNotComplete();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void growsWithoutDemand() {
+        PublishProcessor<Integer> pp = PublishProcessor.create();
+
+        TestSubscriber<List<Integer>> ts = batch(pp, 10, Long.MAX_VALUE, ONE, 0L);
+
+        pp.onNext(1);
+        pp.onNext(2);
+
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+
+        pp.onNext(3);
+
+        ts.assertEmpty();
+
+        ts.request(1);
+
+        ts.assertValues(Arrays.asList(1, 2, 3)).assertNoErrors().assertNotComplete();
+    }
+
+    @Test
+    public void backpressured() {
+        TestSubscriber<List<Integer>> ts = batch(Flowable.range(1, 1000), 10, Long.MAX_VALUE, ONE, 0L);
+
+        ts.assertEmpty();
+
+        ts.request(2);
+
+        ts.assertValueCount(2);
+        assertEquals(Arrays.asList(11, 12, 13, 14, 15, 16, 17, 18, 19, 20), ts.values().get(1));
+
+        ts.request(Long.MAX_VALUE);
+
+        ts.assertValueCount(100)
+        .assertNoErrors()
+        .assertComplete();
+    }
+
+    @Test
+    public void error() {
+        batch(Flowable.range(1, 5).concatWith(Flowable.<Integer>error(new IOException())), 10, Long.MAX_VALUE, ONE, Long.MAX_VALUE)
+        .assertFailure(IOException.class);
+    }
+
+    @Test
+    public void weigherCrash() {
+        batch(Flowable.range(1, 5), 10, 10, new ToLongFunction<Integer>() {
+            @Override
+            public long applyAsLong(Integer t) throws Exception {
+                if (t == 3) {
+                    throw new IOException();
+                }
+                return 1L;
+            }
+        }, Long.MAX_VALUE)
+        .assertFailure(IOException.class);
+    }
+
+    @Test
+    public void cancel() {
+        PublishProcessor<Integer> pp = PublishProcessor.create();
+
+        TestSubscriber<List<Integer>> ts = batch(pp, 10, Long.MAX_VALUE, ONE, Long.MAX_VALUE);
+
+        pp.onNext(1);
+
+        ts.cancel();
+
+        assertFalse(pp.hasSubscribers());
+
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+
+        ts.assertEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMaxWeight() {
+        FlowableTransformers.batch(10, 0, ONE, 1, TimeUnit.SECONDS, scheduler);
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package hu.akarnokd.rxjava2.operators;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.reactivestreams.*;
+
+import io.reactivex.Flowable;
+import io.reactivex.functions.*;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.*;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class FlowableExpandConcurrentTest {
+
+    /** Expands a value into its children of a complete binary tree of the values 1..15. */
+    Function<Integer, Publisher<Integer>> binaryTree = new Function<Integer, Publisher<Integer>>() {
+        @Override
+        public Publisher<Integer> apply(Integer v) throws Exception {
+            return v < 8 ? Flowable.just(2 * v, 2 * v + 1) : Flowable.<Integer>empty();
+        }
+    };
+
+    Function<Integer, Publisher<Integer>> binaryTreeAsync = new Function<Integer, Publisher<Integer>>() {
+        @Override
+        public Publisher<Integer> apply(Integer v) throws Exception {
+            return Flowable.fromPublisher(binaryTree.apply(v)).subscribeOn(Schedulers.computation());
+        }
+    };
+
+    static Set<Integer> range(int start, int count) {
+        Set<Integer> set = new HashSet<Integer>();
+        for (int i = start; i < start + count; i++) {
+            set.add(i);
+        }
+        return set;
+    }
+
+    static int level(int v) {
+        return 31 - Integer.numberOfLeadingZeros(v);
+    }
+
+    @Test
+    public void breathFirstSync() {
+        Flowable.just(1)
+        .compose(FlowableTransformers.expandConcurrent(binaryTree, ExpandStrategy.BREATH_FIRST, 4))
+        .test()
+        .assertValueCount(15)
+        .assertNoErrors()
+        .assertComplete();
+    }
+
+    @Test
+    public void breathFirstSyncSingle() {
+        Flowable.just(1)
+        .compose(FlowableTransformers.expandConcurrent(binaryTree, ExpandStrategy.BREATH_FIRST, 1))
+        .test()
+        .assertResult(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15);
+    }
+
+    @Test
+    public void depthFirstSyncSingle() {
+        Flowable.just(1)
+        .compose(FlowableTransformers.expandConcurrent(binaryTree, ExpandStrategy.DEPTH_FIRST, 1))
+        .test()
+        .assertResult(1, 2, 3, 6, 7, 14, 15, 12, 13, 4, 5, 10, 11, 8, 9);
+    }
+
+    @Test
+    public void async() {
+        for (ExpandStrategy strategy : ExpandStrategy.values()) {
+            for (int i = 1; i < 10; i++) {
+                List<Integer> list = Flowable.just(1)
+                .compose(FlowableTransformers.expandConcurrent(binaryTreeAsync, strategy, i))
+                .toList()
+                .blockingGet();
+
+                assertEquals(range(1, 15), new HashSet<Integer>(list));
+                assertEquals(15, list.size());
+            }
+        }
+    }
+
+    @Test
+    public void levelOrdered() {
+        for (int i = 0; i < 100; i++) {
+            List<Integer> list = Flowable.just(1)
+            .compose(FlowableTransformers.expandConcurrent(binaryTreeAsync, ExpandStrategy.BREATH_FIRST, 4, true))
+            .toList()
+            .blockingGet();
+
+            assertEquals(15, list.size());
+            for (int j = 1; j < list.size(); j++) {
+                assertTrue(list.toString(), level(list.get(j - 1)) <= level(list.get(j)));
+            }
+        }
+    }
+
+    @Test
+    public void maxConcurrency() {
+        TestScheduler scheduler = new TestScheduler();
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+
+        final Flowable<Long> timer = Flowable.timer(1, TimeUnit.SECONDS, scheduler)
+        .doOnSubscribe(new Consumer<Subscription>() {
+            @Override
+            public void accept(Subscription s) throws Exception {
+                int n = active.incrementAndGet();
+                if (n > max.get()) {
+                    max.set(n);
+                }
+            }
+        })
+        .doOnTerminate(new Action() {
+            @Override
+            public void run() throws Exception {
+                active.decrementAndGet();
+            }
+        });
+
+        TestSubscriber<Long> ts = Flowable.range(1, 10).map(new Function<Integer, Long>() {
+            @Override
+            public Long apply(Integer v) throws Exception {
+                return 1L;
+            }
+        })
+        .compose(FlowableTransformers.expandConcurrent(new Function<Long, Publisher<Long>>() {
+            @Override
+            public Publisher<Long> apply(Long v) throws Exception {
+                return v < 3 ? timer.map(new Function<Long, Long>() {
+                    @Override
+                    public Long apply(Long w) throws Exception {
+                        return 3L;
+                    }
+                }) : Flowable.<Long>empty();
+            }
+        }, ExpandStrategy.BREATH_FIRST, 3))
+        .test();
+
+        assertEquals(3, active.get());
+        ts.assertValueCount(10);
+
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+        assertEquals(3, active.get());
+        ts.assertValueCount(13);
+
+        scheduler.advanceTimeBy(10, TimeUnit.SECONDS);
+
+        ts.assertValueCount(20)
+        .assertNoErrors()
+        .assertComplete();
+
+        assertEquals(3, max.get());
+    }
+
+    @Test
+    public void visited() {
+        List<Integer> list = Flowable.just(0)
+        .compose(FlowableTransformers.expandConcurrent(new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                return Flowable.just((v + 1) % 10, (v * 3) % 10).subscribeOn(Schedulers.computation());
+            }
+        }, ExpandStrategy.BREATH_FIRST, 4, false, new Callable<Set<Integer>>() {
+            @Override
+            public Set<Integer> call() throws Exception {
+                return new HashSet<Integer>();
+            }
+        }, 16))
+        .toList()
+        .blockingGet();
+
+        assertEquals(10, list.size());
+        assertEquals(range(0, 10), new HashSet<Integer>(list));
+    }
+
+    @Test
+    public void backpressure() {
+        TestSubscriber<Integer> ts = Flowable.just(1)
+        .compose(FlowableTransformers.expandConcurrent(binaryTree, ExpandStrategy.BREATH_FIRST, 1))
+        .test(0);
+
+        ts.assertEmpty();
+
+        ts.request(1);
+
+        ts.assertValues(1).assertNoErrors().assertNotComplete();
+
+        ts.request(2);
+
+        ts.assertValues(1, 2, 3).assertNoErrors().assertNotComplete();
+
+        ts.request(12);
+
+        ts.assertResult(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15);
+    }
+
+    @Test
+    public void error() {
+        for (ExpandStrategy strategy : ExpandStrategy.values()) {
+            Flowable.<Integer>error(new IOException())
+            .compose(FlowableTransformers.expandConcurrent(binaryTree, strategy, 2))
+            .test()
+            .assertFailure(IOException.class);
+        }
+    }
+
+    @Test
+    public void innerError() {
+        final PublishProcessor<Integer> pp = PublishProcessor.create();
+
+        TestSubscriber<Integer> ts = Flowable.just(1, 2)
+        .compose(FlowableTransformers.expandConcurrent(new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                return v == 1 ? pp : Flowable.<Integer>error(new IOException());
+            }
+        }, ExpandStrategy.BREATH_FIRST, 4))
+        .test();
+
+        ts.assertFailure(IOException.class, 1, 2);
+
+        assertFalse(pp.hasSubscribers());
+    }
+
+    @Test
+    public void expanderThrows() {
+        Flowable.just(1)
+        .compose(FlowableTransformers.expandConcurrent(new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                throw new IOException();
+            }
+        }, ExpandStrategy.BREATH_FIRST, 4))
+        .test()
+        .assertFailure(IOException.class, 1);
+    }
+
+    @Test
+    public void cancel() {
+        final PublishProcessor<Integer> pp1 = PublishProcessor.create();
+        final PublishProcessor<Integer> pp2 = PublishProcessor.create();
+
+        TestSubscriber<Integer> ts = pp1
+        .compose(FlowableTransformers.expandConcurrent(new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                return pp2;
+            }
+        }, ExpandStrategy.DEPTH_FIRST, 4))
+        .test();
+
+        pp1.onNext(1);
+
+        assertTrue(pp1.hasSubscribers());
+        assertTrue(pp2.hasSubscribers());
+
+        ts.cancel();
+
+        assertFalse(pp1.hasSubscribers());
+        assertFalse(pp2.hasSubscribers());
+    }
+
+    @Test
+    public void frontierHasNoBuffer() {
+        FlowableExpandConcurrent.ExpandInnerSubscriber<Integer> inner =
+                new FlowableExpandConcurrent.ExpandInnerSubscriber<Integer>(null, Flowable.<Integer>never(), 1, 128);
+
+        assertNull(inner.queue);
+
+        inner.subscribeSource();
+
+        assertNotNull(inner.queue);
+
+        inner.cancel();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package hu.akarnokd.rxjava2.operators;
+
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+
+import io.reactivex.Flowable;
+import io.reactivex.functions.Function;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class FlowableFlatMapAsyncOrderedTest {
+
+    static List<Integer> expected(int m, final int n) {
+        return Flowable.range(1, m).concatMap(new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                return Flowable.range(v * 1000, n);
+            }
+        }).toList().blockingGet();
+    }
+
+    @Test(timeout = 10000)
+    public void normal() {
+        for (final int n : new int[] { 0, 1, 2, 10, 100, 1000 }) {
+            Flowable.range(1, 100)
+            .compose(FlowableTransformers.flatMapAsyncOrdered(new Function<Integer, Publisher<Integer>>() {
+                @Override
+                public Publisher<Integer> apply(Integer v) throws Exception {
+                    return Flowable.range(v * 1000, n);
+                }
+            }, Schedulers.single()))
+            .test()
+            .awaitDone(9, TimeUnit.SECONDS)
+            .assertValueSequence(expected(100, n))
+            .assertNoErrors()
+            .assertComplete();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void normalHidden() {
+        for (final int n : new int[] { 0, 1, 2, 10, 100, 1000 }) {
+            Flowable.range(1, 100)
+            .compose(FlowableTransformers.flatMapAsyncOrdered(new Function<Integer, Publisher<Integer>>() {
+                @Override
+                public Publisher<Integer> apply(Integer v) throws Exception {
+                    return Flowable.range(v * 1000, n).hide();
+                }
+            }, Schedulers.single()))
+            .test()
+            .awaitDone(9, TimeUnit.SECONDS)
+            .assertValueSequence(expected(100, n))
+            .assertNoErrors()
+            .assertComplete();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void normalAsyncHidden() {
+        for (final int n : new int[] { 0, 1, 2, 10, 100, 1000 }) {
+            for (int m : new int[] { 1, 2, 4, 32 }) {
+                Flowable.range(1, 100)
+                .compose(FlowableTransformers.flatMapAsyncOrdered(new Function<Integer, Publisher<Integer>>() {
+                    @Override
+                    public Publisher<Integer> apply(Integer v) throws Exception {
+                        return Flowable.range(v * 1000, n).observeOn(Schedulers.computation()).hide();
+                    }
+                }, Schedulers.single(), m, 16))
+                .test()
+                .awaitDone(9, TimeUnit.SECONDS)
+                .assertValueSequence(expected(100, n))
+                .assertNoErrors()
+                .assertComplete();
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void innerError() {
+        Flowable.range(1, 2)
+        .compose(FlowableTransformers.flatMapAsyncOrdered(new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                return v == 1 ? Flowable.just(1) : Flowable.<Integer>error(new IOException());
+            }
+        }, Schedulers.single()))
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertError(IOException.class)
+        .assertNotComplete();
+    }
+
+    @Test(timeout = 10000)
+    public void cancel() throws Exception {
+        final PublishProcessor<Integer> pp1 = PublishProcessor.create();
+        final PublishProcessor<Integer> pp2 = PublishProcessor.create();
+
+        TestSubscriber<Integer> ts = pp1
+        .compose(FlowableTransformers.flatMapAsyncOrdered(new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                return pp2;
+            }
+        }, Schedulers.single()))
+        .test();
+
+        pp1.onNext(1);
+
+        ts.cancel();
+
+        Thread.sleep(100);
+
+        assertFalse(pp1.hasSubscribers());
+        assertFalse(pp2.hasSubscribers());
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package hu.akarnokd.rxjava2.operators;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+
+import io.reactivex.Flowable;
+import io.reactivex.functions.*;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class FlowableFlatMapSyncOrderedTest {
+
+    static List<Integer> expected(int m, final int n) {
+        return Flowable.range(1, m).concatMap(new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                return Flowable.range(v * 1000, n);
+            }
+        }).toList().blockingGet();
+    }
+
+    @Test(timeout = 10000)
+    public void normal() {
+        for (final int n : new int[] { 0, 1, 2, 10, 100, 1000 }) {
+            Flowable.range(1, 100)
+            .compose(FlowableTransformers.flatMapSyncOrdered(new Function<Integer, Publisher<Integer>>() {
+                @Override
+                public Publisher<Integer> apply(Integer v) throws Exception {
+                    return Flowable.range(v * 1000, n);
+                }
+            }))
+            .test()
+            .assertValueSequence(expected(100, n))
+            .assertNoErrors()
+            .assertComplete();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void normalHidden() {
+        for (final int n : new int[] { 0, 1, 2, 10, 100, 1000 }) {
+            Flowable.range(1, 100)
+            .compose(FlowableTransformers.flatMapSyncOrdered(new Function<Integer, Publisher<Integer>>() {
+                @Override
+                public Publisher<Integer> apply(Integer v) throws Exception {
+                    return Flowable.range(v * 1000, n).hide();
+                }
+            }))
+            .test()
+            .assertValueSequence(expected(100, n))
+            .assertNoErrors()
+            .assertComplete();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void normalAsync() {
+        for (final int n : new int[] { 0, 1, 2, 10, 100, 1000 }) {
+            for (int m : new int[] { 1, 2, 4, 32 }) {
+                Flowable.range(1, 100)
+                .compose(FlowableTransformers.flatMapSyncOrdered(new Function<Integer, Publisher<Integer>>() {
+                    @Override
+                    public Publisher<Integer> apply(Integer v) throws Exception {
+                        return Flowable.range(v * 1000, n).subscribeOn(Schedulers.computation()).hide();
+                    }
+                }, m, 16))
+                .test()
+                .awaitDone(9, TimeUnit.SECONDS)
+                .assertValueSequence(expected(100, n))
+                .assertNoErrors()
+                .assertComplete();
+            }
+        }
+    }
+
+    @Test
+    public void backpressure() {
+        TestSubscriber<Integer> ts = Flowable.range(1, 3)
+        .compose(FlowableTransformers.flatMapSyncOrdered(new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                return Flowable.range(v * 10, 2).hide();
+            }
+        }))
+        .test(0);
+
+        ts.assertEmpty();
+
+        ts.request(3);
+
+        ts.assertValues(10, 11, 20).assertNoErrors().assertNotComplete();
+
+        ts.request(3);
+
+        ts.assertResult(10, 11, 20, 21, 30, 31);
+    }
+
+    @Test
+    public void headOfLineLimitsPrefetch() {
+        final PublishProcessor<Integer> pp = PublishProcessor.create();
+        final AtomicLong requested = new AtomicLong();
+
+        final Flowable<Integer> second = Flowable.range(100, 100)
+        .doOnRequest(new LongConsumer() {
+            @Override
+            public void accept(long n) throws Exception {
+                requested.addAndGet(n);
+            }
+        });
+
+        TestSubscriber<Integer> ts = Flowable.range(1, 2)
+        .compose(FlowableTransformers.flatMapSyncOrdered(new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                return v == 1 ? pp : second;
+            }
+        }, 2, 16))
+        .test();
+
+        assertEquals(16, requested.get());
+
+        pp.onNext(1);
+
+        ts.assertValues(1);
+        assertEquals(16, requested.get());
+
+        pp.onComplete();
+
+        ts.assertValueCount(101)
+        .assertNoErrors()
+        .assertComplete();
+    }
+
+    @Test
+    public void error() {
+        Flowable.<Integer>error(new IOException())
+        .compose(FlowableTransformers.flatMapSyncOrdered(new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                return Flowable.just(v);
+            }
+        }))
+        .test()
+        .assertFailure(IOException.class);
+    }
+
+    @Test
+    public void innerErrorNotHead() {
+        final PublishProcessor<Integer> pp = PublishProcessor.create();
+
+        TestSubscriber<Integer> ts = Flowable.range(1, 2)
+        .compose(FlowableTransformers.flatMapSyncOrdered(new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                return v == 1 ? pp : Flowable.<Integer>error(new IOException());
+            }
+        }))
+        .test();
+
+        ts.assertFailure(IOException.class);
+
+        assertFalse(pp.hasSubscribers());
+    }
+
+    @Test
+    public void mapperThrows() {
+        Flowable.range(1, 2)
+        .compose(FlowableTransformers.flatMapSyncOrdered(new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                if (v == 2) {
+                    throw new IOException();
+                }
+                return Flowable.just(v);
+            }
+        }))
+        .test()
+        .assertFailure(IOException.class, 1);
+    }
+
+    @Test
+    public void cancel() {
+        final PublishProcessor<Integer> pp1 = PublishProcessor.create();
+        final PublishProcessor<Integer> pp2 = PublishProcessor.create();
+
+        TestSubscriber<Integer> ts = pp1
+        .compose(FlowableTransformers.flatMapSyncOrdered(new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                return pp2;
+            }
+        }))
+        .test();
+
+        pp1.onNext(1);
+        pp1.onNext(2);
+
+        ts.cancel();
+
+        assertFalse(pp1.hasSubscribers());
+        assertFalse(pp2.hasSubscribers());
+    }
+}
@@ -16,13 +16,17 @@
 
 package hu.akarnokd.rxjava2.operators;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 import org.reactivestreams.Publisher;
 
 import io.reactivex.Flowable;
-import io.reactivex.functions.Function;
+import io.reactivex.functions.*;
+import io.reactivex.internal.functions.Functions;
 import io.reactivex.schedulers.Schedulers;
 
 public class FlowableFlatMapSyncTest {
@@ -210,4 +214,78 @@ public class FlowableFlatMapSyncTest {
             }
         }
     }
+
+    @Test(timeout = 10000)
+    public void adaptive() {
+        for (final boolean depthFirst : new boolean[] { true, false }) {
+            for (final int n : new int[] { 0, 1, 2, 10, 100, 1000 }) {
+                Flowable.range(1, 1000)
+                .compose(FlowableTransformers.flatMapSync(new Function<Integer, Publisher<Integer>>() {
+                    @Override
+                    public Publisher<Integer> apply(Integer v) throws Exception {
+                        return Flowable.range(v * 1000, v % 10 == 0 ? n : 1).hide();
+                    }
+                }, 32, 1, 256, depthFirst))
+                .test()
+                .assertValueCount(100 * n + 900)
+                .assertNoErrors()
+                .assertComplete();
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void adaptiveAsync() {
+        for (final boolean depthFirst : new boolean[] { true, false }) {
+            for (final int n : new int[] { 0, 1, 2, 10, 100, 1000 }) {
+                Flowable.range(1, 1000)
+                .compose(FlowableTransformers.flatMapSync(new Function<Integer, Publisher<Integer>>() {
+                    @Override
+                    public Publisher<Integer> apply(Integer v) throws Exception {
+                        return Flowable.range(v * 1000, v % 10 == 0 ? n : 1).observeOn(Schedulers.computation()).hide();
+                    }
+                }, 32, 1, 256, depthFirst))
+                .test()
+                .awaitDone(9, TimeUnit.SECONDS)
+                .assertValueCount(100 * n + 900)
+                .assertNoErrors()
+                .assertComplete();
+            }
+        }
+    }
+
+    @Test
+    public void adaptiveRequests() {
+        final List<List<Long>> requests = new ArrayList<List<Long>>();
+
+        Flowable.range(0, 2)
+        .compose(FlowableTransformers.flatMapSync(new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                final List<Long> list = new ArrayList<Long>();
+                requests.add(list);
+                return Flowable.range(1, 100).hide()
+                .doOnRequest(new LongConsumer() {
+                    @Override
+                    public void accept(long r) throws Exception {
+                        list.add(r);
+                    }
+                });
+            }
+        }, 1, 2, 16, true))
+        .test()
+        .assertValueCount(200)
+        .assertNoErrors()
+        .assertComplete();
+
+        // the first inner starts with the minimum and doubles its batches up to the maximum
+        assertEquals(Arrays.asList(2L, 4L, 7L, 14L, 12L, 12L), requests.get(0).subList(0, 6));
+        // the second inner starts with what the first produced, capped by the maximum
+        assertEquals(16L, requests.get(1).get(0).longValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void adaptiveMinMaxMismatch() {
+        FlowableTransformers.flatMapSync(Functions.justFunction(Flowable.just(1)), 1, 16, 8, true);
+    }
 }
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.operators;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import hu.akarnokd.rxjava2.operators.FlowableKeyedValve.KeyedValveSubscriber;
+import io.reactivex.Flowable;
+import io.reactivex.functions.*;
+import io.reactivex.internal.functions.Functions;
+import io.reactivex.internal.subscriptions.BooleanSubscription;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.*;
+import io.reactivex.subscribers.TestSubscriber;
+
+public class FlowableKeyedValveTest {
+
+    static final Function<Integer, Integer> PARITY = new Function<Integer, Integer>() {
+        @Override
+        public Integer apply(Integer v) throws Exception {
+            return v % 2;
+        }
+    };
+
+    static final Function<Integer, Integer> TENS = new Function<Integer, Integer>() {
+        @Override
+        public Integer apply(Integer v) throws Exception {
+            return v / 10;
+        }
+    };
+
+    static Map.Entry<Integer, Boolean> gate(int key, boolean open) {
+        return new AbstractMap.SimpleImmutableEntry<Integer, Boolean>(key, open);
+    }
+
+    @Test
+    public void passthrough() {
+        Flowable.range(1, 10)
+        .compose(FlowableTransformers.keyedValve(PARITY, Flowable.<Map.Entry<Integer, Boolean>>never()))
+        .test()
+        .assertResult(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+    }
+
+    @Test
+    public void gatedOff() {
+        Flowable.range(1, 10)
+        .compose(FlowableTransformers.keyedValve(PARITY, Flowable.<Map.Entry<Integer, Boolean>>never(),
+                false, 16, Functions.emptyConsumer()))
+        .test()
+        .assertEmpty();
+    }
+
+    @Test
+    public void perKeyGating() {
+        PublishProcessor<Map.Entry<Integer, Boolean>> pp = PublishProcessor.create();
+
+        TestSubscriber<Integer> ts = Flowable.range(1, 10)
+        .compose(FlowableTransformers.keyedValve(PARITY, pp))
+        .test(0);
+
+        pp.onNext(gate(0, false));
+
+        ts.request(10);
+
+        ts.assertValues(1, 3, 5, 7, 9).assertNoErrors().assertNotComplete();
+
+        pp.onNext(gate(0, true));
+
+        ts.assertResult(1, 3, 5, 7, 9, 2, 4, 6, 8, 10);
+
+        assertFalse(pp.hasSubscribers());
+    }
+
+    @Test
+    public void closeWhileReady() {
+        PublishProcessor<Map.Entry<Integer, Boolean>> pp = PublishProcessor.create();
+
+        TestSubscriber<Integer> ts = Flowable.range(1, 6)
+        .compose(FlowableTransformers.keyedValve(PARITY, pp))
+        .test(2);
+
+        ts.assertValues(1, 2);
+
+        pp.onNext(gate(1, false));
+
+        ts.request(10);
+
+        ts.assertValues(1, 2, 4, 6).assertNoErrors().assertNotComplete();
+
+        pp.onNext(gate(1, true));
+
+        ts.assertResult(1, 2, 4, 6, 3, 5);
+    }
+
+    @Test
+    public void roundRobin() {
+        TestSubscriber<Integer> ts = Flowable.just(10, 11, 12, 20, 21, 22, 30)
+        .compose(FlowableTransformers.keyedValve(TENS, Flowable.<Map.Entry<Integer, Boolean>>never()))
+        .test(0);
+
+        ts.assertEmpty();
+
+        ts.request(7);
+
+        ts.assertResult(10, 20, 30, 11, 21, 12, 22);
+    }
+
+    @Test
+    public void closedOverflowEvictsOldest() {
+        final List<Integer> evicted = new ArrayList<Integer>();
+        PublishProcessor<Map.Entry<Integer, Boolean>> pp = PublishProcessor.create();
+
+        TestSubscriber<Integer> ts = Flowable.range(1, 5)
+        .compose(FlowableTransformers.keyedValve(PARITY, pp, false, 2, new Consumer<Integer>() {
+            @Override
+            public void accept(Integer v) throws Exception {
+                evicted.add(v);
+            }
+        }))
+        .test();
+
+        ts.assertEmpty();
+        assertEquals(Arrays.asList(1), evicted);
+
+        pp.onNext(gate(1, true));
+
+        ts.assertValues(3, 5).assertNoErrors().assertNotComplete();
+
+        pp.onNext(gate(0, true));
+
+        ts.assertResult(3, 5, 2, 4);
+        assertEquals(Arrays.asList(1), evicted);
+    }
+
+    @Test
+    public void openFullWaitsForRequest() {
+        final List<Integer> evicted = new ArrayList<Integer>();
+
+        TestSubscriber<Integer> ts = Flowable.range(1, 10)
+        .compose(FlowableTransformers.keyedValve(PARITY, Flowable.<Map.Entry<Integer, Boolean>>never(),
+                true, 2, new Consumer<Integer>() {
+            @Override
+            public void accept(Integer v) throws Exception {
+                evicted.add(v);
+            }
+        }))
+        .test(0);
+
+        ts.assertEmpty();
+
+        ts.request(1);
+
+        ts.assertValues(1);
+
+        ts.request(3);
+
+        ts.assertValues(1, 2, 3, 4);
+
+        ts.request(6);
+
+        ts.assertResult(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+
+        assertTrue(evicted.isEmpty());
+    }
+
+    @Test
+    public void closedKeyDoesNotBlockOthers() {
+        PublishProcessor<Map.Entry<Integer, Boolean>> pp = PublishProcessor.create();
+        final AtomicInteger evicted = new AtomicInteger();
+
+        TestSubscriber<Integer> ts = Flowable.range(1, 1000)
+        .compose(FlowableTransformers.keyedValve(PARITY, pp, true, 4, new Consumer<Integer>() {
+            @Override
+            public void accept(Integer v) throws Exception {
+                evicted.getAndIncrement();
+            }
+        }))
+        .test(0);
+
+        pp.onNext(gate(0, false));
+
+        ts.request(1000);
+
+        ts.assertValueCount(500).assertNoErrors().assertNotComplete();
+
+        assertEquals(496, evicted.get());
+
+        pp.onNext(gate(0, true));
+
+        ts.assertValueCount(504)
+        .assertNoErrors()
+        .assertComplete();
+
+        assertEquals(Arrays.asList(994, 996, 998, 1000), ts.values().subList(500, 504));
+    }
+
+    @Test
+    public void controlCompletes() {
+        Flowable.range(1, 10)
+        .compose(FlowableTransformers.keyedValve(PARITY, Flowable.<Map.Entry<Integer, Boolean>>empty()))
+        .test()
+        .assertFailure(IllegalStateException.class);
+    }
+
+    @Test
+    public void controlError() {
+        Flowable.range(1, 10)
+        .compose(FlowableTransformers.keyedValve(PARITY,
+                Flowable.<Map.Entry<Integer, Boolean>>error(new IOException())))
+        .test()
+        .assertFailure(IOException.class);
+    }
+
+    @Test
+    public void mainError() {
+        PublishProcessor<Map.Entry<Integer, Boolean>> pp = PublishProcessor.create();
+
+        Flowable.range(1, 10).concatWith(Flowable.<Integer>error(new IOException()))
+        .compose(FlowableTransformers.keyedValve(PARITY, pp))
+        .test()
+        .assertFailure(IOException.class, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+
+        assertFalse(pp.hasSubscribers());
+    }
+
+    @Test
+    public void keySelectorCrash() {
+        PublishProcessor<Map.Entry<Integer, Boolean>> pp = PublishProcessor.create();
+
+        Flowable.range(1, 10)
+        .compose(FlowableTransformers.keyedValve(new Function<Integer, Integer>() {
+            @Override
+            public Integer apply(Integer v) throws Exception {
+                if (v == 3) {
+                    throw new IOException();
+                }
+                return v;
+            }
+        }, pp))
+        .test()
+        .assertFailure(IOException.class, 1, 2);
+
+        assertFalse(pp.hasSubscribers());
+    }
+
+    @Test
+    public void cancel() {
+        PublishProcessor<Integer> main = PublishProcessor.create();
+        PublishProcessor<Map.Entry<Integer, Boolean>> pp = PublishProcessor.create();
+
+        TestSubscriber<Integer> ts = main
+        .compose(FlowableTransformers.keyedValve(PARITY, pp))
+        .test();
+
+        assertTrue(main.hasSubscribers());
+        assertTrue(pp.hasSubscribers());
+
+        ts.cancel();
+
+        assertFalse(main.hasSubscribers());
+        assertFalse(pp.hasSubscribers());
+    }
+
+    static KeyedValveSubscriber<Integer, Integer> subscriber(TestSubscriber<Integer> ts, long idleTimeout, TestScheduler scheduler) {
+        KeyedValveSubscriber<Integer, Integer> parent = new KeyedValveSubscriber<Integer, Integer>(ts, TENS,
+                true, 4, Functions.emptyConsumer(), idleTimeout, scheduler, 16);
+        ts.onSubscribe(parent);
+        parent.other.onSubscribe(new BooleanSubscription());
+        parent.onSubscribe(new BooleanSubscription());
+        return parent;
+    }
+
+    @Test
+    public void keyForgottenImmediately() {
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>(0);
+        KeyedValveSubscriber<Integer, Integer> parent = subscriber(ts, 0L, null);
+
+        parent.onNext(10);
+        parent.onNext(20);
+
+        assertEquals(2, parent.states.size());
+
+        ts.request(1);
+
+        assertEquals(1, parent.states.size());
+
+        parent.other.onNext(gate(3, false));
+
+        assertEquals(2, parent.states.size());
+
+        parent.other.onNext(gate(3, true));
+
+        assertEquals(1, parent.states.size());
+
+        ts.request(1);
+
+        assertTrue(parent.states.isEmpty());
+
+        ts.assertValues(10, 20);
+    }
+
+    @Test
+    public void idleKeyForgotten() {
+        TestScheduler scheduler = new TestScheduler();
+        TestSubscriber<Integer> ts = new TestSubscriber<Integer>();
+        KeyedValveSubscriber<Integer, Integer> parent = subscriber(ts, TimeUnit.SECONDS.toNanos(10), scheduler);
+
+        parent.onNext(10);
+        parent.other.onNext(gate(2, false));
+
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS);
+
+        parent.onNext(30);
+
+        assertEquals(3, parent.states.size());
+
+        scheduler.advanceTimeBy(6, TimeUnit.SECONDS);
+
+        parent.onNext(31);
+
+        // key 1 was idle, key 2 is closed and key 3 was active recently
+        assertEquals(2, parent.states.size());
+        assertNull(parent.states.get(1));
+
+        scheduler.advanceTimeBy(20, TimeUnit.SECONDS);
+
+        parent.other.onNext(gate(2, true));
+
+        assertEquals(1, parent.states.size());
+
+        scheduler.advanceTimeBy(20, TimeUnit.SECONDS);
+
+        parent.onComplete();
+
+        assertTrue(parent.states.isEmpty());
+
+        ts.assertResult(10, 30, 31);
+    }
+
+    @Test
+    public void async() {
+        for (int i = 0; i < 10; i++) {
+            final AtomicInteger evicted = new AtomicInteger();
+
+            Flowable<Map.Entry<Integer, Boolean>> control = Flowable.range(0, 1000)
+            .map(new Function<Integer, Map.Entry<Integer, Boolean>>() {
+                @Override
+                public Map.Entry<Integer, Boolean> apply(Integer v) throws Exception {
+                    return gate(v % 8, v % 16 >= 8);
+                }
+            })
+            .concatWith(Flowable.range(0, 8).map(new Function<Integer, Map.Entry<Integer, Boolean>>() {
+                @Override
+                public Map.Entry<Integer, Boolean> apply(Integer v) throws Exception {
+                    return gate(v, true);
+                }
+            }))
+            .concatWith(Flowable.<Map.Entry<Integer, Boolean>>never())
+            .subscribeOn(Schedulers.single());
+
+            TestSubscriber<Integer> ts = Flowable.range(0, 100000)
+            .subscribeOn(Schedulers.computation())
+            .compose(FlowableTransformers.keyedValve(new Function<Integer, Integer>() {
+                @Override
+                public Integer apply(Integer v) throws Exception {
+                    return v % 8;
+                }
+            }, control, true, 64, new Consumer<Integer>() {
+                @Override
+                public void accept(Integer v) throws Exception {
+                    evicted.getAndIncrement();
+                }
+            }))
+            .observeOn(Schedulers.single())
+            .test();
+
+            ts.awaitDone(5, TimeUnit.SECONDS)
+            .assertNoErrors()
+            .assertComplete();
+
+            assertEquals(100000, ts.valueCount() + evicted.get());
+        }
+    }
+}
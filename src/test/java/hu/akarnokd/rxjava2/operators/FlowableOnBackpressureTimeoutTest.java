@@ -18,7 +18,7 @@ package hu.akarnokd.rxjava2.operators;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
 import org.junit.*;
 
@@ -313,4 +313,190 @@ public class FlowableOnBackpressureTimeoutTest implements Consumer<Object> {
 
         Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), evicted);
     }
+
+    @Test
+    public void requestedConsumed() {
+        PublishProcessor<Integer> pp = PublishProcessor.create();
+
+        TestSubscriber<Integer> ts = pp
+        .compose(FlowableTransformers.<Integer>onBackpressureTimeout(10, 1, TimeUnit.MINUTES, Schedulers.single(), this))
+        .test(2);
+
+        pp.onNext(1);
+        pp.onNext(2);
+        pp.onNext(3);
+        pp.onNext(4);
+
+        ts.assertValues(1, 2);
+
+        ts.request(1);
+
+        ts.assertValues(1, 2, 3);
+
+        pp.onComplete();
+
+        ts.requestMore(1).assertResult(1, 2, 3, 4);
+
+        Assert.assertTrue(evicted.isEmpty());
+    }
+
+    @Test
+    public void onNextDuringTimerKeepsOldestDeadline() {
+        TestScheduler scheduler = new TestScheduler();
+
+        final PublishProcessor<Integer> pp = PublishProcessor.create();
+
+        TestSubscriber<Integer> ts = pp
+        .compose(FlowableTransformers.<Integer>onBackpressureTimeout(1, TimeUnit.SECONDS, scheduler, new Consumer<Integer>() {
+            @Override
+            public void accept(Integer v) throws Exception {
+                evicted.add(v);
+                if (v == 1) {
+                    // arrives while the timer task is evicting
+                    pp.onNext(3);
+                }
+            }
+        }))
+        .test(0);
+
+        pp.onNext(1);
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        pp.onNext(2);
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+
+        Assert.assertEquals(Arrays.asList(1), evicted);
+
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+
+        Assert.assertEquals(Arrays.asList(1, 2), evicted);
+
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+
+        Assert.assertEquals(Arrays.asList(1, 2, 3), evicted);
+
+        ts.assertEmpty();
+    }
+
+    @Test
+    public void timeoutOnlyOldest() {
+        TestScheduler scheduler = new TestScheduler();
+
+        PublishProcessor<Integer> pp = PublishProcessor.create();
+
+        TestSubscriber<Integer> ts = pp
+        .compose(FlowableTransformers.<Integer>onBackpressureTimeout(1, TimeUnit.SECONDS, scheduler, this))
+        .test(0);
+
+        for (int i = 0; i < 300; i++) {
+            pp.onNext(i);
+            scheduler.advanceTimeBy(10, TimeUnit.MILLISECONDS);
+        }
+
+        // elements older than 1 second are gone, across the internal chunks
+        Assert.assertEquals(201, evicted.size());
+        Assert.assertEquals(200, evicted.get(200));
+
+        ts.request(1);
+        ts.assertValues(201);
+    }
+
+    @Test(timeout = 10000)
+    public void boundedWhileConsumerBlocked() throws Exception {
+        PublishProcessor<Integer> pp = PublishProcessor.create();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final TestSubscriber<Integer> ts = pp
+        .compose(FlowableTransformers.<Integer>onBackpressureTimeout(10, 1, TimeUnit.MINUTES, Schedulers.single(), this))
+        .doOnNext(new Consumer<Integer>() {
+            @Override
+            public void accept(Integer v) throws Exception {
+                if (v == 0) {
+                    entered.countDown();
+                    release.await();
+                }
+            }
+        })
+        .test(0);
+
+        for (int i = 0; i < 5; i++) {
+            pp.onNext(i);
+        }
+
+        Schedulers.single().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                ts.request(1);
+            }
+        });
+
+        Assert.assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        for (int i = 5; i < 1005; i++) {
+            pp.onNext(i);
+        }
+
+        // the consumer is still blocked yet the buffer holds only the latest 10
+        Assert.assertEquals(994, evicted.size());
+        Assert.assertEquals(1, evicted.get(0));
+        Assert.assertEquals(994, evicted.get(993));
+
+        release.countDown();
+
+        pp.onComplete();
+
+        ts.request(20);
+
+        ts.awaitDone(5, TimeUnit.SECONDS)
+        .assertResult(0, 995, 996, 997, 998, 999, 1000, 1001, 1002, 1003, 1004);
+    }
+
+    @Test(timeout = 10000)
+    public void timeoutWhileConsumerBlocked() throws Exception {
+        TestScheduler scheduler = new TestScheduler();
+        PublishProcessor<Integer> pp = PublishProcessor.create();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final TestSubscriber<Integer> ts = pp
+        .compose(FlowableTransformers.<Integer>onBackpressureTimeout(1, TimeUnit.SECONDS, scheduler, this))
+        .doOnNext(new Consumer<Integer>() {
+            @Override
+            public void accept(Integer v) throws Exception {
+                if (v == 0) {
+                    entered.countDown();
+                    release.await();
+                }
+            }
+        })
+        .test(0);
+
+        for (int i = 0; i < 100; i++) {
+            pp.onNext(i);
+        }
+
+        Schedulers.single().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                ts.request(1);
+            }
+        });
+
+        Assert.assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+
+        // the timer evicted the stale items without waiting for the consumer
+        Assert.assertEquals(99, evicted.size());
+
+        release.countDown();
+
+        pp.onNext(100);
+        pp.onComplete();
+
+        ts.request(1);
+
+        ts.awaitDone(5, TimeUnit.SECONDS)
+        .assertResult(0, 100);
+    }
 }
@@ -542,4 +542,183 @@ public class FlowableOrderedMergeTest {
         .test()
         .assertResult(1, 2);
     }
+
+    static List<Flowable<Integer>> interleaved(int n, int count) {
+        List<Flowable<Integer>> sources = new ArrayList<Flowable<Integer>>();
+
+        for (int i = 0; i < n; i++) {
+            List<Integer> list = new ArrayList<Integer>();
+            for (int j = 0; j < count; j++) {
+                list.add(j * n + i);
+            }
+            sources.add(Flowable.fromIterable(list));
+        }
+        return sources;
+    }
+
+    static Integer[] rangeArray(int n) {
+        Integer[] result = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = i;
+        }
+        return result;
+    }
+
+    @Test
+    public void heapMany() {
+        Flowables.orderedMerge(interleaved(100, 10),
+                Functions.<Integer>naturalComparator()
+        )
+        .test()
+        .assertResult(rangeArray(1000));
+    }
+
+    @Test
+    public void heapManyHidden() {
+        List<Flowable<Integer>> sources = new ArrayList<Flowable<Integer>>();
+        for (Flowable<Integer> f : interleaved(100, 10)) {
+            sources.add(f.hide());
+        }
+
+        Flowables.orderedMerge(sources,
+                Functions.<Integer>naturalComparator(), false, 1
+        )
+        .test()
+        .assertResult(rangeArray(1000));
+    }
+
+    @Test
+    public void heapManyUneven() {
+        List<Flowable<Integer>> sources = new ArrayList<Flowable<Integer>>();
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < 20; i++) {
+            sources.add(Flowable.range(i * 3, i));
+            for (int j = 0; j < i; j++) {
+                expected.add(i * 3 + j);
+            }
+        }
+        Collections.sort(expected);
+
+        Flowables.orderedMerge(sources,
+                Functions.<Integer>naturalComparator()
+        )
+        .test()
+        .assertValueSequence(expected)
+        .assertNoErrors()
+        .assertComplete();
+    }
+
+    @Test
+    public void heapManyEqualInSourceOrder() {
+        List<Flowable<String>> sources = new ArrayList<Flowable<String>>();
+        for (int i = 0; i < 10; i++) {
+            sources.add(Flowable.just("a" + i, "b" + i));
+        }
+
+        Flowables.orderedMerge(sources, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return a.charAt(0) - b.charAt(0);
+            }
+        })
+        .test()
+        .assertResult("a0", "a1", "a2", "a3", "a4", "a5", "a6", "a7", "a8", "a9",
+                "b0", "b1", "b2", "b3", "b4", "b5", "b6", "b7", "b8", "b9");
+    }
+
+    @Test
+    public void heapManyBackpressured() {
+        TestSubscriber<Integer> ts = Flowables.orderedMerge(interleaved(10, 3),
+                Functions.<Integer>naturalComparator(), false, 1
+        )
+        .test(0L);
+
+        ts.assertEmpty()
+        .requestMore(5)
+        .assertValues(0, 1, 2, 3, 4)
+        .assertNotComplete()
+        .requestMore(25)
+        .assertResult(rangeArray(30));
+    }
+
+    @Test
+    public void heapManyTake() {
+        Flowables.orderedMerge(interleaved(10, 10),
+                Functions.<Integer>naturalComparator()
+        )
+        .take(5)
+        .test()
+        .assertResult(0, 1, 2, 3, 4);
+    }
+
+    @Test
+    public void heapManyError() {
+        List<Flowable<Integer>> sources = interleaved(10, 3);
+        sources.set(5, Flowable.just(5).concatWith(Flowable.<Integer>error(new IOException())));
+
+        Flowables.orderedMerge(sources,
+                Functions.<Integer>naturalComparator()
+        )
+        .test()
+        .assertFailure(IOException.class);
+    }
+
+    @Test
+    public void heapManyErrorDelayed() {
+        List<Flowable<Integer>> sources = interleaved(10, 3);
+        sources.set(5, Flowable.<Integer>error(new IOException()));
+
+        List<Integer> expected = new ArrayList<Integer>(Arrays.asList(rangeArray(30)));
+        expected.removeAll(Arrays.asList(5, 15, 25));
+
+        Flowables.orderedMerge(sources,
+                Functions.<Integer>naturalComparator(), true
+        )
+        .test()
+        .assertValueSequence(expected)
+        .assertError(IOException.class)
+        .assertNotComplete();
+    }
+
+    @Test
+    public void heapManyFusedThrows() {
+        List<Flowable<Integer>> sources = interleaved(10, 3);
+        sources.set(3, Flowable.just(1).map(new Function<Integer, Integer>() {
+            @Override
+            public Integer apply(Integer v) throws Exception {
+                throw new IllegalArgumentException();
+            }
+        }));
+
+        Flowables.orderedMerge(sources,
+                Functions.<Integer>naturalComparator()
+        )
+        .test()
+        .assertFailure(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void heapManyComparatorThrows() {
+        Flowables.orderedMerge(interleaved(10, 3), new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                throw new IllegalArgumentException();
+            }
+        })
+        .test()
+        .assertFailure(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void heapManyNever() {
+        List<Flowable<Integer>> sources = interleaved(10, 3);
+        sources.set(7, Flowable.<Integer>never());
+
+        Flowables.orderedMerge(sources,
+                Functions.<Integer>naturalComparator()
+        )
+        .test()
+        .assertEmpty()
+        .cancel();
+    }
 }
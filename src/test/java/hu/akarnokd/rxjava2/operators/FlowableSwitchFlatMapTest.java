@@ -16,7 +16,7 @@
 
 package hu.akarnokd.rxjava2.operators;
 
-import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.*;
 
 import java.io.IOException;
 import java.util.List;
@@ -314,4 +314,44 @@ public class FlowableSwitchFlatMapTest {
 
         assertFalse(bp.hasSubscribers());
     }
+
+    @Test
+    public void evictOldest() {
+        final PublishProcessor<Integer> pp1 = PublishProcessor.create();
+        @SuppressWarnings("unchecked")
+        final PublishProcessor<Integer>[] inners = new PublishProcessor[] {
+                PublishProcessor.create(), PublishProcessor.create(), PublishProcessor.create()
+        };
+
+        TestSubscriber<Integer> ts = pp1
+        .compose(FlowableTransformers.switchFlatMap(new Function<Integer, Publisher<Integer>>() {
+            @Override
+            public Publisher<Integer> apply(Integer v) throws Exception {
+                return inners[v];
+            }
+        }, 2))
+        .test();
+
+        pp1.onNext(0);
+        pp1.onNext(1);
+
+        inners[0].onNext(1);
+        inners[1].onNext(2);
+
+        pp1.onNext(2);
+
+        assertFalse(inners[0].hasSubscribers());
+        assertTrue(inners[1].hasSubscribers());
+        assertTrue(inners[2].hasSubscribers());
+
+        inners[1].onComplete();
+        inners[2].onNext(3);
+        pp1.onComplete();
+
+        ts.assertValues(1, 2, 3).assertNoErrors().assertNotComplete();
+
+        inners[2].onComplete();
+
+        ts.assertResult(1, 2, 3);
+    }
 }
@@ -16,15 +16,18 @@
 
 package hu.akarnokd.rxjava2.parallel;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
 
 import org.junit.*;
 import org.reactivestreams.Publisher;
 
+import hu.akarnokd.rxjava2.test.TestHelper;
 import hu.akarnokd.rxjava2.util.SelfComparator;
 import io.reactivex.*;
 import io.reactivex.functions.*;
+import io.reactivex.plugins.RxJavaPlugins;
 import io.reactivex.processors.UnicastProcessor;
 import io.reactivex.schedulers.Schedulers;
 import io.reactivex.subscribers.TestSubscriber;
@@ -739,4 +742,361 @@ public class ParallelFlowableTest {
 
         ts.assertValue(1);
     }
+
+    @SuppressWarnings("unchecked")
+    static TestSubscriber<Integer>[] rails(int n, long initialRequest) {
+        TestSubscriber<Integer>[] a = new TestSubscriber[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = new TestSubscriber<Integer>(initialRequest);
+        }
+        return a;
+    }
+
+    @Test
+    public void batchedDistribution() {
+        for (Flowable<Integer> source : Arrays.asList(Flowable.range(1, 16), Flowable.range(1, 16).hide())) {
+            TestSubscriber<Integer>[] a = rails(2, Long.MAX_VALUE);
+
+            ParallelFlowable.from(source, 2, 16, 4).subscribe(a);
+
+            a[0].assertResult(1, 2, 3, 4, 9, 10, 11, 12);
+            a[1].assertResult(5, 6, 7, 8, 13, 14, 15, 16);
+        }
+    }
+
+    @Test
+    public void batchedLimitedByDemand() {
+        for (Flowable<Integer> source : Arrays.asList(Flowable.range(1, 8), Flowable.range(1, 8).hide())) {
+            TestSubscriber<Integer>[] a = rails(2, 0);
+
+            ParallelFlowable.from(source, 2, 16, 4).subscribe(a);
+
+            a[0].request(2);
+
+            a[0].assertValues(1, 2).assertNotComplete();
+            a[1].assertNoValues();
+
+            a[1].request(3);
+
+            a[1].assertValues(3, 4, 5).assertNotComplete();
+
+            a[0].request(10);
+
+            a[0].assertResult(1, 2, 6, 7, 8);
+            a[1].assertResult(3, 4, 5);
+        }
+    }
+
+    @Test
+    public void batchedSequential() {
+        for (Flowable<Integer> source : Arrays.asList(Flowable.range(1, 100000), Flowable.range(1, 100000).hide())) {
+            for (int i = 1; i < 9; i++) {
+                ParallelFlowable.from(source, i, 128, 32)
+                .runOn(Schedulers.computation())
+                .sequential()
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValueCount(100000)
+                .assertNoErrors()
+                .assertComplete();
+            }
+        }
+    }
+
+    @Test
+    public void keyedAffinity() {
+        for (Flowable<Integer> source : Arrays.asList(Flowable.range(0, 100), Flowable.range(0, 100).hide())) {
+            TestSubscriber<Integer>[] a = rails(4, Long.MAX_VALUE);
+
+            ParallelFlowable.from(source, 4, 16, new Function<Integer, Object>() {
+                @Override
+                public Object apply(Integer v) throws Exception {
+                    return v % 8;
+                }
+            }).subscribe(a);
+
+            int count = 0;
+            for (int i = 0; i < 4; i++) {
+                a[i].assertNoErrors().assertComplete();
+                for (Integer v : a[i].values()) {
+                    Assert.assertEquals(i, (v % 8) % 4);
+                }
+                count += a[i].valueCount();
+            }
+            Assert.assertEquals(100, count);
+        }
+    }
+
+    @Test
+    public void keyedWaitsForRail() {
+        TestSubscriber<Integer>[] a = rails(2, 0);
+
+        ParallelFlowable.from(Flowable.range(0, 6), 2, 16, new Function<Integer, Object>() {
+            @Override
+            public Object apply(Integer v) throws Exception {
+                return v < 3 ? 0 : 1;
+            }
+        }).subscribe(a);
+
+        a[1].request(10);
+
+        a[1].assertNoValues();
+
+        a[0].request(2);
+
+        a[0].assertValues(0, 1);
+        a[1].assertNoValues();
+
+        a[0].request(1);
+
+        a[0].assertResult(0, 1, 2);
+        a[1].assertResult(3, 4, 5);
+    }
+
+    @Test
+    public void keyedSequential() {
+        for (Flowable<Integer> source : Arrays.asList(Flowable.range(1, 100000), Flowable.range(1, 100000).hide())) {
+            ParallelFlowable.from(source, 4, 128, new Function<Integer, Object>() {
+                @Override
+                public Object apply(Integer v) throws Exception {
+                    return v;
+                }
+            })
+            .runOn(Schedulers.computation())
+            .sequential()
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertValueCount(100000)
+            .assertNoErrors()
+            .assertComplete();
+        }
+    }
+
+    @Test
+    public void keyedSelectorCrash() {
+        TestSubscriber<Integer>[] a = rails(2, Long.MAX_VALUE);
+
+        ParallelFlowable.from(Flowable.range(1, 5), 2, 16, new Function<Integer, Object>() {
+            @Override
+            public Object apply(Integer v) throws Exception {
+                if (v == 3) {
+                    throw new IllegalArgumentException();
+                }
+                return v;
+            }
+        }).subscribe(a);
+
+        a[0].assertFailure(IllegalArgumentException.class, 2);
+        a[1].assertFailure(IllegalArgumentException.class, 1);
+    }
+
+    @Test
+    public void keyedNullKey() {
+        TestSubscriber<Integer>[] a = rails(2, Long.MAX_VALUE);
+
+        ParallelFlowable.from(Flowable.range(1, 5).hide(), 2, 16, new Function<Integer, Object>() {
+            @Override
+            public Object apply(Integer v) throws Exception {
+                return null;
+            }
+        }).subscribe(a);
+
+        a[0].assertFailure(NullPointerException.class);
+        a[1].assertFailure(NullPointerException.class);
+    }
+
+    @Test
+    public void keyedError() {
+        TestSubscriber<Integer>[] a = rails(2, Long.MAX_VALUE);
+
+        ParallelFlowable.from(Flowable.range(1, 2).concatWith(Flowable.<Integer>error(new java.io.IOException())),
+                2, 16, new Function<Integer, Object>() {
+            @Override
+            public Object apply(Integer v) throws Exception {
+                return v;
+            }
+        }).subscribe(a);
+
+        a[0].assertFailure(java.io.IOException.class, 2);
+        a[1].assertFailure(java.io.IOException.class, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batchSizeInvalid() {
+        ParallelFlowable.from(Flowable.range(1, 5), 2, 16, 0);
+    }
+
+    @Test
+    public void sortedManyRails() {
+        Random rnd = new Random(1);
+        List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < 10000; i++) {
+            values.add(rnd.nextInt(1000));
+        }
+        List<Integer> expected = new ArrayList<Integer>(values);
+        Collections.sort(expected);
+
+        for (int p = 1; p < 18; p++) {
+            Flowable.fromIterable(values)
+            .to(parallel(p))
+            .runOn(Schedulers.computation())
+            .sorted(SelfComparator.INSTANCE)
+            .toList()
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertResult(expected);
+
+            Flowable.fromIterable(values)
+            .to(parallel(p))
+            .runOn(Schedulers.computation())
+            .toSortedList(SelfComparator.INSTANCE)
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertResult(expected);
+        }
+    }
+
+    @Test
+    public void sortedEmpty() {
+        Flowable.<Integer>empty()
+        .to(parallel(7))
+        .sorted(SelfComparator.INSTANCE)
+        .test()
+        .assertResult();
+
+        Flowable.<Integer>empty()
+        .to(parallel(7))
+        .toSortedList(SelfComparator.INSTANCE)
+        .test()
+        .assertResult(Collections.<Integer>emptyList());
+    }
+
+    @Test
+    public void sortedError() {
+        Flowable.range(1, 10).concatWith(Flowable.<Integer>error(new java.io.IOException()))
+        .to(parallel(5))
+        .sorted(SelfComparator.INSTANCE)
+        .test()
+        .assertFailure(java.io.IOException.class);
+
+        Flowable.range(1, 10).concatWith(Flowable.<Integer>error(new java.io.IOException()))
+        .to(parallel(5))
+        .toSortedList(SelfComparator.INSTANCE)
+        .test()
+        .assertFailure(java.io.IOException.class);
+    }
+
+    @Test
+    public void sortedComparatorCrash() {
+        Flowable.range(1, 10)
+        .to(parallel(3))
+        .sorted(new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                // 1 and 2 are on different rails
+                if (a + b == 3) {
+                    throw new IllegalArgumentException();
+                }
+                return a.compareTo(b);
+            }
+        })
+        .test()
+        .assertFailure(IllegalArgumentException.class);
+
+        Flowable.range(1, 10)
+        .to(parallel(3))
+        .toSortedList(new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                if (a + b == 3) {
+                    throw new IllegalArgumentException();
+                }
+                return a.compareTo(b);
+            }
+        })
+        .test()
+        .assertFailure(IllegalArgumentException.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void sortedMergeGroups() {
+        TestSubscriber<List<Integer>>[] a = new TestSubscriber[2];
+        a[0] = new TestSubscriber<List<Integer>>();
+        a[1] = new TestSubscriber<List<Integer>>();
+
+        ParallelFlowable<List<Integer>> lists = ParallelFlowable.fromArray(
+                Flowable.just(Arrays.asList(1, 5)),
+                Flowable.just(Arrays.asList(2, 6)),
+                Flowable.just(Arrays.asList(3, 7)),
+                Flowable.just(Arrays.asList(4, 8)),
+                Flowable.just(Arrays.asList(0, 9))
+        );
+
+        ParallelSortedMerge<Integer> merge = new ParallelSortedMerge<Integer>(lists, SelfComparator.INSTANCE, 2);
+
+        Assert.assertEquals(2, merge.parallelism());
+
+        merge.subscribe(a);
+
+        a[0].assertResult(Arrays.asList(1, 2, 5, 6));
+        a[1].assertResult(Arrays.asList(0, 3, 4, 7, 8, 9));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void sortedMergeErrorAfterGroupCompleted() {
+        List<Throwable> errors = TestHelper.trackPluginErrors();
+        try {
+            TestSubscriber<List<Integer>>[] a = new TestSubscriber[2];
+            a[0] = new TestSubscriber<List<Integer>>();
+            a[1] = new TestSubscriber<List<Integer>>();
+
+            UnicastProcessor<List<Integer>> up = UnicastProcessor.create();
+
+            ParallelFlowable<List<Integer>> lists = ParallelFlowable.fromArray(
+                    Flowable.just(Arrays.asList(1, 5)),
+                    Flowable.just(Arrays.asList(2, 6)),
+                    up
+            );
+
+            new ParallelSortedMerge<Integer>(lists, SelfComparator.INSTANCE, 2).subscribe(a);
+
+            a[0].assertResult(Arrays.asList(1, 5));
+
+            up.onError(new IOException());
+
+            a[0].assertResult(Arrays.asList(1, 5));
+            a[1].assertFailure(IOException.class);
+
+            Assert.assertTrue(errors.isEmpty());
+        } finally {
+            RxJavaPlugins.reset();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void sortedMergeErrorAllCompleted() {
+        List<Throwable> errors = TestHelper.trackPluginErrors();
+        try {
+            TestSubscriber<List<Integer>>[] a = new TestSubscriber[2];
+            a[0] = new TestSubscriber<List<Integer>>();
+            a[1] = new TestSubscriber<List<Integer>>();
+
+            ParallelFlowable<List<Integer>> lists = ParallelFlowable.fromArray(
+                    Flowable.just(Arrays.asList(1, 5)),
+                    Flowable.just(Arrays.asList(2, 6)).concatWith(Flowable.<List<Integer>>error(new IOException()))
+            );
+
+            new ParallelSortedMerge<Integer>(lists, SelfComparator.INSTANCE, 2).subscribe(a);
+
+            a[0].assertResult(Arrays.asList(1, 5));
+            a[1].assertResult(Arrays.asList(2, 6));
+
+            TestHelper.assertUndeliverable(errors, 0, IOException.class);
+        } finally {
+            RxJavaPlugins.reset();
+        }
+    }
 }
@@ -16,13 +16,15 @@
 
 package hu.akarnokd.rxjava2.schedulers;
 
+import static hu.akarnokd.rxjava2.schedulers.BlockingScheduler.CANCELLED;
 import static org.junit.Assert.*;
 
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
+import hu.akarnokd.rxjava2.schedulers.BlockingScheduler.*;
 import hu.akarnokd.rxjava2.test.TestHelper;
 import io.reactivex.Flowable;
 import io.reactivex.Scheduler.Worker;
@@ -608,4 +610,307 @@ public class BlockingSchedulerTest {
             RxJavaPlugins.reset();
         }
     }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSpinLimit() {
+        new BlockingScheduler(-1, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidYieldLimit() {
+        new BlockingScheduler(0, -1);
+    }
+
+    @Test
+    public void taskQueueOrder() {
+        TaskQueue q = new TaskQueue();
+
+        assertNull(q.poll());
+
+        ActionNode a1 = new ActionNode(Functions.EMPTY_ACTION);
+        ActionNode a2 = new ActionNode(Functions.EMPTY_ACTION);
+        ActionNode a3 = new ActionNode(Functions.EMPTY_ACTION);
+
+        q.offer(a1);
+        q.offer(a2);
+
+        assertSame(a1, q.poll());
+
+        q.offer(a3);
+
+        assertSame(a2, q.poll());
+        assertSame(a3, q.poll());
+        assertNull(q.poll());
+    }
+
+    @Test(timeout = 10000)
+    public void crossThreadHandoff() {
+        crossThreadHandoff(new BlockingScheduler());
+    }
+
+    @Test(timeout = 10000)
+    public void crossThreadHandoffNoSpin() {
+        crossThreadHandoff(new BlockingScheduler(0, 0));
+    }
+
+    @Test(timeout = 10000)
+    public void crossThreadHandoffSpinYield() {
+        crossThreadHandoff(new BlockingScheduler(16, 16));
+    }
+
+    void crossThreadHandoff(final BlockingScheduler scheduler) {
+        List<Throwable> errors = TestHelper.trackPluginErrors();
+        try {
+            final int producers = 4;
+            final int n = 10000;
+            final int[] counter = { 0 };
+
+            scheduler.execute(new Action() {
+                @Override
+                public void run() throws Exception {
+                    for (int j = 0; j < producers; j++) {
+                        Schedulers.computation().scheduleDirect(new Runnable() {
+                            @Override
+                            public void run() {
+                                for (int i = 0; i < n; i++) {
+                                    scheduler.scheduleDirect(new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            if (++counter[0] == producers * n) {
+                                                scheduler.shutdown();
+                                            }
+                                        }
+                                    });
+                                }
+                            }
+                        });
+                    }
+                }
+            });
+
+            assertEquals(producers * n, counter[0]);
+            assertTrue(errors.toString(), errors.isEmpty());
+        } finally {
+            RxJavaPlugins.reset();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void timedOrderAndThread() {
+        final BlockingScheduler scheduler = new BlockingScheduler();
+        final List<Integer> list = new ArrayList<Integer>();
+        final Thread[] threads = { null, null };
+
+        scheduler.execute(new Action() {
+            @Override
+            public void run() throws Exception {
+                threads[0] = Thread.currentThread();
+                final int[] delays = { 50, 10, 30, 10, 0, 20 };
+                for (int i = 0; i < delays.length; i++) {
+                    final int j = i;
+                    scheduler.scheduleDirect(new Runnable() {
+                        @Override
+                        public void run() {
+                            list.add(j);
+                            if (Thread.currentThread() != threads[0]) {
+                                threads[1] = Thread.currentThread();
+                            }
+                            if (list.size() == delays.length) {
+                                scheduler.shutdown();
+                            }
+                        }
+                    }, delays[i], TimeUnit.MILLISECONDS);
+                }
+            }
+        });
+
+        assertEquals(Arrays.asList(4, 1, 3, 5, 2, 0), list);
+        assertNull(threads[1]);
+    }
+
+    @Test(timeout = 10000)
+    public void timedFromOtherThread() {
+        final BlockingScheduler scheduler = new BlockingScheduler();
+        final Thread[] threads = { null, null };
+
+        scheduler.execute(new Action() {
+            @Override
+            public void run() throws Exception {
+                threads[0] = Thread.currentThread();
+                Schedulers.single().scheduleDirect(new Runnable() {
+                    @Override
+                    public void run() {
+                        scheduler.scheduleDirect(new Runnable() {
+                            @Override
+                            public void run() {
+                                threads[1] = Thread.currentThread();
+                                scheduler.shutdown();
+                            }
+                        }, 50, TimeUnit.MILLISECONDS);
+                    }
+                });
+            }
+        });
+
+        assertSame(threads[0], threads[1]);
+    }
+
+    @Test(timeout = 10000)
+    public void timedPeriodic() {
+        final BlockingScheduler scheduler = new BlockingScheduler();
+        final TestSubscriber<Long> ts = new TestSubscriber<Long>();
+
+        scheduler.execute(new Action() {
+            @Override
+            public void run() throws Exception {
+                Flowable.interval(1, 1, TimeUnit.MILLISECONDS, scheduler)
+                .take(10)
+                .doAfterTerminate(new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        scheduler.shutdown();
+                    }
+                })
+                .subscribe(ts);
+            }
+        });
+
+        ts.assertResult(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+    }
+
+    @Test(timeout = 10000)
+    public void timedCancelledArePurged() {
+        final BlockingScheduler scheduler = new BlockingScheduler();
+        final int[] counter = { 0 };
+
+        scheduler.execute(new Action() {
+            @Override
+            public void run() throws Exception {
+                for (int i = 0; i < 1000; i++) {
+                    scheduler.scheduleDirect(new Runnable() {
+                        @Override
+                        public void run() {
+                            counter[0]++;
+                        }
+                    }, 1, TimeUnit.HOURS).dispose();
+                }
+                scheduler.scheduleDirect(new Runnable() {
+                    @Override
+                    public void run() {
+                        scheduler.shutdown();
+                    }
+                }, 10, TimeUnit.MILLISECONDS);
+            }
+        });
+
+        assertEquals(0, counter[0]);
+        assertEquals(0, scheduler.timedSize);
+        assertTrue(scheduler.timedHeap.length < 1000);
+    }
+
+    @Test(timeout = 10000)
+    public void timedNotStarvedByImmediate() {
+        final BlockingScheduler scheduler = new BlockingScheduler();
+        final int[] counter = { 0 };
+
+        scheduler.execute(new Action() {
+            @Override
+            public void run() throws Exception {
+                scheduler.scheduleDirect(new Runnable() {
+                    @Override
+                    public void run() {
+                        counter[0]++;
+                        scheduler.scheduleDirect(this);
+                    }
+                });
+                scheduler.scheduleDirect(new Runnable() {
+                    @Override
+                    public void run() {
+                        scheduler.shutdown();
+                    }
+                }, 10, TimeUnit.MILLISECONDS);
+            }
+        });
+
+        assertTrue("" + counter[0], counter[0] > 0);
+    }
+
+    @Test(timeout = 10000)
+    public void timedCancelledPurgedBeforeFull() {
+        final BlockingScheduler scheduler = new BlockingScheduler();
+        final int[] sizes = { -1 };
+
+        scheduler.execute(new Action() {
+            @Override
+            public void run() throws Exception {
+                final List<Disposable> list = new ArrayList<Disposable>();
+                for (int i = 0; i < 10; i++) {
+                    list.add(scheduler.scheduleDirect(Functions.EMPTY_RUNNABLE, 1, TimeUnit.HOURS));
+                }
+                scheduler.scheduleDirect(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (Disposable d : list) {
+                            d.dispose();
+                        }
+                        scheduler.scheduleDirect(new Runnable() {
+                            @Override
+                            public void run() {
+                                sizes[0] = scheduler.timedSize;
+                                scheduler.shutdown();
+                            }
+                        }, 1, TimeUnit.MILLISECONDS);
+                    }
+                }, 1, TimeUnit.MILLISECONDS);
+            }
+        });
+
+        assertEquals(0, sizes[0]);
+    }
+
+    @Test
+    public void timedHeapPurge() {
+        BlockingScheduler scheduler = new BlockingScheduler();
+
+        List<BlockingQueueNode> nodes = new ArrayList<BlockingQueueNode>();
+        for (int i = 0; i < 100; i++) {
+            ActionNode a = new ActionNode(Functions.EMPTY_ACTION);
+            a.due = 100 - i;
+            if (i % 3 == 0) {
+                a.set(CANCELLED);
+            } else {
+                nodes.add(a);
+            }
+            scheduler.timedOffer(a);
+        }
+
+        assertEquals(nodes.size(), scheduler.timedPurge());
+
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            assertSame(nodes.get(i), scheduler.timedHeap[0]);
+            scheduler.timedPoll();
+        }
+        assertEquals(0, scheduler.timedSize);
+    }
+
+    @Test(timeout = 10000)
+    public void shutdownDisposesTimed() {
+        final BlockingScheduler scheduler = new BlockingScheduler();
+        final Disposable[] ds = { null };
+
+        scheduler.execute(new Action() {
+            @Override
+            public void run() throws Exception {
+                ds[0] = scheduler.scheduleDirect(Functions.EMPTY_RUNNABLE, 1, TimeUnit.HOURS);
+                scheduler.scheduleDirect(new Runnable() {
+                    @Override
+                    public void run() {
+                        scheduler.shutdown();
+                    }
+                }, 10, TimeUnit.MILLISECONDS);
+            }
+        });
+
+        assertTrue(ds[0].isDisposed());
+    }
 }
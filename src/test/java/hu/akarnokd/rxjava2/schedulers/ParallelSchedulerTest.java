@@ -18,12 +18,13 @@ package hu.akarnokd.rxjava2.schedulers;
 
 import static org.junit.Assert.*;
 
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
+import hu.akarnokd.rxjava2.schedulers.ParallelScheduler.*;
 import hu.akarnokd.rxjava2.schedulers.ParallelScheduler.TrackingParallelWorker.TrackedAction;
 import hu.akarnokd.rxjava2.test.TestHelper;
 import io.reactivex.*;
@@ -414,4 +415,243 @@ public class ParallelSchedulerTest implements Runnable {
     public void illegalPriority() {
         new ParallelScheduler(2, true, -1);
     }
+
+    @Test
+    public void normalLoadAware() {
+        Scheduler s = new ParallelScheduler(2, new RxThreadFactory("Test"), true, true);
+
+        try {
+            for (int i = 0; i < 100; i++) {
+                Flowable.range(1, 10).hide()
+                .observeOn(s, false, 4)
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertResult(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+            }
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void shutdownLoadAwareTracking() throws Exception {
+        Scheduler s = new ParallelScheduler(2, new RxThreadFactory("Test"), true, true);
+
+        shutdown(s);
+    }
+
+    @Test
+    public void shutdownLoadAwareNonTracking() throws Exception {
+        Scheduler s = new ParallelScheduler(2, new RxThreadFactory("Test"), false, true);
+
+        shutdown(s);
+    }
+
+    @Test
+    public void loadAwareSingle() {
+        ParallelScheduler s = new ParallelScheduler(1, new RxThreadFactory("Test"), true, true);
+
+        try {
+            Worker w = s.createWorker();
+            try {
+                assertSame(s.pool.get()[0], ((TrackingParallelWorker)w).exec);
+            } finally {
+                w.dispose();
+            }
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void loadAwareAvoidsBusyExecutor() {
+        ParallelScheduler s = new ParallelScheduler(2, new RxThreadFactory("Test"), false, true);
+
+        try {
+            ScheduledExecutorService[] execs = s.pool.get();
+
+            Worker busy = s.createWorker();
+            ScheduledExecutorService busyExec = ((NonTrackingParallelWorker)busy).exec;
+
+            for (int i = 0; i < 10; i++) {
+                busy.schedule(this, 1, TimeUnit.MINUTES);
+            }
+
+            assertEquals(11, ((LoadTrackingExecutor)busyExec).load());
+
+            for (int i = 0; i < 10; i++) {
+                Worker w = s.createWorker();
+                ScheduledExecutorService exec = ((NonTrackingParallelWorker)w).exec;
+                assertNotSame(busyExec, exec);
+                assertTrue(exec == execs[0] || exec == execs[1]);
+            }
+
+            busy.dispose();
+            busy.dispose();
+
+            assertEquals(10, ((LoadTrackingExecutor)busyExec).load());
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void loadAwareLeaseRelease() {
+        ParallelScheduler s = new ParallelScheduler(1, new RxThreadFactory("Test"), true, true);
+
+        try {
+            LoadTrackingExecutor exec = (LoadTrackingExecutor)s.pool.get()[0];
+
+            Worker w1 = s.createWorker();
+            Worker w2 = s.createWorker();
+
+            assertEquals(2, exec.workers.get());
+
+            w1.dispose();
+            w1.dispose();
+
+            assertEquals(1, exec.workers.get());
+
+            w2.dispose();
+
+            assertEquals(0, exec.workers.get());
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void loadAwareCancelledNotCounted() {
+        ParallelScheduler s = new ParallelScheduler(1, new RxThreadFactory("Test"), true, true);
+
+        try {
+            LoadTrackingExecutor exec = (LoadTrackingExecutor)s.pool.get()[0];
+
+            Worker w = s.createWorker();
+
+            List<Disposable> list = new ArrayList<Disposable>();
+            for (int i = 0; i < 10; i++) {
+                list.add(w.schedule(this, 1, TimeUnit.MINUTES));
+            }
+
+            assertEquals(11, exec.load());
+
+            for (Disposable d : list) {
+                d.dispose();
+            }
+
+            assertEquals(1, exec.load());
+            // too few to purge, they are dropped when they come due
+            assertEquals(10, exec.getQueue().size());
+
+            w.dispose();
+
+            assertEquals(0, exec.load());
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void loadAwareCancelledPurgedInBatches() {
+        ParallelScheduler s = new ParallelScheduler(1, new RxThreadFactory("Test"), true, true);
+
+        try {
+            LoadTrackingExecutor exec = (LoadTrackingExecutor)s.pool.get()[0];
+
+            Worker w = s.createWorker();
+
+            w.schedule(this, 1, TimeUnit.MINUTES);
+
+            List<Disposable> list = new ArrayList<Disposable>();
+            for (int i = 0; i < LoadTrackingExecutor.PURGE_THRESHOLD; i++) {
+                list.add(w.schedule(this, 1, TimeUnit.MINUTES));
+            }
+
+            for (int i = 0; i < list.size() - 1; i++) {
+                list.get(i).dispose();
+            }
+
+            assertEquals(LoadTrackingExecutor.PURGE_THRESHOLD + 1, exec.getQueue().size());
+
+            list.get(list.size() - 1).dispose();
+
+            assertEquals(1, exec.getQueue().size());
+            assertEquals(2, exec.load());
+
+            w.dispose();
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void loadAwareCancelledDroppedWhenDue() throws Exception {
+        ParallelScheduler s = new ParallelScheduler(1, new RxThreadFactory("Test"), true, true);
+
+        try {
+            LoadTrackingExecutor exec = (LoadTrackingExecutor)s.pool.get()[0];
+
+            Worker w = s.createWorker();
+
+            final CountDownLatch cdl = new CountDownLatch(1);
+
+            w.schedule(this, 50, TimeUnit.MILLISECONDS).dispose();
+            w.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    cdl.countDown();
+                }
+            }, 100, TimeUnit.MILLISECONDS);
+
+            assertEquals(1, exec.cancelled.get());
+
+            assertTrue(cdl.await(5, TimeUnit.SECONDS));
+
+            assertEquals(0, exec.cancelled.get());
+            assertEquals(0, exec.getQueue().size());
+
+            w.dispose();
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void loadAwareRunNotCounted() throws Exception {
+        ParallelScheduler s = new ParallelScheduler(1, new RxThreadFactory("Test"), true, true);
+
+        try {
+            LoadTrackingExecutor exec = (LoadTrackingExecutor)s.pool.get()[0];
+
+            final List<Integer> list = Collections.synchronizedList(new ArrayList<Integer>());
+            final CountDownLatch cdl = new CountDownLatch(1);
+
+            Worker w = s.createWorker();
+            for (int i = 0; i < 100; i++) {
+                final int j = i;
+                w.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        list.add(j);
+                        if (j == 99) {
+                            cdl.countDown();
+                        }
+                    }
+                });
+            }
+
+            assertTrue(cdl.await(5, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i, list.get(i).intValue());
+            }
+
+            assertEquals(1, exec.load());
+
+            w.dispose();
+        } finally {
+            s.shutdown();
+        }
+    }
 }
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.schedulers;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import hu.akarnokd.rxjava2.schedulers.TimerWheelScheduler.*;
+import io.reactivex.*;
+import io.reactivex.Scheduler.Worker;
+import io.reactivex.disposables.*;
+import io.reactivex.internal.functions.Functions;
+import io.reactivex.internal.schedulers.RxThreadFactory;
+import io.reactivex.schedulers.Schedulers;
+
+public class TimerWheelSchedulerTest implements Runnable {
+
+    final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public void run() {
+        calls.getAndIncrement();
+    }
+
+    @Test
+    public void delayed() {
+        Scheduler s = new TimerWheelScheduler(Schedulers.single());
+
+        try {
+            for (int i = 0; i < 100; i++) {
+                Flowable.range(1, 10).hide()
+                .delay(10, TimeUnit.MILLISECONDS, s)
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertResult(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+            }
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void timeout() {
+        Scheduler s = new TimerWheelScheduler(Schedulers.computation());
+
+        try {
+            Flowable.never()
+            .timeout(50, TimeUnit.MILLISECONDS, s, Flowable.just(1))
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertResult(1);
+
+            Flowable.range(1, 1000)
+            .timeout(1, TimeUnit.SECONDS, s)
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertValueCount(1000)
+            .assertComplete();
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void delayNotEarly() throws Exception {
+        Scheduler s = new TimerWheelScheduler(Schedulers.single(), 5, TimeUnit.MILLISECONDS);
+
+        try {
+            final CountDownLatch cdl = new CountDownLatch(1);
+            long before = System.nanoTime();
+            s.scheduleDirect(new Runnable() {
+                @Override
+                public void run() {
+                    cdl.countDown();
+                }
+            }, 50, TimeUnit.MILLISECONDS);
+
+            assertTrue(cdl.await(5, TimeUnit.SECONDS));
+
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before);
+            assertTrue("" + elapsed, elapsed >= 50);
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void multipleRounds() throws Exception {
+        // 4 buckets of 1 ms, the tasks need several revolutions
+        Scheduler s = new TimerWheelScheduler(Schedulers.single(), 1, TimeUnit.MILLISECONDS, 4);
+
+        try {
+            final List<Integer> list = Collections.synchronizedList(new ArrayList<Integer>());
+            final CountDownLatch cdl = new CountDownLatch(3);
+
+            for (final int d : new int[] { 60, 20, 40 }) {
+                s.scheduleDirect(new Runnable() {
+                    @Override
+                    public void run() {
+                        list.add(d);
+                        cdl.countDown();
+                    }
+                }, d, TimeUnit.MILLISECONDS);
+            }
+
+            assertTrue(cdl.await(5, TimeUnit.SECONDS));
+
+            assertEquals(Arrays.asList(20, 40, 60), list);
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void cancelledDirectTask() throws Exception {
+        Scheduler s = new TimerWheelScheduler(Schedulers.single());
+        try {
+            Disposable d = s.scheduleDirect(this, 100, TimeUnit.MILLISECONDS);
+
+            assertFalse(d.isDisposed());
+
+            d.dispose();
+
+            assertTrue(d.isDisposed());
+
+            Thread.sleep(200);
+
+            assertEquals(0, calls.get());
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void cancelledWorkerTask() throws Exception {
+        Scheduler s = new TimerWheelScheduler(Schedulers.single());
+        try {
+            Worker w = s.createWorker();
+            try {
+                Disposable d = w.schedule(this, 100, TimeUnit.MILLISECONDS);
+
+                assertFalse(d.isDisposed());
+
+                d.dispose();
+
+                assertTrue(d.isDisposed());
+
+                w.schedule(this, 100, TimeUnit.MILLISECONDS);
+
+                w.dispose();
+
+                assertTrue(w.isDisposed());
+
+                Thread.sleep(200);
+
+                assertEquals(0, calls.get());
+            } finally {
+                w.dispose();
+            }
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void shutdown() throws Exception {
+        Scheduler s = new TimerWheelScheduler(Schedulers.single());
+
+        try {
+            Worker w = s.createWorker();
+
+            w.dispose();
+
+            assertSame(Disposables.disposed(), w.schedule(this));
+
+            assertSame(Disposables.disposed(), w.schedule(this, 100, TimeUnit.MILLISECONDS));
+
+            s.shutdown();
+
+            assertSame(Disposables.disposed(), s.scheduleDirect(this));
+
+            assertSame(Disposables.disposed(), s.scheduleDirect(this, 100, TimeUnit.MILLISECONDS));
+
+            w = s.createWorker();
+
+            assertSame(Disposables.disposed(), w.schedule(this));
+
+            assertSame(Disposables.disposed(), w.schedule(this, 100, TimeUnit.MILLISECONDS));
+
+            w.dispose();
+
+            assertEquals(0, calls.get());
+
+            s.start();
+
+            s.scheduleDirect(this);
+
+            s.scheduleDirect(this, 100, TimeUnit.MILLISECONDS);
+
+            s.schedulePeriodicallyDirect(this, 100, 100, TimeUnit.MILLISECONDS);
+
+            w = s.createWorker();
+
+            w.schedule(this);
+
+            w.schedule(this, 100, TimeUnit.MILLISECONDS);
+
+            w.schedulePeriodically(this, 100, 100, TimeUnit.MILLISECONDS);
+
+            Thread.sleep(1000);
+
+            int c = calls.get();
+            assertTrue("" + c, c > 6);
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void constructors() {
+        startStop(new TimerWheelScheduler(Schedulers.single()));
+        startStop(new TimerWheelScheduler(Schedulers.single(), 10, TimeUnit.MILLISECONDS));
+        startStop(new TimerWheelScheduler(Schedulers.single(), 10, TimeUnit.MILLISECONDS, 100));
+        startStop(new TimerWheelScheduler(Schedulers.single(), 10, TimeUnit.MILLISECONDS, 100, new RxThreadFactory("Test")));
+    }
+
+    private void startStop(Scheduler s) {
+        s.start();
+        s.shutdown();
+        s.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidTick() {
+        new TimerWheelScheduler(Schedulers.single(), 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidWheelSize() {
+        new TimerWheelScheduler(Schedulers.single(), 1, TimeUnit.MILLISECONDS, 0);
+    }
+
+    @Test
+    public void wheelSizeRoundedUp() {
+        TimerWheelScheduler s = new TimerWheelScheduler(Schedulers.single(), 1, TimeUnit.MILLISECONDS, 100);
+        try {
+            assertEquals(128, s.wheelSize);
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void linkUnlink() {
+        TimerWheel wheel = new TimerWheel(1, 4);
+
+        DirectWheelTask t1 = new DirectWheelTask(Functions.EMPTY_RUNNABLE, wheel, Schedulers.single());
+        DirectWheelTask t2 = new DirectWheelTask(Functions.EMPTY_RUNNABLE, wheel, Schedulers.single());
+        DirectWheelTask t3 = new DirectWheelTask(Functions.EMPTY_RUNNABLE, wheel, Schedulers.single());
+
+        wheel.link(t1, 1);
+        wheel.link(t2, 1);
+        wheel.link(t3, 1);
+
+        wheel.unlink(t2);
+
+        assertSame(t1, wheel.heads[1]);
+        assertSame(t3, wheel.tails[1]);
+        assertSame(t3, t1.next);
+        assertSame(t1, t3.prev);
+        assertEquals(-1, t2.bucket);
+
+        wheel.unlink(t1);
+
+        assertSame(t3, wheel.heads[1]);
+        assertNull(t3.prev);
+
+        wheel.unlink(t3);
+
+        assertNull(wheel.heads[1]);
+        assertNull(wheel.tails[1]);
+    }
+
+    @Test
+    public void cancelUnlinksFromBucket() {
+        TimerWheel wheel = new TimerWheel(TimeUnit.MILLISECONDS.toNanos(1), 4);
+
+        DirectWheelTask t1 = new DirectWheelTask(this, wheel, Schedulers.single());
+        DirectWheelTask t2 = new DirectWheelTask(this, wheel, Schedulers.single());
+
+        wheel.add(t1, TimeUnit.MILLISECONDS.toNanos(100));
+        wheel.add(t2, TimeUnit.MILLISECONDS.toNanos(100));
+
+        t2.dispose();
+
+        wheel.transferAdded();
+
+        assertEquals(-1, t2.bucket);
+        assertTrue(t1.bucket >= 0);
+
+        t1.dispose();
+
+        wheel.removeCancelled();
+
+        assertEquals(-1, t1.bucket);
+        for (WheelTask head : wheel.heads) {
+            assertNull(head);
+        }
+    }
+}
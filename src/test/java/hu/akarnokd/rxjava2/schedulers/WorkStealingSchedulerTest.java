@@ -0,0 +1,349 @@
+/*
+ * Copyright 2016-2017 David Karnok
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hu.akarnokd.rxjava2.schedulers;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import hu.akarnokd.rxjava2.test.TestHelper;
+import io.reactivex.*;
+import io.reactivex.Scheduler.Worker;
+import io.reactivex.disposables.*;
+import io.reactivex.functions.Function;
+import io.reactivex.internal.schedulers.RxThreadFactory;
+import io.reactivex.schedulers.Schedulers;
+
+public class WorkStealingSchedulerTest implements Runnable {
+
+    final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public void run() {
+        calls.getAndIncrement();
+    }
+
+    @Test
+    public void normal() {
+        Scheduler s = new WorkStealingScheduler(2);
+
+        try {
+            for (int i = 0; i < 100; i++) {
+                Flowable.range(1, 10).hide()
+                .observeOn(s, false, 4)
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertResult(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+            }
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void delayed() {
+        Scheduler s = new WorkStealingScheduler(2);
+
+        try {
+            for (int i = 0; i < 100; i++) {
+                Flowable.range(1, 10).hide()
+                .delay(50, TimeUnit.MILLISECONDS, s)
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertResult(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+            }
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void subscribeOnMany() {
+        final Scheduler s = new WorkStealingScheduler(3);
+
+        try {
+            Flowable.range(1, 1000)
+            .flatMap(new Function<Integer, Flowable<Integer>>() {
+                @Override
+                public Flowable<Integer> apply(Integer v) throws Exception {
+                    return Flowable.just(v).subscribeOn(s);
+                }
+            })
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertValueCount(1000)
+            .assertNoErrors()
+            .assertComplete();
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void shutdown() throws Exception {
+        Scheduler s = new WorkStealingScheduler(2);
+
+        try {
+            Worker w = s.createWorker();
+
+            w.dispose();
+
+            assertSame(Disposables.disposed(), w.schedule(this));
+
+            assertSame(Disposables.disposed(), w.schedule(this, 100, TimeUnit.MILLISECONDS));
+
+            assertSame(Disposables.disposed(), w.schedulePeriodically(this, 100, 100, TimeUnit.MILLISECONDS));
+
+            s.shutdown();
+
+            assertSame(Disposables.disposed(), s.scheduleDirect(this));
+
+            assertSame(Disposables.disposed(), s.scheduleDirect(this, 100, TimeUnit.MILLISECONDS));
+
+            assertSame(Disposables.disposed(), s.schedulePeriodicallyDirect(this, 100, 100, TimeUnit.MILLISECONDS));
+
+            w = s.createWorker();
+
+            assertSame(Disposables.disposed(), w.schedule(this));
+
+            assertSame(Disposables.disposed(), w.schedule(this, 100, TimeUnit.MILLISECONDS));
+
+            assertSame(Disposables.disposed(), w.schedulePeriodically(this, 100, 100, TimeUnit.MILLISECONDS));
+
+            assertEquals(0, calls.get());
+
+            s.start();
+
+            s.scheduleDirect(this);
+
+            s.scheduleDirect(this, 100, TimeUnit.MILLISECONDS);
+
+            s.schedulePeriodicallyDirect(this, 100, 100, TimeUnit.MILLISECONDS);
+
+            w = s.createWorker();
+
+            w.schedule(this);
+
+            w.schedule(this, 100, TimeUnit.MILLISECONDS);
+
+            w.schedulePeriodically(this, 100, 100, TimeUnit.MILLISECONDS);
+
+            Thread.sleep(1000);
+
+            int c = calls.get();
+            assertTrue("" + c, c > 6);
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void taskThrows() throws Exception {
+        Scheduler s = new WorkStealingScheduler(2);
+        try {
+            List<Throwable> errors = TestHelper.trackPluginErrors();
+
+            Worker w = s.createWorker();
+
+            w.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    calls.getAndIncrement();
+                    throw new IllegalStateException();
+                }
+            });
+
+            while (errors.isEmpty()) {
+                Thread.sleep(20);
+            }
+
+            TestHelper.assertError(errors, 0, IllegalStateException.class);
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void cancelledTask() throws Exception {
+        Scheduler s = new WorkStealingScheduler(2);
+        try {
+            Worker w = s.createWorker();
+
+            try {
+                assertFalse(w.isDisposed());
+
+                Disposable d = w.schedule(this, 200, TimeUnit.MILLISECONDS);
+
+                assertFalse(d.isDisposed());
+
+                d.dispose();
+
+                assertTrue(d.isDisposed());
+
+                Thread.sleep(300);
+
+                assertEquals(0, calls.get());
+                w.dispose();
+
+                assertTrue(w.isDisposed());
+            } finally {
+                w.dispose();
+            }
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void cancelledDirectTask() throws Exception {
+        Scheduler s = new WorkStealingScheduler(2);
+        try {
+            Disposable d = s.scheduleDirect(this, 200, TimeUnit.MILLISECONDS);
+
+            assertFalse(d.isDisposed());
+
+            d.dispose();
+
+            assertTrue(d.isDisposed());
+
+            Thread.sleep(300);
+
+            assertEquals(0, calls.get());
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void constructors() {
+        startStop(new WorkStealingScheduler());
+        startStop(new WorkStealingScheduler(1));
+        startStop(new WorkStealingScheduler(1, new RxThreadFactory("Test")));
+        startStop(new WorkStealingScheduler("Test"));
+    }
+
+    private void startStop(Scheduler s) {
+        s.start();
+        s.shutdown();
+        s.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidParallelism() {
+        new WorkStealingScheduler(0);
+    }
+
+    @Test
+    public void startRace() {
+        for (int i = 0; i < 1000; i++) {
+            final Scheduler s = new WorkStealingScheduler(2);
+            s.shutdown();
+
+            Runnable r = new Runnable() {
+                @Override
+                public void run() {
+                    s.start();
+                }
+            };
+
+            TestHelper.race(r, r, Schedulers.single());
+
+            s.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void idleThreadStealsDirectTasks() throws Exception {
+        Scheduler s = new WorkStealingScheduler(2);
+        try {
+            final CountDownLatch blocker = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(10);
+
+            // the round-robin hands every other task to the blocked thread
+            s.scheduleDirect(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        blocker.await();
+                    } catch (InterruptedException ex) {
+                        // ignored
+                    }
+                }
+            });
+
+            for (int i = 0; i < 10; i++) {
+                s.scheduleDirect(new Runnable() {
+                    @Override
+                    public void run() {
+                        done.countDown();
+                    }
+                });
+            }
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            blocker.countDown();
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void workerFifo() throws Exception {
+        Scheduler s = new WorkStealingScheduler(4);
+        try {
+            for (int j = 0; j < 100; j++) {
+                Worker w = s.createWorker();
+                try {
+                    final List<Integer> list = Collections.synchronizedList(new ArrayList<Integer>());
+                    final CountDownLatch cdl = new CountDownLatch(1);
+
+                    for (int i = 0; i < 100; i++) {
+                        final int k = i;
+                        w.schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                list.add(k);
+                            }
+                        });
+                        s.scheduleDirect(this);
+                    }
+                    w.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            cdl.countDown();
+                        }
+                    });
+
+                    assertTrue(cdl.await(5, TimeUnit.SECONDS));
+
+                    for (int i = 0; i < 100; i++) {
+                        assertEquals(i, list.get(i).intValue());
+                    }
+                } finally {
+                    w.dispose();
+                }
+            }
+        } finally {
+            s.shutdown();
+        }
+    }
+}
@@ -16,12 +16,26 @@
 
 package hu.akarnokd.rxjava2.string;
 
-import java.io.IOException;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import org.junit.Test;
+import org.reactivestreams.Subscription;
 
+import hu.akarnokd.rxjava2.functions.IntConsumer;
+import hu.akarnokd.rxjava2.math.MathFlowable;
 import hu.akarnokd.rxjava2.test.BaseTest;
-import io.reactivex.Flowable;
+import io.reactivex.*;
+import io.reactivex.functions.*;
+import io.reactivex.internal.fuseable.QueueSubscription;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subscribers.TestSubscriber;
 
 public class StringFlowableTest extends BaseTest {
 
@@ -211,4 +225,578 @@ public class StringFlowableTest extends BaseTest {
         .test()
         .assertResult("ab", "cd", "ef");
     }
+
+    static final Function<CharSequence, String> TO_STRING = new Function<CharSequence, String>() {
+        @Override
+        public String apply(CharSequence v) throws Exception {
+            return v.toString();
+        }
+    };
+
+    @Test
+    public void splitSequence1() {
+        Flowable.<CharSequence>just("ab", ":cd", "e:fgh")
+        .compose(StringFlowable.splitSequence(":"))
+        .map(TO_STRING)
+        .test()
+        .assertResult("ab", "cde", "fgh");
+    }
+
+    @Test
+    public void splitSequence1Buffer1Request1() {
+        Flowable.<CharSequence>just("ab", ":cd", "e:fgh")
+        .compose(StringFlowable.splitSequence(":", 1))
+        .rebatchRequests(1)
+        .map(TO_STRING)
+        .test()
+        .assertResult("ab", "cde", "fgh");
+    }
+
+    @Test
+    public void splitSequenceEmpty() {
+        Flowable.<CharSequence>empty()
+        .compose(StringFlowable.splitSequence(":"))
+        .test()
+        .assertResult();
+    }
+
+    @Test
+    public void splitSequenceError() {
+        Flowable.<CharSequence>just("abcdefgh").concatWith(Flowable.<CharSequence>error(new IOException()))
+        .compose(StringFlowable.splitSequence(":", 1))
+        .map(TO_STRING)
+        .test()
+        .assertFailure(IOException.class, "abcdefgh");
+    }
+
+    @Test
+    public void splitSequenceExample2() {
+        Flowable.<CharSequence>just("boo:and:foo")
+        .compose(StringFlowable.splitSequence("o", 1))
+        .rebatchRequests(1)
+        .map(TO_STRING)
+        .test()
+        .assertResult("b", "", ":and:f");
+    }
+
+    @Test
+    public void splitSequenceLiteralAcrossChunks() {
+        Flowable.<CharSequence>just("abqw", "ercdqw", "e", "r", "ef")
+        .compose(StringFlowable.splitSequence("qwer"))
+        .map(TO_STRING)
+        .test()
+        .assertResult("ab", "cd", "ef");
+    }
+
+    @Test
+    public void splitSequenceEmptyParts() {
+        Flowable.<CharSequence>just(":ab", ":", "", "", "c::d", "", "e::")
+        .compose(StringFlowable.splitSequence(":", 1))
+        .map(TO_STRING)
+        .test()
+        .assertResult("", "ab", "c", "", "de");
+    }
+
+    @Test
+    public void splitSequenceRegexAcrossChunks() {
+        Flowable.<CharSequence>just("a  ", "  b", " c", "  ")
+        .compose(StringFlowable.splitSequence("\\s+"))
+        .map(TO_STRING)
+        .test()
+        .assertResult("a", "b", "c");
+    }
+
+    @Test
+    public void splitSequenceRegexRescansPendingTail() {
+        // the delimiter starts two chunks before the one completing it
+        Flowable.<CharSequence>just("x<ab", "cd", "ef>y<", ">z")
+        .compose(StringFlowable.splitSequence("<[a-z]*>"))
+        .map(TO_STRING)
+        .test()
+        .assertResult("x", "y", "z");
+    }
+
+    @Test
+    public void splitSequenceRegexAlternatives() {
+        Flowable.<CharSequence>just("a,b;", "c,", ";d")
+        .compose(StringFlowable.splitSequence(Pattern.compile("[,;]")))
+        .map(TO_STRING)
+        .test()
+        .assertResult("a", "b", "c", "", "d");
+    }
+
+    @Test
+    public void splitSequenceZeroLength() {
+        Flowable.<CharSequence>just("ab", "Cd", "Ef")
+        .compose(StringFlowable.splitSequence("(?=[A-Z])"))
+        .map(TO_STRING)
+        .test()
+        .assertResult("ab", "Cd", "Ef");
+    }
+
+    @Test
+    public void splitSequenceStringBuilder() {
+        Flowable.<CharSequence>just(new StringBuilder("a|b"), new StringBuilder("|c"))
+        .compose(StringFlowable.splitSequence(Pattern.quote("|")))
+        .map(TO_STRING)
+        .test()
+        .assertResult("a", "b", "c");
+    }
+
+    @Test
+    public void literalOf() {
+        assertArrayEquals(":".toCharArray(), FlowableSplitSequence.literalOf(Pattern.compile(":")));
+        assertArrayEquals("qwer".toCharArray(), FlowableSplitSequence.literalOf(Pattern.compile("qwer")));
+        assertArrayEquals(".".toCharArray(), FlowableSplitSequence.literalOf(Pattern.compile("\\.")));
+        assertArrayEquals("a.b".toCharArray(), FlowableSplitSequence.literalOf(Pattern.compile(Pattern.quote("a.b"))));
+        assertArrayEquals("a+".toCharArray(), FlowableSplitSequence.literalOf(Pattern.compile("a+", Pattern.LITERAL)));
+
+        assertNull(FlowableSplitSequence.literalOf(Pattern.compile("a+")));
+        assertNull(FlowableSplitSequence.literalOf(Pattern.compile("\\s")));
+        assertNull(FlowableSplitSequence.literalOf(Pattern.compile("")));
+        assertNull(FlowableSplitSequence.literalOf(Pattern.compile("a", Pattern.CASE_INSENSITIVE)));
+    }
+
+    @Test
+    public void splitSequenceSegment() {
+        CharSequence cs = Flowable.<CharSequence>just("xx:abcdef:yy")
+        .compose(StringFlowable.splitSequence(":"))
+        .skip(1)
+        .blockingFirst();
+
+        assertEquals(6, cs.length());
+        assertEquals('a', cs.charAt(0));
+        assertEquals("cde", cs.subSequence(2, 5).toString());
+        assertEquals("d", cs.subSequence(2, 5).subSequence(1, 2).toString());
+
+        try {
+            cs.charAt(6);
+            fail("Should have thrown");
+        } catch (IndexOutOfBoundsException expected) {
+            // expected
+        }
+    }
+
+    static List<String> randomLines(Random rnd, int count) {
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            int n = rnd.nextInt(20);
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < n; j++) {
+                sb.append((char)('a' + rnd.nextInt(26)));
+            }
+            lines.add(sb.toString());
+        }
+        return lines;
+    }
+
+    static List<CharSequence> randomChunks(Random rnd, String text) {
+        List<CharSequence> chunks = new ArrayList<CharSequence>();
+        int i = 0;
+        while (i < text.length()) {
+            int n = Math.min(text.length() - i, rnd.nextInt(700));
+            chunks.add(text.substring(i, i + n));
+            i += n;
+        }
+        return chunks;
+    }
+
+    @Test
+    public void splitSequenceRandom() {
+        Random rnd = new Random(12345);
+        for (String delimiter : new String[] { "\n", "\r\n", "\\s*\r?\n" }) {
+            List<String> lines = randomLines(rnd, 5000);
+            StringBuilder sb = new StringBuilder();
+            for (String s : lines) {
+                sb.append(s).append(delimiter.length() == 1 ? "\n" : "\r\n");
+            }
+            String text = sb.toString();
+
+            List<String> expected = Arrays.asList(text.split(delimiter));
+
+            Flowable.fromIterable(randomChunks(rnd, text))
+            .compose(StringFlowable.splitSequence(delimiter, 16))
+            .map(TO_STRING)
+            .test()
+            .assertResult(expected.toArray(new String[0]));
+
+            Flowable.fromIterable(randomChunks(rnd, text))
+            .compose(StringFlowable.splitSequence(delimiter, 16))
+            .observeOn(Schedulers.single(), false, 4)
+            .map(TO_STRING)
+            .test()
+            .awaitDone(5, TimeUnit.SECONDS)
+            .assertResult(expected.toArray(new String[0]));
+        }
+    }
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static List<ByteBuffer> chunks(byte[] bytes, int size) {
+        List<ByteBuffer> list = new ArrayList<ByteBuffer>();
+        for (int i = 0; i < bytes.length; i += size) {
+            list.add(ByteBuffer.wrap(bytes, i, Math.min(size, bytes.length - i)));
+        }
+        return list;
+    }
+
+    static Flowable<ByteBuffer> bytes(String s, int chunkSize) {
+        return Flowable.fromIterable(chunks(s.getBytes(UTF8), chunkSize));
+    }
+
+    @Test
+    public void frameLines() {
+        for (int i = 1; i < 12; i++) {
+            bytes("ab\r\ncd\n\nef\r\n\r\ngh", i)
+            .compose(StringFlowable.frameLines())
+            .compose(StringFlowable.decode(UTF8))
+            .test()
+            .assertResult("ab", "cd", "", "ef", "", "gh");
+        }
+    }
+
+    @Test
+    public void frameLinesBuffer1Request1() {
+        bytes("ab\ncd\nef\n", 2)
+        .compose(StringFlowable.frameLines(1))
+        .rebatchRequests(1)
+        .compose(StringFlowable.decode(UTF8))
+        .test()
+        .assertResult("ab", "cd", "ef");
+    }
+
+    @Test
+    public void frameLinesMultiByte() {
+        String text = "\u00e1rv\u00edzt\u0171r\u0151\n\u20ac100\n\ud834\udd1e\n";
+        for (int i = 1; i < 8; i++) {
+            bytes(text, i)
+            .compose(StringFlowable.frameLines())
+            .compose(StringFlowable.decode(UTF8))
+            .test()
+            .assertResult("\u00e1rv\u00edzt\u0171r\u0151", "\u20ac100", "\ud834\udd1e");
+        }
+    }
+
+    @Test
+    public void frameLinesFilterBeforeDecode() {
+        bytes("#comment\nvalue\n#other\nvalue2", 3)
+        .compose(StringFlowable.frameLines())
+        .filter(new Predicate<ByteBuffer>() {
+            @Override
+            public boolean test(ByteBuffer v) throws Exception {
+                return v.remaining() == 0 || v.get(0) != '#';
+            }
+        })
+        .compose(StringFlowable.decode(UTF8))
+        .test()
+        .assertResult("value", "value2");
+    }
+
+    @Test
+    public void frameLinesDirectBuffer() {
+        ByteBuffer bb = ByteBuffer.allocateDirect(16);
+        bb.put("ab\ncd".getBytes(UTF8));
+        bb.flip();
+
+        Flowable.just(bb)
+        .compose(StringFlowable.frameLines())
+        .compose(StringFlowable.decode(UTF8))
+        .test()
+        .assertResult("ab", "cd");
+
+        assertEquals(0, bb.position());
+    }
+
+    @Test
+    public void frameLinesError() {
+        bytes("ab\ncd", 4).concatWith(Flowable.<ByteBuffer>error(new IOException()))
+        .compose(StringFlowable.frameLines())
+        .compose(StringFlowable.decode(UTF8))
+        .test()
+        .assertFailure(IOException.class, "ab", "cd");
+    }
+
+    @Test
+    public void frameLinesLarge() {
+        StringBuilder sb = new StringBuilder();
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 10000; i++) {
+            String line = "line-" + i;
+            expected.add(line);
+            sb.append(line).append('\n');
+        }
+
+        bytes(sb.toString(), 777)
+        .compose(StringFlowable.frameLines(16))
+        .observeOn(Schedulers.single(), false, 4)
+        .compose(StringFlowable.decode(UTF8))
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertResult(expected.toArray(new String[0]));
+    }
+
+    @Test
+    public void frameDelimited() {
+        for (int i = 1; i < 8; i++) {
+            bytes("ab<>cd<<>>ef<>", i)
+            .compose(StringFlowable.frameDelimited("<>".getBytes(UTF8)))
+            .compose(StringFlowable.decode(UTF8))
+            .test()
+            .assertResult("ab", "cd<", ">ef");
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void frameDelimitedEmpty() {
+        StringFlowable.frameDelimited(new byte[0]);
+    }
+
+    static byte[] prefixed(int prefixLength, String... frames) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String f : frames) {
+            byte[] b = f.getBytes(UTF8);
+            for (int i = prefixLength - 1; i >= 0; i--) {
+                out.write(b.length >> (i * 8));
+            }
+            out.write(b, 0, b.length);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void frameLengthPrefixed() {
+        String big = new String(new char[300]).replace('\0', 'x');
+        for (int p = 2; p <= 4; p++) {
+            for (int i = 1; i < 8; i++) {
+                Flowable.fromIterable(chunks(prefixed(p, "ab", "", big, "c"), i))
+                .compose(StringFlowable.frameLengthPrefixed(p, 1000))
+                .compose(StringFlowable.decode(UTF8))
+                .test()
+                .assertResult("ab", "", big, "c");
+            }
+        }
+    }
+
+    @Test
+    public void frameLengthPrefixedTooLong() {
+        Flowable.fromIterable(chunks(prefixed(1, "ab", "abcdef"), 3))
+        .compose(StringFlowable.frameLengthPrefixed(1, 5))
+        .compose(StringFlowable.decode(UTF8))
+        .test()
+        .assertFailure(IllegalStateException.class, "ab");
+    }
+
+    @Test
+    public void frameLengthPrefixedTruncated() {
+        byte[] b = prefixed(2, "ab", "cdef");
+        Flowable.just(ByteBuffer.wrap(b, 0, b.length - 1))
+        .compose(StringFlowable.frameLengthPrefixed(2, 100))
+        .compose(StringFlowable.decode(UTF8))
+        .test()
+        .assertFailure(EOFException.class, "ab");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void frameLengthPrefixedInvalid() {
+        StringFlowable.frameLengthPrefixed(5, 100);
+    }
+
+    @Test
+    public void decodeStream() {
+        String text = "\u00e1rv\u00edzt\u0171r\u0151 t\u00fck\u00f6rf\u00far\u00f3g\u00e9p \u20ac \ud834\udd1e";
+        for (int i = 1; i < 8; i++) {
+            List<String> parts = bytes(text, i)
+            .compose(StringFlowable.decodeStream(UTF8))
+            .rebatchRequests(1)
+            .toList()
+            .blockingGet();
+
+            StringBuilder sb = new StringBuilder();
+            for (String s : parts) {
+                assertFalse(s.isEmpty());
+                sb.append(s);
+            }
+            assertEquals(text, sb.toString());
+        }
+    }
+
+    @Test
+    public void decodeStreamTruncated() {
+        byte[] b = "a\u20ac".getBytes(UTF8);
+        Flowable.just(ByteBuffer.wrap(b, 0, b.length - 1))
+        .compose(StringFlowable.decodeStream(UTF8))
+        .test()
+        .assertResult("a", "\ufffd");
+    }
+
+    @Test
+    public void decodeStreamSplit() {
+        bytes("\u00e1b:c\u00e9:\u00ed", 1)
+        .compose(StringFlowable.decodeStream(UTF8))
+        .compose(StringFlowable.split(":"))
+        .test()
+        .assertResult("\u00e1b", "c\u00e9", "\u00ed");
+    }
+
+    static <T> List<T> pollFused(Flowable<T> source) {
+        final List<T> list = new ArrayList<T>();
+        source.subscribe(new FlowableSubscriber<T>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public void onSubscribe(Subscription s) {
+                QueueSubscription<T> qs = (QueueSubscription<T>)s;
+                assertEquals(QueueSubscription.SYNC, qs.requestFusion(QueueSubscription.ANY));
+                assertFalse(qs.isEmpty());
+                T v;
+                try {
+                    while ((v = qs.poll()) != null) {
+                        list.add(v);
+                    }
+                } catch (Exception ex) {
+                    throw new AssertionError(ex);
+                }
+                assertTrue(qs.isEmpty());
+            }
+
+            @Override
+            public void onNext(T t) {
+                fail("Should not be called");
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                fail("Should not be called");
+            }
+
+            @Override
+            public void onComplete() {
+                fail("Should not be called");
+            }
+        });
+        return list;
+    }
+
+    @Test
+    public void charactersFused() {
+        assertEquals(Arrays.asList(97, 98, 99), pollFused(StringFlowable.characters("abc")));
+    }
+
+    @Test
+    public void charsUnboxed() {
+        final StringBuilder sb = new StringBuilder();
+        StringFlowable.chars("a\u00e1\u20ac").blockingForEachInt(new IntConsumer() {
+            @Override
+            public void accept(int value) throws Exception {
+                sb.append(value).append(',');
+            }
+        });
+        assertEquals("97,225,8364,", sb.toString());
+    }
+
+    @Test
+    public void charsSum() {
+        MathFlowable.sumInt(StringFlowable.chars("abc"))
+        .test()
+        .assertResult(97 + 98 + 99);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void charsConsumerCrash() {
+        StringFlowable.chars("abc").blockingForEachInt(new IntConsumer() {
+            @Override
+            public void accept(int value) throws Exception {
+                throw new IllegalStateException();
+            }
+        });
+    }
+
+    @Test
+    public void codePoints() {
+        StringFlowable.codePoints("a\ud834\udd1eb\ud834")
+        .test()
+        .assertResult(97, 0x1D11E, 98, 0xD834);
+    }
+
+    @Test
+    public void codePointsBackpressured() {
+        TestSubscriber<Integer> ts = StringFlowable.codePoints("\ud834\udd1e\ud834\udd1e")
+        .test(1);
+
+        ts.assertValues(0x1D11E).assertNotComplete();
+
+        ts.request(1);
+
+        ts.assertResult(0x1D11E, 0x1D11E);
+    }
+
+    static final Function<CharBuffer, String> BUFFER_TO_STRING = new Function<CharBuffer, String>() {
+        @Override
+        public String apply(CharBuffer v) throws Exception {
+            return v.toString();
+        }
+    };
+
+    @Test
+    public void characterBuffers() {
+        StringFlowable.characterBuffers("abcdefgh", 3)
+        .map(BUFFER_TO_STRING)
+        .test()
+        .assertResult("abc", "def", "gh");
+    }
+
+    @Test
+    public void characterBuffersBackpressured() {
+        TestSubscriber<String> ts = StringFlowable.characterBuffers("abcdefgh", 3)
+        .map(BUFFER_TO_STRING)
+        .test(0);
+
+        ts.assertEmpty();
+
+        ts.request(1);
+
+        ts.assertValues("abc").assertNotComplete();
+
+        ts.request(2);
+
+        ts.assertResult("abc", "def", "gh");
+    }
+
+    @Test
+    public void characterBuffersSurrogate() {
+        StringFlowable.characterBuffers("ab\ud834\udd1ecd", 3)
+        .map(BUFFER_TO_STRING)
+        .test()
+        .assertResult("ab", "\ud834\udd1ec", "d");
+    }
+
+    @Test
+    public void characterBuffersFused() {
+        List<CharBuffer> list = pollFused(StringFlowable.characterBuffers("abcde", 2));
+        assertEquals(3, list.size());
+        assertEquals("e", list.get(2).toString());
+        assertTrue(list.get(0).isReadOnly());
+    }
+
+    @Test
+    public void characterArrays() {
+        List<char[]> list = StringFlowable.characterArrays(new StringBuilder("abcdefg"), 4)
+        .toList()
+        .blockingGet();
+
+        assertEquals(2, list.size());
+        assertArrayEquals("abcd".toCharArray(), list.get(0));
+        assertArrayEquals("efg".toCharArray(), list.get(1));
+
+        list = StringFlowable.characterArrays("abcdefg", 10).rebatchRequests(1).toList().blockingGet();
+
+        assertEquals(1, list.size());
+        assertArrayEquals("abcdefg".toCharArray(), list.get(0));
+    }
+
+    @Test
+    public void characterArraysEmpty() {
+        StringFlowable.characterArrays("", 10)
+        .test()
+        .assertResult();
+    }
 }